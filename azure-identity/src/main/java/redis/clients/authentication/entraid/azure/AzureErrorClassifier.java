@@ -0,0 +1,52 @@
+/*
+ * Copyright 2024, Redis Ltd. and Contributors
+ * All rights reserved.
+ *
+ * Licensed under the MIT License.
+ */
+package redis.clients.authentication.entraid.azure;
+
+import com.azure.core.exception.HttpResponseException;
+import com.azure.core.http.HttpResponse;
+import com.azure.identity.CredentialUnavailableException;
+
+import redis.clients.authentication.entraid.EntraIDErrorClassifier;
+
+/**
+ * Classifies the failures of token requests made with Azure Identity credentials.
+ *
+ * <ul>
+ *   <li>CredentialUnavailableException, none of the credentials in the chain is available, is {@code RETRYABLE}.
+ *      It is also raised for transient conditions, e.g. when the managed identity endpoint is not reachable yet
+ *      while the VM starts, and cannot be told apart from a missing configuration.</li>
+ *   <li>HttpResponseException, including ClientAuthenticationException, is classified with its status code,
+ *      HTTP 429 is {@code THROTTLED} and HTTP 400/401/403/404 is {@code PERMANENT}, except HTTP 404/410 of
+ *      the managed identity endpoint (IMDS), which is {@code RETRYABLE}.</li>
+ *   <li>MSAL errors wrapped by Azure Identity are classified as in {@link EntraIDErrorClassifier}.</li>
+ *   <li>Everything else is {@code RETRYABLE}.</li>
+ * </ul>
+ *
+ * <p>This is the default classifier of {@link AzureTokenAuthConfigBuilder}.
+ */
+public class AzureErrorClassifier extends EntraIDErrorClassifier {
+
+    private static final String IMDS_TOKEN_PATH = "/metadata/identity/";
+
+    @Override
+    protected ErrorClass classifyCause(Throwable cause) {
+        if (cause instanceof CredentialUnavailableException) {
+            return ErrorClass.RETRYABLE;
+        }
+        if (cause instanceof HttpResponseException && ((HttpResponseException) cause).getResponse() != null) {
+            HttpResponse response = ((HttpResponseException) cause).getResponse();
+            return isImdsRequest(response) ? classifyImdsStatusCode(response.getStatusCode())
+                    : classifyStatusCode(response.getStatusCode());
+        }
+        return super.classifyCause(cause);
+    }
+
+    private static boolean isImdsRequest(HttpResponse response) {
+        return response.getRequest() != null && response.getRequest().getUrl() != null
+                && response.getRequest().getUrl().getPath().startsWith(IMDS_TOKEN_PATH);
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2024, Redis Ltd. and Contributors 
+ * All rights reserved. 
+ * 
+ * Licensed under the MIT License.
+ */
+package redis.clients.authentication.entraid.azure;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Set;
+import java.util.function.Supplier;
+
+import com.azure.core.credential.AccessToken;
+import com.azure.core.credential.TokenCredential;
+import com.azure.core.credential.TokenRequestContext;
+import com.azure.core.exception.HttpResponseException;
+import com.azure.identity.DefaultAzureCredential;
+import redis.clients.authentication.core.IdentityProvider;
+import redis.clients.authentication.core.IdentityProviderThrottledException;
+import redis.clients.authentication.core.Token;
+import redis.clients.authentication.entraid.JWToken;
+import redis.clients.authentication.entraid.Throttling;
+
+/**
+ * AzureIdentityProvider is an implementation of the IdentityProvider interface
+ * that uses Azure's DefaultAzureCredential, or any other TokenCredential, to obtain access tokens.
+ * 
+ * <p>This class is designed to work with Azure's identity platform to provide
+ * authentication tokens for accessing Azure resources. It uses a 
+ * DefaultAzureCredential to request tokens with specified scopes and a timeout(in milliseconds). 
+ * For most cases you will not need to use it directly since AzureTokenAuthConfigBuilder 
+ * will do the work for you as shown in the example below:
+ * <pre>
+ * {@code
+ * TokenAuthConfig config = AzureTokenAuthConfigBuilder.builder()
+ *          .defaultAzureCredential(new DefaultAzureCredential()).build();
+ * }
+ * </pre>
+ * <p>In you case you need your own implementation for relevant reasons, you can use it as follows:
+ * <pre>
+ * {@code
+ * Set<String> scopes = new HashSet<>(Arrays.asList("https://redis.azure.com/.default"));
+ * AzureIdentityProvider provider = new AzureIdentityProvider(
+ *      new DefaultAzureCredentialBuilder().build(), scopes, 5000);
+ * TokenAuthConfig config = AzureTokenAuthConfigBuilder.builder().identityProviderConfig(()-> provider)).build();
+ * }
+ * </pre>
+ * 
+ * <p>Thread Safety: This class is thread-safe as long as the provided 
+ * DefaultAzureCredential is thread-safe.
+ * 
+ * @see redis.clients.authentication.entraid.azure.AzureTokenAuthConfigBuilder
+ * @see com.azure.identity.DefaultAzureCredentialBuilder
+ */
+
+public final class AzureIdentityProvider implements IdentityProvider {
+
+    private Supplier<AccessToken> accessTokenSupplier;
+
+    public AzureIdentityProvider(DefaultAzureCredential defaultAzureCredential, Set<String> scopes, int timeout) {
+        this((TokenCredential) defaultAzureCredential, scopes, timeout);
+    }
+
+    /**
+     * @param tokenCredential any credential of Azure Identity, e.g. a {@link ParallelProbingCredential}
+     * @param scopes
+     * @param timeout in milliseconds
+     */
+    public AzureIdentityProvider(TokenCredential tokenCredential, Set<String> scopes, int timeout) {
+        TokenRequestContext ctx = new TokenRequestContext().setScopes(new ArrayList<String>(scopes));
+        accessTokenSupplier = () -> tokenCredential.getToken(ctx).block(Duration.ofMillis(timeout));
+    }
+
+    @Override
+    public Token requestToken() {
+        AccessToken accessToken;
+        try {
+            accessToken = accessTokenSupplier.get();
+        } catch (RuntimeException e) {
+            long retryAfter = retryAfterInMs(e);
+            if (retryAfter >= 0) {
+                throw new IdentityProviderThrottledException("Token request throttled by Azure Identity!", retryAfter,
+                        e);
+            }
+            throw e;
+        }
+        return new JWToken(accessToken.getToken());
+    }
+
+    private static long retryAfterInMs(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof HttpResponseException) {
+                HttpResponseException responseException = (HttpResponseException) cause;
+                if (responseException.getResponse() != null
+                        && responseException.getResponse().getStatusCode() == Throttling.TOO_MANY_REQUESTS) {
+                    return Math.max(0, Throttling
+                            .parseRetryAfter(responseException.getResponse().getHeaderValue(Throttling.RETRY_AFTER)));
+                }
+            }
+        }
+        // azure-identity acquires tokens with MSAL under the hood
+        return Throttling.retryAfterInMs(error);
+    }
+}
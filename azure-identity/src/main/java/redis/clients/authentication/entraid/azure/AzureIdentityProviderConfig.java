@@ -4,11 +4,12 @@
  *
  * Licensed under the MIT License.
  */
-package redis.clients.authentication.entraid;
+package redis.clients.authentication.entraid.azure;
 
 import java.util.Set;
 import java.util.function.Supplier;
 
+import com.azure.core.credential.TokenCredential;
 import com.azure.identity.DefaultAzureCredential;
 
 import redis.clients.authentication.core.IdentityProvider;
@@ -19,8 +20,8 @@ import redis.clients.authentication.core.IdentityProviderConfig;
  * This class implements the {@link IdentityProviderConfig} interface and provides
  * a configuration for creating an {@link AzureIdentityProvider} instance.
  * 
- * <p>This class uses {@link DefaultAzureCredential} for authentication and allows
- * specifying scopes and a timeout(in milliseconds) for the identity provider.</p>
+ * <p>This class uses {@link DefaultAzureCredential}, or any other {@link TokenCredential},
+ * for authentication and allows specifying scopes and a timeout(in milliseconds) for the identity provider.</p>
  * For most cases you will not need to use it directly since AzureTokenAuthConfigBuilder 
  * will do the work for you as shown in the example below:
  * <pre>
@@ -52,7 +53,11 @@ public final class AzureIdentityProviderConfig implements IdentityProviderConfig
     private final Supplier<IdentityProvider> providerSupplier;
 
     public AzureIdentityProviderConfig(DefaultAzureCredential defaultAzureCredential, Set<String> scopes, int timeout) {
-        providerSupplier = () -> new AzureIdentityProvider(defaultAzureCredential, scopes, timeout);
+        this((TokenCredential) defaultAzureCredential, scopes, timeout);
+    }
+
+    public AzureIdentityProviderConfig(TokenCredential tokenCredential, Set<String> scopes, int timeout) {
+        providerSupplier = () -> new AzureIdentityProvider(tokenCredential, scopes, timeout);
     }
 
     @Override
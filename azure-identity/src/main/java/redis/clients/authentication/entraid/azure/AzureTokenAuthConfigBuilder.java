@@ -4,18 +4,21 @@
  * 
  * Licensed under the MIT License.
  */
-package redis.clients.authentication.entraid;
+package redis.clients.authentication.entraid.azure;
 
 import java.util.Collections;
+import java.util.List;
 import java.util.Set;
 
+import com.azure.core.credential.TokenCredential;
 import com.azure.identity.DefaultAzureCredential;
 
 import redis.clients.authentication.core.TokenAuthConfig;
 import redis.clients.authentication.core.TokenManagerConfig;
 
 /**
- * Builder class for configuring Azure Token Authentication via a DefaultAzureCredential.
+ * Builder class for configuring Azure Token Authentication via a DefaultAzureCredential, or any other
+ * TokenCredential.
  * It builds a TokenAuthConfig object which can be used to authenticate with Azure resources. 
  * This class extends {@link TokenAuthConfig.Builder} and implements {@link AutoCloseable}.
  * It provides methods to configure various parameters for Azure Token Authentication.
@@ -27,6 +30,8 @@ import redis.clients.authentication.core.TokenManagerConfig;
  *   <li>{@code DEFAULT_TOKEN_REQUEST_EXECUTION_TIMEOUT_IN_MS}: 1000</li>
  *   <li>{@code DEFAULT_MAX_ATTEMPTS_TO_RETRY}: 5</li>
  *   <li>{@code DEFAULT_DELAY_IN_MS_TO_RETRY}: 100</li>
+ *   <li>{@code DEFAULT_FORCED_REFRESH_MIN_INTERVAL_IN_MS}: 5000</li>
+ *   <li>Error classifier: {@link AzureErrorClassifier}</li>
  *   <li>{@code DEFAULT_SCOPES}: "https://redis.azure.com/.default"</li>
  * </ul>
  * 
@@ -38,6 +43,15 @@ import redis.clients.authentication.core.TokenManagerConfig;
  *     .tokenRequestExecTimeoutInMs(2000);
  * TokenAuthConfig config = builder.build();
  * }</pre>
+ *
+ * <p>To skip the sequential probing of the DefaultAzureCredential chain, probe only the credentials expected
+ * in the environment, in parallel:</p>
+ * <pre>{@code
+ * TokenAuthConfig config = AzureTokenAuthConfigBuilder.builder()
+ *     .probeInParallel(Arrays.asList(new WorkloadIdentityCredentialBuilder().build(),
+ *         new ManagedIdentityCredentialBuilder().build()))
+ *     .build();
+ * }</pre>
  * 
  * <p>This class is also {@link AutoCloseable}, and resources can be cleaned
  * up by calling {@link #close()}.</p>
@@ -52,24 +66,49 @@ public class AzureTokenAuthConfigBuilder extends TokenAuthConfig.Builder<AzureTo
     public static final int DEFAULT_TOKEN_REQUEST_EXECUTION_TIMEOUT_IN_MS = 1000;
     public static final int DEFAULT_MAX_ATTEMPTS_TO_RETRY = 5;
     public static final int DEFAULT_DELAY_IN_MS_TO_RETRY = 100;
+    public static final int DEFAULT_FORCED_REFRESH_MIN_INTERVAL_IN_MS = 5000;
     public static final Set<String> DEFAULT_SCOPES = Collections.singleton("https://redis.azure.com/.default");
 
-    private DefaultAzureCredential defaultAzureCredential;
+    private TokenCredential tokenCredential;
     private Set<String> scopes = DEFAULT_SCOPES;
     private int tokenRequestExecTimeoutInMs = DEFAULT_TOKEN_REQUEST_EXECUTION_TIMEOUT_IN_MS;
+    private String rateLimitKey;
 
     public AzureTokenAuthConfigBuilder() {
         this.expirationRefreshRatio(DEFAULT_EXPIRATION_REFRESH_RATIO)
                 .lowerRefreshBoundMillis(DEFAULT_LOWER_REFRESH_BOUND_MILLIS)
                 .tokenRequestExecTimeoutInMs(DEFAULT_TOKEN_REQUEST_EXECUTION_TIMEOUT_IN_MS)
-                .maxAttemptsToRetry(DEFAULT_MAX_ATTEMPTS_TO_RETRY).delayInMsToRetry(DEFAULT_DELAY_IN_MS_TO_RETRY);
+                .maxAttemptsToRetry(DEFAULT_MAX_ATTEMPTS_TO_RETRY).delayInMsToRetry(DEFAULT_DELAY_IN_MS_TO_RETRY)
+                .forcedRefreshMinIntervalInMs(DEFAULT_FORCED_REFRESH_MIN_INTERVAL_IN_MS)
+                .errorClassifier(new AzureErrorClassifier());
     }
 
     public AzureTokenAuthConfigBuilder defaultAzureCredential(DefaultAzureCredential defaultAzureCredential) {
-        this.defaultAzureCredential = defaultAzureCredential;
+        this.tokenCredential = defaultAzureCredential;
+        return this;
+    }
+
+    /**
+     * Sets the credential to request the tokens with, replaces the one set with
+     * {@link #defaultAzureCredential(DefaultAzureCredential)}.
+     * @param tokenCredential
+     * @return this builder
+     */
+    public AzureTokenAuthConfigBuilder tokenCredential(TokenCredential tokenCredential) {
+        this.tokenCredential = tokenCredential;
         return this;
     }
 
+    /**
+     * Requests the tokens with the first of the given credentials to return a token when probed in parallel,
+     * see {@link ParallelProbingCredential}.
+     * @param candidates
+     * @return this builder
+     */
+    public AzureTokenAuthConfigBuilder probeInParallel(List<TokenCredential> candidates) {
+        return tokenCredential(new ParallelProbingCredential(candidates));
+    }
+
     public AzureTokenAuthConfigBuilder scopes(Set<String> scopes) {
         this.scopes = scopes;
         return this;
@@ -82,15 +121,25 @@ public class AzureTokenAuthConfigBuilder extends TokenAuthConfig.Builder<AzureTo
         return this;
     }
 
+    @Override
+    public AzureTokenAuthConfigBuilder rateLimitKey(String rateLimitKey) {
+        super.rateLimitKey(rateLimitKey);
+        this.rateLimitKey = rateLimitKey;
+        return this;
+    }
+
     public TokenAuthConfig build() {
+        if (rateLimitKey == null) {
+            super.rateLimitKey("azure-identity");
+        }
         super.identityProviderConfig(
-            new AzureIdentityProviderConfig(defaultAzureCredential, scopes, tokenRequestExecTimeoutInMs));
+            new AzureIdentityProviderConfig(tokenCredential, scopes, tokenRequestExecTimeoutInMs));
         return super.build();
     }
 
     @Override
     public void close() {
-        defaultAzureCredential = null;
+        tokenCredential = null;
         scopes = null;
     }
 
@@ -108,11 +157,20 @@ public class AzureTokenAuthConfigBuilder extends TokenAuthConfig.Builder<AzureTo
                 .tokenRequestExecTimeoutInMs(tokenManagerConfig.getTokenRequestExecTimeoutInMs())
                 .maxAttemptsToRetry(tokenManagerConfig.getRetryPolicy().getMaxAttempts())
                 .delayInMsToRetry(tokenManagerConfig.getRetryPolicy().getdelayInMs())
+                .recoveryProbeIntervalInMs(tokenManagerConfig.getRecoveryPolicy().getProbeIntervalInMs())
+                .recoveryProbeMaxJitterInMs(tokenManagerConfig.getRecoveryPolicy().getMaxJitterInMs())
+                .forcedRefreshMinIntervalInMs(tokenManagerConfig.getForcedRefreshMinIntervalInMs())
+                .rateLimit(tokenManagerConfig.getRateLimitPolicy().getPermitsPerSecond(),
+                    tokenManagerConfig.getRateLimitPolicy().getBurst())
+                .rateLimitKey(tokenManagerConfig.getRateLimitPolicy().getKey())
+                .errorClassifier(tokenManagerConfig.getErrorClassifier()).tokenCache(tokenManagerConfig.getTokenCache())
+                .warmUpLeadTimeInMs(tokenManagerConfig.getWarmUpLeadTimeInMs())
                 .identityProviderConfig(tokenAuthConfig.getIdentityProviderConfig());
 
-        builder.defaultAzureCredential = sample.defaultAzureCredential;
+        builder.tokenCredential = sample.tokenCredential;
         builder.scopes = sample.scopes;
         builder.tokenRequestExecTimeoutInMs = sample.tokenRequestExecTimeoutInMs;
+        builder.rateLimitKey = sample.rateLimitKey;
         return builder;
     }
 }
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2024, Redis Ltd. and Contributors
+ * All rights reserved.
+ *
+ * Licensed under the MIT License.
+ */
+package redis.clients.authentication.entraid.azure;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.azure.core.credential.AccessToken;
+import com.azure.core.credential.TokenCredential;
+import com.azure.core.credential.TokenRequestContext;
+import com.azure.identity.CredentialUnavailableException;
+
+import reactor.core.Exceptions;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * TokenCredential which requests the first token from all of its candidate credentials in parallel, and pins the
+ * first one to return a token for the later requests.
+ *
+ * <p>Unlike the sequential chain of DefaultAzureCredential, the first token does not wait for the probe timeouts of
+ * the credentials which are not available in the environment, e.g. managed identity outside of Azure. The pinned
+ * credential is given up, and the candidates are probed again, only after it fails for
+ * {@code failuresBeforeReprobe} requests in a row.
+ *
+ * <p>Example usage:
+ * <pre>{@code
+ * TokenCredential credential = new ParallelProbingCredential(Arrays.asList(
+ *          new EnvironmentCredentialBuilder().build(),
+ *          new ManagedIdentityCredentialBuilder().build(),
+ *          new AzureCliCredentialBuilder().build()));
+ * TokenAuthConfig config = AzureTokenAuthConfigBuilder.builder().tokenCredential(credential).build();
+ * }</pre>
+ *
+ * <p>If all candidates fail, the request fails with CredentialUnavailableException only if none of them is
+ * available, otherwise with the error of the first candidate which is available but failed, so that the error is
+ * classified by {@link AzureErrorClassifier} as transient or not.
+ */
+public class ParallelProbingCredential implements TokenCredential {
+
+    public static final int DEFAULT_FAILURES_BEFORE_REPROBE = 3;
+
+    private final List<TokenCredential> candidates;
+    private final int failuresBeforeReprobe;
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private volatile TokenCredential pinned;
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    public ParallelProbingCredential(List<TokenCredential> candidates) {
+        this(candidates, DEFAULT_FAILURES_BEFORE_REPROBE);
+    }
+
+    /**
+     * @param candidates credentials to probe
+     * @param failuresBeforeReprobe number of failed requests in a row with the pinned credential, before the
+     *      candidates are probed again
+     */
+    public ParallelProbingCredential(List<TokenCredential> candidates, int failuresBeforeReprobe) {
+        if (candidates == null || candidates.isEmpty()) {
+            throw new IllegalArgumentException("At least one candidate credential is required!");
+        }
+        this.candidates = Collections.unmodifiableList(new ArrayList<>(candidates));
+        this.failuresBeforeReprobe = Math.max(1, failuresBeforeReprobe);
+    }
+
+    @Override
+    public Mono<AccessToken> getToken(TokenRequestContext request) {
+        TokenCredential credential = pinned;
+        if (credential == null) {
+            return probe(request);
+        }
+        return credential.getToken(request).doOnNext(token -> consecutiveFailures.set(0)).doOnError(e -> {
+            if (consecutiveFailures.incrementAndGet() >= failuresBeforeReprobe && pinned == credential) {
+                logger.warn("Pinned credential {} failed {} times in a row, probing all candidates again.",
+                    credential.getClass().getSimpleName(), failuresBeforeReprobe);
+                pinned = null;
+            }
+        });
+    }
+
+    private Mono<AccessToken> probe(TokenRequestContext request) {
+        List<Mono<Probe>> probes = new ArrayList<>(candidates.size());
+        for (TokenCredential candidate : candidates) {
+            // subscribe on separate threads, some credentials block while requesting, e.g. by running a CLI
+            probes.add(Mono.defer(() -> candidate.getToken(request)).map(token -> new Probe(candidate, token))
+                    .subscribeOn(Schedulers.boundedElastic()));
+        }
+        return Mono.firstWithValue(probes).onErrorMap(this::probeError).map(probe -> {
+            if (pinned != probe.credential) {
+                logger.debug("Pinned credential {}.", probe.credential.getClass().getSimpleName());
+            }
+            pinned = probe.credential;
+            consecutiveFailures.set(0);
+            return probe.token;
+        });
+    }
+
+    private Throwable probeError(Throwable error) {
+        // firstWithValue reports the errors of all candidates in a composite cause
+        List<Throwable> errors = error.getCause() == null ? Collections.emptyList()
+                : Exceptions.unwrapMultiple(error.getCause());
+        for (Throwable candidateError : errors) {
+            if (!(candidateError instanceof CredentialUnavailableException)) {
+                return candidateError;
+            }
+        }
+        return new CredentialUnavailableException("None of the candidate credentials is available!", error);
+    }
+
+    /**
+     * Returns the credential pinned by the last successful probe, null if the candidates are to be probed.
+     */
+    public TokenCredential getPinnedCredential() {
+        return pinned;
+    }
+
+    private static final class Probe {
+        private final TokenCredential credential;
+        private final AccessToken token;
+
+        private Probe(TokenCredential credential, AccessToken token) {
+            this.credential = credential;
+            this.token = token;
+        }
+    }
+}
@@ -13,18 +13,18 @@ import com.azure.identity.DefaultAzureCredential;
 import com.azure.identity.DefaultAzureCredentialBuilder;
 
 import redis.clients.authentication.core.Token;
-import redis.clients.authentication.entraid.AzureIdentityProvider;
-import redis.clients.authentication.entraid.AzureTokenAuthConfigBuilder;
+import redis.clients.authentication.entraid.azure.AzureIdentityProvider;
+import redis.clients.authentication.entraid.azure.AzureTokenAuthConfigBuilder;
 
 public class AzureIdentityProviderIntegrationTests {
 
     @Test
     public void requestTokenWithDefaultAzureCredential() {
         // ensure environment variables are set
-        String client_id = System.getenv(TestContext.AZURE_CLIENT_ID);
+        String client_id = System.getenv("AZURE_CLIENT_ID");
         assertNotNull(client_id);
         assertFalse(client_id.isEmpty());
-        String clientSecret = System.getenv(TestContext.AZURE_CLIENT_SECRET);
+        String clientSecret = System.getenv("AZURE_CLIENT_SECRET");
         assertNotNull(clientSecret);
         assertFalse(clientSecret.isEmpty());
         String tenantId = System.getenv("AZURE_TENANT_ID");
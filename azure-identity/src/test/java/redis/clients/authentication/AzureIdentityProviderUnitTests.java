@@ -0,0 +1,168 @@
+/*
+ * Copyright 2024, Redis Ltd. and Contributors
+ * All rights reserved.
+ *
+ * Licensed under the MIT License.
+ */
+package redis.clients.authentication;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.atLeast;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockConstruction;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Set;
+
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.MockedConstruction;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.algorithms.Algorithm;
+import com.azure.core.credential.AccessToken;
+import com.azure.core.credential.TokenCredential;
+import com.azure.core.credential.TokenRequestContext;
+import com.azure.core.exception.HttpResponseException;
+import com.azure.core.http.HttpMethod;
+import com.azure.core.http.HttpRequest;
+import com.azure.core.http.HttpResponse;
+import com.azure.identity.CredentialUnavailableException;
+import com.azure.identity.DefaultAzureCredential;
+
+import reactor.core.publisher.Mono;
+import redis.clients.authentication.core.ErrorClassifier.ErrorClass;
+import redis.clients.authentication.core.IdentityProvider;
+import redis.clients.authentication.entraid.azure.AzureErrorClassifier;
+import redis.clients.authentication.entraid.azure.AzureIdentityProvider;
+import redis.clients.authentication.entraid.azure.AzureIdentityProviderConfig;
+import redis.clients.authentication.entraid.azure.AzureTokenAuthConfigBuilder;
+import redis.clients.authentication.entraid.azure.ParallelProbingCredential;
+
+public class AzureIdentityProviderUnitTests {
+    @Test
+    public void testAzureTokenAuthConfigBuilder() {
+        DefaultAzureCredential mockCredential = mock(DefaultAzureCredential.class);
+        Set<String> scopes = AzureTokenAuthConfigBuilder.DEFAULT_SCOPES;
+        int timeout = 2000;
+
+        try (MockedConstruction<AzureIdentityProviderConfig> mockedConstructor = mockConstruction(
+            AzureIdentityProviderConfig.class, (mock, context) -> {
+                assertEquals(mockCredential, context.arguments().get(0));
+                assertEquals(scopes, context.arguments().get(1));
+                assertEquals(timeout, context.arguments().get(2));
+            })) {
+            AzureTokenAuthConfigBuilder.builder().defaultAzureCredential(mockCredential).scopes(scopes)
+                    .tokenRequestExecTimeoutInMs(timeout).build();
+        }
+    }
+
+    public void testAzureIdentityProviderConfig() {
+        DefaultAzureCredential mockCredential = mock(DefaultAzureCredential.class);
+        Set<String> scopes = AzureTokenAuthConfigBuilder.DEFAULT_SCOPES;
+        int timeout = 2000;
+
+        try (MockedConstruction<AzureIdentityProvider> mockedConstructor = mockConstruction(AzureIdentityProvider.class,
+            (mock, context) -> {
+                assertEquals(mockCredential, context.arguments().get(0));
+                assertEquals(scopes, context.arguments().get(1));
+                assertEquals(timeout, context.arguments().get(2));
+            })) {
+            new AzureIdentityProviderConfig(mockCredential, scopes, timeout).getProvider();
+        }
+    }
+
+    @Test
+    public void testRequestWithMockCredential() {
+        String token = JWT.create().withExpiresAt(new Date(System.currentTimeMillis() - 1000)).withClaim("oid", "user1")
+                .sign(Algorithm.none());
+
+        AccessToken t = new AccessToken(token, OffsetDateTime.now());
+        Mono<AccessToken> monoToken = Mono.just(t);
+        DefaultAzureCredential mockCredential = mock(DefaultAzureCredential.class);
+        when(mockCredential.getToken(any(TokenRequestContext.class))).thenReturn(monoToken);
+        new AzureIdentityProviderConfig(mockCredential, AzureTokenAuthConfigBuilder.DEFAULT_SCOPES, 0).getProvider()
+                .requestToken();
+
+        ArgumentCaptor<TokenRequestContext> argument = ArgumentCaptor.forClass(TokenRequestContext.class);
+
+        verify(mockCredential, atLeast(1)).getToken(argument.capture());
+        AzureTokenAuthConfigBuilder.DEFAULT_SCOPES
+                .forEach((item) -> assertTrue(argument.getValue().getScopes().contains(item)));
+    }
+
+    @Test
+    public void parallelProbingCredentialTest() {
+        String token = JWT.create().withExpiresAt(new Date(System.currentTimeMillis() + 60 * 1000))
+                .withClaim("oid", "user1").sign(Algorithm.none());
+        AccessToken accessToken = new AccessToken(token, OffsetDateTime.now().plusMinutes(1));
+
+        TokenCredential unavailable = mock(TokenCredential.class);
+        when(unavailable.getToken(any(TokenRequestContext.class)))
+                .thenReturn(Mono.error(new CredentialUnavailableException("not configured")));
+        TokenCredential slow = mock(TokenCredential.class);
+        when(slow.getToken(any(TokenRequestContext.class)))
+                .thenReturn(Mono.just(accessToken).delayElement(Duration.ofSeconds(5)));
+        TokenCredential fast = mock(TokenCredential.class);
+        when(fast.getToken(any(TokenRequestContext.class))).thenReturn(Mono.just(accessToken));
+
+        ParallelProbingCredential credential = new ParallelProbingCredential(Arrays.asList(unavailable, slow, fast), 2);
+        IdentityProvider provider = new AzureTokenAuthConfigBuilder().tokenCredential(credential)
+                .tokenRequestExecTimeoutInMs(1000).build().getIdentityProviderConfig().getProvider();
+
+        // the fast credential wins without waiting for the slow one, and is pinned
+        assertEquals(token, provider.requestToken().getValue());
+        assertSame(fast, credential.getPinnedCredential());
+        assertEquals(token, provider.requestToken().getValue());
+        verify(slow, times(1)).getToken(any(TokenRequestContext.class));
+        verify(fast, times(2)).getToken(any(TokenRequestContext.class));
+
+        // probed again only after the pinned credential fails twice in a row
+        when(fast.getToken(any(TokenRequestContext.class))).thenReturn(Mono.error(new RuntimeException("down")));
+        assertThrows(RuntimeException.class, () -> provider.requestToken());
+        assertSame(fast, credential.getPinnedCredential());
+        assertThrows(RuntimeException.class, () -> provider.requestToken());
+        assertNull(credential.getPinnedCredential());
+
+        // an available credential which failed is reported rather than the unavailable ones
+        RuntimeException error = assertThrows(RuntimeException.class,
+            () -> new ParallelProbingCredential(Arrays.asList(unavailable, fast)).getToken(new TokenRequestContext())
+                    .block());
+        assertEquals("down", error.getMessage());
+        assertThrows(CredentialUnavailableException.class,
+            () -> new ParallelProbingCredential(Arrays.asList(unavailable)).getToken(new TokenRequestContext())
+                    .block());
+    }
+
+    @Test
+    public void azureErrorClassifierTest() {
+        AzureErrorClassifier classifier = new AzureErrorClassifier();
+        // IMDS answers 404 and 410 while the identity is being assigned
+        String imds = "http://169.254.169.254/metadata/identity/oauth2/token";
+        assertEquals(ErrorClass.RETRYABLE, classifier.classify(httpError(imds, 404)));
+        assertEquals(ErrorClass.RETRYABLE, classifier.classify(httpError(imds, 410)));
+        assertEquals(ErrorClass.PERMANENT, classifier.classify(httpError(imds, 400)));
+        assertEquals(ErrorClass.PERMANENT,
+            classifier.classify(httpError("https://login.microsoftonline.com/tenant/oauth2/v2.0/token", 404)));
+        assertEquals(ErrorClass.RETRYABLE,
+            classifier.classify(new CredentialUnavailableException("IMDS endpoint is not reachable")));
+    }
+
+    private static HttpResponseException httpError(String url, int statusCode) {
+        HttpResponse response = mock(HttpResponse.class);
+        when(response.getStatusCode()).thenReturn(statusCode);
+        when(response.getRequest()).thenReturn(new HttpRequest(HttpMethod.GET, url));
+        return new HttpResponseException("Token request failed", response);
+    }
+}
@@ -15,4 +15,15 @@ public class AuthXException extends RuntimeException {
     public AuthXException(String message, Throwable cause) {
         super(message, cause);
     }
+
+    /**
+     * Creates an exception without a stack trace, for the failures on hot paths where the stack trace is of no use,
+     * such as the ones retried internally.
+     * @param message
+     * @param cause
+     * @param writableStackTrace
+     */
+    protected AuthXException(String message, Throwable cause, boolean writableStackTrace) {
+        super(message, cause, true, writableStackTrace);
+    }
 }
@@ -0,0 +1,363 @@
+/*
+ * Copyright 2024, Redis Ltd. and Contributors
+ * All rights reserved.
+ *
+ * Licensed under the MIT License.
+ */
+package redis.clients.authentication.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Requests the tokens from several identity providers of the same identity, e.g. a managed identity backed by a
+ * service principal with a certificate, failing over to the next provider within the same token request when
+ * one fails.
+ *
+ * <p>The providers are tried in the given order, or with the first one picked at random by weight if weights are
+ * given. The provider which served the last token is tried first, and a provider which failed is tried only after
+ * the healthy ones until its cooldown has passed. When all providers fail, the error of the first one is thrown
+ * with the others suppressed if they all failed with the same type of error, otherwise a generic error with all of
+ * them suppressed, which the token manager retries as usual.
+ *
+ * <p>With a hedge delay, the next provider is raced against the first one if it has not responded within the
+ * delay, e.g. when the managed identity endpoint is slow during a node maintenance, and the first token received
+ * is taken.
+ *
+ * <p>With a request timeout, a provider which has not responded within it, or a hedged pair of providers, is given
+ * up and the request fails over to the next one. The timeout should leave time for all providers within the token
+ * request timeout of the token manager, e.g. by splitting it among them, so that a hanging provider does not use up
+ * the whole request before the next one is tried.
+ */
+public class CompositeIdentityProvider implements IdentityProvider, AutoCloseable {
+
+    public static final long DEFAULT_UNHEALTHY_COOLDOWN_IN_MS = 60 * 1000;
+
+    private static final AtomicInteger threadCounter = new AtomicInteger();
+
+    private final List<Member> members;
+    private final boolean weighted;
+    private final long hedgeAfterMs;
+    private final long unhealthyCooldownInMs;
+    private final long requestTimeoutInMs;
+    private final ExecutorService executor;
+    private volatile Member preferred;
+    private Logger logger = LoggerFactory.getLogger(getClass());
+
+    private static final class Member {
+        private final IdentityProvider provider;
+        private final int weight;
+        private final int index;
+        private volatile long unhealthyUntil;
+
+        private Member(IdentityProvider provider, int weight, int index) {
+            this.provider = provider;
+            this.weight = weight;
+            this.index = index;
+        }
+
+        private boolean isHealthy(long now) {
+            return unhealthyUntil <= now;
+        }
+    }
+
+    /**
+     * @param providers providers in the order to try them
+     * @param weights weights to pick the first provider with, null to try the providers in order
+     * @param hedgeAfterMs delay after which the next provider is raced against a pending one, 0 to disable
+     * @param unhealthyCooldownInMs time a failed provider is tried only after the healthy ones
+     */
+    public CompositeIdentityProvider(List<IdentityProvider> providers, int[] weights, long hedgeAfterMs,
+            long unhealthyCooldownInMs) {
+        this(providers, weights, hedgeAfterMs, unhealthyCooldownInMs, 0);
+    }
+
+    /**
+     * @param providers providers in the order to try them
+     * @param weights weights to pick the first provider with, null to try the providers in order
+     * @param hedgeAfterMs delay after which the next provider is raced against a pending one, 0 to disable
+     * @param unhealthyCooldownInMs time a failed provider is tried only after the healthy ones
+     * @param requestTimeoutInMs time after which a provider, or a hedged pair of providers, is failed over from,
+     *            0 to wait for it
+     */
+    public CompositeIdentityProvider(List<IdentityProvider> providers, int[] weights, long hedgeAfterMs,
+            long unhealthyCooldownInMs, long requestTimeoutInMs) {
+        if (providers.isEmpty()) {
+            throw new AuthXException("At least one identity provider is required!");
+        }
+        if (weights != null && weights.length != providers.size()) {
+            throw new AuthXException("A weight is required for each identity provider!");
+        }
+        List<Member> list = new ArrayList<>(providers.size());
+        for (int i = 0; i < providers.size(); i++) {
+            list.add(new Member(providers.get(i), weights == null ? 1 : weights[i], i));
+        }
+        this.members = Collections.unmodifiableList(list);
+        this.weighted = weights != null;
+        this.hedgeAfterMs = hedgeAfterMs;
+        this.unhealthyCooldownInMs = unhealthyCooldownInMs;
+        this.requestTimeoutInMs = requestTimeoutInMs;
+        this.executor = hedgeAfterMs > 0 || requestTimeoutInMs > 0 ? Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "composite-identity-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }) : null;
+    }
+
+    @Override
+    public Token requestToken() {
+        return requestToken(false);
+    }
+
+    @Override
+    public Token requestToken(boolean forceRefresh) {
+        List<Member> order = attemptOrder();
+        List<Exception> failures = new ArrayList<>();
+        int next = 0;
+        while (next < order.size()) {
+            Token token;
+            if (hedgeAfterMs > 0 && next + 1 < order.size()) {
+                token = requestHedged(order.get(next), order.get(next + 1), forceRefresh, failures);
+                next += 2;
+            } else {
+                token = requestFrom(order.get(next), forceRefresh, failures);
+                next++;
+            }
+            if (token != null) {
+                return token;
+            }
+        }
+        throw allFailed(failures);
+    }
+
+    /**
+     * Returns the error to throw when all providers failed. The error of a provider is only rethrown if all of
+     * them failed the same way, otherwise the token manager would classify the failure of the whole request, e.g.
+     * skip its retries or defer it for throttling, by whichever provider happened to fail first. The failures are
+     * added as suppressed to a generic error instead, which is retried as usual.
+     */
+    private static RuntimeException allFailed(List<Exception> failures) {
+        Exception first = failures.get(0);
+        boolean sameFailure = true;
+        for (Exception failure : failures) {
+            sameFailure &= failure.getClass() == first.getClass();
+        }
+        RuntimeException error;
+        int suppressedFrom;
+        if (sameFailure && first instanceof RuntimeException) {
+            error = (RuntimeException) first;
+            suppressedFrom = 1;
+        } else {
+            error = new AuthXException("Token request failed with all identity providers!");
+            suppressedFrom = 0;
+        }
+        for (int i = suppressedFrom; i < failures.size(); i++) {
+            error.addSuppressed(failures.get(i));
+        }
+        return error;
+    }
+
+    private Token requestFrom(Member member, boolean forceRefresh, List<Exception> failures) {
+        if (requestTimeoutInMs <= 0) {
+            try {
+                return succeeded(member, member.provider.requestToken(forceRefresh));
+            } catch (RuntimeException e) {
+                failed(member, e, failures);
+                return null;
+            }
+        }
+        CompletionService<Token> completion = new ExecutorCompletionService<>(executor);
+        Future<Token> request = completion.submit(() -> member.provider.requestToken(forceRefresh));
+        try {
+            if (completion.poll(requestTimeoutInMs, TimeUnit.MILLISECONDS) == null) {
+                failed(member, timedOut(member), failures);
+                return null;
+            }
+            return resultOf(request, member, failures);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AuthXException("Interrupted while waiting for identity providers!", e);
+        } finally {
+            request.cancel(true);
+        }
+    }
+
+    /**
+     * Requests the token from the first provider, racing the second one if the first has not responded within
+     * the hedge delay or has failed. Returns the first token received, or null if both fail or do not respond
+     * within the request timeout.
+     */
+    private Token requestHedged(Member first, Member second, boolean forceRefresh, List<Exception> failures) {
+        long deadline = requestTimeoutInMs > 0 ? System.currentTimeMillis() + requestTimeoutInMs : 0;
+        CompletionService<Token> race = new ExecutorCompletionService<>(executor);
+        List<Future<Token>> pending = new ArrayList<>(2);
+        pending.add(race.submit(() -> first.provider.requestToken(forceRefresh)));
+        try {
+            Future<Token> done = race.poll(hedgeAfterMs, TimeUnit.MILLISECONDS);
+            if (done != null) {
+                Token token = resultOf(done, first, failures);
+                if (token != null) {
+                    return token;
+                }
+            } else {
+                logger.debug("Identity provider {} did not respond within {} ms, racing provider {}", first.index,
+                    hedgeAfterMs, second.index);
+            }
+            pending.add(race.submit(() -> second.provider.requestToken(forceRefresh)));
+            int remaining = done == null ? 2 : 1;
+            while (remaining-- > 0) {
+                Future<Token> completed = deadline == 0 ? race.take()
+                        : race.poll(deadline - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+                if (completed == null) {
+                    for (int i = 0; i < pending.size(); i++) {
+                        if (!pending.get(i).isDone()) {
+                            Member member = i == 0 ? first : second;
+                            failed(member, timedOut(member), failures);
+                        }
+                    }
+                    return null;
+                }
+                Token token = resultOf(completed, completed == pending.get(0) ? first : second, failures);
+                if (token != null) {
+                    return token;
+                }
+            }
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AuthXException("Interrupted while waiting for identity providers!", e);
+        } finally {
+            for (Future<Token> future : pending) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    private Token resultOf(Future<Token> future, Member member, List<Exception> failures) throws InterruptedException {
+        try {
+            return succeeded(member, future.get());
+        } catch (ExecutionException e) {
+            failed(member, e.getCause() instanceof Exception ? (Exception) e.getCause() : e, failures);
+            return null;
+        }
+    }
+
+    private AuthXException timedOut(Member member) {
+        return new AuthXException(
+                "Identity provider " + member.index + " did not respond within " + requestTimeoutInMs + " ms!");
+    }
+
+    private Token succeeded(Member member, Token token) {
+        member.unhealthyUntil = 0;
+        preferred = member;
+        return token;
+    }
+
+    private void failed(Member member, Exception error, List<Exception> failures) {
+        member.unhealthyUntil = System.currentTimeMillis() + unhealthyCooldownInMs;
+        failures.add(error);
+        logger.warn("Token request failed with identity provider {}, failing over: {}", member.index, error.toString());
+    }
+
+    /**
+     * Returns the providers in the order to try them: the one which served the last token if still healthy,
+     * the other healthy ones in the given order or starting with one picked by weight, then the unhealthy ones.
+     */
+    private List<Member> attemptOrder() {
+        long now = System.currentTimeMillis();
+        List<Member> healthy = new ArrayList<>(members.size());
+        List<Member> unhealthy = new ArrayList<>();
+        for (Member member : members) {
+            (member.isHealthy(now) ? healthy : unhealthy).add(member);
+        }
+        Member first = preferred;
+        if (first == null || !first.isHealthy(now)) {
+            first = weighted ? pickByWeight(healthy) : null;
+        }
+        if (first != null && healthy.remove(first)) {
+            healthy.add(0, first);
+        }
+        healthy.addAll(unhealthy);
+        return healthy;
+    }
+
+    private static Member pickByWeight(List<Member> candidates) {
+        int total = 0;
+        for (Member member : candidates) {
+            total += member.weight;
+        }
+        if (total <= 0) {
+            return null;
+        }
+        int pick = ThreadLocalRandom.current().nextInt(total);
+        for (Member member : candidates) {
+            pick -= member.weight;
+            if (pick < 0) {
+                return member;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the index of the provider which served the last token, -1 if none yet.
+     * @return
+     */
+    public int getPreferredIndex() {
+        Member member = preferred;
+        return member == null ? -1 : member.index;
+    }
+
+    @Override
+    public void warmUp() {
+        List<Member> order = attemptOrder();
+        order.get(0).provider.warmUp();
+        if (hedgeAfterMs > 0 && order.size() > 1) {
+            // may be raced with the next renewal
+            order.get(1).provider.warmUp();
+        }
+    }
+
+    @Override
+    public void setTokenChangeCallback(Runnable onTokenChanged) {
+        for (Member member : members) {
+            member.provider.setTokenChangeCallback(onTokenChanged);
+        }
+    }
+
+    @Override
+    public void release() {
+        for (Member member : members) {
+            member.provider.release();
+        }
+    }
+
+    @Override
+    public void close() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+        for (Member member : members) {
+            if (member.provider instanceof AutoCloseable) {
+                try {
+                    ((AutoCloseable) member.provider).close();
+                } catch (Exception e) {
+                    logger.warn("Failed to close identity provider {}", member.index, e);
+                }
+            }
+        }
+    }
+}
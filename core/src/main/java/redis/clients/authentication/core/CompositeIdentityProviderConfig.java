@@ -0,0 +1,101 @@
+/*
+ * Copyright 2024, Redis Ltd. and Contributors
+ * All rights reserved.
+ *
+ * Licensed under the MIT License.
+ */
+package redis.clients.authentication.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Combines the identity providers of the given configurations into a {@link CompositeIdentityProvider} failing
+ * over from one to the next.
+ */
+public final class CompositeIdentityProviderConfig implements IdentityProviderConfig {
+
+    private final List<IdentityProviderConfig> identityProviderConfigs;
+    private final int[] weights;
+    private final long hedgeAfterMs;
+    private final long unhealthyCooldownInMs;
+    private final long requestTimeoutInMs;
+
+    /**
+     * @param identityProviderConfigs configurations of the providers in the order to try them
+     * @param hedgeAfterMs delay after which the next provider is raced against a pending one, 0 to disable
+     */
+    public CompositeIdentityProviderConfig(List<IdentityProviderConfig> identityProviderConfigs, long hedgeAfterMs) {
+        this(identityProviderConfigs, null, hedgeAfterMs, CompositeIdentityProvider.DEFAULT_UNHEALTHY_COOLDOWN_IN_MS,
+                0);
+    }
+
+    /**
+     * @param identityProviderConfigs configurations of the providers in the order to try them
+     * @param hedgeAfterMs delay after which the next provider is raced against a pending one, 0 to disable
+     * @param requestTimeoutInMs time after which a provider, or a hedged pair of providers, is failed over from,
+     *            0 to wait for it
+     */
+    public CompositeIdentityProviderConfig(List<IdentityProviderConfig> identityProviderConfigs, long hedgeAfterMs,
+            long requestTimeoutInMs) {
+        this(identityProviderConfigs, null, hedgeAfterMs, CompositeIdentityProvider.DEFAULT_UNHEALTHY_COOLDOWN_IN_MS,
+                requestTimeoutInMs);
+    }
+
+    /**
+     * @param identityProviderConfigs configurations of the providers in the order to try them
+     * @param weights weights to pick the first provider with, null to try the providers in order
+     * @param hedgeAfterMs delay after which the next provider is raced against a pending one, 0 to disable
+     * @param unhealthyCooldownInMs time a failed provider is tried only after the healthy ones
+     */
+    public CompositeIdentityProviderConfig(List<IdentityProviderConfig> identityProviderConfigs, int[] weights,
+            long hedgeAfterMs, long unhealthyCooldownInMs) {
+        this(identityProviderConfigs, weights, hedgeAfterMs, unhealthyCooldownInMs, 0);
+    }
+
+    /**
+     * @param identityProviderConfigs configurations of the providers in the order to try them
+     * @param weights weights to pick the first provider with, null to try the providers in order
+     * @param hedgeAfterMs delay after which the next provider is raced against a pending one, 0 to disable
+     * @param unhealthyCooldownInMs time a failed provider is tried only after the healthy ones
+     * @param requestTimeoutInMs time after which a provider, or a hedged pair of providers, is failed over from,
+     *            0 to wait for it
+     */
+    public CompositeIdentityProviderConfig(List<IdentityProviderConfig> identityProviderConfigs, int[] weights,
+            long hedgeAfterMs, long unhealthyCooldownInMs, long requestTimeoutInMs) {
+        if (identityProviderConfigs.isEmpty()) {
+            throw new AuthXException("At least one identity provider is required!");
+        }
+        if (weights != null && weights.length != identityProviderConfigs.size()) {
+            throw new AuthXException("A weight is required for each identity provider!");
+        }
+        this.identityProviderConfigs = Collections.unmodifiableList(new ArrayList<>(identityProviderConfigs));
+        this.weights = weights == null ? null : weights.clone();
+        this.hedgeAfterMs = hedgeAfterMs;
+        this.unhealthyCooldownInMs = unhealthyCooldownInMs;
+        this.requestTimeoutInMs = requestTimeoutInMs;
+    }
+
+    @Override
+    public IdentityProvider getProvider() {
+        List<IdentityProvider> providers = new ArrayList<>(identityProviderConfigs.size());
+        for (IdentityProviderConfig config : identityProviderConfigs) {
+            providers.add(config.getProvider());
+        }
+        return new CompositeIdentityProvider(providers, weights, hedgeAfterMs, unhealthyCooldownInMs,
+                requestTimeoutInMs);
+    }
+
+    public List<IdentityProviderConfig> getIdentityProviderConfigs() {
+        return identityProviderConfigs;
+    }
+
+    public long getHedgeAfterMs() {
+        return hedgeAfterMs;
+    }
+
+    public long getRequestTimeoutInMs() {
+        return requestTimeoutInMs;
+    }
+}
@@ -17,15 +17,45 @@ import org.slf4j.LoggerFactory;
  * Dispatches requests to the identity provider asynchronously with a timeout for the request execution.
  */
 class Dispatcher {
-    private ExecutorService executor = Executors.newFixedThreadPool(2);
+    private ExecutorService executor;
+    private boolean sharedExecutor;
+    private volatile boolean stopped;
     private Exception error;
     private long tokenRequestExecTimeoutInMs;
     private IdentityProvider identityProvider;
+    private RateLimiter rateLimiter;
     private Logger logger = LoggerFactory.getLogger(getClass());
+    private FailureLog failureLog;
+    private static final long FAILURE_LOG_WINDOW_IN_MS = 30 * 1000;
 
     public Dispatcher(IdentityProvider provider, long tokenRequestExecTimeoutInMs) {
+        this(provider, tokenRequestExecTimeoutInMs, RateLimiter.unlimited());
+    }
+
+    public Dispatcher(IdentityProvider provider, long tokenRequestExecTimeoutInMs, RateLimiter rateLimiter) {
+        this.tokenRequestExecTimeoutInMs = tokenRequestExecTimeoutInMs;
+        this.identityProvider = provider;
+        this.rateLimiter = rateLimiter;
+        this.executor = Executors.newFixedThreadPool(2);
+        this.failureLog = new FailureLog(logger, FAILURE_LOG_WINDOW_IN_MS, rateLimiter.getKey());
+    }
+
+    /**
+     * Creates a dispatcher running the requests on the given executor shared with other dispatchers, which is not
+     * shut down when this one stops
+     * @param provider
+     * @param tokenRequestExecTimeoutInMs
+     * @param rateLimiter
+     * @param executor
+     */
+    Dispatcher(IdentityProvider provider, long tokenRequestExecTimeoutInMs, RateLimiter rateLimiter,
+            ExecutorService executor) {
         this.tokenRequestExecTimeoutInMs = tokenRequestExecTimeoutInMs;
         this.identityProvider = provider;
+        this.rateLimiter = rateLimiter;
+        this.executor = executor;
+        this.sharedExecutor = true;
+        this.failureLog = new FailureLog(logger, FAILURE_LOG_WINDOW_IN_MS, rateLimiter.getKey());
     }
 
     /**
@@ -34,29 +64,87 @@ class Dispatcher {
      * @return
      */
     public Request requestTokenAsync() {
-        Future<Token> request = executor.submit(() -> requestToken());
+        return requestTokenAsync(false);
+    }
+
+    /**
+     * Dispatches a request to the identity provider asynchronously, bypassing the cache of the identity provider
+     * if forceRefresh is true
+     * @param forceRefresh
+     * @return
+     */
+    public Request requestTokenAsync(boolean forceRefresh) {
+        Future<Token> request = executor.submit(() -> requestToken(forceRefresh));
         return () -> request.get(tokenRequestExecTimeoutInMs, TimeUnit.MILLISECONDS);
     }
 
+    /**
+     * Warms up the identity provider asynchronously for an upcoming request, failures are only logged
+     */
+    public void warmUpAsync() {
+        if (stopped || executor.isShutdown()) {
+            return;
+        }
+        executor.execute(() -> {
+            try {
+                identityProvider.warmUp();
+            } catch (Exception e) {
+                logger.debug("Failed to warm up identity provider", e);
+            }
+        });
+    }
+
     public Exception getError() {
         return error;
     }
 
+    /**
+     * Stops the dispatcher
+     * Failures not yet summarized in the log are logged right away
+     */
     public void stop() {
-        executor.shutdown();
+        stopped = true;
+        failureLog.flush();
+        if (!sharedExecutor) {
+            executor.shutdown();
+        }
+    }
+
+    public RateLimiter getRateLimiter() {
+        return rateLimiter;
     }
 
     /**
-     * Makes the actual request to the identity provider
+     * Makes the actual request to the identity provider if the rate limiter lets it through
+     * Throttling signals from the identity provider defer the requests of all dispatchers sharing the rate limiter
+     * Failures are logged aggregated per dispatcher and named by the rate limit key, full detail of the error is
+     * left to the token manager
      * @return
      */
-    private Token requestToken() {
+    private Token requestToken(boolean forceRefresh) {
         error = null;
+        long retryAfter = rateLimiter.tryAcquire();
+        if (retryAfter > 0) {
+            throw new RequestDeferredException(
+                    "Token request deferred by rate limiter '" + rateLimiter.getKey() + "' for " + retryAfter + " ms",
+                    retryAfter);
+        }
         try {
-            return identityProvider.requestToken();
+            Token token = forceRefresh ? identityProvider.requestToken(true) : identityProvider.requestToken();
+            failureLog.recordSuccess();
+            return token;
+        } catch (RequestDeferredException e) {
+            // deferred by the provider itself without a request to the identity provider
+            error = e;
+            throw e;
+        } catch (IdentityProviderThrottledException e) {
+            error = e;
+            rateLimiter.deferFor(e.getRetryAfterInMs());
+            failureLog.record(e);
+            throw e;
         } catch (Exception e) {
             error = e;
-            logger.error("Request to identity provider failed with message: " + e.getMessage(), e);
+            failureLog.record(e);
             throw e;
         }
     }
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2024, Redis Ltd. and Contributors
+ * All rights reserved.
+ *
+ * Licensed under the MIT License.
+ */
+package redis.clients.authentication.core;
+
+/**
+ * Classifies the failures of token requests, so that the token manager can decide how to proceed with them.
+ * Identity provider implementations can supply their own classifier to map provider specific errors,
+ * see {@link TokenAuthConfig.Builder#errorClassifier(ErrorClassifier)}.
+ */
+@FunctionalInterface
+public interface ErrorClassifier {
+
+    enum ErrorClass {
+        /**
+         * Transient failure, retried with the delay given in the retry policy.
+         */
+        RETRYABLE,
+        /**
+         * Identity provider is throttling the requests, retried with an exponential backoff
+         * that is never shorter than the retry-after hint of the identity provider.
+         */
+        THROTTLED,
+        /**
+         * Failure that will not go away by retrying, e.g. invalid credentials or a misconfigured authority.
+         * Remaining retries are skipped and the error is propagated to the listener right away.
+         */
+        PERMANENT
+    }
+
+    /**
+     * Default classifier which treats throttling signals as {@link ErrorClass#THROTTLED} and any other error
+     * as {@link ErrorClass#RETRYABLE}.
+     */
+    ErrorClassifier DEFAULT = error -> error instanceof IdentityProviderThrottledException ? ErrorClass.THROTTLED
+            : ErrorClass.RETRYABLE;
+
+    /**
+     * Classifies the given failure of a token request.
+     * @param error the failure as thrown by the identity provider, or a timeout of the request
+     * @return
+     */
+    ErrorClass classify(Throwable error);
+}
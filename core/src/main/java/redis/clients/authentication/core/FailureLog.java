@@ -0,0 +1,103 @@
+/*
+ * Copyright 2024, Redis Ltd. and Contributors
+ * All rights reserved.
+ *
+ * Licensed under the MIT License.
+ */
+package redis.clients.authentication.core;
+
+import org.slf4j.Logger;
+
+/**
+ * Logs the failures of the token requests of an identity in an aggregated way, to avoid flooding the logs during an
+ * outage of the identity provider.
+ * The first failure after a quiet period is logged right away, the ones following it within the given window
+ * are only counted and summarized once the window has passed, with the next failure, the next successful request
+ * or on {@link #flush()}, e.g. "12 more requests to identity provider 'entraid:managed-identity' failed within 25 s
+ * of the first one, last cause: ...".
+ * Stack traces are logged only at debug level.
+ */
+class FailureLog {
+
+    private final Logger logger;
+    private final long windowInMs;
+    private final String name;
+    private long windowStart = Long.MIN_VALUE;
+    private int suppressed = 0;
+    private long lastSuppressedAt;
+    private String lastSuppressedCause;
+
+    /**
+     * @param logger
+     * @param windowInMs time after a logged failure in which the following ones are only counted
+     * @param name names the identity in the messages, e.g. the rate limit key
+     */
+    FailureLog(Logger logger, long windowInMs, String name) {
+        this.logger = logger;
+        this.windowInMs = windowInMs;
+        this.name = name;
+    }
+
+    void record(Throwable cause) {
+        record(cause, System.currentTimeMillis());
+    }
+
+    void record(Throwable cause, long now) {
+        if (logger.isDebugEnabled()) {
+            logger.debug("Request to identity provider '{}' failed", name, cause);
+        }
+        String description = describe(cause);
+        synchronized (this) {
+            if (windowStart != Long.MIN_VALUE && now - windowStart < windowInMs) {
+                suppressed++;
+                lastSuppressedAt = now;
+                lastSuppressedCause = description;
+                return;
+            }
+            logSuppressed();
+            windowStart = now;
+        }
+        logger.warn("Request to identity provider '{}' failed: {}", name, description);
+    }
+
+    void recordSuccess() {
+        recordSuccess(System.currentTimeMillis());
+    }
+
+    /**
+     * Logs the summary of the suppressed failures once the window has passed, called on successful requests so
+     * that the summary of an outage is not held back until the next one.
+     */
+    void recordSuccess(long now) {
+        synchronized (this) {
+            if (suppressed > 0 && now - windowStart >= windowInMs) {
+                logSuppressed();
+            }
+        }
+    }
+
+    /**
+     * Logs the summary of the suppressed failures right away, e.g. when the requests stop.
+     */
+    synchronized void flush() {
+        logSuppressed();
+    }
+
+    private void logSuppressed() {
+        if (suppressed == 0) {
+            return;
+        }
+        logger.warn("{} more requests to identity provider '{}' failed within {} s of the first one, last cause: {}",
+            suppressed, name, (lastSuppressedAt - windowStart) / 1000, lastSuppressedCause);
+        suppressed = 0;
+        lastSuppressedCause = null;
+    }
+
+    static String describe(Throwable cause) {
+        Throwable root = cause;
+        while (root.getCause() != null && root.getCause() != root) {
+            root = root.getCause();
+        }
+        return root == cause ? cause.toString() : cause + " caused by " + root;
+    }
+}
@@ -0,0 +1,241 @@
+/*
+ * Copyright 2024, Redis Ltd. and Contributors
+ * All rights reserved.
+ *
+ * Licensed under the MIT License.
+ */
+package redis.clients.authentication.core;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Serves the token kept in a file which is rotated by another process, e.g. a CSI secret store driver or
+ * a Vault agent sidecar, without any network call.
+ *
+ * <p>The file holds either a JWT, whose expiration is read from its exp claim, or an opaque token such as a Redis
+ * ACL password, on the first line, followed by its expiration on the second line, in seconds since epoch or as an
+ * ISO-8601 instant.
+ *
+ * <p>Once a token manager is started with it, the directory of the file is watched with a {@link WatchService},
+ * and every change of the token is pushed through the token manager to its listener. The file is also checked
+ * every poll interval, for the file systems where the watch service misses changes or is not supported, e.g.
+ * network file systems. Replacing the file, or the symbolic link to it as Kubernetes does with mounted volumes,
+ * is picked up the same way as writing to it.
+ */
+public class FileIdentityProvider implements IdentityProvider, AutoCloseable {
+
+    public enum Format {
+        /**
+         * The file holds a JWT.
+         */
+        JWT,
+        /**
+         * The file holds an opaque token on the first line and its expiration on the second line.
+         */
+        OPAQUE_WITH_EXPIRY,
+    }
+
+    public static final String DEFAULT_USER_CLAIM = "sub";
+    public static final long DEFAULT_POLL_INTERVAL_IN_MS = 10 * 1000;
+
+    private final Path file;
+    private final Format format;
+    private final String user;
+    private final String userClaim;
+    private final long pollIntervalInMs;
+    private Thread watcher;
+    private WatchService watchService;
+    private volatile Runnable onTokenChanged;
+    private volatile byte[] lastContent;
+    private volatile FileStamp lastStamp;
+    private Logger logger = LoggerFactory.getLogger(getClass());
+
+    public FileIdentityProvider(Path file, Format format) {
+        this(file, format, null, DEFAULT_USER_CLAIM, DEFAULT_POLL_INTERVAL_IN_MS);
+    }
+
+    /**
+     * @param file the file to read the token from
+     * @param format
+     * @param user user of an opaque token, e.g. the Redis ACL user of a password
+     * @param userClaim claim of a JWT to take the user from
+     * @param pollIntervalInMs interval to check the file for changes in addition to watching it
+     */
+    public FileIdentityProvider(Path file, Format format, String user, String userClaim, long pollIntervalInMs) {
+        this.file = file.toAbsolutePath();
+        this.format = format;
+        this.user = user;
+        this.userClaim = userClaim == null ? DEFAULT_USER_CLAIM : userClaim;
+        this.pollIntervalInMs = pollIntervalInMs;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    @Override
+    public Token requestToken() {
+        byte[] content;
+        try {
+            content = Files.readAllBytes(file);
+        } catch (IOException e) {
+            throw new AuthXException("Failed to read token file " + file, e);
+        }
+        lastContent = content;
+        return parse(new String(content, StandardCharsets.UTF_8));
+    }
+
+    private Token parse(String content) {
+        String[] lines = content.trim().split("\\r?\\n");
+        String value = lines[0].trim();
+        if (value.isEmpty()) {
+            throw new AuthXException("Token file " + file + " is empty!");
+        }
+        long receivedAt = System.currentTimeMillis();
+        if (format == Format.JWT) {
+            Map<String, Object> claims = JwtClaims.decode(value);
+            Long exp = JwtClaims.convert(claims.get("exp"), Long.class);
+            if (exp == null) {
+                throw new AuthXException("Token in file " + file + " has no expiration!");
+            }
+            Long iat = JwtClaims.convert(claims.get("iat"), Long.class);
+            return new SimpleToken(JwtClaims.convert(claims.get(userClaim), String.class), value, exp * 1000,
+                    iat != null && iat * 1000 < receivedAt ? iat * 1000 : receivedAt, claims);
+        }
+        if (lines.length < 2) {
+            throw new AuthXException("Token file " + file + " has no expiration!");
+        }
+        return new SimpleToken(user, value, parseExpiry(lines[1].trim()), receivedAt, Collections.emptyMap());
+    }
+
+    private long parseExpiry(String expiry) {
+        try {
+            return Long.parseLong(expiry) * 1000;
+        } catch (NumberFormatException e) {
+            // not in seconds, try ISO-8601
+        }
+        try {
+            return Instant.parse(expiry).toEpochMilli();
+        } catch (DateTimeParseException e) {
+            throw new AuthXException("Token file " + file + " has an invalid expiration: " + expiry);
+        }
+    }
+
+    /**
+     * Starts watching the file when a callback is set, and stops watching it when the callback is cleared.
+     */
+    @Override
+    public synchronized void setTokenChangeCallback(Runnable onTokenChanged) {
+        this.onTokenChanged = onTokenChanged;
+        if (onTokenChanged != null && watcher == null) {
+            startWatching();
+        } else if (onTokenChanged == null) {
+            stopWatching();
+        }
+    }
+
+    private void startWatching() {
+        lastStamp = FileStamp.of(file);
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+            file.getParent().register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+        } catch (IOException | UnsupportedOperationException e) {
+            logger.info("Cannot watch {}, polling it every {} ms instead: {}", file, pollIntervalInMs, e.toString());
+            closeWatchService();
+        }
+        WatchService service = watchService;
+        watcher = new Thread(() -> watch(service), "token-file-watcher-" + file.getFileName());
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    private void watch(WatchService service) {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                boolean notified = false;
+                if (service != null) {
+                    WatchKey key = service.poll(pollIntervalInMs, TimeUnit.MILLISECONDS);
+                    if (key != null) {
+                        // events of any file in the directory, e.g. the swap of a symbolic link to the file
+                        key.pollEvents();
+                        key.reset();
+                        notified = true;
+                    }
+                } else {
+                    Thread.sleep(pollIntervalInMs);
+                }
+                checkForChange(notified);
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // stopped
+        }
+    }
+
+    /**
+     * Notifies the callback if the content of the file differs from the last one read.
+     * Without an event from the watch service, the file is read only if its modification time or size has changed.
+     * @param notified
+     */
+    private void checkForChange(boolean notified) {
+        FileStamp stamp = FileStamp.of(file);
+        if (!notified && stamp.equals(lastStamp)) {
+            return;
+        }
+        lastStamp = stamp;
+        byte[] content;
+        try {
+            content = Files.readAllBytes(file);
+        } catch (IOException e) {
+            // removed or being replaced, the next check picks up the new file
+            return;
+        }
+        Runnable callback = onTokenChanged;
+        if (!Arrays.equals(content, lastContent) && callback != null) {
+            lastContent = content;
+            callback.run();
+        }
+    }
+
+    private void stopWatching() {
+        if (watcher != null) {
+            watcher.interrupt();
+            watcher = null;
+        }
+        closeWatchService();
+    }
+
+    private void closeWatchService() {
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                // nothing to do, it is not used anymore
+            }
+            watchService = null;
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        onTokenChanged = null;
+        stopWatching();
+    }
+}
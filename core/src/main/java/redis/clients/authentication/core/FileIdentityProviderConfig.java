@@ -0,0 +1,36 @@
+/*
+ * Copyright 2024, Redis Ltd. and Contributors
+ * All rights reserved.
+ *
+ * Licensed under the MIT License.
+ */
+package redis.clients.authentication.core;
+
+import java.nio.file.Path;
+
+import redis.clients.authentication.core.FileIdentityProvider.Format;
+
+/**
+ * Configuration of a {@link FileIdentityProvider}, see {@link FileTokenAuthConfigBuilder}.
+ */
+public final class FileIdentityProviderConfig implements IdentityProviderConfig {
+
+    private final Path file;
+    private final Format format;
+    private final String user;
+    private final String userClaim;
+    private final long pollIntervalInMs;
+
+    public FileIdentityProviderConfig(Path file, Format format, String user, String userClaim, long pollIntervalInMs) {
+        this.file = file;
+        this.format = format;
+        this.user = user;
+        this.userClaim = userClaim;
+        this.pollIntervalInMs = pollIntervalInMs;
+    }
+
+    @Override
+    public IdentityProvider getProvider() {
+        return new FileIdentityProvider(file, format, user, userClaim, pollIntervalInMs);
+    }
+}
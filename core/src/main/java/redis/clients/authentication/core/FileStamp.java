@@ -0,0 +1,68 @@
+/*
+ * Copyright 2024, Redis Ltd. and Contributors
+ * All rights reserved.
+ *
+ * Licensed under the MIT License.
+ */
+package redis.clients.authentication.core;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * Modification time and size of a file, to tell whether it has to be read again.
+ * Shared with the identity providers of the other modules, e.g. EntraID reading its credentials from files.
+ */
+public final class FileStamp {
+
+    /**
+     * Stamp of a file which does not exist or cannot be read.
+     */
+    public static final FileStamp MISSING = new FileStamp(-1, -1);
+
+    private final long lastModifiedInMs;
+    private final long size;
+
+    private FileStamp(long lastModifiedInMs, long size) {
+        this.lastModifiedInMs = lastModifiedInMs;
+        this.size = size;
+    }
+
+    /**
+     * Reads the stamp of the given file.
+     * @param file
+     * @return the stamp of the file, {@link #MISSING} if it cannot be read
+     */
+    public static FileStamp of(Path file) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            return new FileStamp(attributes.lastModifiedTime().toMillis(), attributes.size());
+        } catch (IOException e) {
+            return MISSING;
+        }
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof FileStamp)) {
+            return false;
+        }
+        FileStamp other = (FileStamp) obj;
+        return lastModifiedInMs == other.lastModifiedInMs && size == other.size;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Long.hashCode(lastModifiedInMs) + Long.hashCode(size);
+    }
+
+    @Override
+    public String toString() {
+        return "FileStamp[lastModifiedInMs=" + lastModifiedInMs + ", size=" + size + "]";
+    }
+}
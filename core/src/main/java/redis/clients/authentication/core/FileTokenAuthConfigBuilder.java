@@ -0,0 +1,151 @@
+/*
+ * Copyright 2024, Redis Ltd. and Contributors
+ * All rights reserved.
+ *
+ * Licensed under the MIT License.
+ */
+package redis.clients.authentication.core;
+
+import java.nio.file.Path;
+
+import redis.clients.authentication.core.FileIdentityProvider.Format;
+
+/**
+ * Builder class for configuring token authentication with a token kept in a file by another process,
+ * e.g. a CSI secret store driver or a Vault agent sidecar, see {@link FileIdentityProvider}.
+ *
+ * <p>Default values:</p>
+ * <ul>
+ *   <li>{@code DEFAULT_EXPIRATION_REFRESH_RATIO}: 0.75F</li>
+ *   <li>{@code DEFAULT_LOWER_REFRESH_BOUND_MILLIS}: 2 * 60 * 1000</li>
+ *   <li>{@code DEFAULT_TOKEN_REQUEST_EXECUTION_TIMEOUT_IN_MS}: 1000</li>
+ *   <li>{@code DEFAULT_MAX_ATTEMPTS_TO_RETRY}: 5</li>
+ *   <li>{@code DEFAULT_DELAY_IN_MS_TO_RETRY}: 100</li>
+ *   <li>Format: {@link Format#JWT}</li>
+ *   <li>Poll interval: {@link FileIdentityProvider#DEFAULT_POLL_INTERVAL_IN_MS}</li>
+ * </ul>
+ *
+ * <p>Example usage, with a Redis ACL password rotated into a mounted file:</p>
+ * <pre>{@code
+ * TokenAuthConfig config = FileTokenAuthConfigBuilder.builder()
+ *     .file(Paths.get("/mnt/secrets/redis-password"))
+ *     .format(Format.OPAQUE_WITH_EXPIRY)
+ *     .user("app")
+ *     .build();
+ * }</pre>
+ *
+ * @see TokenAuthConfig.Builder
+ */
+public class FileTokenAuthConfigBuilder extends TokenAuthConfig.Builder<FileTokenAuthConfigBuilder> {
+    public static final float DEFAULT_EXPIRATION_REFRESH_RATIO = 0.75F;
+    public static final int DEFAULT_LOWER_REFRESH_BOUND_MILLIS = 2 * 60 * 1000;
+    public static final int DEFAULT_TOKEN_REQUEST_EXECUTION_TIMEOUT_IN_MS = 1000;
+    public static final int DEFAULT_MAX_ATTEMPTS_TO_RETRY = 5;
+    public static final int DEFAULT_DELAY_IN_MS_TO_RETRY = 100;
+
+    private Path file;
+    private Format format = Format.JWT;
+    private String user;
+    private String userClaim = FileIdentityProvider.DEFAULT_USER_CLAIM;
+    private long pollIntervalInMs = FileIdentityProvider.DEFAULT_POLL_INTERVAL_IN_MS;
+    private String rateLimitKey;
+
+    public FileTokenAuthConfigBuilder() {
+        this.expirationRefreshRatio(DEFAULT_EXPIRATION_REFRESH_RATIO)
+                .lowerRefreshBoundMillis(DEFAULT_LOWER_REFRESH_BOUND_MILLIS)
+                .tokenRequestExecTimeoutInMs(DEFAULT_TOKEN_REQUEST_EXECUTION_TIMEOUT_IN_MS)
+                .maxAttemptsToRetry(DEFAULT_MAX_ATTEMPTS_TO_RETRY).delayInMsToRetry(DEFAULT_DELAY_IN_MS_TO_RETRY);
+    }
+
+    public FileTokenAuthConfigBuilder file(Path file) {
+        this.file = file;
+        return this;
+    }
+
+    public FileTokenAuthConfigBuilder format(Format format) {
+        this.format = format;
+        return this;
+    }
+
+    /**
+     * Sets the user of an opaque token, e.g. the Redis ACL user of a password.
+     * @param user
+     * @return this builder
+     */
+    public FileTokenAuthConfigBuilder user(String user) {
+        this.user = user;
+        return this;
+    }
+
+    /**
+     * Sets the claim of a JWT to take the user from, "sub" by default.
+     * @param userClaim
+     * @return this builder
+     */
+    public FileTokenAuthConfigBuilder userClaim(String userClaim) {
+        this.userClaim = userClaim;
+        return this;
+    }
+
+    /**
+     * Sets the interval to check the file for changes, in addition to watching it.
+     * @param pollIntervalInMs
+     * @return this builder
+     */
+    public FileTokenAuthConfigBuilder pollIntervalInMs(long pollIntervalInMs) {
+        this.pollIntervalInMs = pollIntervalInMs;
+        return this;
+    }
+
+    @Override
+    public FileTokenAuthConfigBuilder rateLimitKey(String rateLimitKey) {
+        super.rateLimitKey(rateLimitKey);
+        this.rateLimitKey = rateLimitKey;
+        return this;
+    }
+
+    @Override
+    public TokenAuthConfig build() {
+        if (file == null) {
+            throw new AuthXException("Token file is required!");
+        }
+        if (rateLimitKey == null) {
+            super.rateLimitKey("file:" + file.toAbsolutePath());
+        }
+        super.identityProviderConfig(new FileIdentityProviderConfig(file, format, user, userClaim, pollIntervalInMs));
+        return super.build();
+    }
+
+    public static FileTokenAuthConfigBuilder builder() {
+        return new FileTokenAuthConfigBuilder();
+    }
+
+    public static FileTokenAuthConfigBuilder from(FileTokenAuthConfigBuilder sample) {
+        TokenAuthConfig tokenAuthConfig = TokenAuthConfig.Builder.from(sample).build();
+        TokenManagerConfig tokenManagerConfig = tokenAuthConfig.getTokenManagerConfig();
+
+        FileTokenAuthConfigBuilder builder = new FileTokenAuthConfigBuilder()
+                .expirationRefreshRatio(tokenManagerConfig.getExpirationRefreshRatio())
+                .lowerRefreshBoundMillis(tokenManagerConfig.getLowerRefreshBoundMillis())
+                .tokenRequestExecTimeoutInMs(tokenManagerConfig.getTokenRequestExecTimeoutInMs())
+                .maxAttemptsToRetry(tokenManagerConfig.getRetryPolicy().getMaxAttempts())
+                .delayInMsToRetry(tokenManagerConfig.getRetryPolicy().getdelayInMs())
+                .recoveryProbeIntervalInMs(tokenManagerConfig.getRecoveryPolicy().getProbeIntervalInMs())
+                .recoveryProbeMaxJitterInMs(tokenManagerConfig.getRecoveryPolicy().getMaxJitterInMs())
+                .forcedRefreshMinIntervalInMs(tokenManagerConfig.getForcedRefreshMinIntervalInMs())
+                .rateLimit(tokenManagerConfig.getRateLimitPolicy().getPermitsPerSecond(),
+                    tokenManagerConfig.getRateLimitPolicy().getBurst())
+                .rateLimitKey(tokenManagerConfig.getRateLimitPolicy().getKey())
+                .errorClassifier(tokenManagerConfig.getErrorClassifier()).tokenCache(tokenManagerConfig.getTokenCache())
+                .warmUpLeadTimeInMs(tokenManagerConfig.getWarmUpLeadTimeInMs())
+                .identityProviderConfig(tokenAuthConfig.getIdentityProviderConfig());
+
+        builder.file = sample.file;
+        builder.format = sample.format;
+        builder.user = sample.user;
+        builder.userClaim = sample.userClaim;
+        builder.pollIntervalInMs = sample.pollIntervalInMs;
+        builder.rateLimitKey = sample.rateLimitKey;
+        return builder;
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright 2024, Redis Ltd. and Contributors
+ * All rights reserved.
+ *
+ * Licensed under the MIT License.
+ */
+package redis.clients.authentication.core;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Collections;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Token cache keeping the token in a file, encrypted with AES-GCM using the given key.
+ * The file is named after the SHA-256 hash of the identity key, so that caches of different identities
+ * can share the same directory, and the identity key is authenticated along with the token on load.
+ * The file is replaced atomically on every store, so concurrent readers never see a partially written token.
+ * The temporary file is created readable only by the owner on POSIX file systems.
+ * 
+ * <p>Restored tokens are {@link SimpleToken}s without claims, only the user, value and lifetime of the token
+ * are kept in the cache.
+ */
+public class FileTokenCache implements TokenCache {
+
+    private static final int VERSION = 1;
+    private static final String CIPHER = "AES/GCM/NoPadding";
+    private static final int IV_LENGTH = 12;
+    private static final int TAG_LENGTH_IN_BITS = 128;
+    private static final String SUFFIX = ".token";
+
+    private final Path file;
+    private final byte[] identity;
+    private final SecretKey key;
+    private final SecureRandom random = new SecureRandom();
+    private Logger logger = LoggerFactory.getLogger(getClass());
+
+    /**
+     * @param directory the directory to keep the cache file in, created if missing
+     * @param identityKey uniquely identifies the identity and scopes the tokens are acquired for
+     * @param key AES key to encrypt the cache file with
+     */
+    public FileTokenCache(Path directory, String identityKey, SecretKey key) {
+        this.identity = identityKey.getBytes(StandardCharsets.UTF_8);
+        this.file = directory.resolve(hash(identity) + SUFFIX);
+        this.key = key;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    @Override
+    public Token load() {
+        byte[] content;
+        try {
+            content = Files.readAllBytes(file);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            logger.warn("Failed to read token cache {}: {}", file, e.toString());
+            return null;
+        }
+        try {
+            Token token = decode(decrypt(content));
+            return token.isExpired() ? null : token;
+        } catch (GeneralSecurityException | IOException | RuntimeException e) {
+            logger.warn("Ignoring unreadable token cache {}: {}", file, e.toString());
+            return null;
+        }
+    }
+
+    @Override
+    public void store(Token token) {
+        Path temp = null;
+        try {
+            byte[] content = encrypt(encode(token));
+            Files.createDirectories(file.getParent());
+            temp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+            Files.write(temp, content);
+            try {
+                Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (GeneralSecurityException | IOException e) {
+            logger.warn("Failed to write token cache {}: {}", file, e.toString());
+        } finally {
+            if (temp != null) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException e) {
+                    // best effort, the file is already moved in the normal case
+                }
+            }
+        }
+    }
+
+    private byte[] encrypt(byte[] plain) throws GeneralSecurityException {
+        byte[] iv = new byte[IV_LENGTH];
+        random.nextBytes(iv);
+        Cipher cipher = Cipher.getInstance(CIPHER);
+        cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(TAG_LENGTH_IN_BITS, iv));
+        cipher.updateAAD(identity);
+        byte[] encrypted = cipher.doFinal(plain);
+        return ByteBuffer.allocate(1 + IV_LENGTH + encrypted.length).put((byte) VERSION).put(iv).put(encrypted).array();
+    }
+
+    private byte[] decrypt(byte[] content) throws GeneralSecurityException {
+        if (content.length <= 1 + IV_LENGTH || content[0] != VERSION) {
+            throw new GeneralSecurityException("Unsupported token cache format");
+        }
+        Cipher cipher = Cipher.getInstance(CIPHER);
+        cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(TAG_LENGTH_IN_BITS, content, 1, IV_LENGTH));
+        cipher.updateAAD(identity);
+        return cipher.doFinal(content, 1 + IV_LENGTH, content.length - 1 - IV_LENGTH);
+    }
+
+    private static byte[] encode(Token token) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeBoolean(token.getUser() != null);
+            if (token.getUser() != null) {
+                out.writeUTF(token.getUser());
+            }
+            byte[] value = token.getValue().getBytes(StandardCharsets.UTF_8);
+            out.writeInt(value.length);
+            out.write(value);
+            out.writeLong(token.getExpiresAt());
+            out.writeLong(token.getReceivedAt());
+        }
+        return bytes.toByteArray();
+    }
+
+    private static Token decode(byte[] plain) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(plain))) {
+            String user = in.readBoolean() ? in.readUTF() : null;
+            byte[] value = new byte[in.readInt()];
+            in.readFully(value);
+            long expiresAt = in.readLong();
+            long receivedAt = in.readLong();
+            return new SimpleToken(user, new String(value, StandardCharsets.UTF_8), expiresAt, receivedAt,
+                    Collections.emptyMap());
+        }
+    }
+
+    private static String hash(byte[] identity) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(identity);
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new AuthXException("SHA-256 is not available!", e);
+        }
+    }
+}
@@ -0,0 +1,267 @@
+/*
+ * Copyright 2024, Redis Ltd. and Contributors
+ * All rights reserved.
+ *
+ * Licensed under the MIT License.
+ */
+package redis.clients.authentication.core;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Shares the tokens of an identity among the processes running on the same host, so that only one of them
+ * requests tokens from the identity provider.
+ * 
+ * <p>The processes elect a renewer with an exclusive lock on a file next to the shared {@link FileTokenCache}.
+ * The renewer keeps the lock until its token manager stops, it is closed or the process dies, requests tokens from
+ * the given identity provider and writes them to the cache. The other processes read the tokens from the cache instead. If the
+ * renewer dies, the lock is released by the operating system and the next process trying to renew takes over.
+ * 
+ * <p>A follower waiting for the renewer to publish a newer token defers its request, without counting it as an
+ * attempt, as long as the last shared token is still valid. After that, the requests fail and are retried
+ * according to the retry policy.
+ * 
+ * <p>A forced refresh of a follower, e.g. when Redis rejects the shared token, is forwarded to the renewer with a
+ * marker file next to the lock naming the rejected token. The renewer checks for the marker every poll interval
+ * and renews the token out of its regular schedule, through the token change callback of its token manager.
+ * 
+ * <p>Within a JVM, only one instance per cache file takes the lock, the others follow it like other processes do.
+ */
+public class HostSharedIdentityProvider implements IdentityProvider, AutoCloseable {
+
+    public static final int DEFAULT_POLL_INTERVAL_IN_MS = 200;
+
+    private static final Map<Path, HostSharedIdentityProvider> renewers = new HashMap<>();
+
+    private final IdentityProvider identityProvider;
+    private final FileTokenCache tokenCache;
+    private final Path lockFile;
+    private final Path refreshFile;
+    private final long pollIntervalInMs;
+    private FileChannel lockChannel;
+    private FileLock lock;
+    private ScheduledExecutorService refreshWatcher;
+    private volatile Runnable onTokenChanged;
+    private volatile boolean refreshRequested = false;
+    private volatile long refreshRequestedFor = 0;
+    private volatile long lastReceivedAt = 0;
+    private Logger logger = LoggerFactory.getLogger(getClass());
+
+    public HostSharedIdentityProvider(IdentityProvider identityProvider, FileTokenCache tokenCache) {
+        this(identityProvider, tokenCache, DEFAULT_POLL_INTERVAL_IN_MS);
+    }
+
+    public HostSharedIdentityProvider(IdentityProvider identityProvider, FileTokenCache tokenCache,
+            long pollIntervalInMs) {
+        this.identityProvider = identityProvider;
+        this.tokenCache = tokenCache;
+        this.lockFile = tokenCache.getFile().resolveSibling(tokenCache.getFile().getFileName() + ".lock");
+        this.refreshFile = tokenCache.getFile().resolveSibling(tokenCache.getFile().getFileName() + ".refresh");
+        this.pollIntervalInMs = pollIntervalInMs;
+    }
+
+    @Override
+    public Token requestToken() {
+        return requestToken(false);
+    }
+
+    @Override
+    public Token requestToken(boolean forceRefresh) {
+        if (tryBecomeRenewer()) {
+            boolean forwarded = refreshRequested;
+            refreshRequested = false;
+            Token token = identityProvider.requestToken(forceRefresh || forwarded);
+            tokenCache.store(token);
+            lastReceivedAt = token.getReceivedAt();
+            return token;
+        }
+        Token token = tokenCache.load();
+        if (token != null && token.getReceivedAt() > lastReceivedAt) {
+            lastReceivedAt = token.getReceivedAt();
+            return token;
+        }
+        if (token != null) {
+            if (forceRefresh) {
+                requestRefresh(token);
+            }
+            throw new RequestDeferredException("Waiting for the token renewal by another process", pollIntervalInMs);
+        }
+        throw new AuthXException("No valid token is shared by the renewing process!");
+    }
+
+    /**
+     * Asks the renewer to replace the given token, once per token.
+     */
+    private void requestRefresh(Token token) {
+        if (refreshRequestedFor == token.getReceivedAt()) {
+            return;
+        }
+        try {
+            Files.write(refreshFile, Long.toString(token.getReceivedAt()).getBytes(StandardCharsets.UTF_8));
+            refreshRequestedFor = token.getReceivedAt();
+        } catch (IOException e) {
+            logger.warn("Failed to forward token refresh to the renewing process: {}", e.toString());
+        }
+    }
+
+    /**
+     * Runs on the renewer, takes the refresh requested by a follower, if any, and renews the token unless it is
+     * already replaced since the follower saw it.
+     */
+    private void checkRefreshRequest() {
+        Runnable callback = onTokenChanged;
+        if (callback == null) {
+            return;
+        }
+        long rejectedAt;
+        try {
+            String content = new String(Files.readAllBytes(refreshFile), StandardCharsets.UTF_8);
+            Files.deleteIfExists(refreshFile);
+            rejectedAt = Long.parseLong(content.trim());
+        } catch (NoSuchFileException e) {
+            return;
+        } catch (IOException | NumberFormatException e) {
+            // caught while being written, refresh anyway
+            rejectedAt = Long.MAX_VALUE;
+        }
+        if (rejectedAt >= lastReceivedAt) {
+            logger.debug("Token refresh requested by a following process");
+            refreshRequested = true;
+            try {
+                callback.run();
+            } catch (RuntimeException e) {
+                // keeps watching, the next regular renewal takes the request instead
+                logger.warn("Failed to renew token on request of a following process", e);
+            }
+        }
+    }
+
+    /**
+     * Keeps the given callback to renew the token with when a follower requests a refresh. The given identity
+     * provider is not asked for its changes, the tokens are shared by the renewer only on request.
+     */
+    @Override
+    public void setTokenChangeCallback(Runnable onTokenChanged) {
+        this.onTokenChanged = onTokenChanged;
+    }
+
+    /**
+     * Warms up the given identity provider only if this instance renews the tokens, followers do not call it.
+     */
+    @Override
+    public void warmUp() {
+        if (isRenewer()) {
+            identityProvider.warmUp();
+        }
+    }
+
+    /**
+     * Returns true if this instance holds the lock and renews the tokens for the host.
+     */
+    public boolean isRenewer() {
+        synchronized (renewers) {
+            return renewers.get(lockFile) == this;
+        }
+    }
+
+    private boolean tryBecomeRenewer() {
+        synchronized (renewers) {
+            HostSharedIdentityProvider renewer = renewers.get(lockFile);
+            if (renewer != null) {
+                return renewer == this;
+            }
+            FileChannel channel = null;
+            try {
+                Files.createDirectories(lockFile.getParent());
+                channel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                FileLock fileLock = channel.tryLock();
+                if (fileLock == null) {
+                    channel.close();
+                    return false;
+                }
+                lockChannel = channel;
+                lock = fileLock;
+                renewers.put(lockFile, this);
+                refreshWatcher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                    Thread thread = new Thread(runnable, "host-shared-refresh-watcher");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+                refreshWatcher.scheduleWithFixedDelay(this::checkRefreshRequest, pollIntervalInMs, pollIntervalInMs,
+                    TimeUnit.MILLISECONDS);
+                logger.info("Renewing tokens for the processes sharing {}", tokenCache.getFile());
+                return true;
+            } catch (IOException e) {
+                closeQuietly(channel);
+                logger.warn("Failed to lock {}, following the renewing process: {}", lockFile, e.toString());
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Releases the lock if this instance is the renewer, so that another process can take over, e.g. when its token
+     * manager stops. The next token request of this instance tries to become the renewer again.
+     */
+    @Override
+    public void release() {
+        identityProvider.release();
+        synchronized (renewers) {
+            if (renewers.get(lockFile) != this) {
+                return;
+            }
+            renewers.remove(lockFile);
+            refreshWatcher.shutdownNow();
+            refreshWatcher = null;
+            try {
+                lock.release();
+            } catch (IOException e) {
+                // channel is closed below, which releases the lock as well
+            }
+            closeQuietly(lockChannel);
+            lock = null;
+            lockChannel = null;
+        }
+    }
+
+    /**
+     * Releases the lock if this instance is the renewer, see {@link #release()}, and closes the given identity
+     * provider if it holds any resources.
+     */
+    @Override
+    public void close() {
+        if (identityProvider instanceof AutoCloseable) {
+            try {
+                ((AutoCloseable) identityProvider).close();
+            } catch (Exception e) {
+                logger.warn("Failed to close identity provider", e);
+            }
+        }
+        release();
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // nothing to do
+            }
+        }
+    }
+}
@@ -0,0 +1,31 @@
+/*
+ * Copyright 2024, Redis Ltd. and Contributors
+ * All rights reserved.
+ *
+ * Licensed under the MIT License.
+ */
+package redis.clients.authentication.core;
+
+/**
+ * Wraps the identity providers of the given configuration into {@link HostSharedIdentityProvider}s sharing
+ * the given token cache.
+ */
+public final class HostSharedIdentityProviderConfig implements IdentityProviderConfig {
+
+    private final IdentityProviderConfig identityProviderConfig;
+    private final FileTokenCache tokenCache;
+
+    public HostSharedIdentityProviderConfig(IdentityProviderConfig identityProviderConfig, FileTokenCache tokenCache) {
+        this.identityProviderConfig = identityProviderConfig;
+        this.tokenCache = tokenCache;
+    }
+
+    @Override
+    public IdentityProvider getProvider() {
+        return new HostSharedIdentityProvider(identityProviderConfig.getProvider(), tokenCache);
+    }
+
+    public IdentityProviderConfig getIdentityProviderConfig() {
+        return identityProviderConfig;
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2024, Redis Ltd. and Contributors
+ * All rights reserved.
+ *
+ * Licensed under the MIT License.
+ */
+package redis.clients.authentication.core;
+
+import java.security.KeyManagementException;
+import java.security.NoSuchAlgorithmException;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocketFactory;
+
+/**
+ * Helpers for the identity providers requesting their tokens over HTTP.
+ * Shared with the identity providers of the other modules, e.g. EntraID and OAuth2.
+ */
+public final class HttpSupport {
+
+    public static final String RETRY_AFTER = "Retry-After";
+
+    private HttpSupport() {
+    }
+
+    /**
+     * Parses the value of a Retry-After header, given either as seconds or as an HTTP date.
+     * @param value
+     * @return time in milliseconds to wait, -1 if the value is missing or malformed
+     */
+    public static long parseRetryAfter(String value) {
+        if (value == null || value.trim().isEmpty()) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(value.trim()) * 1000;
+        } catch (NumberFormatException e) {
+            // not in seconds, try HTTP date
+        }
+        try {
+            ZonedDateTime date = ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME);
+            return Math.max(0, date.toInstant().toEpochMilli() - System.currentTimeMillis());
+        } catch (DateTimeParseException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Creates a socket factory with its own default SSL context, which keeps the pooled connections and TLS
+     * sessions of the http client using it apart from the others.
+     * @return
+     */
+    public static SSLSocketFactory dedicatedSslSocketFactory() {
+        try {
+            SSLContext context = SSLContext.getInstance("TLS");
+            context.init(null, null, null);
+            return context.getSocketFactory();
+        } catch (NoSuchAlgorithmException | KeyManagementException e) {
+            throw new AuthXException("Failed to init TLS context!", e);
+        }
+    }
+}
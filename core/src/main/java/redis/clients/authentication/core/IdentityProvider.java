@@ -9,4 +9,42 @@ package redis.clients.authentication.core;
 public interface IdentityProvider {
 
     Token requestToken();
-}
\ No newline at end of file
+
+    /**
+     * Requests a token, bypassing any cache of the identity provider if forceRefresh is true.
+     * Token manager forces a refresh for the renewals triggered out of schedule, e.g. when the current token
+     * is rejected. Providers without a cache do not need to implement it.
+     * @param forceRefresh
+     * @return
+     */
+    default Token requestToken(boolean forceRefresh) {
+        return requestToken();
+    }
+
+    /**
+     * Prepares for an upcoming token request, e.g. by resolving the address of the identity provider and opening
+     * a connection to it, so that the request itself does not pay for the connection setup.
+     * Token manager calls it WarmUpLeadTimeInMs(given in configuration) before each scheduled renewal.
+     * Failures are ignored, they surface with the token request if they persist.
+     */
+    default void warmUp() {
+    }
+
+    /**
+     * Sets the callback for the providers which learn about new tokens on their own, e.g. by watching a file,
+     * rather than only when asked. Such a provider calls it back whenever it has a new token.
+     * Token manager sets it on start, to request the new token right away out of the regular schedule, and
+     * clears it with null on stop. Providers which only learn about new tokens on request do not need to implement it.
+     * @param onTokenChanged
+     */
+    default void setTokenChangeCallback(Runnable onTokenChanged) {
+    }
+
+    /**
+     * Releases what the provider holds on behalf of the token manager using it, e.g. a lock taken to renew the
+     * tokens for other processes. Token manager calls it on stop. Unlike closing, the provider stays usable, e.g. by
+     * other token managers it is shared with, its resources are left to be closed by its owner.
+     */
+    default void release() {
+    }
+}
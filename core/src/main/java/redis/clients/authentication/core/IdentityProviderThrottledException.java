@@ -0,0 +1,39 @@
+/*
+ * Copyright 2024, Redis Ltd. and Contributors
+ * All rights reserved.
+ *
+ * Licensed under the MIT License.
+ */
+package redis.clients.authentication.core;
+
+/**
+ * Signals that a token request was throttled, either by the identity provider itself or by the local rate limiter.
+ * The next attempt should not be made before {@link #getRetryAfterInMs()} elapses.
+ */
+public class IdentityProviderThrottledException extends AuthXException {
+
+    private final long retryAfterInMs;
+
+    public IdentityProviderThrottledException(String message, long retryAfterInMs) {
+        super(message);
+        this.retryAfterInMs = retryAfterInMs;
+    }
+
+    public IdentityProviderThrottledException(String message, long retryAfterInMs, Throwable cause) {
+        super(message, cause);
+        this.retryAfterInMs = retryAfterInMs;
+    }
+
+    protected IdentityProviderThrottledException(String message, long retryAfterInMs, Throwable cause,
+            boolean writableStackTrace) {
+        super(message, cause, writableStackTrace);
+        this.retryAfterInMs = retryAfterInMs;
+    }
+
+    /**
+     * Returns the time in milliseconds to wait before the next attempt, 0 if the throttling signal carries no hint.
+     */
+    public long getRetryAfterInMs() {
+        return retryAfterInMs;
+    }
+}
@@ -0,0 +1,289 @@
+/*
+ * Copyright 2024, Redis Ltd. and Contributors
+ * All rights reserved.
+ *
+ * Licensed under the MIT License.
+ */
+package redis.clients.authentication.core;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Decodes the claims in the payload of a JWT, without verifying its signature, as the token is only passed on
+ * to Redis which verifies it.
+ * The payload is parsed with a minimal JSON parser, so that reading a token does not need a JSON library.
+ * Values are mapped to String, Boolean, Long, Double, List and Map, and JSON null to null.
+ * Shared with the identity providers of the other modules, e.g. EntraID.
+ */
+public final class JwtClaims {
+
+    private JwtClaims() {
+    }
+
+    /**
+     * Decodes the claims of the given token.
+     * @param token
+     * @return the claims by their names
+     * @throws AuthXException if the token is not a JWT or its payload is not a JSON object
+     */
+    public static Map<String, Object> decode(String token) {
+        String[] parts = token == null ? new String[0] : token.split("\\.", -1);
+        if (parts.length != 3) {
+            throw new AuthXException("Failed to decode token, it is not a JWT!");
+        }
+        String payload;
+        try {
+            payload = new String(Base64.getUrlDecoder().decode(parts[1]), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new AuthXException("Failed to decode token payload!", e);
+        }
+        Parser parser = new Parser(payload);
+        Object claims = parser.parseDocument();
+        if (!(claims instanceof Map)) {
+            throw new AuthXException("Failed to decode token payload, it is not a JSON object!");
+        }
+        @SuppressWarnings("unchecked")
+        Map<String, Object> result = (Map<String, Object>) claims;
+        return Collections.unmodifiableMap(result);
+    }
+
+    /**
+     * Converts the value of a claim to the given type, numbers are converted between the numeric types and
+     * a Date is read from seconds since epoch, as in the registered time claims.
+     * @param value
+     * @param clazz
+     * @return the converted value, null if the value is missing or cannot be converted
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> T convert(Object value, Class<T> clazz) {
+        if (value == null) {
+            return null;
+        }
+        if (clazz.isInstance(value)) {
+            return (T) value;
+        }
+        if (value instanceof Number) {
+            Number number = (Number) value;
+            if (clazz == Long.class) {
+                return (T) Long.valueOf(number.longValue());
+            }
+            if (clazz == Integer.class) {
+                return (T) Integer.valueOf(number.intValue());
+            }
+            if (clazz == Double.class) {
+                return (T) Double.valueOf(number.doubleValue());
+            }
+            if (clazz == Date.class) {
+                return (T) new Date(number.longValue() * 1000);
+            }
+        }
+        if (clazz == String.class && !(value instanceof Map) && !(value instanceof List)) {
+            return (T) String.valueOf(value);
+        }
+        return null;
+    }
+
+    private static final class Parser {
+        private final String json;
+        private int position;
+
+        private Parser(String json) {
+            this.json = json;
+        }
+
+        private Object parseDocument() {
+            Object value = parseValue();
+            skipWhitespace();
+            if (position != json.length()) {
+                throw error("unexpected content after the end of JSON");
+            }
+            return value;
+        }
+
+        private Object parseValue() {
+            skipWhitespace();
+            if (position >= json.length()) {
+                throw error("unexpected end of JSON");
+            }
+            char c = json.charAt(position);
+            switch (c) {
+            case '{':
+                return parseObject();
+            case '[':
+                return parseArray();
+            case '"':
+                return parseString();
+            case 't':
+                return parseLiteral("true", Boolean.TRUE);
+            case 'f':
+                return parseLiteral("false", Boolean.FALSE);
+            case 'n':
+                return parseLiteral("null", null);
+            default:
+                if (c == '-' || (c >= '0' && c <= '9')) {
+                    return parseNumber();
+                }
+                throw error("unexpected character '" + c + "'");
+            }
+        }
+
+        private Map<String, Object> parseObject() {
+            Map<String, Object> object = new LinkedHashMap<>();
+            position++;
+            skipWhitespace();
+            if (peek() == '}') {
+                position++;
+                return object;
+            }
+            while (true) {
+                skipWhitespace();
+                if (peek() != '"') {
+                    throw error("expected a member name");
+                }
+                String name = parseString();
+                skipWhitespace();
+                expect(':');
+                object.put(name, parseValue());
+                skipWhitespace();
+                if (peek() == ',') {
+                    position++;
+                } else {
+                    expect('}');
+                    return object;
+                }
+            }
+        }
+
+        private List<Object> parseArray() {
+            List<Object> array = new ArrayList<>();
+            position++;
+            skipWhitespace();
+            if (peek() == ']') {
+                position++;
+                return array;
+            }
+            while (true) {
+                array.add(parseValue());
+                skipWhitespace();
+                if (peek() == ',') {
+                    position++;
+                } else {
+                    expect(']');
+                    return array;
+                }
+            }
+        }
+
+        private String parseString() {
+            StringBuilder value = new StringBuilder();
+            position++;
+            while (position < json.length()) {
+                char c = json.charAt(position++);
+                if (c == '"') {
+                    return value.toString();
+                }
+                if (c != '\\') {
+                    value.append(c);
+                    continue;
+                }
+                if (position >= json.length()) {
+                    break;
+                }
+                char escaped = json.charAt(position++);
+                switch (escaped) {
+                case 'b':
+                    value.append('\b');
+                    break;
+                case 'f':
+                    value.append('\f');
+                    break;
+                case 'n':
+                    value.append('\n');
+                    break;
+                case 'r':
+                    value.append('\r');
+                    break;
+                case 't':
+                    value.append('\t');
+                    break;
+                case 'u':
+                    if (position + 4 > json.length()) {
+                        throw error("invalid unicode escape");
+                    }
+                    try {
+                        value.append((char) Integer.parseInt(json.substring(position, position + 4), 16));
+                    } catch (NumberFormatException e) {
+                        throw error("invalid unicode escape");
+                    }
+                    position += 4;
+                    break;
+                default:
+                    // '"', '\\' and '/'
+                    value.append(escaped);
+                }
+            }
+            throw error("unterminated string");
+        }
+
+        private Number parseNumber() {
+            int start = position;
+            boolean decimal = false;
+            while (position < json.length()) {
+                char c = json.charAt(position);
+                if (c == '.' || c == 'e' || c == 'E') {
+                    decimal = true;
+                } else if (!(c == '-' || c == '+' || (c >= '0' && c <= '9'))) {
+                    break;
+                }
+                position++;
+            }
+            String number = json.substring(start, position);
+            try {
+                return decimal ? (Number) Double.valueOf(number) : (Number) Long.valueOf(number);
+            } catch (NumberFormatException e) {
+                // integers out of the range of long
+                try {
+                    return Double.valueOf(number);
+                } catch (NumberFormatException notANumber) {
+                    throw error("invalid number '" + number + "'");
+                }
+            }
+        }
+
+        private Object parseLiteral(String literal, Object value) {
+            if (!json.startsWith(literal, position)) {
+                throw error("unexpected literal");
+            }
+            position += literal.length();
+            return value;
+        }
+
+        private void skipWhitespace() {
+            while (position < json.length() && Character.isWhitespace(json.charAt(position))) {
+                position++;
+            }
+        }
+
+        private char peek() {
+            return position < json.length() ? json.charAt(position) : 0;
+        }
+
+        private void expect(char c) {
+            if (peek() != c) {
+                throw error("expected '" + c + "'");
+            }
+            position++;
+        }
+
+        private AuthXException error(String reason) {
+            return new AuthXException("Failed to decode token payload, " + reason + " at position " + position + "!");
+        }
+    }
+}
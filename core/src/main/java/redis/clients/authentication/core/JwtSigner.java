@@ -0,0 +1,79 @@
+/*
+ * Copyright 2024, Redis Ltd. and Contributors
+ * All rights reserved.
+ *
+ * Licensed under the MIT License.
+ */
+package redis.clients.authentication.core;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.PrivateKey;
+import java.security.Signature;
+import java.util.Base64;
+
+/**
+ * Creates the signed JWTs a client authenticates with, e.g. the client assertions of RFC 7523, the counterpart of
+ * {@link JwtClaims}. Header and payload are given as JSON, written with the help of {@link #quote(String)}, so that
+ * signing a token does not need a JSON library.
+ * Shared with the identity providers of the other modules, e.g. EntraID and OAuth2.
+ */
+public final class JwtSigner {
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+
+    private JwtSigner() {
+    }
+
+    /**
+     * Signs the given header and payload with RS256.
+     * @param header JSON of the header, naming RS256 as its algorithm
+     * @param payload JSON of the claims
+     * @param key
+     * @return the signed token
+     * @throws GeneralSecurityException
+     */
+    public static String sign(String header, String payload, PrivateKey key) throws GeneralSecurityException {
+        String content = encode(header) + "." + encode(payload);
+        Signature signature = Signature.getInstance("SHA256withRSA");
+        signature.initSign(key);
+        signature.update(content.getBytes(StandardCharsets.US_ASCII));
+        return content + "." + ENCODER.encodeToString(signature.sign());
+    }
+
+    /**
+     * Returns the thumbprint of a certificate as in the x5t header parameters, base64url encoded.
+     * @param algorithm e.g. SHA-1 for x5t, SHA-256 for x5t#S256
+     * @param encoded the encoded certificate
+     * @return
+     * @throws GeneralSecurityException
+     */
+    public static String thumbprint(String algorithm, byte[] encoded) throws GeneralSecurityException {
+        return ENCODER.encodeToString(MessageDigest.getInstance(algorithm).digest(encoded));
+    }
+
+    /**
+     * Returns the given value as a JSON string, in quotes and escaped.
+     * @param value
+     * @return
+     */
+    public static String quote(String value) {
+        StringBuilder quoted = new StringBuilder("\"");
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                quoted.append('\\').append(c);
+            } else if (c < 0x20) {
+                quoted.append(String.format("\\u%04x", (int) c));
+            } else {
+                quoted.append(c);
+            }
+        }
+        return quoted.append('"').toString();
+    }
+
+    private static String encode(String json) {
+        return ENCODER.encodeToString(json.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,210 @@
+/*
+ * Copyright 2024, Redis Ltd. and Contributors
+ * All rights reserved.
+ *
+ * Licensed under the MIT License.
+ */
+package redis.clients.authentication.core;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Maintains the tokens of one identity for several scope sets, e.g. for several Redis resources, with one
+ * {@link TokenManager} per scope set. All of them are timed by a single scheduler thread and share the threads
+ * running the renewals and making the requests to the identity provider, instead of each token manager having its
+ * own. Regular renewals due within the batch window of each other are moved to the same time, so that they run in
+ * a single wakeup of the scheduler, in parallel with each other.
+ *
+ * <p>Each scope set is identified by its scope key, see {@link #scopeKey(Collection)}. Listeners subscribe to
+ * the tokens of a scope set, and its token manager is started with the first subscription.
+ */
+public class MultiScopeTokenManager {
+
+    public static final long DEFAULT_BATCH_WINDOW_IN_MS = 30 * 1000;
+
+    private static final int REQUEST_THREADS = 2;
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    // renewals beyond the request threads would only wait for one of them
+    private final ExecutorService renewalExecutor = Executors.newFixedThreadPool(REQUEST_THREADS);
+    private final ExecutorService requestExecutor = Executors.newFixedThreadPool(REQUEST_THREADS);
+    private final RenewalBatcher batcher;
+    private final Map<String, Scope> scopes = new ConcurrentHashMap<>();
+    private volatile boolean stopped;
+    private Logger logger = LoggerFactory.getLogger(getClass());
+
+    private static final class Scope implements TokenListener {
+        private final TokenManager tokenManager;
+        // identity provider created from the config of the scope set, closed with the token manager
+        private final AutoCloseable ownedProvider;
+        private final List<TokenListener> listeners = new CopyOnWriteArrayList<>();
+        private boolean started;
+
+        private Scope(TokenManager tokenManager, AutoCloseable ownedProvider) {
+            this.tokenManager = tokenManager;
+            this.ownedProvider = ownedProvider;
+        }
+
+        @Override
+        public void onTokenRenewed(Token token) {
+            for (TokenListener listener : listeners) {
+                listener.onTokenRenewed(token);
+            }
+        }
+
+        @Override
+        public void onError(Exception reason) {
+            for (TokenListener listener : listeners) {
+                listener.onError(reason);
+            }
+        }
+    }
+
+    public MultiScopeTokenManager() {
+        this(DEFAULT_BATCH_WINDOW_IN_MS);
+    }
+
+    /**
+     * @param batchWindowInMs how much earlier a renewal may run to go along with the renewal of another scope set
+     */
+    public MultiScopeTokenManager(long batchWindowInMs) {
+        this.batcher = new RenewalBatcher(batchWindowInMs);
+    }
+
+    /**
+     * Returns the key of the given scopes, the scopes in sorted order separated by spaces.
+     * @param scopes
+     * @return
+     */
+    public static String scopeKey(Collection<String> scopes) {
+        return String.join(" ", new TreeSet<>(scopes));
+    }
+
+    /**
+     * Adds a scope set with the identity provider and token manager configuration given in the config. The identity
+     * provider created from the config is closed on stop.
+     * @param scopeKey
+     * @param tokenAuthConfig
+     */
+    public void addScope(String scopeKey, TokenAuthConfig tokenAuthConfig) {
+        if (scopes.containsKey(scopeKey)) {
+            throw new AuthXException("Scope '" + scopeKey + "' is already added!");
+        }
+        IdentityProvider identityProvider = tokenAuthConfig.getIdentityProviderConfig().getProvider();
+        addScope(scopeKey, identityProvider, tokenAuthConfig.getTokenManagerConfig(),
+            identityProvider instanceof AutoCloseable ? (AutoCloseable) identityProvider : null);
+    }
+
+    /**
+     * Adds a scope set with the given identity provider requesting its tokens. The identity provider is left to
+     * the caller to close.
+     * @param scopeKey
+     * @param identityProvider
+     * @param tokenManagerConfig
+     */
+    public void addScope(String scopeKey, IdentityProvider identityProvider, TokenManagerConfig tokenManagerConfig) {
+        addScope(scopeKey, identityProvider, tokenManagerConfig, null);
+    }
+
+    private void addScope(String scopeKey, IdentityProvider identityProvider, TokenManagerConfig tokenManagerConfig,
+            AutoCloseable ownedProvider) {
+        if (stopped) {
+            throw new AuthXException("Token manager is stopped!");
+        }
+        TokenManager tokenManager = new TokenManager(identityProvider, tokenManagerConfig, scheduler, renewalExecutor,
+                requestExecutor, batcher);
+        if (scopes.putIfAbsent(scopeKey, new Scope(tokenManager, ownedProvider)) != null) {
+            throw new AuthXException("Scope '" + scopeKey + "' is already added!");
+        }
+    }
+
+    public Set<String> getScopeKeys() {
+        return Collections.unmodifiableSet(scopes.keySet());
+    }
+
+    /**
+     * Same as {@link #subscribe(String, TokenListener, boolean)}, without blocking for the initial token.
+     */
+    public void subscribe(String scopeKey, TokenListener listener) {
+        subscribe(scopeKey, listener, false);
+    }
+
+    /**
+     * Subscribes the listener to the tokens of the given scope set. The token manager of the scope set is
+     * started with the first subscription, otherwise the current token, if any, is delivered to the listener
+     * right away.
+     * @param scopeKey
+     * @param listener
+     * @param blockForInitialToken blocks until the first token is received if the token manager is started
+     */
+    public void subscribe(String scopeKey, TokenListener listener, boolean blockForInitialToken) {
+        Scope scope = getScope(scopeKey);
+        Token current;
+        synchronized (scope) {
+            scope.listeners.add(listener);
+            if (!scope.started) {
+                scope.started = true;
+                scope.tokenManager.start(scope, blockForInitialToken);
+                return;
+            }
+            current = scope.tokenManager.getCurrentToken();
+        }
+        if (current != null) {
+            listener.onTokenRenewed(current);
+        }
+    }
+
+    public void unsubscribe(String scopeKey, TokenListener listener) {
+        getScope(scopeKey).listeners.remove(listener);
+    }
+
+    /**
+     * Returns the token manager of the given scope set, e.g. to refresh its token out of the regular schedule.
+     * @param scopeKey
+     * @return
+     */
+    public TokenManager getTokenManager(String scopeKey) {
+        return getScope(scopeKey).tokenManager;
+    }
+
+    private Scope getScope(String scopeKey) {
+        Scope scope = scopes.get(scopeKey);
+        if (scope == null) {
+            throw new AuthXException("Unknown scope '" + scopeKey + "'!");
+        }
+        return scope;
+    }
+
+    /**
+     * Stops the token managers of all scope sets along with the shared threads.
+     */
+    public void stop() {
+        stopped = true;
+        for (Map.Entry<String, Scope> entry : scopes.entrySet()) {
+            try {
+                entry.getValue().tokenManager.stop();
+                if (entry.getValue().ownedProvider != null) {
+                    entry.getValue().ownedProvider.close();
+                }
+            } catch (Exception e) {
+                logger.warn("Failed to stop token manager of scope '{}'", entry.getKey(), e);
+            }
+        }
+        scheduler.shutdownNow();
+        renewalExecutor.shutdownNow();
+        requestExecutor.shutdownNow();
+    }
+}
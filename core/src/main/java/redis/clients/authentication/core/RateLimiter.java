@@ -0,0 +1,130 @@
+/*
+ * Copyright 2024, Redis Ltd. and Contributors
+ * All rights reserved.
+ *
+ * Licensed under the MIT License.
+ */
+package redis.clients.authentication.core;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token bucket rate limiter for the requests to an identity provider.
+ * Limiters are shared process-wide by key, typically the authority of the identity provider,
+ * so that all token managers talking to the same authority draw from the same bucket.
+ * <p>Besides the bucket, the limiter honours throttling signals from the identity provider. Once a retry-after time is
+ * received, no request is let through until it elapses, for any of the token managers sharing the limiter.
+ * <p>Requests that are not let through are counted as deferred, throttling signals received from the identity provider
+ * are counted as throttled.
+ */
+public final class RateLimiter {
+
+    private static final ConcurrentHashMap<String, RateLimiter> limiters = new ConcurrentHashMap<>();
+
+    private final String key;
+    private final double permitsPerMs;
+    private final int burst;
+    private double permits;
+    private long lastRefillAt;
+    private long deferredUntil;
+    private final AtomicLong throttledCount = new AtomicLong();
+    private final AtomicLong deferredCount = new AtomicLong();
+
+    RateLimiter(String key, double permitsPerSecond, int burst) {
+        this.key = key;
+        this.permitsPerMs = permitsPerSecond / 1000;
+        this.burst = Math.max(1, burst);
+        this.permits = this.burst;
+        this.lastRefillAt = System.currentTimeMillis();
+    }
+
+    /**
+     * Returns the limiter registered with the given key, creating it with the given rate and burst if there is none.
+     * The rate and burst of an already registered limiter are not changed.
+     * @param key
+     * @param permitsPerSecond
+     * @param burst
+     * @return
+     */
+    public static RateLimiter forKey(String key, double permitsPerSecond, int burst) {
+        return limiters.computeIfAbsent(key, k -> new RateLimiter(k, permitsPerSecond, burst));
+    }
+
+    /**
+     * Returns the limiter registered with the given key, or null if there is none.
+     * @param key
+     * @return
+     */
+    public static RateLimiter get(String key) {
+        return limiters.get(key);
+    }
+
+    /**
+     * Creates a limiter that is not shared and only honours throttling signals.
+     * @return
+     */
+    static RateLimiter unlimited() {
+        return unlimited("unlimited");
+    }
+
+    /**
+     * Creates a limiter that is not shared and only honours throttling signals, with the given key naming the
+     * identity in the logs.
+     * @param key
+     * @return
+     */
+    static RateLimiter unlimited(String key) {
+        return new RateLimiter(key, 0, 1);
+    }
+
+    /**
+     * Takes a permit if there is one available.
+     * @return 0 if the request can go, otherwise the time in milliseconds until the next permit is available
+     */
+    public synchronized long tryAcquire() {
+        long now = System.currentTimeMillis();
+        long wait = deferredUntil - now;
+        if (wait <= 0 && permitsPerMs > 0) {
+            permits = Math.min(burst, permits + (now - lastRefillAt) * permitsPerMs);
+            lastRefillAt = now;
+            if (permits >= 1) {
+                permits -= 1;
+                return 0;
+            }
+            wait = (long) Math.ceil((1 - permits) / permitsPerMs);
+        }
+        if (wait > 0) {
+            deferredCount.incrementAndGet();
+            return wait;
+        }
+        return 0;
+    }
+
+    /**
+     * Records a throttling signal from the identity provider and defers all requests for the given duration.
+     * @param retryAfterInMs
+     */
+    public synchronized void deferFor(long retryAfterInMs) {
+        throttledCount.incrementAndGet();
+        deferredUntil = Math.max(deferredUntil, System.currentTimeMillis() + retryAfterInMs);
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * Returns the number of throttling signals received from the identity provider.
+     */
+    public long getThrottledCount() {
+        return throttledCount.get();
+    }
+
+    /**
+     * Returns the number of requests deferred by this limiter without calling the identity provider.
+     */
+    public long getDeferredCount() {
+        return deferredCount.get();
+    }
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2024, Redis Ltd. and Contributors
+ * All rights reserved.
+ *
+ * Licensed under the MIT License.
+ */
+package redis.clients.authentication.core;
+
+import java.util.TreeSet;
+
+/**
+ * Aligns the regular renewals of the token managers sharing a scheduler, so that the renewals due within the
+ * batch window of each other run back to back in a single wakeup of the scheduler.
+ * A renewal is only moved earlier, never later, so that it stays in the renewal zone of its token.
+ */
+class RenewalBatcher {
+    private final long windowInMs;
+    private final TreeSet<Long> wakeups = new TreeSet<>();
+
+    RenewalBatcher(long windowInMs) {
+        this.windowInMs = windowInMs;
+    }
+
+    /**
+     * Returns the delay of the earliest planned wakeup within the batch window before the given delay,
+     * or plans a new wakeup with the given delay if there is none.
+     * @param delay
+     * @return
+     */
+    synchronized long align(long delay) {
+        long now = System.currentTimeMillis();
+        wakeups.headSet(now).clear();
+        long target = now + delay;
+        Long wakeup = wakeups.ceiling(target - windowInMs);
+        if (wakeup != null && wakeup <= target) {
+            return wakeup - now;
+        }
+        wakeups.add(target);
+        return delay;
+    }
+}
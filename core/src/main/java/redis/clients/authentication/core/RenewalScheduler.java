@@ -6,9 +6,19 @@
  */
 package redis.clients.authentication.core;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Executors;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Supplier;
 
@@ -16,13 +26,55 @@ import java.util.function.Supplier;
  * Schedules a task for token renewal.
  */
 class RenewalScheduler {
-    private ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
-    private RenewalTask lastTask;
+    private ScheduledExecutorService scheduler;
+    private boolean sharedScheduler;
+    private RenewalBatcher batcher;
+    private Executor renewalExecutor;
+    // renewals handed over to the renewal executor, run one at a time
+    private final Deque<Runnable> queuedRenewals = new ArrayDeque<>();
+    private boolean runningRenewals = false;
+    private volatile RenewalTask lastTask;
+    // out of band renewals and side tasks not yet run, cancelled on stop
+    private final List<Future<?>> pendingTasks = new ArrayList<>();
     private Supplier<Token> renewToken;
-    private boolean stopped = false;
+    private volatile boolean stopped = false;
 
     public RenewalScheduler(Supplier<Token> renewToken) {
         this.renewToken = renewToken;
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1);
+        // lets the thread end on stop instead of running the delayed tasks left
+        executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        this.scheduler = executor;
+    }
+
+    /**
+     * Creates a scheduler timing its tasks on the given executor shared with other schedulers, which is not shut
+     * down when this one stops. The renewals run on the given renewal executor, shared as well, so that a renewal
+     * waiting for the identity provider does not hold up those of the other schedulers. The renewals of this
+     * scheduler still run one at a time. Regular renewals are aligned with those of the other schedulers by the
+     * given batcher, see {@link #align(long)}.
+     * @param renewToken
+     * @param scheduler
+     * @param renewalExecutor
+     * @param batcher
+     */
+    RenewalScheduler(Supplier<Token> renewToken, ScheduledExecutorService scheduler, Executor renewalExecutor,
+            RenewalBatcher batcher) {
+        this.renewToken = renewToken;
+        this.scheduler = scheduler;
+        this.sharedScheduler = true;
+        this.renewalExecutor = renewalExecutor;
+        this.batcher = batcher;
+    }
+
+    /**
+     * Returns the delay to schedule a regular renewal with instead of the given one, moved earlier to run along
+     * with the renewals of other schedulers due shortly before, if any
+     * @param delay
+     * @return
+     */
+    public long align(long delay) {
+        return batcher == null ? delay : batcher.align(delay);
     }
 
     /**
@@ -31,12 +83,100 @@ class RenewalScheduler {
      * @param delay
      * @return
      */
-    public RenewalTask scheduleNext(long delay) {
+    public synchronized RenewalTask scheduleNext(long delay) {
         // Schedule the task to run after the given delay
-        lastTask = new RenewalTask(scheduler.schedule(() -> renewToken.get(), delay, TimeUnit.MILLISECONDS));
+        lastTask = schedule(() -> renewToken.get(), delay);
         return lastTask;
     }
 
+    /**
+     * Schedules a renewal out of the regular schedule with a given delay
+     * When it runs, it takes over as the last task and cancels the pending one, so that the regular schedule
+     * continues from the renewal made by the given supplier instead of running in parallel to it
+     * @param delay
+     * @param forcedRenewal
+     * @return
+     */
+    public synchronized RenewalTask scheduleOutOfBand(long delay, Supplier<Token> forcedRenewal) {
+        RenewalTask[] self = new RenewalTask[1];
+        self[0] = schedule(() -> {
+            synchronized (this) {
+                RenewalTask pending = lastTask;
+                lastTask = self[0];
+                if (pending != null && pending != self[0]) {
+                    pending.cancelIfNotStarted();
+                }
+            }
+            return forcedRenewal.get();
+        }, delay);
+        track(self[0].getFuture());
+        return self[0];
+    }
+
+    /**
+     * Schedules the given renewal on the scheduler, or hands it over to the renewal executor when due if there
+     * is one
+     */
+    private RenewalTask schedule(Callable<Token> renewal, long delay) {
+        if (renewalExecutor == null) {
+            return new RenewalTask(scheduler.schedule(renewal, delay, TimeUnit.MILLISECONDS));
+        }
+        FutureTask<Token> task = new FutureTask<>(renewal);
+        return new RenewalTask(task, scheduler.schedule(() -> runRenewal(task), delay, TimeUnit.MILLISECONDS));
+    }
+
+    private void runRenewal(Runnable renewal) {
+        synchronized (queuedRenewals) {
+            queuedRenewals.add(renewal);
+            if (runningRenewals) {
+                return;
+            }
+            runningRenewals = true;
+        }
+        try {
+            renewalExecutor.execute(this::runQueuedRenewals);
+        } catch (RejectedExecutionException e) {
+            // renewal executor is shut down along with the scheduler
+            synchronized (queuedRenewals) {
+                queuedRenewals.clear();
+                runningRenewals = false;
+            }
+        }
+    }
+
+    private void runQueuedRenewals() {
+        while (true) {
+            Runnable renewal;
+            synchronized (queuedRenewals) {
+                renewal = queuedRenewals.poll();
+                if (renewal == null) {
+                    runningRenewals = false;
+                    return;
+                }
+            }
+            renewal.run();
+        }
+    }
+
+    /**
+     * Schedules a task to run alongside the renewals with a given delay, e.g. to warm up the connection
+     * to the identity provider before the next renewal
+     * It does not take part in the renewal schedule, so it is neither followed nor cancelled by the renewals,
+     * only by stop
+     * @param delay
+     * @param task
+     */
+    public synchronized void scheduleSideTask(long delay, Runnable task) {
+        if (!stopped) {
+            track(scheduler.schedule(task, delay, TimeUnit.MILLISECONDS));
+        }
+    }
+
+    private void track(Future<?> future) {
+        pendingTasks.removeIf(Future::isDone);
+        pendingTasks.add(future);
+    }
+
     /**
      * Returns the last task that was scheduled
      * @return
@@ -55,14 +195,34 @@ class RenewalScheduler {
      * @throws ExecutionException
      */
     public void waitFor(RenewalTask pendingTask) throws InterruptedException, ExecutionException {
-        while (!stopped && pendingTask.waitForResultOrError() == null) {
+        while (!stopped && waitForResult(pendingTask) == null) {
             pendingTask = getLastTask();
         }
     }
 
-    public void stop() {
+    private Token waitForResult(RenewalTask pendingTask) throws InterruptedException, ExecutionException {
+        try {
+            return pendingTask.waitForResultOrError();
+        } catch (CancellationException e) {
+            // replaced by an out of band renewal, keep following the last task
+            return null;
+        }
+    }
+
+    /**
+     * Cancels the last task along with the pending out of band renewals and side tasks
+     */
+    public synchronized void stop() {
         stopped = true;
-        lastTask.cancel();
-        scheduler.shutdown();
+        if (lastTask != null) {
+            lastTask.cancel();
+        }
+        for (Future<?> future : pendingTasks) {
+            future.cancel(true);
+        }
+        pendingTasks.clear();
+        if (!sharedScheduler) {
+            scheduler.shutdown();
+        }
     }
 }
@@ -7,21 +7,49 @@
 package redis.clients.authentication.core;
 
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledFuture;
 
 class RenewalTask {
 
-    private ScheduledFuture<Token> future;
+    private Future<Token> future;
+    private ScheduledFuture<?> timer;
 
     public RenewalTask(ScheduledFuture<Token> future) {
         this.future = future;
     }
 
+    /**
+     * Creates a task for a renewal handed over to another executor by the given timer when due.
+     * @param future
+     * @param timer
+     */
+    RenewalTask(Future<Token> future, ScheduledFuture<?> timer) {
+        this.future = future;
+        this.timer = timer;
+    }
+
     public Token waitForResultOrError() throws InterruptedException, ExecutionException {
         return future.get();
     }
 
+    Future<Token> getFuture() {
+        return future;
+    }
+
     public void cancel() {
+        cancelTimer();
         future.cancel(true);
     }
+
+    public void cancelIfNotStarted() {
+        cancelTimer();
+        future.cancel(false);
+    }
+
+    private void cancelTimer() {
+        if (timer != null) {
+            timer.cancel(false);
+        }
+    }
 }
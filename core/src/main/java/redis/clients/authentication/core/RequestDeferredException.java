@@ -0,0 +1,19 @@
+/*
+ * Copyright 2024, Redis Ltd. and Contributors
+ * All rights reserved.
+ *
+ * Licensed under the MIT License.
+ */
+package redis.clients.authentication.core;
+
+/**
+ * Thrown when a request is deferred without calling the identity provider, e.g. by the dispatcher when the rate
+ * limiter does not let it through. Deferred requests do not count as attempts.
+ * It is always handled internally by the token manager, so it carries no stack trace.
+ */
+class RequestDeferredException extends IdentityProviderThrottledException {
+
+    RequestDeferredException(String message, long retryAfterInMs) {
+        super(message, retryAfterInMs, null, false);
+    }
+}
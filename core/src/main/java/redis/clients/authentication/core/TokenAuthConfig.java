@@ -35,6 +35,15 @@ public class TokenAuthConfig {
         private int tokenRequestExecTimeoutInMs;
         private int maxAttemptsToRetry;
         private int delayInMsToRetry;
+        private int recoveryProbeIntervalInMs;
+        private int recoveryProbeMaxJitterInMs;
+        private int forcedRefreshMinIntervalInMs;
+        private String rateLimitKey;
+        private double rateLimitPermitsPerSecond;
+        private int rateLimitBurst;
+        private ErrorClassifier errorClassifier = ErrorClassifier.DEFAULT;
+        private TokenCache tokenCache;
+        private int warmUpLeadTimeInMs;
 
         public T expirationRefreshRatio(float expirationRefreshRatio) {
             this.expirationRefreshRatio = expirationRefreshRatio;
@@ -61,6 +70,55 @@ public class TokenAuthConfig {
             return (T) this;
         }
 
+        public T recoveryProbeIntervalInMs(int recoveryProbeIntervalInMs) {
+            this.recoveryProbeIntervalInMs = recoveryProbeIntervalInMs;
+            return (T) this;
+        }
+
+        public T recoveryProbeMaxJitterInMs(int recoveryProbeMaxJitterInMs) {
+            this.recoveryProbeMaxJitterInMs = recoveryProbeMaxJitterInMs;
+            return (T) this;
+        }
+
+        public T forcedRefreshMinIntervalInMs(int forcedRefreshMinIntervalInMs) {
+            this.forcedRefreshMinIntervalInMs = forcedRefreshMinIntervalInMs;
+            return (T) this;
+        }
+
+        public T rateLimit(double permitsPerSecond, int burst) {
+            this.rateLimitPermitsPerSecond = permitsPerSecond;
+            this.rateLimitBurst = burst;
+            return (T) this;
+        }
+
+        public T rateLimitKey(String rateLimitKey) {
+            this.rateLimitKey = rateLimitKey;
+            return (T) this;
+        }
+
+        public T errorClassifier(ErrorClassifier errorClassifier) {
+            this.errorClassifier = errorClassifier;
+            return (T) this;
+        }
+
+        public T tokenCache(TokenCache tokenCache) {
+            this.tokenCache = tokenCache;
+            return (T) this;
+        }
+
+        /**
+         * Sets the time before each renewal to warm up the connection to the identity provider, see
+         * {@link IdentityProvider#warmUp()}. It has to be shorter than the time the http client keeps an idle
+         * connection, e.g. about 5 seconds with the http client of the JDK, or the connection is dropped again
+         * before the renewal.
+         * @param warmUpLeadTimeInMs
+         * @return
+         */
+        public T warmUpLeadTimeInMs(int warmUpLeadTimeInMs) {
+            this.warmUpLeadTimeInMs = warmUpLeadTimeInMs;
+            return (T) this;
+        }
+
         public T identityProviderConfig(IdentityProviderConfig identityProviderConfig) {
             this.identityProviderConfig = identityProviderConfig;
             return (T) this;
@@ -69,7 +127,13 @@ public class TokenAuthConfig {
         public TokenAuthConfig build() {
             return new TokenAuthConfig(
                     new TokenManagerConfig(expirationRefreshRatio, lowerRefreshBoundMillis, tokenRequestExecTimeoutInMs,
-                            new TokenManagerConfig.RetryPolicy(maxAttemptsToRetry, delayInMsToRetry)),
+                            new TokenManagerConfig.RetryPolicy(maxAttemptsToRetry, delayInMsToRetry),
+                            new TokenManagerConfig.RecoveryPolicy(
+                                    recoveryProbeIntervalInMs, recoveryProbeMaxJitterInMs),
+                            forcedRefreshMinIntervalInMs,
+                            new TokenManagerConfig.RateLimitPolicy(rateLimitKey, rateLimitPermitsPerSecond,
+                                    rateLimitBurst),
+                            errorClassifier, tokenCache, warmUpLeadTimeInMs),
                     identityProviderConfig);
         }
 
@@ -78,6 +142,12 @@ public class TokenAuthConfig {
                     .lowerRefreshBoundMillis(sample.lowerRefreshBoundMillis)
                     .tokenRequestExecTimeoutInMs(sample.tokenRequestExecTimeoutInMs)
                     .maxAttemptsToRetry(sample.maxAttemptsToRetry).delayInMsToRetry(sample.delayInMsToRetry)
+                    .recoveryProbeIntervalInMs(sample.recoveryProbeIntervalInMs)
+                    .recoveryProbeMaxJitterInMs(sample.recoveryProbeMaxJitterInMs)
+                    .forcedRefreshMinIntervalInMs(sample.forcedRefreshMinIntervalInMs)
+                    .rateLimit(sample.rateLimitPermitsPerSecond, sample.rateLimitBurst)
+                    .rateLimitKey(sample.rateLimitKey).errorClassifier(sample.errorClassifier)
+                    .tokenCache(sample.tokenCache).warmUpLeadTimeInMs(sample.warmUpLeadTimeInMs)
                     .identityProviderConfig(sample.identityProviderConfig);
         }
     }
@@ -0,0 +1,31 @@
+/*
+ * Copyright 2024, Redis Ltd. and Contributors
+ * All rights reserved.
+ *
+ * Licensed under the MIT License.
+ */
+package redis.clients.authentication.core;
+
+/**
+ * Keeps the last acquired token across restarts of the application.
+ * A cache instance is bound to a single identity and set of scopes, it is up to the implementation
+ * to keep the tokens of different identities apart.
+ * When configured, the token manager serves the cached token right away on start and renews it
+ * in the background according to the regular renewal schedule.
+ * @see FileTokenCache
+ */
+public interface TokenCache {
+
+    /**
+     * Returns the cached token, or null if there is none.
+     * Implementations should not throw on a missing, corrupted or unreadable cache, but return null.
+     * @return
+     */
+    public Token load();
+
+    /**
+     * Stores the given token, replacing the cached one.
+     * @param token
+     */
+    public void store(Token token);
+}
@@ -7,32 +7,99 @@
 package redis.clients.authentication.core;
 
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import redis.clients.authentication.core.ErrorClassifier.ErrorClass;
+import redis.clients.authentication.core.TokenManagerConfig.RateLimitPolicy;
+import redis.clients.authentication.core.TokenManagerConfig.RecoveryPolicy;
+
 public class TokenManager {
 
+    private static final int MAX_BACKOFF_SHIFT = 16;
+    // how long a deferred forced renewal keeps polling before falling back to the regular schedule
+    private static final long FORCED_DEFERRAL_TIMEOUT_IN_MS = 30 * 1000;
+
     private TokenManagerConfig tokenManagerConfig;
+    private IdentityProvider identityProvider;
     private TokenListener listener;
-    private boolean stopped = false;
+    private volatile boolean stopped = false;
     private AtomicInteger numberOfRetries = new AtomicInteger(0);
-    private Token currentToken = null;
+    private volatile Token currentToken = null;
     private AtomicBoolean started = new AtomicBoolean(false);
     private Dispatcher dispatcher;
     private RenewalScheduler renewalScheduler;
     private int retryDelay;
     private int maxRetries;
+    private RecoveryPolicy recoveryPolicy;
+    private ErrorClassifier errorClassifier;
+    private TokenCache tokenCache;
+    private volatile boolean recovering = false;
+    private AtomicBoolean forcedRefreshPending = new AtomicBoolean(false);
+    private AtomicBoolean pushedRenewalPending = new AtomicBoolean(false);
+    private volatile long lastForcedRefreshAt = 0;
+    private volatile long forcedDeferralUntil = 0;
+    private Logger logger = LoggerFactory.getLogger(getClass());
 
     public TokenManager(IdentityProvider identityProvider, TokenManagerConfig tokenManagerConfig) {
+        this(identityProvider, tokenManagerConfig, null, null, null, null);
+    }
+
+    /**
+     * Creates a token manager running its renewals on the given executors shared with other token managers,
+     * see {@link MultiScopeTokenManager}, or on its own executors if they are null. The scheduler only times the
+     * renewals, which run on the renewal executor, or on the scheduler if it is null, and wait there for the
+     * requests made on the request executor.
+     */
+    TokenManager(IdentityProvider identityProvider, TokenManagerConfig tokenManagerConfig,
+            ScheduledExecutorService scheduler, ExecutorService renewalExecutor, ExecutorService requestExecutor,
+            RenewalBatcher batcher) {
         this.tokenManagerConfig = tokenManagerConfig;
+        this.identityProvider = identityProvider;
         maxRetries = tokenManagerConfig.getRetryPolicy().getMaxAttempts();
         retryDelay = tokenManagerConfig.getRetryPolicy().getdelayInMs();
-        renewalScheduler = new RenewalScheduler(this::renewToken);
-        dispatcher = new Dispatcher(identityProvider, tokenManagerConfig.getTokenRequestExecTimeoutInMs());
+        recoveryPolicy = tokenManagerConfig.getRecoveryPolicy();
+        recoveryPolicy = recoveryPolicy == null ? RecoveryPolicy.DISABLED : recoveryPolicy;
+        errorClassifier = tokenManagerConfig.getErrorClassifier();
+        errorClassifier = errorClassifier == null ? ErrorClassifier.DEFAULT : errorClassifier;
+        tokenCache = tokenManagerConfig.getTokenCache();
+        RateLimiter rateLimiter = createRateLimiter(tokenManagerConfig.getRateLimitPolicy(), identityProvider);
+        if (scheduler == null) {
+            renewalScheduler = new RenewalScheduler(this::renewToken);
+            dispatcher = new Dispatcher(identityProvider, tokenManagerConfig.getTokenRequestExecTimeoutInMs(),
+                    rateLimiter);
+        } else {
+            renewalScheduler = new RenewalScheduler(this::renewToken, scheduler, renewalExecutor, batcher);
+            dispatcher = new Dispatcher(identityProvider, tokenManagerConfig.getTokenRequestExecTimeoutInMs(),
+                    rateLimiter, requestExecutor);
+        }
+    }
+
+    private RateLimiter createRateLimiter(RateLimitPolicy policy, IdentityProvider identityProvider) {
+        if (policy == null || !policy.isEnabled()) {
+            // the key of a disabled policy still names the identity in the logs
+            return RateLimiter.unlimited(policy == null || policy.getKey() == null
+                    ? identityProvider.getClass().getSimpleName() : policy.getKey());
+        }
+        String key = policy.getKey() == null ? "default" : policy.getKey();
+        return RateLimiter.forKey(key, policy.getPermitsPerSecond(), policy.getBurst());
     }
 
     /**
      * Starts the token manager with given listener, blocks if blockForInitialToken is true
+     * If a token cache is configured and holds a valid token, it is delivered to the listener right away
+     * without blocking, and renewed in the background according to the renewal schedule.
+     * Identity providers which learn about new tokens on their own push them to the listener as they change,
+     * see {@link IdentityProvider#setTokenChangeCallback(Runnable)}.
+     * If blocking for the initial token fails, the renewals are stopped before the error is thrown, also in recovery
+     * mode, so that the token manager does not keep probing the identity provider; {@link #stop()} still releases
+     * the identity provider.
      * @param listener
      * @param blockForInitialToken
      */
@@ -41,11 +108,24 @@ public class TokenManager {
             throw new AuthXException("Token manager already started!");
         }
         this.listener = listener;
+        identityProvider.setTokenChangeCallback(this::onTokenChanged);
+        Token cachedToken = loadCachedToken();
+        if (cachedToken != null) {
+            // serve the cached token right away, renewal continues in the background as usual
+            currentToken = cachedToken;
+            scheduleRenewal(calculateRenewalDelay(cachedToken.getExpiresAt(), cachedToken.getReceivedAt()));
+            listener.onTokenRenewed(cachedToken);
+            return;
+        }
         RenewalTask currentTask = renewalScheduler.scheduleNext(0);
         if (blockForInitialToken) {
             try {
                 renewalScheduler.waitFor(currentTask);
             } catch (Exception e) {
+                // the caller gives up on the token manager, renewals such as recovery probes must not outlive it
+                stopped = true;
+                recovering = false;
+                renewalScheduler.stop();
                 throw prepareToPropogate(e);
             }
         }
@@ -55,29 +135,78 @@ public class TokenManager {
      * This method is called by the renewal scheduler
      * Dispatches a request to the identity provider asynchronously, with a timeout for execution, and returns the Token if successfully acquired.
      * If the request fails, it retries until the max number of retries is reached
+     * Failures are classified with the ErrorClassifier(given in configuration), throttled requests are backed off
+     * exponentially and permanent failures are propagated right away without retrying
      * If the request fails after max number of retries, it throws an exception
      * When a new Token is received, it schedules the next renewal with calculating the delay in respect to the new token.
+     * A token identical to the current one, e.g. served from a cache of the identity provider, is not delivered
+     * to the listener again and the next renewal is checked before it expires.
      * Scheduling cycle only ends under two conditions:
      * 1. TokenManager is stopped
-     * 2. Token renewal fails for max number of retries 
+     * 2. Token renewal fails for max number of retries and recovery mode is disabled
+     * With recovery mode enabled, the last token keeps being served and the identity provider is probed
+     * with the slow, jittered rate given in RecoveryPolicy until a new token is acquired.
      * @return
      */
     protected Token renewToken() {
+        return renewToken(false);
+    }
+
+    private Token renewToken(boolean forceRefresh) {
         if (stopped) {
             return null;
         }
         Token newToken = null;
         try {
-            currentToken = newToken = dispatcher.requestTokenAsync().getResult();
+            newToken = dispatcher.requestTokenAsync(forceRefresh).getResult();
+            numberOfRetries.set(0);
+            forcedDeferralUntil = 0;
+            if (recovering) {
+                recovering = false;
+                logger.info("Token renewal recovered, resuming regular renewal schedule.");
+            }
             long delay = calculateRenewalDelay(newToken.getExpiresAt(), newToken.getReceivedAt());
-            renewalScheduler.scheduleNext(delay);
+            if (isDuplicate(currentToken, newToken)) {
+                // served from a cache of the identity provider, no need to notify the listener and re-authenticate
+                // check back before the token expires instead of retrying right away in the renewal zone
+                scheduleRenewal(Math.max(delay, Math.max(retryDelay, newToken.ttl() / 2)));
+                return currentToken;
+            }
+            currentToken = newToken;
+            scheduleRenewal(delay);
+            storeCachedToken(newToken);
             listener.onTokenRenewed(newToken);
             return newToken;
         } catch (Exception e) {
-            if (numberOfRetries.getAndIncrement() < maxRetries) {
-                renewalScheduler.scheduleNext(retryDelay);
+            Throwable cause = unwrap(e);
+            long retryAfter = cause instanceof IdentityProviderThrottledException
+                    ? ((IdentityProviderThrottledException) cause).getRetryAfterInMs() : 0;
+            ErrorClass errorClass = classify(cause);
+            if (recovering) {
+                renewalScheduler.scheduleNext(Math.max(nextRecoveryProbeDelay(), retryAfter));
+            } else if (cause instanceof RequestDeferredException) {
+                // identity provider is not called, so it does not count as an attempt
+                renewalScheduler.scheduleNext(deferredRenewalDelay(forceRefresh, retryAfter));
+            } else if (errorClass != ErrorClass.PERMANENT && numberOfRetries.get() < maxRetries) {
+                int attempt = numberOfRetries.getAndIncrement();
+                long delay = errorClass == ErrorClass.THROTTLED ? throttledBackoffDelay(attempt) : retryDelay;
+                renewalScheduler.scheduleNext(Math.max(delay, retryAfter));
             } else {
                 RuntimeException propogateExc = prepareToPropogate(e);
+                // failures on the retry path are logged aggregated by the dispatcher, full detail only goes here
+                if (errorClass == ErrorClass.PERMANENT) {
+                    logger.error("Token renewal failed with a permanent error, remaining retries are skipped.",
+                        propogateExc);
+                } else {
+                    logger.error("Token renewal failed after {} retries.", maxRetries, propogateExc);
+                }
+                if (recoveryPolicy.isEnabled()) {
+                    recovering = true;
+                    numberOfRetries.set(0);
+                    logger.warn("Entering recovery mode, probing identity provider every {} ms.",
+                        recoveryPolicy.getProbeIntervalInMs());
+                    renewalScheduler.scheduleNext(nextRecoveryProbeDelay());
+                }
                 listener.onError(propogateExc);
                 throw propogateExc;
             }
@@ -85,17 +214,181 @@ public class TokenManager {
         return null;
     }
 
-    private RuntimeException prepareToPropogate(Exception e) {
-        Throwable unwrapped = e;
-        if (unwrapped instanceof ExecutionException) {
-            unwrapped = e.getCause();
+    /**
+     * Returns the delay to retry a deferred renewal with. A forced renewal, which replaced the regular schedule,
+     * is retried as requested for a while, e.g. until another process shares the refreshed token. Once that does
+     * not happen in time, or for a regular renewal, retries wait for the renewal zone of the current token instead
+     * of polling before it.
+     * @param forceRefresh
+     * @param retryAfter
+     * @return
+     */
+    private long deferredRenewalDelay(boolean forceRefresh, long retryAfter) {
+        long now = System.currentTimeMillis();
+        if (forceRefresh) {
+            forcedDeferralUntil = now + FORCED_DEFERRAL_TIMEOUT_IN_MS;
+        }
+        Token current = currentToken;
+        if (current == null || now < forcedDeferralUntil) {
+            return retryAfter;
+        }
+        return Math.max(retryAfter, calculateRenewalDelay(current.getExpiresAt(), current.getReceivedAt()));
+    }
+
+    /**
+     * Schedules the next regular renewal with the given delay, along with a warm up of the identity provider
+     * WarmUpLeadTimeInMs(given in configuration) ahead of it. Renewals due sooner than that are not warmed up.
+     * With a shared scheduler, the renewal may be moved earlier to run along with those of the other token managers.
+     * @param delay
+     */
+    private void scheduleRenewal(long delay) {
+        delay = renewalScheduler.align(delay);
+        renewalScheduler.scheduleNext(delay);
+        int warmUpLeadTime = tokenManagerConfig.getWarmUpLeadTimeInMs();
+        if (warmUpLeadTime > 0 && delay > warmUpLeadTime) {
+            renewalScheduler.scheduleSideTask(delay - warmUpLeadTime, dispatcher::warmUpAsync);
+        }
+    }
+
+    /**
+     * Triggers a token renewal out of the regular schedule, e.g. when Redis rejects the current token.
+     * Concurrent calls are coalesced into a single request to the identity provider, and forced renewals
+     * are kept at least ForcedRefreshMinIntervalInMs(given in configuration) apart from each other.
+     * The new token is delivered to the listener and the regular renewal schedule continues from it.
+     * @return true if a new renewal is scheduled, false if it is coalesced into a pending one or the token manager is not running
+     */
+    public boolean refreshNow() {
+        if (stopped || !started.get() || !forcedRefreshPending.compareAndSet(false, true)) {
+            return false;
+        }
+        long earliest = lastForcedRefreshAt + tokenManagerConfig.getForcedRefreshMinIntervalInMs();
+        long delay = Math.max(0, earliest - System.currentTimeMillis());
+        renewalScheduler.scheduleOutOfBand(delay, this::forcedRenewToken);
+        return true;
+    }
+
+    /**
+     * Triggers a renewal via {@link #refreshNow()} if the given token is still the current one.
+     * A token that is already replaced by a renewal is ignored.
+     * @param token
+     * @return true if a new renewal is scheduled
+     */
+    public boolean invalidate(Token token) {
+        Token current = currentToken;
+        if (current != null && token != null && !current.getValue().equals(token.getValue())) {
+            return false;
+        }
+        return refreshNow();
+    }
+
+    /**
+     * Called back by the identity provider when it has a new token, renews the token right away out of the
+     * regular schedule. Calls are coalesced while such a renewal is pending. They are not kept apart by
+     * ForcedRefreshMinIntervalInMs(given in configuration), since the identity provider already has the token.
+     */
+    private void onTokenChanged() {
+        if (stopped || !started.get() || !pushedRenewalPending.compareAndSet(false, true)) {
+            return;
+        }
+        renewalScheduler.scheduleOutOfBand(0, this::pushedRenewToken);
+    }
+
+    private Token pushedRenewToken() {
+        // cleared before the request, so that a change during the request is not missed
+        pushedRenewalPending.set(false);
+        return renewToken(false);
+    }
+
+    private Token forcedRenewToken() {
+        lastForcedRefreshAt = System.currentTimeMillis();
+        try {
+            return renewToken(true);
+        } finally {
+            forcedRefreshPending.set(false);
+        }
+    }
+
+    private static boolean isDuplicate(Token current, Token token) {
+        return current != null && current.getExpiresAt() == token.getExpiresAt()
+                && current.getValue().equals(token.getValue());
+    }
+
+    private Token loadCachedToken() {
+        if (tokenCache == null) {
+            return null;
+        }
+        try {
+            Token token = tokenCache.load();
+            return token == null || token.isExpired() ? null : token;
+        } catch (RuntimeException e) {
+            logger.warn("Failed to load token from cache, requesting a new one.", e);
+            return null;
         }
+    }
+
+    private void storeCachedToken(Token token) {
+        if (tokenCache == null) {
+            return;
+        }
+        try {
+            tokenCache.store(token);
+        } catch (RuntimeException e) {
+            logger.warn("Failed to store token in cache.", e);
+        }
+    }
+
+    /**
+     * Calculates the delay to the next recovery probe.
+     * A random jitter is added to the probe interval, so that a fleet of clients failing at the same time
+     * does not hit the identity provider in lockstep when it recovers.
+     * @return
+     */
+    protected long nextRecoveryProbeDelay() {
+        long jitter = recoveryPolicy.getMaxJitterInMs() > 0
+                ? ThreadLocalRandom.current().nextLong(recoveryPolicy.getMaxJitterInMs() + 1L) : 0;
+        return recoveryPolicy.getProbeIntervalInMs() + jitter;
+    }
+
+    /**
+     * Calculates the delay to the next attempt after a throttled request.
+     * Delay doubles with every attempt, starting from twice the retry delay given in the retry policy.
+     * @param attempt
+     * @return
+     */
+    protected long throttledBackoffDelay(int attempt) {
+        return (long) retryDelay << Math.min(attempt + 1, MAX_BACKOFF_SHIFT);
+    }
+
+    private ErrorClass classify(Throwable cause) {
+        try {
+            ErrorClass errorClass = errorClassifier.classify(cause);
+            return errorClass == null ? ErrorClass.RETRYABLE : errorClass;
+        } catch (RuntimeException e) {
+            logger.warn("Error classifier failed, error is treated as retryable.", e);
+            return ErrorClass.RETRYABLE;
+        }
+    }
+
+    private static Throwable unwrap(Exception e) {
+        return e instanceof ExecutionException ? e.getCause() : e;
+    }
+
+    private RuntimeException prepareToPropogate(Exception e) {
+        Throwable unwrapped = unwrap(e);
         if (unwrapped instanceof TokenRequestException) {
             return (RuntimeException) unwrapped;
         }
         return new TokenRequestException(unwrapped, dispatcher.getError());
     }
 
+    /**
+     * Returns the rate limiter applied to the requests to the identity provider,
+     * with the number of throttled and deferred requests.
+     */
+    public RateLimiter getRateLimiter() {
+        return dispatcher.getRateLimiter();
+    }
+
     public TokenManagerConfig getConfig() {
         return tokenManagerConfig;
     }
@@ -104,10 +397,24 @@ public class TokenManager {
         return currentToken;
     }
 
+    /**
+     * Returns true if the retry policy is exhausted and the token manager is probing the identity provider
+     * in recovery mode.
+     */
+    public boolean isRecovering() {
+        return recovering;
+    }
+
+    /**
+     * Stops the renewals and releases what the identity provider holds on behalf of this token manager, see
+     * {@link IdentityProvider#release()}. The identity provider is not closed, it is left to its owner.
+     */
     public void stop() {
         stopped = true;
+        identityProvider.setTokenChangeCallback(null);
         renewalScheduler.stop();
         dispatcher.stop();
+        identityProvider.release();
     }
 
     /**    
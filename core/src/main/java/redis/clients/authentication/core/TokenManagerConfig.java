@@ -15,6 +15,12 @@ public class TokenManagerConfig {
     private final int lowerRefreshBoundMillis;
     private final int tokenRequestExecTimeoutInMs;
     private final RetryPolicy retryPolicy;
+    private final RecoveryPolicy recoveryPolicy;
+    private final int forcedRefreshMinIntervalInMs;
+    private final RateLimitPolicy rateLimitPolicy;
+    private final ErrorClassifier errorClassifier;
+    private final TokenCache tokenCache;
+    private final int warmUpLeadTimeInMs;
 
     public static class RetryPolicy {
         private final int maxAttempts;
@@ -35,12 +41,92 @@ public class TokenManagerConfig {
 
     }
 
+    /**
+     * Recovery mode applies after the retry policy is exhausted. Instead of ending the renewal cycle, the token manager
+     * keeps probing the identity provider every {@code probeIntervalInMs} plus a random jitter of up to
+     * {@code maxJitterInMs}, while the last acquired token keeps being served until it expires.
+     * A {@code probeIntervalInMs} of 0 disables recovery mode.
+     */
+    public static class RecoveryPolicy {
+        public static final RecoveryPolicy DISABLED = new RecoveryPolicy(0, 0);
+
+        private final int probeIntervalInMs;
+        private final int maxJitterInMs;
+
+        public RecoveryPolicy(int probeIntervalInMs, int maxJitterInMs) {
+            this.probeIntervalInMs = probeIntervalInMs;
+            this.maxJitterInMs = maxJitterInMs;
+        }
+
+        public int getProbeIntervalInMs() {
+            return probeIntervalInMs;
+        }
+
+        public int getMaxJitterInMs() {
+            return maxJitterInMs;
+        }
+
+        public boolean isEnabled() {
+            return probeIntervalInMs > 0;
+        }
+    }
+
+    /**
+     * Rate limit for the requests to the identity provider, applied with a token bucket of the given rate and burst.
+     * Token managers with the same key share the same bucket within the process, see {@link RateLimiter}.
+     * A {@code permitsPerSecond} of 0 disables rate limiting, throttling signals from the identity provider
+     * are honoured regardless.
+     */
+    public static class RateLimitPolicy {
+        public static final RateLimitPolicy UNLIMITED = new RateLimitPolicy(null, 0, 0);
+
+        private final String key;
+        private final double permitsPerSecond;
+        private final int burst;
+
+        public RateLimitPolicy(String key, double permitsPerSecond, int burst) {
+            this.key = key;
+            this.permitsPerSecond = permitsPerSecond;
+            this.burst = burst;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public double getPermitsPerSecond() {
+            return permitsPerSecond;
+        }
+
+        public int getBurst() {
+            return burst;
+        }
+
+        public boolean isEnabled() {
+            return permitsPerSecond > 0;
+        }
+    }
+
     public TokenManagerConfig(float expirationRefreshRatio, int lowerRefreshBoundMillis,
             int tokenRequestExecTimeoutInMs, RetryPolicy retryPolicy) {
+        this(expirationRefreshRatio, lowerRefreshBoundMillis, tokenRequestExecTimeoutInMs, retryPolicy,
+                RecoveryPolicy.DISABLED, 0, RateLimitPolicy.UNLIMITED, ErrorClassifier.DEFAULT, null, 0);
+    }
+
+    public TokenManagerConfig(float expirationRefreshRatio, int lowerRefreshBoundMillis,
+            int tokenRequestExecTimeoutInMs, RetryPolicy retryPolicy, RecoveryPolicy recoveryPolicy,
+            int forcedRefreshMinIntervalInMs, RateLimitPolicy rateLimitPolicy, ErrorClassifier errorClassifier,
+            TokenCache tokenCache, int warmUpLeadTimeInMs) {
         this.expirationRefreshRatio = expirationRefreshRatio;
         this.lowerRefreshBoundMillis = lowerRefreshBoundMillis;
         this.tokenRequestExecTimeoutInMs = tokenRequestExecTimeoutInMs;
         this.retryPolicy = retryPolicy;
+        this.recoveryPolicy = recoveryPolicy;
+        this.forcedRefreshMinIntervalInMs = forcedRefreshMinIntervalInMs;
+        this.rateLimitPolicy = rateLimitPolicy;
+        this.errorClassifier = errorClassifier;
+        this.tokenCache = tokenCache;
+        this.warmUpLeadTimeInMs = warmUpLeadTimeInMs;
     }
 
     /**
@@ -75,4 +161,49 @@ public class TokenManagerConfig {
     public RetryPolicy getRetryPolicy() {
         return retryPolicy;
     }
+
+    /**
+     * Represents the recovery policy applied once the retry policy is exhausted.
+     */
+    public RecoveryPolicy getRecoveryPolicy() {
+        return recoveryPolicy;
+    }
+
+    /**
+     * Represents the minimum time in milliseconds between two renewals forced via {@link TokenManager#refreshNow()}.
+     * Forced renewals requested earlier than this are delayed, not dropped.
+     */
+    public int getForcedRefreshMinIntervalInMs() {
+        return forcedRefreshMinIntervalInMs;
+    }
+
+    /**
+     * Represents the rate limit for the requests to the identity provider.
+     */
+    public RateLimitPolicy getRateLimitPolicy() {
+        return rateLimitPolicy;
+    }
+
+    /**
+     * Represents the classifier deciding whether a failed token request is retried, backed off or
+     * propagated right away.
+     */
+    public ErrorClassifier getErrorClassifier() {
+        return errorClassifier;
+    }
+
+    /**
+     * Represents the cache keeping the last acquired token across restarts, null if not configured.
+     */
+    public TokenCache getTokenCache() {
+        return tokenCache;
+    }
+
+    /**
+     * Represents the time in milliseconds before each scheduled renewal to warm up the connection to the
+     * identity provider, see {@link IdentityProvider#warmUp()}. If set to 0 there is no warm up.
+     */
+    public int getWarmUpLeadTimeInMs() {
+        return warmUpLeadTimeInMs;
+    }
 }
@@ -0,0 +1,327 @@
+/*
+ * Copyright 2024, Redis Ltd. and Contributors
+ * All rights reserved.
+ *
+ * Licensed under the MIT License.
+ */
+package redis.clients.authentication.core;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Maintains the tokens of many identities, e.g. one per tenant, with a {@link TokenManager} per key created on
+ * first use. The token managers are timed by a single scheduler thread and share the threads running the renewals
+ * and making the requests to the identity providers, with renewals due close together batched as in
+ * {@link MultiScopeTokenManager}.
+ *
+ * <p>A token manager is evicted, its renewals stopped and its identity provider closed, when its key has not been
+ * used for the idle timeout, when it is the least recently used one and the number of token managers would
+ * exceed the maximum, or when its renewals have failed past the retry policy without recovery mode. The next use of
+ * an evicted key starts a new token manager. The tokens of keys in use are renewed in the background as usual, so that they are served
+ * without a request to the identity provider.
+ */
+public class TokenManagerPool {
+
+    public static final int DEFAULT_MAX_ACTIVE = 100;
+    public static final long DEFAULT_IDLE_TIMEOUT_IN_MS = 30 * 60 * 1000;
+    public static final long DEFAULT_BATCH_WINDOW_IN_MS = MultiScopeTokenManager.DEFAULT_BATCH_WINDOW_IN_MS;
+
+    private static final int REQUEST_THREADS = 4;
+
+    private final Function<String, TokenAuthConfig> configLoader;
+    private final int maxActive;
+    private final long idleTimeoutInMs;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    // renewals beyond the request threads would only wait for one of them
+    private final ExecutorService renewalExecutor = Executors.newFixedThreadPool(REQUEST_THREADS);
+    private final ExecutorService requestExecutor = Executors.newFixedThreadPool(REQUEST_THREADS);
+    private final RenewalBatcher batcher = new RenewalBatcher(DEFAULT_BATCH_WINDOW_IN_MS);
+    // in access order, the least recently used first
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75F, true);
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private boolean stopped;
+    private Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final class Entry implements TokenListener {
+        private final String key;
+        private final CountDownLatch ready = new CountDownLatch(1);
+        private volatile IdentityProvider identityProvider;
+        private volatile TokenManager tokenManager;
+        private volatile RuntimeException failure;
+        private volatile long lastUsedAt;
+        private boolean evicted;
+
+        private Entry(String key) {
+            this.key = key;
+        }
+
+        private void start() {
+            try {
+                TokenAuthConfig config = configLoader.apply(key);
+                identityProvider = config.getIdentityProviderConfig().getProvider();
+                tokenManager = new TokenManager(identityProvider, config.getTokenManagerConfig(), scheduler,
+                        renewalExecutor, requestExecutor, batcher);
+                tokenManager.start(this, true);
+            } catch (RuntimeException e) {
+                failure = e;
+                throw e;
+            } finally {
+                boolean stopNow;
+                synchronized (this) {
+                    ready.countDown();
+                    stopNow = evicted;
+                }
+                if (stopNow) {
+                    close();
+                }
+            }
+        }
+
+        private TokenManager awaitTokenManager() {
+            try {
+                ready.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new AuthXException("Interrupted while waiting for the token of '" + key + "'!", e);
+            }
+            if (failure != null) {
+                throw failure;
+            }
+            return tokenManager;
+        }
+
+        /**
+         * Stops the token manager, or lets it be stopped once it has its initial token if it is still starting.
+         */
+        private void stop() {
+            synchronized (this) {
+                evicted = true;
+                if (ready.getCount() > 0) {
+                    return;
+                }
+            }
+            close();
+        }
+
+        private void close() {
+            try {
+                if (tokenManager != null) {
+                    tokenManager.stop();
+                }
+                // created from the config of the key, so it is not shared with anyone else
+                if (identityProvider instanceof AutoCloseable) {
+                    ((AutoCloseable) identityProvider).close();
+                }
+            } catch (Exception e) {
+                logger.warn("Failed to stop token manager of '{}'", key, e);
+            }
+        }
+
+        @Override
+        public void onTokenRenewed(Token token) {
+        }
+
+        /**
+         * Evicts the token manager once it has given up renewing, unless it is probing in recovery mode, so that
+         * the next use of the key starts a new one instead of failing until the key is evicted by hand.
+         */
+        @Override
+        public void onError(Exception reason) {
+            logger.warn("Token renewal of '{}' failed", key, reason);
+            TokenManager manager = tokenManager;
+            if (manager == null || manager.isRecovering()) {
+                return;
+            }
+            boolean removed;
+            synchronized (TokenManagerPool.this) {
+                removed = entries.remove(key, this);
+            }
+            if (removed) {
+                List<Entry> evicted = new ArrayList<>(1);
+                evicted.add(this);
+                stopEvicted(evicted);
+            }
+        }
+    }
+
+    public TokenManagerPool(Function<String, TokenAuthConfig> configLoader) {
+        this(configLoader, DEFAULT_MAX_ACTIVE, DEFAULT_IDLE_TIMEOUT_IN_MS);
+    }
+
+    /**
+     * @param configLoader returns the identity provider and token manager configuration of a key
+     * @param maxActive maximum number of token managers, the least recently used one is evicted beyond it
+     * @param idleTimeoutInMs time after which the token manager of an unused key is evicted, 0 to disable
+     */
+    public TokenManagerPool(Function<String, TokenAuthConfig> configLoader, int maxActive, long idleTimeoutInMs) {
+        if (maxActive < 1) {
+            throw new AuthXException("At least one active token manager is required!");
+        }
+        this.configLoader = configLoader;
+        this.maxActive = maxActive;
+        this.idleTimeoutInMs = idleTimeoutInMs;
+        if (idleTimeoutInMs > 0) {
+            long period = Math.max(idleTimeoutInMs / 2, 10);
+            scheduler.scheduleWithFixedDelay(this::evictIdle, period, period, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Returns the current token of the given key, creating its token manager and blocking for the initial token
+     * on first use, see {@link #getTokenManager(String)}.
+     * @param key
+     * @return
+     */
+    public Token getToken(String key) {
+        Token token = getTokenManager(key).getCurrentToken();
+        if (token == null || token.isExpired()) {
+            throw new AuthXException("No valid token of '" + key + "', the identity provider is failing!");
+        }
+        return token;
+    }
+
+    /**
+     * Returns the token manager of the given key, e.g. to invalidate a token rejected by Redis, creating it and
+     * blocking for the initial token on first use. Concurrent callers of the same key wait for the same initial
+     * token. The wait is bounded by the retry policy of the key, it lasts up to the max attempts times the token
+     * request timeout and retry delay, and ends with the error of the last attempt.
+     * @param key
+     * @return
+     */
+    public TokenManager getTokenManager(String key) {
+        Entry entry;
+        boolean created = false;
+        List<Entry> evicted = new ArrayList<>();
+        synchronized (this) {
+            if (stopped) {
+                throw new AuthXException("Token manager pool is stopped!");
+            }
+            entry = entries.get(key);
+            if (entry == null) {
+                entry = new Entry(key);
+                entries.put(key, entry);
+                created = true;
+                Iterator<Entry> eldest = entries.values().iterator();
+                while (entries.size() > maxActive) {
+                    evicted.add(eldest.next());
+                    eldest.remove();
+                }
+            }
+            entry.lastUsedAt = System.currentTimeMillis();
+        }
+        stopEvicted(evicted);
+        if (!created) {
+            TokenManager tokenManager = entry.awaitTokenManager();
+            Token token = tokenManager.getCurrentToken();
+            (token != null && !token.isExpired() ? hits : misses).incrementAndGet();
+            return tokenManager;
+        }
+        misses.incrementAndGet();
+        try {
+            entry.start();
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                entries.remove(key, entry);
+            }
+            entry.stop();
+            throw e;
+        }
+        return entry.tokenManager;
+    }
+
+    /**
+     * Evicts the token manager of the given key, if any.
+     * @param key
+     */
+    public void evict(String key) {
+        Entry entry;
+        synchronized (this) {
+            entry = entries.remove(key);
+        }
+        if (entry != null) {
+            List<Entry> evicted = new ArrayList<>(1);
+            evicted.add(entry);
+            stopEvicted(evicted);
+        }
+    }
+
+    private void evictIdle() {
+        long idleSince = System.currentTimeMillis() - idleTimeoutInMs;
+        List<Entry> evicted = new ArrayList<>();
+        synchronized (this) {
+            for (Iterator<Entry> it = entries.values().iterator(); it.hasNext();) {
+                Entry entry = it.next();
+                if (entry.lastUsedAt <= idleSince) {
+                    evicted.add(entry);
+                    it.remove();
+                }
+            }
+        }
+        stopEvicted(evicted);
+    }
+
+    private void stopEvicted(List<Entry> evicted) {
+        for (Entry entry : evicted) {
+            evictions.incrementAndGet();
+            logger.debug("Evicting token manager of '{}'", entry.key);
+            entry.stop();
+        }
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the number of token requests served with the valid token of a running token manager.
+     * @return
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * Returns the number of token requests which started a token manager or found no valid token.
+     * @return
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    /**
+     * Stops all token managers along with the shared threads.
+     */
+    public void stop() {
+        List<Entry> all;
+        synchronized (this) {
+            stopped = true;
+            all = new ArrayList<>(entries.values());
+            entries.clear();
+        }
+        for (Entry entry : all) {
+            entry.stop();
+        }
+        scheduler.shutdownNow();
+        renewalExecutor.shutdownNow();
+        requestExecutor.shutdownNow();
+    }
+}
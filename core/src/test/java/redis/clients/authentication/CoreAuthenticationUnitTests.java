@@ -11,8 +11,11 @@ import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.either;
 import static org.hamcrest.Matchers.is;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.Mockito.atLeastOnce;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
@@ -20,19 +23,54 @@ import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import org.hamcrest.Matchers;
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.mockito.ArgumentCaptor;
 
+import redis.clients.authentication.core.AuthXException;
+import redis.clients.authentication.core.CompositeIdentityProvider;
+import redis.clients.authentication.core.ErrorClassifier;
+import redis.clients.authentication.core.ErrorClassifier.ErrorClass;
+import redis.clients.authentication.core.FileIdentityProvider;
+import redis.clients.authentication.core.FileIdentityProvider.Format;
+import redis.clients.authentication.core.FileTokenAuthConfigBuilder;
+import redis.clients.authentication.core.FileTokenCache;
+import redis.clients.authentication.core.HostSharedIdentityProvider;
 import redis.clients.authentication.core.IdentityProvider;
+import redis.clients.authentication.core.IdentityProviderThrottledException;
+import redis.clients.authentication.core.MultiScopeTokenManager;
+import redis.clients.authentication.core.RateLimiter;
 import redis.clients.authentication.core.SimpleToken;
 import redis.clients.authentication.core.Token;
+import redis.clients.authentication.core.TokenAuthConfig;
 import redis.clients.authentication.core.TokenListener;
 import redis.clients.authentication.core.TokenManager;
 import redis.clients.authentication.core.TokenManagerConfig;
+import redis.clients.authentication.core.TokenManagerPool;
+import redis.clients.authentication.core.TokenManagerConfig.RateLimitPolicy;
+import redis.clients.authentication.core.TokenManagerConfig.RecoveryPolicy;
 import redis.clients.authentication.core.TokenManagerConfig.RetryPolicy;
 import redis.clients.authentication.core.TokenRequestException;
 
@@ -41,6 +79,9 @@ import java.util.concurrent.TimeUnit;
 
 public class CoreAuthenticationUnitTests {
 
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
     public static class TokenManagerConfigWrapper extends TokenManagerConfig {
         int lower;
         float ratio;
@@ -190,7 +231,9 @@ public class CoreAuthenticationUnitTests {
         tokenManager.start(listener, false);
 
         requesLatch.await();
-        verify(listener, atLeastOnce()).onError(any());
+        await().atMost(2, TimeUnit.SECONDS).untilAsserted(() -> {
+            verify(listener, atLeastOnce()).onError(any());
+        });
         verify(listener, never()).onTokenRenewed(any());
     }
 
@@ -219,8 +262,10 @@ public class CoreAuthenticationUnitTests {
         tokenManager.start(listener, false);
         requesLatch.await();
         verify(identityProvider, times(numberOfRetries)).requestToken();
+        await().atMost(2, TimeUnit.SECONDS).untilAsserted(() -> {
+            verify(listener).onTokenRenewed(argument.capture());
+        });
         verify(listener, never()).onError(any());
-        verify(listener).onTokenRenewed(argument.capture());
         assertEquals("tokenValX", argument.getValue().getValue());
     }
 
@@ -254,6 +299,774 @@ public class CoreAuthenticationUnitTests {
         });
     }
 
+    @Test
+    public void testRecoveryAfterRetriesExhausted() {
+        AtomicBoolean idpAvailable = new AtomicBoolean(true);
+        AtomicInteger numberOfRequests = new AtomicInteger(0);
+        IdentityProvider identityProvider = () -> {
+            numberOfRequests.incrementAndGet();
+            if (!idpAvailable.get()) {
+                throw new RuntimeException("Test exception from identity provider!");
+            }
+            return new SimpleToken("user1", "tokenVal" + numberOfRequests.get(), System.currentTimeMillis() + 1000,
+                    System.currentTimeMillis(), null);
+        };
+
+        TokenManager tokenManager = new TokenManager(identityProvider,
+                new TokenManagerConfig(0.5F, 0, 1000, new RetryPolicy(2, 10), new RecoveryPolicy(100, 50), 0,
+                        RateLimitPolicy.UNLIMITED, ErrorClassifier.DEFAULT, null, 0));
+        TokenListener listener = mock(TokenListener.class);
+        tokenManager.start(listener, true);
+        Token initialToken = tokenManager.getCurrentToken();
+
+        idpAvailable.set(false);
+        await().atMost(2, TimeUnit.SECONDS).until(tokenManager::isRecovering);
+        verify(listener, times(1)).onError(any());
+        assertEquals(initialToken, tokenManager.getCurrentToken());
+
+        // keeps probing in recovery mode without further errors reported
+        int requestsInRecovery = numberOfRequests.get();
+        await().atMost(2, TimeUnit.SECONDS).until(() -> numberOfRequests.get() > requestsInRecovery + 1);
+        verify(listener, times(1)).onError(any());
+
+        idpAvailable.set(true);
+        await().atMost(2, TimeUnit.SECONDS).until(() -> !tokenManager.isRecovering());
+        assertFalse(initialToken.getValue().equals(tokenManager.getCurrentToken().getValue()));
+        assertTrue(tokenManager.getCurrentToken().ttl() > 0);
+        tokenManager.stop();
+    }
+
+    @Test
+    public void testFailedBlockingStartStopsRecovery() {
+        AtomicInteger numberOfRequests = new AtomicInteger(0);
+        IdentityProvider identityProvider = () -> {
+            numberOfRequests.incrementAndGet();
+            throw new RuntimeException("Test exception from identity provider!");
+        };
+
+        TokenManager tokenManager = new TokenManager(identityProvider,
+                new TokenManagerConfig(0.5F, 0, 1000, new RetryPolicy(2, 10), new RecoveryPolicy(50, 0), 0,
+                        RateLimitPolicy.UNLIMITED, ErrorClassifier.DEFAULT, null, 0));
+        TokenListener listener = mock(TokenListener.class);
+        assertThrows(TokenRequestException.class, () -> tokenManager.start(listener, true));
+        assertFalse(tokenManager.isRecovering());
+
+        // no recovery probes after the caller got the error
+        int requests = numberOfRequests.get();
+        delay(300);
+        assertEquals(requests, numberOfRequests.get());
+        verify(listener, never()).onTokenRenewed(any());
+        tokenManager.stop();
+    }
+
+    @Test
+    public void testRefreshNowCoalescesConcurrentTriggers() throws InterruptedException {
+        AtomicInteger numberOfRequests = new AtomicInteger(0);
+        IdentityProvider identityProvider = () -> {
+            delay(100);
+            return new SimpleToken("user1", "tokenVal" + numberOfRequests.incrementAndGet(),
+                    System.currentTimeMillis() + 60 * 1000, System.currentTimeMillis(), null);
+        };
+
+        TokenManager tokenManager = new TokenManager(identityProvider,
+                new TokenManagerConfig(0.7F, 200, 2000, new RetryPolicy(1, 1), RecoveryPolicy.DISABLED, 500,
+                        RateLimitPolicy.UNLIMITED, ErrorClassifier.DEFAULT, null, 0));
+        TokenListener listener = mock(TokenListener.class);
+        tokenManager.start(listener, true);
+        Token rejected = tokenManager.getCurrentToken();
+
+        int numberOfConnections = 20;
+        CountDownLatch triggers = new CountDownLatch(numberOfConnections);
+        for (int i = 0; i < numberOfConnections; i++) {
+            new Thread(() -> {
+                tokenManager.invalidate(rejected);
+                triggers.countDown();
+            }).start();
+        }
+        triggers.await();
+        await().atMost(2, TimeUnit.SECONDS).untilAsserted(() -> {
+            verify(listener, times(2)).onTokenRenewed(any());
+        });
+        assertEquals(2, numberOfRequests.get());
+        assertEquals("tokenVal2", tokenManager.getCurrentToken().getValue());
+
+        // a token that is already replaced does not trigger a renewal
+        assertFalse(tokenManager.invalidate(rejected));
+
+        // forced renewals are kept apart by the minimum interval
+        long triggeredAt = System.currentTimeMillis();
+        assertTrue(tokenManager.refreshNow());
+        await().atMost(2, TimeUnit.SECONDS).until(() -> numberOfRequests.get() == 3);
+        assertThat(System.currentTimeMillis() - triggeredAt, Matchers.greaterThanOrEqualTo(300L));
+        tokenManager.stop();
+    }
+
+    @Test
+    public void testRateLimiterTokenBucket() {
+        RateLimiter limiter = RateLimiter.forKey("testRateLimiterTokenBucket", 10, 2);
+        assertEquals(0, limiter.tryAcquire());
+        assertEquals(0, limiter.tryAcquire());
+        long retryAfter = limiter.tryAcquire();
+        assertThat(retryAfter, Matchers.both(Matchers.greaterThan(0L)).and(Matchers.lessThanOrEqualTo(100L)));
+        assertEquals(1, limiter.getDeferredCount());
+        await().atMost(1, TimeUnit.SECONDS).until(() -> limiter.tryAcquire() == 0);
+
+        limiter.deferFor(60 * 1000);
+        assertThat(limiter.tryAcquire(), Matchers.greaterThan(50 * 1000L));
+        assertEquals(1, limiter.getThrottledCount());
+        assertEquals(limiter, RateLimiter.forKey("testRateLimiterTokenBucket", 100, 100));
+    }
+
+    @Test
+    public void testRetryAfterFromIdentityProviderIsHonoured() {
+        int retryAfter = 300;
+        AtomicInteger numberOfRequests = new AtomicInteger(0);
+        long[] requestTimes = new long[2];
+        IdentityProvider identityProvider = () -> {
+            int request = numberOfRequests.getAndIncrement();
+            requestTimes[request] = System.currentTimeMillis();
+            if (request == 0) {
+                throw new IdentityProviderThrottledException("Throttled!", retryAfter);
+            }
+            return new SimpleToken("user1", "tokenVal", System.currentTimeMillis() + 60 * 1000,
+                    System.currentTimeMillis(), null);
+        };
+
+        TokenManager tokenManager = new TokenManager(identityProvider,
+                new TokenManagerConfig(0.7F, 200, 2000, new RetryPolicy(1, 1), RecoveryPolicy.DISABLED, 0,
+                        new RateLimitPolicy("testRetryAfterFromIdentityProviderIsHonoured", 1000, 10),
+                        ErrorClassifier.DEFAULT, null, 0));
+        tokenManager.start(mock(TokenListener.class), true);
+
+        assertEquals(2, numberOfRequests.get());
+        assertThat(requestTimes[1] - requestTimes[0], Matchers.greaterThanOrEqualTo((long) retryAfter));
+        assertEquals(1, tokenManager.getRateLimiter().getThrottledCount());
+        tokenManager.stop();
+    }
+
+    @Test
+    public void testPermanentErrorSkipsRetries() {
+        AtomicInteger numberOfRequests = new AtomicInteger(0);
+        IdentityProvider identityProvider = () -> {
+            numberOfRequests.incrementAndGet();
+            throw new IllegalStateException("Invalid client secret!");
+        };
+        ErrorClassifier classifier = error -> error instanceof IllegalStateException ? ErrorClass.PERMANENT
+                : ErrorClass.RETRYABLE;
+
+        TokenManager tokenManager = new TokenManager(identityProvider, new TokenManagerConfig(0.7F, 200, 2000,
+                new RetryPolicy(5, 100), RecoveryPolicy.DISABLED, 0, RateLimitPolicy.UNLIMITED, classifier, null, 0));
+        TokenListener listener = mock(TokenListener.class);
+        TokenRequestException e = assertThrows(TokenRequestException.class, () -> tokenManager.start(listener, true));
+
+        assertEquals(1, numberOfRequests.get());
+        assertThat(e.getCause(), Matchers.instanceOf(IllegalStateException.class));
+        verify(listener, times(1)).onError(any());
+        tokenManager.stop();
+    }
+
+    @Test
+    public void testStartWithCachedToken() throws Exception {
+        SecretKey key = KeyGenerator.getInstance("AES").generateKey();
+        FileTokenCache cache = new FileTokenCache(tempFolder.getRoot().toPath(), "client1|scope1", key);
+        assertEquals(null, cache.load());
+        long now = System.currentTimeMillis();
+        cache.store(new SimpleToken("user1", "cachedToken", now + 60 * 1000, now, null));
+
+        // same file with another identity or key is not readable
+        assertEquals(null, new FileTokenCache(tempFolder.getRoot().toPath(), "client2|scope1", key).load());
+        assertEquals(null, new FileTokenCache(tempFolder.getRoot().toPath(), "client1|scope1",
+                KeyGenerator.getInstance("AES").generateKey()).load());
+
+        AtomicInteger numberOfRequests = new AtomicInteger(0);
+        IdentityProvider identityProvider = () -> {
+            numberOfRequests.incrementAndGet();
+            return new SimpleToken("user1", "newToken", System.currentTimeMillis() + 60 * 1000,
+                    System.currentTimeMillis(), null);
+        };
+        TokenManager tokenManager = new TokenManager(identityProvider,
+                new TokenManagerConfig(0.7F, 200, 2000, new RetryPolicy(1, 1), RecoveryPolicy.DISABLED, 0,
+                        RateLimitPolicy.UNLIMITED, ErrorClassifier.DEFAULT, cache, 0));
+        TokenListener listener = mock(TokenListener.class);
+        tokenManager.start(listener, true);
+
+        assertEquals(0, numberOfRequests.get());
+        assertEquals("cachedToken", tokenManager.getCurrentToken().getValue());
+        assertEquals(now, tokenManager.getCurrentToken().getReceivedAt());
+        verify(listener, times(1)).onTokenRenewed(any());
+
+        assertTrue(tokenManager.refreshNow());
+        await().atMost(2, TimeUnit.SECONDS).until(() -> "newToken".equals(cache.load().getValue()));
+        tokenManager.stop();
+    }
+
+    @Test
+    public void testHostSharedIdentityProvider() throws Exception {
+        FileTokenCache cache = new FileTokenCache(tempFolder.getRoot().toPath(), "client1|scope1",
+                KeyGenerator.getInstance("AES").generateKey());
+        AtomicInteger numberOfRequests = new AtomicInteger(0);
+        IdentityProvider identityProvider = () -> new SimpleToken("user1", "token" + numberOfRequests.incrementAndGet(),
+                System.currentTimeMillis() + 60 * 1000, System.currentTimeMillis(), null);
+
+        HostSharedIdentityProvider renewer = new HostSharedIdentityProvider(identityProvider, cache);
+        HostSharedIdentityProvider follower = new HostSharedIdentityProvider(identityProvider, cache);
+        assertEquals("token1", renewer.requestToken().getValue());
+        assertTrue(renewer.isRenewer());
+
+        // follower reads the shared token, then waits for a newer one without calling the identity provider
+        assertEquals("token1", follower.requestToken().getValue());
+        assertFalse(follower.isRenewer());
+        assertThrows(IdentityProviderThrottledException.class, follower::requestToken);
+        assertEquals(1, numberOfRequests.get());
+
+        // follower takes over once the renewer is gone
+        renewer.close();
+        assertEquals("token2", follower.requestToken().getValue());
+        assertTrue(follower.isRenewer());
+        follower.close();
+    }
+
+    @Test
+    public void testStopDoesNotCloseSharedIdentityProvider() throws Exception {
+        AtomicInteger numberOfRequests = new AtomicInteger(0);
+        AtomicBoolean closed = new AtomicBoolean(false);
+        IdentityProvider shared = closeableProvider(numberOfRequests, closed);
+        TokenManagerConfig config = new TokenManagerConfig(0.7F, 0, 1000, new TokenManagerConfig.RetryPolicy(1, 50));
+        TokenManager first = new TokenManager(shared, config);
+        TokenManager second = new TokenManager(shared, config);
+        first.start(mock(TokenListener.class), true);
+        second.start(mock(TokenListener.class), true);
+
+        // the other token manager keeps using the provider
+        first.stop();
+        assertFalse(closed.get());
+        String current = second.getCurrentToken().getValue();
+        assertTrue(second.refreshNow());
+        await().atMost(2, TimeUnit.SECONDS).until(() -> !current.equals(second.getCurrentToken().getValue()));
+        second.stop();
+        assertFalse(closed.get());
+
+        // the lock of a host shared provider is released on stop all the same
+        FileTokenCache cache = new FileTokenCache(tempFolder.getRoot().toPath(), "client1|scope1",
+                KeyGenerator.getInstance("AES").generateKey());
+        HostSharedIdentityProvider hostShared = new HostSharedIdentityProvider(shared, cache);
+        TokenManager renewer = new TokenManager(hostShared, config);
+        renewer.start(mock(TokenListener.class), true);
+        assertTrue(hostShared.isRenewer());
+        renewer.stop();
+        assertFalse(hostShared.isRenewer());
+        assertFalse(closed.get());
+        hostShared.close();
+        assertTrue(closed.get());
+    }
+
+    private static IdentityProvider closeableProvider(AtomicInteger numberOfRequests, AtomicBoolean closed) {
+        class CloseableProvider implements IdentityProvider, AutoCloseable {
+            @Override
+            public Token requestToken() {
+                return new SimpleToken("user1", "token" + numberOfRequests.incrementAndGet(),
+                        System.currentTimeMillis() + 60 * 1000, System.currentTimeMillis(), null);
+            }
+
+            @Override
+            public void close() {
+                closed.set(true);
+            }
+        }
+        return new CloseableProvider();
+    }
+
+    @Test
+    public void testHostSharedFollowerForwardsForcedRefresh() throws Exception {
+        FileTokenCache cache = new FileTokenCache(tempFolder.getRoot().toPath(), "client1|scope1",
+                KeyGenerator.getInstance("AES").generateKey());
+        AtomicInteger numberOfRequests = new AtomicInteger(0);
+        AtomicInteger numberOfForcedRequests = new AtomicInteger(0);
+        IdentityProvider identityProvider = new IdentityProvider() {
+            @Override
+            public Token requestToken() {
+                return requestToken(false);
+            }
+
+            @Override
+            public Token requestToken(boolean forceRefresh) {
+                if (forceRefresh) {
+                    numberOfForcedRequests.incrementAndGet();
+                }
+                return new SimpleToken("user1", "token" + numberOfRequests.incrementAndGet(),
+                        System.currentTimeMillis() + 60 * 1000, System.currentTimeMillis(), null);
+            }
+        };
+        TokenManagerConfig config = new TokenManagerConfig(0.7F, 0, 1000, new TokenManagerConfig.RetryPolicy(1, 50));
+
+        TokenManager renewer = new TokenManager(new HostSharedIdentityProvider(identityProvider, cache, 20), config);
+        renewer.start(mock(TokenListener.class), true);
+        TokenManager follower = new TokenManager(new HostSharedIdentityProvider(identityProvider, cache, 20), config);
+        TokenListener listener = mock(TokenListener.class);
+        follower.start(listener, true);
+        assertEquals("token1", follower.getCurrentToken().getValue());
+
+        // the renewer refreshes the token for the follower, which picks it up from the cache
+        assertTrue(follower.refreshNow());
+        await().atMost(2, TimeUnit.SECONDS)
+                .untilAsserted(() -> assertEquals("token2", follower.getCurrentToken().getValue()));
+        assertEquals("token2", renewer.getCurrentToken().getValue());
+        assertEquals(1, numberOfForcedRequests.get());
+        verify(listener, times(2)).onTokenRenewed(any());
+
+        follower.stop();
+        renewer.stop();
+    }
+
+    @Test
+    public void testDuplicateTokenIsNotDeliveredAgain() {
+        long now = System.currentTimeMillis();
+        Token cachedToken = new SimpleToken("user1", "tokenVal1", now + 1000, now, null);
+        AtomicInteger numberOfRequests = new AtomicInteger(0);
+        AtomicBoolean renewed = new AtomicBoolean(false);
+        IdentityProvider identityProvider = () -> {
+            numberOfRequests.incrementAndGet();
+            return renewed.get() ? new SimpleToken("user1", "tokenVal2", System.currentTimeMillis() + 60 * 1000,
+                    System.currentTimeMillis(), null) : cachedToken;
+        };
+
+        TokenManager tokenManager = new TokenManager(identityProvider,
+                new TokenManagerConfig(0.5F, 0, 1000, new TokenManagerConfig.RetryPolicy(1, 50)));
+        TokenListener listener = mock(TokenListener.class);
+        tokenManager.start(listener, true);
+
+        await().atMost(2, TimeUnit.SECONDS).until(() -> numberOfRequests.get() >= 3);
+        verify(listener, times(1)).onTokenRenewed(any());
+
+        renewed.set(true);
+        await().atMost(2, TimeUnit.SECONDS).untilAsserted(() -> verify(listener, times(2)).onTokenRenewed(any()));
+        assertEquals("tokenVal2", tokenManager.getCurrentToken().getValue());
+        tokenManager.stop();
+    }
+
+    @Test
+    public void testWarmUpBeforeScheduledRenewal() {
+        List<String> events = new CopyOnWriteArrayList<>();
+        IdentityProvider identityProvider = new IdentityProvider() {
+            @Override
+            public Token requestToken() {
+                events.add("request");
+                return new SimpleToken("user1", "tokenVal" + events.size(), System.currentTimeMillis() + 1000,
+                        System.currentTimeMillis(), null);
+            }
+
+            @Override
+            public void warmUp() {
+                events.add("warmUp");
+            }
+        };
+
+        TokenManager tokenManager = new TokenManager(identityProvider,
+                new TokenManagerConfig(0.5F, 0, 1000, new RetryPolicy(1, 50), RecoveryPolicy.DISABLED, 0,
+                        RateLimitPolicy.UNLIMITED, ErrorClassifier.DEFAULT, null, 200));
+        tokenManager.start(mock(TokenListener.class), true);
+
+        await().atMost(2, TimeUnit.SECONDS).until(() -> events.size() >= 4);
+        tokenManager.stop();
+        // each scheduled renewal is preceded by a warm up
+        assertEquals(Arrays.asList("request", "warmUp", "request", "warmUp"), events.subList(0, 4));
+    }
+
+    @Test
+    public void testStopEndsRenewalThreadWithPendingWarmUp() {
+        IdentityProvider identityProvider = () -> new SimpleToken("user1", "tokenVal",
+                System.currentTimeMillis() + 60 * 1000, System.currentTimeMillis(), null);
+        // warm up due 25 s after the initial token, before the renewal after 30 s
+        TokenManager tokenManager = new TokenManager(identityProvider,
+                new TokenManagerConfig(0.5F, 0, 1000, new RetryPolicy(1, 50), RecoveryPolicy.DISABLED, 0,
+                        RateLimitPolicy.UNLIMITED, ErrorClassifier.DEFAULT, null, 5000));
+        AtomicReference<Thread> renewalThread = new AtomicReference<>();
+        tokenManager.start(new TokenListener() {
+            @Override
+            public void onTokenRenewed(Token token) {
+                renewalThread.set(Thread.currentThread());
+            }
+
+            @Override
+            public void onError(Exception reason) {
+            }
+        }, true);
+
+        tokenManager.stop();
+        await().atMost(2, TimeUnit.SECONDS).until(() -> !renewalThread.get().isAlive());
+    }
+
+    @Test
+    public void testMultiScopeTokenManagerBatchesRenewals() {
+        List<Long> requestsOfA = new CopyOnWriteArrayList<>();
+        List<Long> requestsOfB = new CopyOnWriteArrayList<>();
+        // renewals due 500 ms and 700 ms after the initial tokens
+        IdentityProvider providerA = () -> {
+            requestsOfA.add(System.currentTimeMillis());
+            return new SimpleToken("user1", "tokenA" + requestsOfA.size(), System.currentTimeMillis() + 1000,
+                    System.currentTimeMillis(), null);
+        };
+        IdentityProvider providerB = () -> {
+            requestsOfB.add(System.currentTimeMillis());
+            return new SimpleToken("user1", "tokenB" + requestsOfB.size(), System.currentTimeMillis() + 1400,
+                    System.currentTimeMillis(), null);
+        };
+        TokenManagerConfig config = new TokenManagerConfig(0.5F, 0, 1000, new RetryPolicy(1, 50));
+        MultiScopeTokenManager tokenManager = new MultiScopeTokenManager(1000);
+        tokenManager.addScope("scopeA", providerA, config);
+        tokenManager.addScope("scopeB", providerB, config);
+        assertThrows(AuthXException.class, () -> tokenManager.addScope("scopeA", providerA, config));
+
+        TokenListener listenerA = mock(TokenListener.class);
+        TokenListener listenerB = mock(TokenListener.class);
+        tokenManager.subscribe("scopeA", listenerA, true);
+        tokenManager.subscribe("scopeB", listenerB, true);
+        verify(listenerA).onTokenRenewed(argThat(token -> token.getValue().equals("tokenA1")));
+        verify(listenerB).onTokenRenewed(argThat(token -> token.getValue().equals("tokenB1")));
+
+        await().atMost(2, TimeUnit.SECONDS).until(() -> requestsOfA.size() >= 2 && requestsOfB.size() >= 2);
+        // the renewal of B is moved earlier to run along with the one of A
+        assertThat(Math.abs(requestsOfB.get(1) - requestsOfA.get(1)), Matchers.lessThan(100L));
+        assertThat(requestsOfB.get(1) - requestsOfB.get(0), Matchers.lessThan(650L));
+
+        // a later subscriber gets the current token right away
+        TokenListener lateListener = mock(TokenListener.class);
+        tokenManager.subscribe("scopeB", lateListener);
+        verify(lateListener).onTokenRenewed(argThat(token -> token.getValue().startsWith("tokenB")));
+        verify(listenerA, never()).onTokenRenewed(argThat(token -> token.getValue().startsWith("tokenB")));
+        tokenManager.stop();
+    }
+
+    @Test
+    public void testMultiScopeTokenManagerRenewsInParallel() {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        TokenManagerConfig config = new TokenManagerConfig(0.5F, 0, 1000, new RetryPolicy(1, 50));
+        MultiScopeTokenManager tokenManager = new MultiScopeTokenManager(1000);
+        tokenManager.addScope("scopeA", slowRenewalProvider(running, maxRunning), config);
+        tokenManager.addScope("scopeB", slowRenewalProvider(running, maxRunning), config);
+        tokenManager.subscribe("scopeA", mock(TokenListener.class), true);
+        tokenManager.subscribe("scopeB", mock(TokenListener.class), true);
+
+        // the batched renewals wait for the identity provider at the same time
+        await().atMost(2, TimeUnit.SECONDS).until(() -> maxRunning.get() >= 2);
+        tokenManager.stop();
+    }
+
+    @Test
+    public void testCompositeIdentityProviderFailsOver() {
+        AtomicBoolean primaryDown = new AtomicBoolean(true);
+        AtomicInteger primaryRequests = new AtomicInteger();
+        AtomicInteger secondaryRequests = new AtomicInteger();
+        IdentityProvider primary = () -> {
+            primaryRequests.incrementAndGet();
+            if (primaryDown.get()) {
+                throw new AuthXException("IMDS unavailable");
+            }
+            return new SimpleToken("user1", "primary", System.currentTimeMillis() + 1000, System.currentTimeMillis(),
+                    null);
+        };
+        IdentityProvider secondary = () -> {
+            secondaryRequests.incrementAndGet();
+            return new SimpleToken("user1", "secondary", System.currentTimeMillis() + 1000, System.currentTimeMillis(),
+                    null);
+        };
+        CompositeIdentityProvider provider = new CompositeIdentityProvider(Arrays.asList(primary, secondary), null, 0,
+                60000);
+        assertEquals(-1, provider.getPreferredIndex());
+        assertEquals("secondary", provider.requestToken().getValue());
+        assertEquals(1, provider.getPreferredIndex());
+
+        // the healthy provider is tried first while the failed one cools down
+        primaryDown.set(false);
+        assertEquals("secondary", provider.requestToken().getValue());
+        assertEquals(1, primaryRequests.get());
+        assertEquals(2, secondaryRequests.get());
+
+        // all providers failing surface the error of the first one tried
+        CompositeIdentityProvider failing = new CompositeIdentityProvider(Arrays.asList(() -> {
+            throw new AuthXException("first");
+        }, () -> {
+            throw new AuthXException("second");
+        }), null, 0, 60000);
+        AuthXException error = assertThrows(AuthXException.class, failing::requestToken);
+        assertEquals("first", error.getMessage());
+        assertEquals("second", error.getSuppressed()[0].getMessage());
+    }
+
+    @Test
+    public void testCompositeIdentityProviderMixedFailuresAreRetried() {
+        AtomicInteger requests = new AtomicInteger();
+        IdentityProvider misconfigured = () -> {
+            throw new IllegalStateException("Invalid client secret!");
+        };
+        IdentityProvider unavailable = () -> {
+            if (requests.incrementAndGet() < 3) {
+                throw new AuthXException("IMDS unavailable");
+            }
+            return new SimpleToken("user1", "token", System.currentTimeMillis() + 60000, System.currentTimeMillis(),
+                    null);
+        };
+        ErrorClassifier classifier = error -> error instanceof IllegalStateException ? ErrorClass.PERMANENT
+                : ErrorClass.RETRYABLE;
+        CompositeIdentityProvider provider = new CompositeIdentityProvider(Arrays.asList(misconfigured, unavailable),
+                null, 0, 60000);
+
+        // the permanent error of one provider does not decide for the whole request
+        AuthXException error = assertThrows(AuthXException.class, provider::requestToken);
+        assertEquals(null, error.getCause());
+        assertEquals(2, error.getSuppressed().length);
+        assertEquals(ErrorClass.RETRYABLE, classifier.classify(error));
+
+        TokenManager tokenManager = new TokenManager(provider, new TokenManagerConfig(0.7F, 200, 2000,
+                new RetryPolicy(5, 50), RecoveryPolicy.DISABLED, 0, RateLimitPolicy.UNLIMITED, classifier, null, 0));
+        TokenListener listener = mock(TokenListener.class);
+        tokenManager.start(listener, true);
+        assertEquals("token", tokenManager.getCurrentToken().getValue());
+        verify(listener, never()).onError(any());
+        tokenManager.stop();
+    }
+
+    @Test
+    public void testCompositeIdentityProviderHedgesSlowProvider() {
+        CountDownLatch release = new CountDownLatch(1);
+        IdentityProvider slow = () -> {
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return new SimpleToken("user1", "slow", System.currentTimeMillis() + 1000, System.currentTimeMillis(),
+                    null);
+        };
+        IdentityProvider fast = () -> new SimpleToken("user1", "fast", System.currentTimeMillis() + 1000,
+                System.currentTimeMillis(), null);
+        CompositeIdentityProvider provider = new CompositeIdentityProvider(Arrays.asList(slow, fast), null, 100, 60000);
+        long start = System.currentTimeMillis();
+        assertEquals("fast", provider.requestToken().getValue());
+        assertThat(System.currentTimeMillis() - start, Matchers.lessThan(2000L));
+        // the next renewal starts with the provider which answered
+        assertEquals(1, provider.getPreferredIndex());
+        release.countDown();
+        provider.close();
+    }
+
+    @Test
+    public void testCompositeIdentityProviderFailsOverFromHangingProvider() {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicBoolean interrupted = new AtomicBoolean(false);
+        IdentityProvider hanging = () -> {
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                interrupted.set(true);
+                Thread.currentThread().interrupt();
+            }
+            throw new AuthXException("No response");
+        };
+        IdentityProvider secondary = () -> new SimpleToken("user1", "secondary", System.currentTimeMillis() + 60 * 1000,
+                System.currentTimeMillis(), null);
+        // the token request timeout of 1000 ms is split between the two providers
+        CompositeIdentityProvider provider = new CompositeIdentityProvider(Arrays.asList(hanging, secondary), null, 0,
+                60000, 500);
+        TokenManager tokenManager = new TokenManager(provider,
+                new TokenManagerConfig(0.7F, 0, 1000, new RetryPolicy(1, 50)));
+
+        TokenListener listener = mock(TokenListener.class);
+        long start = System.currentTimeMillis();
+        tokenManager.start(listener, true);
+        assertThat(System.currentTimeMillis() - start, Matchers.lessThan(1000L));
+        assertEquals("secondary", tokenManager.getCurrentToken().getValue());
+        assertEquals(1, provider.getPreferredIndex());
+        // the hanging request is given up
+        await().atMost(1, TimeUnit.SECONDS).untilTrue(interrupted);
+        tokenManager.stop();
+    }
+
+    @Test
+    public void testTokenManagerPoolEvictsLeastRecentlyUsed() {
+        Map<String, AtomicInteger> requests = new ConcurrentHashMap<>();
+        List<String> closed = new CopyOnWriteArrayList<>();
+        TokenManagerConfig config = new TokenManagerConfig(0.7F, 0, 1000, new RetryPolicy(1, 50));
+        TokenManagerPool pool = new TokenManagerPool(
+                tenant -> new TokenAuthConfig(config, () -> tenantProvider(tenant, requests, closed)), 2, 1000);
+
+        assertEquals("tenantA1", pool.getToken("tenantA").getValue());
+        assertEquals("tenantA1", pool.getToken("tenantA").getValue());
+        assertEquals("tenantB1", pool.getToken("tenantB").getValue());
+        assertEquals(2, pool.getMissCount());
+        assertEquals(1, pool.getHitCount());
+        // hot tokens are served without requests to the identity provider
+        assertEquals(1, requests.get("tenantA").get());
+
+        // the least recently used tenant goes when the cap is reached
+        pool.getToken("tenantA");
+        pool.getToken("tenantC");
+        assertEquals(2, pool.size());
+        assertEquals(Arrays.asList("tenantB"), closed);
+        assertEquals("tenantB2", pool.getToken("tenantB").getValue());
+        assertEquals(Arrays.asList("tenantB", "tenantA"), closed);
+
+        // idle tenants are evicted after the timeout
+        await().atMost(3, TimeUnit.SECONDS).until(() -> pool.size() == 0);
+        assertEquals(4, pool.getEvictionCount());
+        pool.stop();
+        assertThrows(AuthXException.class, () -> pool.getToken("tenantA"));
+    }
+
+    @Test
+    public void testTokenManagerPoolReplacesFailedTokenManager() {
+        AtomicInteger requests = new AtomicInteger();
+        AtomicBoolean failing = new AtomicBoolean();
+        List<String> closed = new CopyOnWriteArrayList<>();
+        TokenManagerConfig config = new TokenManagerConfig(0.5F, 0, 1000, new RetryPolicy(2, 50));
+        TokenManagerPool pool = new TokenManagerPool(
+                tenant -> new TokenAuthConfig(config, () -> failingTenantProvider(tenant, requests, failing, closed)),
+                10, 0);
+        assertEquals("token1", pool.getToken("tenantA").getValue());
+
+        // renewals fail past the retry policy, the token manager is evicted instead of failing for good
+        failing.set(true);
+        await().atMost(3, TimeUnit.SECONDS).until(() -> pool.size() == 0);
+        assertEquals(Arrays.asList("tenantA"), closed);
+        assertEquals(1, pool.getEvictionCount());
+
+        // once the identity provider recovers, the next use starts a new token manager
+        failing.set(false);
+        Token token = pool.getToken("tenantA");
+        assertEquals("token" + requests.get(), token.getValue());
+        assertFalse(token.isExpired());
+        pool.stop();
+    }
+
+    /**
+     * Returns a provider answering the initial request right away and the renewals after 300 ms, counting the
+     * renewals waiting for it at the same time.
+     */
+    private static IdentityProvider slowRenewalProvider(AtomicInteger running, AtomicInteger maxRunning) {
+        AtomicInteger requests = new AtomicInteger();
+        return () -> {
+            if (requests.incrementAndGet() > 1) {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                try {
+                    Thread.sleep(300);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    running.decrementAndGet();
+                }
+            }
+            return new SimpleToken("user1", "token" + requests.get(), System.currentTimeMillis() + 1000,
+                    System.currentTimeMillis(), null);
+        };
+    }
+
+    private static IdentityProvider tenantProvider(String tenant, Map<String, AtomicInteger> requests,
+            List<String> closed) {
+        class TenantProvider implements IdentityProvider, AutoCloseable {
+            @Override
+            public Token requestToken() {
+                int count = requests.computeIfAbsent(tenant, key -> new AtomicInteger()).incrementAndGet();
+                return new SimpleToken(tenant, tenant + count, System.currentTimeMillis() + 60000,
+                        System.currentTimeMillis(), null);
+            }
+
+            @Override
+            public void close() {
+                closed.add(tenant);
+            }
+        }
+        return new TenantProvider();
+    }
+
+    /**
+     * Returns a provider of short-lived tokens failing while the given flag is set.
+     */
+    private static IdentityProvider failingTenantProvider(String tenant, AtomicInteger requests, AtomicBoolean failing,
+            List<String> closed) {
+        class FailingTenantProvider implements IdentityProvider, AutoCloseable {
+            @Override
+            public Token requestToken() {
+                int count = requests.incrementAndGet();
+                if (failing.get()) {
+                    throw new AuthXException("identity provider is down");
+                }
+                return new SimpleToken(tenant, "token" + count, System.currentTimeMillis() + 400,
+                        System.currentTimeMillis(), null);
+            }
+
+            @Override
+            public void close() {
+                closed.add(tenant);
+            }
+        }
+        return new FailingTenantProvider();
+    }
+
+    @Test
+    public void testTokenManagerPoolRenewsInParallel() {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        TokenManagerConfig config = new TokenManagerConfig(0.5F, 0, 1000, new RetryPolicy(1, 50));
+        TokenManagerPool pool = new TokenManagerPool(
+                tenant -> new TokenAuthConfig(config, () -> slowRenewalProvider(running, maxRunning)));
+        pool.getToken("tenantA");
+        pool.getToken("tenantB");
+
+        // renewals of different keys do not wait for each other
+        await().atMost(2, TimeUnit.SECONDS).until(() -> maxRunning.get() >= 2);
+        pool.stop();
+    }
+
+    @Test
+    public void testFileIdentityProviderPushesChanges() throws Exception {
+        Path file = tempFolder.newFile("redis-token").toPath();
+        long exp = System.currentTimeMillis() / 1000 + 3600;
+        Files.write(file, jwt("{\"sub\":\"user1\",\"exp\":" + exp + "}").getBytes(StandardCharsets.UTF_8));
+
+        TokenAuthConfig config = FileTokenAuthConfigBuilder.builder().file(file).pollIntervalInMs(200).build();
+        TokenManager tokenManager = new TokenManager(config.getIdentityProviderConfig().getProvider(),
+                config.getTokenManagerConfig());
+        List<Token> tokens = new CopyOnWriteArrayList<>();
+        TokenListener listener = mock(TokenListener.class);
+        doAnswer(invocation -> tokens.add(invocation.getArgument(0))).when(listener).onTokenRenewed(any());
+        tokenManager.start(listener, true);
+        assertEquals("user1", tokens.get(0).getUser());
+        assertEquals(exp * 1000, tokens.get(0).getExpiresAt());
+
+        // rotated by replacing the file, as the sidecars do
+        String rotated = jwt("{\"sub\":\"user2\",\"exp\":" + (exp + 60) + "}");
+        Path temp = tempFolder.newFile("redis-token.tmp").toPath();
+        Files.write(temp, rotated.getBytes(StandardCharsets.UTF_8));
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        await().atMost(2, TimeUnit.SECONDS).until(() -> tokens.size() == 2);
+        assertEquals("user2", tokens.get(1).getUser());
+        assertEquals(rotated, tokenManager.getCurrentToken().getValue());
+        tokenManager.stop();
+    }
+
+    @Test
+    public void testFileIdentityProviderOpaqueToken() throws Exception {
+        Path file = tempFolder.newFile("redis-password").toPath();
+        Files.write(file, "s3cret\n2030-01-01T00:00:00Z\n".getBytes(StandardCharsets.UTF_8));
+        FileIdentityProvider provider = new FileIdentityProvider(file, Format.OPAQUE_WITH_EXPIRY, "app", null, 1000);
+
+        Token token = provider.requestToken();
+        assertEquals("app", token.getUser());
+        assertEquals("s3cret", token.getValue());
+        assertEquals(Instant.parse("2030-01-01T00:00:00Z").toEpochMilli(), token.getExpiresAt());
+
+        Files.write(file, "s3cret\n".getBytes(StandardCharsets.UTF_8));
+        assertThrows(AuthXException.class, provider::requestToken);
+        assertThrows(AuthXException.class, () -> new FileIdentityProvider(file, Format.JWT).requestToken());
+    }
+
+    private static String jwt(String payload) {
+        return "e30." + Base64.getUrlEncoder().withoutPadding().encodeToString(payload.getBytes(StandardCharsets.UTF_8))
+                + ".signature";
+    }
+
     private void delay(long durationInMs) {
         try {
             Thread.sleep(durationInMs);
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2024, Redis Ltd. and Contributors
+ * All rights reserved.
+ *
+ * Licensed under the MIT License.
+ */
+package redis.clients.authentication.core;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import org.junit.Test;
+import org.slf4j.Logger;
+
+public class FailureLogUnitTests {
+
+    private static final String FAILED = "Request to identity provider '{}' failed: {}";
+    private static final String SUMMARY = "{} more requests to identity provider '{}' failed within {} s of the first one, last cause: {}";
+
+    @Test
+    public void testFailuresWithinWindowAreSuppressed() {
+        Logger logger = mock(Logger.class);
+        FailureLog failureLog = new FailureLog(logger, 30000, "identityA");
+
+        failureLog.record(new AuthXException("first"), 1000);
+        failureLog.record(new AuthXException("second"), 5000);
+        failureLog.record(new AuthXException("third"), 13000);
+        verify(logger).warn(FAILED, "identityA", new AuthXException("first").toString());
+        verify(logger, never()).warn(eq(SUMMARY), any(Object[].class));
+
+        // the next failure after the window is logged along with the summary of the suppressed ones
+        failureLog.record(new AuthXException("fourth"), 31000);
+        verify(logger).warn(SUMMARY, 2, "identityA", 12L, new AuthXException("third").toString());
+        verify(logger).warn(FAILED, "identityA", new AuthXException("fourth").toString());
+    }
+
+    @Test
+    public void testSummaryIsLoggedOnSuccessAfterWindow() {
+        Logger logger = mock(Logger.class);
+        FailureLog failureLog = new FailureLog(logger, 30000, "identityA");
+        failureLog.record(new AuthXException("first"), 1000);
+        failureLog.record(new AuthXException("second"), 2000);
+
+        // a success within the window does not end the aggregation of a flapping identity provider
+        failureLog.recordSuccess(10000);
+        verify(logger, never()).warn(eq(SUMMARY), any(Object[].class));
+
+        failureLog.recordSuccess(31000);
+        verify(logger).warn(SUMMARY, 1, "identityA", 1L, new AuthXException("second").toString());
+        failureLog.recordSuccess(62000);
+        verify(logger, times(1)).warn(eq(SUMMARY), any(Object[].class));
+    }
+
+    @Test
+    public void testSummaryIsLoggedOnFlush() {
+        Logger logger = mock(Logger.class);
+        FailureLog failureLog = new FailureLog(logger, 30000, "identityA");
+        failureLog.flush();
+        failureLog.record(new AuthXException("first"), 1000);
+        failureLog.flush();
+        verify(logger, never()).warn(eq(SUMMARY), any(Object[].class));
+
+        failureLog.record(new AuthXException("second"), 4000);
+        failureLog.flush();
+        verify(logger).warn(SUMMARY, 1, "identityA", 3L, new AuthXException("second").toString());
+        failureLog.flush();
+        verify(logger, times(1)).warn(eq(SUMMARY), any(Object[].class));
+    }
+}
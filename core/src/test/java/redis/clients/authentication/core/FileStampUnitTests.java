@@ -0,0 +1,40 @@
+/*
+ * Copyright 2024, Redis Ltd. and Contributors
+ * All rights reserved.
+ *
+ * Licensed under the MIT License.
+ */
+package redis.clients.authentication.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import org.junit.Test;
+
+public class FileStampUnitTests {
+
+    @Test
+    public void testChangeOfTimeAndSizeIsDetected() throws IOException {
+        Path file = Files.createTempFile("stamp", ".txt");
+        try {
+            long time = 1600000000000L;
+            Files.write(file, new byte[] { 1 });
+            Files.setLastModifiedTime(file, FileTime.fromMillis(time));
+            FileStamp first = FileStamp.of(file);
+            assertEquals(first, FileStamp.of(file));
+
+            // (time ^ 1) == ((time + 1) ^ 0), the changes of time and size must not cancel out
+            Files.write(file, new byte[0]);
+            Files.setLastModifiedTime(file, FileTime.fromMillis(time + 1));
+            assertNotEquals(first, FileStamp.of(file));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+        assertEquals(FileStamp.MISSING, FileStamp.of(file));
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright 2024, Redis Ltd. and Contributors
+ * All rights reserved.
+ *
+ * Licensed under the MIT License.
+ */
+package redis.clients.authentication.entraid;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.KeyStore;
+import java.security.PrivateKey;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509Certificate;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import redis.clients.authentication.core.FileStamp;
+
+/**
+ * Reads the private key and certificate of a service principal from a file renewed in place, e.g. by a cert
+ * manager or a CSI secret store driver, either a PEM file with an unencrypted PKCS#8 private key followed by the
+ * certificate chain, or a PKCS#12 file.
+ *
+ * <p>The file is read again when its modification time or size has changed. After a renewal, the previous
+ * certificate is kept as the secondary credential until it expires, for the time the new one takes to be
+ * registered with the application. A file which cannot be read, e.g. while it is being written, leaves the
+ * credentials unchanged.
+ */
+public class CertificateFileCredentialSource implements ServicePrincipalCredentialSource {
+
+    private static final Pattern PEM_BLOCK = Pattern
+            .compile("-----BEGIN ([A-Z ]+)-----([A-Za-z0-9+/=\\s]+)-----END \\1-----");
+
+    private final String clientId;
+    private final Path file;
+    private final char[] password;
+    private final String authority;
+    private ServicePrincipalInfo primary;
+    private ServicePrincipalInfo secondary;
+    private FileStamp stamp;
+    private Logger logger = LoggerFactory.getLogger(getClass());
+
+    /**
+     * @param clientId
+     * @param file PEM or PKCS#12 file
+     * @param password password of a PKCS#12 file, null for a PEM file
+     * @param authority
+     */
+    public CertificateFileCredentialSource(String clientId, Path file, char[] password, String authority) {
+        this.clientId = clientId;
+        this.file = file;
+        this.password = password;
+        this.authority = authority;
+    }
+
+    @Override
+    public synchronized List<ServicePrincipalInfo> getCredentials() {
+        FileStamp current = FileStamp.of(file);
+        if (primary == null || !current.equals(stamp)) {
+            reload(current);
+        }
+        if (secondary != null && secondary.getCert().getNotAfter().getTime() <= System.currentTimeMillis()) {
+            secondary = null;
+        }
+        if (secondary == null) {
+            return Collections.singletonList(primary);
+        }
+        List<ServicePrincipalInfo> credentials = new ArrayList<>(2);
+        credentials.add(primary);
+        credentials.add(secondary);
+        return Collections.unmodifiableList(credentials);
+    }
+
+    private void reload(FileStamp current) {
+        ServicePrincipalInfo loaded;
+        try {
+            loaded = load();
+        } catch (RedisEntraIDException e) {
+            if (primary == null) {
+                throw e;
+            }
+            logger.debug("Keeping the current certificate, failed to read {}: {}", file, e.toString());
+            return;
+        }
+        stamp = current;
+        if (primary != null && !primary.getCert().equals(loaded.getCert())) {
+            logger.info("Certificate in {} renewed, keeping the previous one as secondary until it expires", file);
+            secondary = primary;
+        }
+        primary = loaded;
+    }
+
+    private ServicePrincipalInfo load() {
+        byte[] content;
+        try {
+            content = Files.readAllBytes(file);
+        } catch (IOException e) {
+            throw new RedisEntraIDException("Failed to read certificate file " + file, e);
+        }
+        try {
+            String text = new String(content, StandardCharsets.US_ASCII);
+            return text.contains("-----BEGIN ") ? loadPem(text) : loadPkcs12(content);
+        } catch (GeneralSecurityException | IOException | IllegalArgumentException e) {
+            throw new RedisEntraIDException("Failed to load certificate file " + file, e);
+        }
+    }
+
+    private ServicePrincipalInfo loadPem(String text) throws GeneralSecurityException {
+        PrivateKey key = null;
+        X509Certificate cert = null;
+        Matcher block = PEM_BLOCK.matcher(text);
+        while (block.find()) {
+            String type = block.group(1);
+            byte[] der = Base64.getMimeDecoder().decode(block.group(2));
+            if (type.equals("PRIVATE KEY")) {
+                key = KeyFactory.getInstance("RSA").generatePrivate(new PKCS8EncodedKeySpec(der));
+            } else if (type.equals("CERTIFICATE") && cert == null) {
+                // the first certificate of a chain is the one of the key
+                cert = (X509Certificate) CertificateFactory.getInstance("X.509")
+                        .generateCertificate(new ByteArrayInputStream(der));
+            } else if (type.endsWith("PRIVATE KEY")) {
+                throw new RedisEntraIDException(
+                        "Unsupported private key in " + file + ": " + type + ", expected an unencrypted PKCS#8 key!");
+            }
+        }
+        if (key == null || cert == null) {
+            throw new RedisEntraIDException("Certificate file " + file + " must hold a private key and a certificate!");
+        }
+        return new ServicePrincipalInfo(clientId, key, cert, authority);
+    }
+
+    private ServicePrincipalInfo loadPkcs12(byte[] content) throws GeneralSecurityException, IOException {
+        KeyStore keyStore = KeyStore.getInstance("PKCS12");
+        keyStore.load(new ByteArrayInputStream(content), password);
+        for (Enumeration<String> aliases = keyStore.aliases(); aliases.hasMoreElements();) {
+            String alias = aliases.nextElement();
+            if (keyStore.isKeyEntry(alias)) {
+                return new ServicePrincipalInfo(clientId, (PrivateKey) keyStore.getKey(alias, password),
+                        (X509Certificate) keyStore.getCertificate(alias), authority);
+            }
+        }
+        throw new RedisEntraIDException("Certificate file " + file + " has no private key!");
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright 2024, Redis Ltd. and Contributors
+ * All rights reserved.
+ *
+ * Licensed under the MIT License.
+ */
+package redis.clients.authentication.entraid;
+
+import com.microsoft.aad.msal4j.IHttpClient;
+
+/**
+ * Options for the MSAL client application of an {@link EntraIDIdentityProvider}.
+ * Providers with the same identity share the client application only if their options are the same too,
+ * see {@link ClientAppRegistry}.
+ */
+public final class ClientAppOptions {
+
+    public static final ClientAppOptions DEFAULT = builder().build();
+
+    private final MsalTokenCacheOptions tokenCacheOptions;
+    private final IHttpClient httpClient;
+    private final String azureRegion;
+    private final boolean autoDetectRegion;
+    private final boolean instanceDiscovery;
+    private final String instanceDiscoveryMetadata;
+    private final boolean cachedClientAssertion;
+
+    private ClientAppOptions(Builder builder) {
+        this.tokenCacheOptions = builder.tokenCacheOptions;
+        this.httpClient = builder.httpClient;
+        this.azureRegion = builder.azureRegion;
+        this.autoDetectRegion = builder.autoDetectRegion;
+        this.instanceDiscovery = builder.instanceDiscovery;
+        this.instanceDiscoveryMetadata = builder.instanceDiscoveryMetadata;
+        this.cachedClientAssertion = builder.cachedClientAssertion;
+    }
+
+    public MsalTokenCacheOptions getTokenCacheOptions() {
+        return tokenCacheOptions;
+    }
+
+    /**
+     * Returns the http client used by MSAL, null for the default http client of MSAL.
+     */
+    public IHttpClient getHttpClient() {
+        return httpClient;
+    }
+
+    /**
+     * Returns the Azure region of the regional token service to request the tokens from, null if not set.
+     */
+    public String getAzureRegion() {
+        return azureRegion;
+    }
+
+    /**
+     * Returns true if MSAL detects the region to request the tokens from, used only if no region is set.
+     */
+    public boolean isAutoDetectRegion() {
+        return autoDetectRegion;
+    }
+
+    /**
+     * Returns true if the tokens are requested from a regional token service instead of the global one.
+     */
+    public boolean isRegional() {
+        return azureRegion != null || autoDetectRegion;
+    }
+
+    /**
+     * Returns false if MSAL trusts the authority as given, without looking up its metadata with an instance
+     * discovery request.
+     */
+    public boolean isInstanceDiscovery() {
+        return instanceDiscovery;
+    }
+
+    /**
+     * Returns the instance discovery response of the authority, given to MSAL instead of requesting it,
+     * null if not set.
+     */
+    public String getInstanceDiscoveryMetadata() {
+        return instanceDiscoveryMetadata;
+    }
+
+    /**
+     * Returns true if a service principal with a certificate authenticates with a signed client assertion kept
+     * until near its expiry, instead of one signed by MSAL for each token request, see {@link ClientAssertionCache}.
+     */
+    public boolean isCachedClientAssertion() {
+        return cachedClientAssertion;
+    }
+
+    /**
+     * Returns the same options for the global token service, which regional requests fall back to.
+     * @return
+     */
+    public ClientAppOptions toGlobal() {
+        return builder().tokenCacheOptions(tokenCacheOptions).httpClient(httpClient)
+                .instanceDiscovery(instanceDiscovery).instanceDiscoveryMetadata(instanceDiscoveryMetadata)
+                .cachedClientAssertion(cachedClientAssertion).build();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+        private MsalTokenCacheOptions tokenCacheOptions = MsalTokenCacheOptions.DISABLED;
+        private IHttpClient httpClient;
+        private String azureRegion;
+        private boolean autoDetectRegion;
+        private boolean instanceDiscovery = true;
+        private String instanceDiscoveryMetadata;
+        private boolean cachedClientAssertion;
+
+        public Builder tokenCacheOptions(MsalTokenCacheOptions tokenCacheOptions) {
+            this.tokenCacheOptions = tokenCacheOptions == null ? MsalTokenCacheOptions.DISABLED : tokenCacheOptions;
+            return this;
+        }
+
+        public Builder httpClient(IHttpClient httpClient) {
+            this.httpClient = httpClient;
+            return this;
+        }
+
+        public Builder azureRegion(String azureRegion) {
+            this.azureRegion = azureRegion;
+            return this;
+        }
+
+        public Builder autoDetectRegion(boolean autoDetectRegion) {
+            this.autoDetectRegion = autoDetectRegion;
+            return this;
+        }
+
+        public Builder instanceDiscovery(boolean instanceDiscovery) {
+            this.instanceDiscovery = instanceDiscovery;
+            return this;
+        }
+
+        public Builder instanceDiscoveryMetadata(String instanceDiscoveryMetadata) {
+            this.instanceDiscoveryMetadata = instanceDiscoveryMetadata;
+            return this;
+        }
+
+        public Builder cachedClientAssertion(boolean cachedClientAssertion) {
+            this.cachedClientAssertion = cachedClientAssertion;
+            return this;
+        }
+
+        public ClientAppOptions build() {
+            return new ClientAppOptions(this);
+        }
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2024, Redis Ltd. and Contributors
+ * All rights reserved.
+ *
+ * Licensed under the MIT License.
+ */
+package redis.clients.authentication.entraid;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.cert.CertificateEncodingException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Keeps the MSAL client applications of the process, so that the identity providers with the same client id,
+ * authority and credential, or the same managed identity, share one application along with its http client,
+ * authority metadata and token cache.
+ * Applications are reference counted and dropped when the last provider using them is closed. All of them run
+ * on a shared executor, which is shut down when no application is left.
+ */
+final class ClientAppRegistry {
+
+    private static final Map<String, Entry> apps = new HashMap<>();
+    private static final AtomicInteger threadCounter = new AtomicInteger();
+    private static ExecutorService executor;
+
+    private static final class Entry {
+        private final Object app;
+        private int references;
+
+        private Entry(Object app) {
+            this.app = app;
+        }
+    }
+
+    private ClientAppRegistry() {
+    }
+
+    /**
+     * Returns the application registered with the given key, creating it with the given factory if missing,
+     * and increments its reference count.
+     * @param key
+     * @param factory creates the application to run on the given executor
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    static synchronized <T> T acquire(String key, Function<ExecutorService, T> factory) {
+        Entry entry = apps.get(key);
+        if (entry == null) {
+            if (executor == null) {
+                executor = Executors.newCachedThreadPool(runnable -> {
+                    Thread thread = new Thread(runnable, "entraid-msal-" + threadCounter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            }
+            try {
+                entry = new Entry(factory.apply(executor));
+            } catch (RuntimeException e) {
+                shutdownIfUnused();
+                throw e;
+            }
+            apps.put(key, entry);
+        }
+        entry.references++;
+        return (T) entry.app;
+    }
+
+    /**
+     * Decrements the reference count of the application with the given key, and drops it if no longer used.
+     * @param key
+     */
+    static synchronized void release(String key) {
+        Entry entry = apps.get(key);
+        if (entry != null && --entry.references <= 0) {
+            apps.remove(key);
+            shutdownIfUnused();
+        }
+    }
+
+    static synchronized int size() {
+        return apps.size();
+    }
+
+    private static void shutdownIfUnused() {
+        if (apps.isEmpty() && executor != null) {
+            executor.shutdown();
+            executor = null;
+        }
+    }
+
+    static String confidentialClientKey(ServicePrincipalInfo info, String authority, int timeout,
+            ClientAppOptions options) {
+        StringBuilder key = new StringBuilder("confidential|").append(info.getClientId()).append('|').append(authority)
+                .append('|').append(timeout).append('|').append(optionsKey(options)).append('|');
+        switch (info.getAccessWith()) {
+        case WithSecret:
+            key.append("secret:").append(hash(info.getSecret().getBytes(StandardCharsets.UTF_8)));
+            break;
+        case WithCert:
+            try {
+                key.append("cert:").append(hash(info.getCert().getEncoded())).append(':')
+                        .append(hash(info.getKey().getEncoded()));
+            } catch (CertificateEncodingException e) {
+                throw new RedisEntraIDException("Failed to read client certificate!", e);
+            }
+            break;
+        case WithFederatedToken:
+            key.append("federated:").append(info.getFederatedTokenFile().toAbsolutePath());
+            break;
+        }
+        return key.toString();
+    }
+
+    static String managedIdentityKey(ManagedIdentityInfo info, int timeout, ClientAppOptions options) {
+        return "managed-identity|" + info.getId().getIdType() + "|" + info.getId().getUserAssignedId() + "|" + timeout
+                + "|" + optionsKey(options);
+    }
+
+    private static String optionsKey(ClientAppOptions options) {
+        MsalTokenCacheOptions cacheOptions = options.getTokenCacheOptions();
+        String cacheKey = cacheOptions.getCacheAccessAspect() == null ? "in-memory"
+                : "aspect@" + System.identityHashCode(cacheOptions.getCacheAccessAspect());
+        String httpClientKey = options.getHttpClient() == null ? "default-http"
+                : "http@" + System.identityHashCode(options.getHttpClient());
+        String regionKey = options.getAzureRegion() != null ? "region:" + options.getAzureRegion()
+                : options.isAutoDetectRegion() ? "region:auto" : "global";
+        String discoveryKey = !options.isInstanceDiscovery() ? "discovery:off"
+                : options.getInstanceDiscoveryMetadata() != null
+                        ? "discovery:" + hash(options.getInstanceDiscoveryMetadata().getBytes(StandardCharsets.UTF_8))
+                        : "discovery:on";
+        return cacheKey + "|" + httpClientKey + "|" + regionKey + "|" + discoveryKey;
+    }
+
+    private static String hash(byte[] value) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(value);
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new RedisEntraIDException("SHA-256 is not available!", e);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2024, Redis Ltd. and Contributors
+ * All rights reserved.
+ *
+ * Licensed under the MIT License.
+ */
+package redis.clients.authentication.entraid;
+
+import java.security.GeneralSecurityException;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import redis.clients.authentication.core.JwtSigner;
+
+/**
+ * Keeps the signed client assertions of certificate based service principals, so that the assertion is signed
+ * once per lifetime instead of once per token request as MSAL does with a certificate credential.
+ * Assertions are shared by all providers with the same client id, certificate and audience, and signed again
+ * when less than {@link #RENEW_BEFORE_IN_SECONDS} of their lifetime is left.
+ */
+final class ClientAssertionCache {
+
+    static final long LIFETIME_IN_SECONDS = 10 * 60;
+    static final long RENEW_BEFORE_IN_SECONDS = 2 * 60;
+
+    private static final String TOKEN_PATH = "oauth2/v2.0/token";
+    private static final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    private static final class Entry {
+        private String assertion;
+        private long expiresAt;
+    }
+
+    private ClientAssertionCache() {
+    }
+
+    /**
+     * Returns an assertion of the given service principal for the token endpoint of the authority, valid for at
+     * least {@link #RENEW_BEFORE_IN_SECONDS}.
+     * @param info service principal with a certificate
+     * @param authority
+     * @return the signed assertion
+     */
+    static String get(ServicePrincipalInfo info, String authority) {
+        String audience = audience(authority);
+        String thumbprint;
+        try {
+            thumbprint = JwtSigner.thumbprint("SHA-1", info.getCert().getEncoded());
+        } catch (GeneralSecurityException e) {
+            throw new RedisEntraIDException("Failed to read client certificate!", e);
+        }
+        // the certificate stands for its key pair
+        String key = info.getClientId() + "|" + audience + "|" + thumbprint;
+        Entry entry = entries.computeIfAbsent(key, k -> new Entry());
+        synchronized (entry) {
+            long now = System.currentTimeMillis() / 1000;
+            if (entry.assertion == null || entry.expiresAt - now < RENEW_BEFORE_IN_SECONDS) {
+                entry.assertion = sign(info, audience, thumbprint, now);
+                entry.expiresAt = now + LIFETIME_IN_SECONDS;
+                evictExpired(now);
+            }
+            return entry.assertion;
+        }
+    }
+
+    /**
+     * Removes the assertions of rotated certificates, which are not renewed anymore.
+     * @param now
+     */
+    private static void evictExpired(long now) {
+        entries.values().removeIf(entry -> entry.assertion != null && entry.expiresAt <= now);
+    }
+
+    private static String audience(String authority) {
+        return authority.endsWith("/") ? authority + TOKEN_PATH : authority + "/" + TOKEN_PATH;
+    }
+
+    private static String sign(ServicePrincipalInfo info, String audience, String thumbprint, long now) {
+        String header = "{\"alg\":\"RS256\",\"typ\":\"JWT\",\"x5t\":\"" + thumbprint + "\"}";
+        String payload = "{\"aud\":" + JwtSigner.quote(audience) + ",\"iss\":" + JwtSigner.quote(info.getClientId())
+                + ",\"sub\":" + JwtSigner.quote(info.getClientId()) + ",\"jti\":\"" + UUID.randomUUID() + "\",\"nbf\":"
+                + now + ",\"exp\":" + (now + LIFETIME_IN_SECONDS) + "}";
+        try {
+            return JwtSigner.sign(header, payload, info.getKey());
+        } catch (GeneralSecurityException e) {
+            throw new RedisEntraIDException("Failed to sign client assertion!", e);
+        }
+    }
+}
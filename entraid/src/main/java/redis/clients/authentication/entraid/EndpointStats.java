@@ -0,0 +1,78 @@
+/*
+ * Copyright 2024, Redis Ltd. and Contributors
+ * All rights reserved.
+ *
+ * Licensed under the MIT License.
+ */
+package redis.clients.authentication.entraid;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Latency and failure counts of the token requests made to one EntraID endpoint, e.g. the regional or the global
+ * token service, see {@link EntraIDIdentityProvider#getEndpointStats()}.
+ * Latency is measured around the whole request made by MSAL, including a response served from its cache.
+ */
+public final class EndpointStats {
+
+    private final String endpoint;
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong failureCount = new AtomicLong();
+    private final AtomicLong totalLatencyInMs = new AtomicLong();
+    private final AtomicLong maxLatencyInMs = new AtomicLong();
+    private volatile long lastLatencyInMs;
+
+    EndpointStats(String endpoint) {
+        this.endpoint = endpoint;
+    }
+
+    void record(long latencyInMs, boolean failed) {
+        requestCount.incrementAndGet();
+        if (failed) {
+            failureCount.incrementAndGet();
+        }
+        totalLatencyInMs.addAndGet(latencyInMs);
+        maxLatencyInMs.accumulateAndGet(latencyInMs, Math::max);
+        lastLatencyInMs = latencyInMs;
+    }
+
+    /**
+     * Returns the name of the endpoint, "global" or "regional:" followed by the configured region.
+     */
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    /**
+     * Returns the number of requests made to the endpoint, including the failed ones.
+     */
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+
+    /**
+     * Returns the number of requests failed with an error.
+     */
+    public long getFailureCount() {
+        return failureCount.get();
+    }
+
+    public long getAverageLatencyInMs() {
+        long count = requestCount.get();
+        return count == 0 ? 0 : totalLatencyInMs.get() / count;
+    }
+
+    public long getMaxLatencyInMs() {
+        return maxLatencyInMs.get();
+    }
+
+    public long getLastLatencyInMs() {
+        return lastLatencyInMs;
+    }
+
+    @Override
+    public String toString() {
+        return endpoint + "[requests=" + getRequestCount() + ", failures=" + getFailureCount() + ", avgLatencyInMs="
+                + getAverageLatencyInMs() + ", maxLatencyInMs=" + getMaxLatencyInMs() + "]";
+    }
+}
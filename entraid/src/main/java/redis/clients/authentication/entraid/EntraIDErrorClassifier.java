@@ -0,0 +1,163 @@
+/*
+ * Copyright 2024, Redis Ltd. and Contributors
+ * All rights reserved.
+ *
+ * Licensed under the MIT License.
+ */
+package redis.clients.authentication.entraid;
+
+import java.net.MalformedURLException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.microsoft.aad.msal4j.ManagedIdentitySourceType;
+import com.microsoft.aad.msal4j.MsalServiceException;
+import com.microsoft.aad.msal4j.MsalThrottlingException;
+
+import redis.clients.authentication.core.ErrorClassifier;
+import redis.clients.authentication.core.IdentityProviderThrottledException;
+
+/**
+ * Classifies the failures of token requests to EntraID, based on the errors reported by MSAL.
+ *
+ * <ul>
+ *   <li>Throttling signals, MsalThrottlingException or HTTP 429 responses, are {@code THROTTLED}.</li>
+ *   <li>HTTP 404/410 responses of the managed identity endpoint (IMDS) are {@code RETRYABLE}, IMDS returns them
+ *      while the identity is being assigned to the VM or IMDS itself is being updated.</li>
+ *   <li>OAuth2 errors caused by the configuration, e.g. an invalid client secret, an unknown tenant or
+ *      an invalid scope, along with any other HTTP 400/401/403/404 response, are {@code PERMANENT}.</li>
+ *   <li>Everything else, e.g. HTTP 5xx responses, timeouts and network failures, is {@code RETRYABLE}.</li>
+ * </ul>
+ *
+ * <p>This is the default classifier of {@link EntraIDTokenAuthConfigBuilder}.
+ */
+public class EntraIDErrorClassifier implements ErrorClassifier {
+
+    /**
+     * OAuth2 error codes returned by EntraID for requests which cannot succeed without a change in configuration.
+     */
+    static final Set<String> PERMANENT_ERROR_CODES = Collections.unmodifiableSet(new HashSet<>(Arrays
+            .asList("invalid_client", "unauthorized_client", "invalid_scope", "invalid_resource", "invalid_request")));
+
+    /**
+     * EntraID errors which are reported with OAuth2 codes not specific enough to classify on their own,
+     * such as invalid_grant: invalid client secret (AADSTS7000215), expired client secret (AADSTS7000222),
+     * application not found (AADSTS700016), invalid client assertion (AADSTS700027), tenant not found
+     * (AADSTS90002), invalid scope (AADSTS70011) and resource not found (AADSTS500011).
+     */
+    static final Set<String> PERMANENT_AADSTS_CODES = Collections
+            .unmodifiableSet(new HashSet<>(Arrays.asList("AADSTS7000215", "AADSTS7000222", "AADSTS700016",
+                "AADSTS700027", "AADSTS90002", "AADSTS70011", "AADSTS500011")));
+
+    /**
+     * Status code in the messages of MSAL for failed requests to the managed identity endpoint, MSAL does not
+     * report it otherwise.
+     */
+    private static final Pattern MANAGED_IDENTITY_STATUS_CODE = Pattern.compile("(?i)Http ?Status ?Code: (\\d{3})");
+
+    @Override
+    public ErrorClass classify(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            ErrorClass errorClass = classifyCause(cause);
+            if (errorClass != null) {
+                return errorClass;
+            }
+        }
+        return ErrorClass.RETRYABLE;
+    }
+
+    /**
+     * Classifies a single error in the cause chain
+     * @param cause
+     * @return the error class, null if the cause is not conclusive and the next one in the chain should be checked
+     */
+    protected ErrorClass classifyCause(Throwable cause) {
+        if (cause instanceof IdentityProviderThrottledException || cause instanceof MsalThrottlingException) {
+            return ErrorClass.THROTTLED;
+        }
+        if (cause instanceof MalformedURLException) {
+            return ErrorClass.PERMANENT;
+        }
+        if (cause instanceof MsalServiceException) {
+            MsalServiceException serviceException = (MsalServiceException) cause;
+            Integer statusCode = serviceException.statusCode();
+            if (statusCode != null && statusCode == Throttling.TOO_MANY_REQUESTS) {
+                return ErrorClass.THROTTLED;
+            }
+            if (isImds(serviceException.managedIdentitySource())) {
+                Integer imdsStatusCode = statusCode != null ? statusCode
+                        : parseStatusCode(serviceException.getMessage());
+                if (imdsStatusCode != null && isImdsUnavailable(imdsStatusCode)) {
+                    return ErrorClass.RETRYABLE;
+                }
+            }
+            if (PERMANENT_ERROR_CODES.contains(serviceException.errorCode())
+                    || hasPermanentAadstsCode(serviceException.getMessage())) {
+                return ErrorClass.PERMANENT;
+            }
+            return statusCode != null ? classifyStatusCode(statusCode) : ErrorClass.RETRYABLE;
+        }
+        return null;
+    }
+
+    /**
+     * Classifies the http status code of a failed token request
+     * @param statusCode
+     * @return the error class
+     */
+    protected static ErrorClass classifyStatusCode(int statusCode) {
+        switch (statusCode) {
+        case 400:
+        case 401:
+        case 403:
+        case 404:
+            return ErrorClass.PERMANENT;
+        case Throttling.TOO_MANY_REQUESTS:
+            return ErrorClass.THROTTLED;
+        default:
+            return ErrorClass.RETRYABLE;
+        }
+    }
+
+    /**
+     * Classifies the http status code of a failed token request to the managed identity endpoint (IMDS)
+     * @param statusCode
+     * @return the error class
+     */
+    protected static ErrorClass classifyImdsStatusCode(int statusCode) {
+        return isImdsUnavailable(statusCode) ? ErrorClass.RETRYABLE : classifyStatusCode(statusCode);
+    }
+
+    private static boolean isImdsUnavailable(int statusCode) {
+        return statusCode == 404 || statusCode == 410;
+    }
+
+    private static boolean isImds(String managedIdentitySource) {
+        return ManagedIdentitySourceType.IMDS.name().equals(managedIdentitySource)
+                || ManagedIdentitySourceType.DEFAULT_TO_IMDS.name().equals(managedIdentitySource);
+    }
+
+    private static Integer parseStatusCode(String message) {
+        if (message == null) {
+            return null;
+        }
+        Matcher matcher = MANAGED_IDENTITY_STATUS_CODE.matcher(message);
+        return matcher.find() ? Integer.valueOf(matcher.group(1)) : null;
+    }
+
+    private static boolean hasPermanentAadstsCode(String message) {
+        if (message == null) {
+            return false;
+        }
+        for (String code : PERMANENT_AADSTS_CODES) {
+            if (message.contains(code + ":")) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
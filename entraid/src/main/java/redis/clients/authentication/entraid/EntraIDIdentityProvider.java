@@ -6,80 +6,415 @@
  */
 package redis.clients.authentication.entraid;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Supplier;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import com.microsoft.aad.msal4j.ClientCredentialFactory;
 import com.microsoft.aad.msal4j.ClientCredentialParameters;
 import com.microsoft.aad.msal4j.ConfidentialClientApplication;
 import com.microsoft.aad.msal4j.IAuthenticationResult;
 import com.microsoft.aad.msal4j.IClientCredential;
+import com.microsoft.aad.msal4j.IHttpClient;
 import com.microsoft.aad.msal4j.ManagedIdentityApplication;
 import com.microsoft.aad.msal4j.ManagedIdentityParameters;
+import com.microsoft.aad.msal4j.OnBehalfOfParameters;
+import com.microsoft.aad.msal4j.UserAssertion;
+import redis.clients.authentication.core.ErrorClassifier.ErrorClass;
 import redis.clients.authentication.core.IdentityProvider;
+import redis.clients.authentication.core.IdentityProviderThrottledException;
 import redis.clients.authentication.core.Token;
+import redis.clients.authentication.entraid.ServicePrincipalInfo.ServicePrincipalAccess;
 
-public final class EntraIDIdentityProvider implements IdentityProvider {
+public final class EntraIDIdentityProvider implements IdentityProvider, AutoCloseable {
 
     private interface ClientApp {
-        public IAuthenticationResult request();
+        public IAuthenticationResult request(boolean forceRefresh);
     }
 
     private interface ClientAppFactory {
         public ClientApp create();
     }
 
+    private interface OnBehalfOfApp {
+        public IAuthenticationResult request(UserAssertion userAssertion, boolean forceRefresh);
+    }
+
+    private interface OnBehalfOfAppFactory {
+        public OnBehalfOfApp create();
+    }
+
+    private static final String OPENID_CONFIGURATION = "v2.0/.well-known/openid-configuration";
+    private static final int PREWARM_TIMEOUT_IN_MS = 5000;
+    private static final String GLOBAL_ENDPOINT = "global";
+    private static final String GLOBAL_AUTHORITY_HOST = "login.microsoftonline.com";
+    private static final String REGIONAL_AUTHORITY_HOST = "login.microsoft.com";
+    private static final long REGIONAL_RETRY_INTERVAL_IN_MS = 5 * 60 * 1000;
+    private static final EntraIDErrorClassifier FALLBACK_CLASSIFIER = new EntraIDErrorClassifier();
+
     private ClientAppFactory clientAppFactory;
-    private ClientApp clientApp;
+    private volatile ClientApp clientApp;
+    private OnBehalfOfAppFactory onBehalfOfAppFactory;
+    private volatile OnBehalfOfApp onBehalfOfApp;
+    private final List<String> appKeys = new ArrayList<>();
+    private final Map<String, EndpointStats> endpointStats = new ConcurrentHashMap<>();
+    private volatile long regionalRetryAt;
+    private String authority;
+    private String azureRegion;
+    private IHttpClient httpClient;
+    private Logger logger = LoggerFactory.getLogger(getClass());
 
     public EntraIDIdentityProvider(ServicePrincipalInfo servicePrincipalInfo, Set<String> scopes, int timeout) {
+        this(servicePrincipalInfo, scopes, timeout, MsalTokenCacheOptions.DISABLED);
+    }
+
+    public EntraIDIdentityProvider(ServicePrincipalInfo servicePrincipalInfo, Set<String> scopes, int timeout,
+            MsalTokenCacheOptions cacheOptions) {
+        this(servicePrincipalInfo, scopes, timeout, ClientAppOptions.builder().tokenCacheOptions(cacheOptions).build());
+    }
+
+    public EntraIDIdentityProvider(ServicePrincipalInfo servicePrincipalInfo, Set<String> scopes, int timeout,
+            ClientAppOptions options) {
+
+        authority = servicePrincipalInfo.getAuthority() == null ? ConfidentialClientApplication.DEFAULT_AUTHORITY
+                : servicePrincipalInfo.getAuthority();
+        httpClient = options.getHttpClient();
+        azureRegion = options.getAzureRegion();
+        clientAppFactory = () -> {
+            return createConfidentialClientApp(servicePrincipalInfo, scopes, timeout, options);
+        };
+        onBehalfOfAppFactory = () -> {
+            return createOnBehalfOfApp(servicePrincipalInfo, scopes, timeout, options);
+        };
+    }
 
+    /**
+     * Creates a provider requesting the tokens with the current credentials of the given source, see
+     * {@link ServicePrincipalCredentialSource}.
+     */
+    public EntraIDIdentityProvider(ServicePrincipalCredentialSource credentialSource, Set<String> scopes, int timeout,
+            ClientAppOptions options) {
+
+        httpClient = options.getHttpClient();
+        azureRegion = options.getAzureRegion();
         clientAppFactory = () -> {
-            return createConfidentialClientApp(servicePrincipalInfo, scopes, timeout);
+            return new RotatingClientApp(credentialSource, scopes, timeout, options);
         };
     }
 
+    /**
+     * Client application of a credential source, backed by a client application per credential. They are swapped
+     * before a token request when the credentials of the source have changed, and released from the registry
+     * once replaced. The token is requested with the primary credential, and with the next ones only if it is
+     * rejected.
+     */
+    private final class RotatingClientApp implements ClientApp {
+        private final ServicePrincipalCredentialSource source;
+        private final Set<String> scopes;
+        private final int timeout;
+        private final ClientAppOptions options;
+        private volatile List<String> credentialKeys = Collections.emptyList();
+        private volatile List<ClientApp> apps = Collections.emptyList();
+
+        private RotatingClientApp(ServicePrincipalCredentialSource source, Set<String> scopes, int timeout,
+                ClientAppOptions options) {
+            this.source = source;
+            this.scopes = scopes;
+            this.timeout = timeout;
+            this.options = options;
+            update();
+        }
+
+        @Override
+        public IAuthenticationResult request(boolean forceRefresh) {
+            List<ClientApp> current = update();
+            for (int i = 0;; i++) {
+                try {
+                    return current.get(i).request(forceRefresh);
+                } catch (RuntimeException e) {
+                    if (i + 1 >= current.size() || FALLBACK_CLASSIFIER.classify(e) != ErrorClass.PERMANENT) {
+                        throw e;
+                    }
+                    logger.warn("Credential {} of {} rejected by EntraID, requesting with the next one: {}", i + 1,
+                        current.size(), e.toString());
+                }
+            }
+        }
+
+        /**
+         * Returns the applications of the current credentials of the source, keeping the previous ones if the
+         * source fails.
+         */
+        private List<ClientApp> update() {
+            List<ServicePrincipalInfo> credentials;
+            try {
+                credentials = source.getCredentials();
+                if (credentials == null || credentials.isEmpty()) {
+                    throw new RedisEntraIDException("No credentials from credential source!");
+                }
+            } catch (RuntimeException e) {
+                if (apps.isEmpty()) {
+                    throw e;
+                }
+                logger.warn("Failed to get credentials, requesting with the current ones: {}", e.toString());
+                return apps;
+            }
+            String credentialAuthority = credentials.get(0).getAuthority() == null
+                    ? ConfidentialClientApplication.DEFAULT_AUTHORITY : credentials.get(0).getAuthority();
+            List<String> keys = new ArrayList<>(credentials.size());
+            for (ServicePrincipalInfo credential : credentials) {
+                keys.add(ClientAppRegistry.confidentialClientKey(credential, credentialAuthority, timeout, options));
+            }
+            if (keys.equals(credentialKeys)) {
+                return apps;
+            }
+            synchronized (EntraIDIdentityProvider.this) {
+                if (keys.equals(credentialKeys)) {
+                    return apps;
+                }
+                List<String> replacedKeys = new ArrayList<>(appKeys);
+                appKeys.clear();
+                String replacedAuthority = authority;
+                authority = credentialAuthority;
+                List<ClientApp> created = new ArrayList<>(credentials.size());
+                try {
+                    for (ServicePrincipalInfo credential : credentials) {
+                        created.add(createConfidentialClientApp(credential, scopes, timeout, options));
+                    }
+                } catch (RuntimeException e) {
+                    appKeys.forEach(ClientAppRegistry::release);
+                    appKeys.clear();
+                    appKeys.addAll(replacedKeys);
+                    authority = replacedAuthority;
+                    if (apps.isEmpty()) {
+                        throw e;
+                    }
+                    logger.warn("Failed to create client applications, requesting with the current ones: {}",
+                        e.toString());
+                    return apps;
+                }
+                apps = created;
+                credentialKeys = keys;
+                // the new applications are acquired first, so that the ones shared with them are kept
+                replacedKeys.forEach(ClientAppRegistry::release);
+                if (!replacedKeys.isEmpty()) {
+                    logger.info("Credentials of {} changed, swapped the client applications",
+                        credentials.get(0).getClientId());
+                }
+                return created;
+            }
+        }
+    }
+
+    /**
+     * Creates the client application for the token service given in the options. A regional token service is
+     * backed by the global one, see {@link #requestWithRegionalFallback(ClientApp, ClientApp, boolean)}.
+     */
     private ClientApp createConfidentialClientApp(ServicePrincipalInfo servicePrincipalInfo, Set<String> scopes,
-            int timeout) {
-        IClientCredential credential = getClientCredential(servicePrincipalInfo);
-        ConfidentialClientApplication app;
+            int timeout, ClientAppOptions options) {
+        ClientApp app = measured(options.isRegional() ? regionalEndpoint(options) : GLOBAL_ENDPOINT,
+            acquireConfidentialClientApp(servicePrincipalInfo, scopes, timeout, options));
+        if (!options.isRegional()) {
+            return app;
+        }
+        ClientApp global = measured(GLOBAL_ENDPOINT,
+            acquireConfidentialClientApp(servicePrincipalInfo, scopes, timeout, options.toGlobal()));
+        return forceRefresh -> requestWithRegionalFallback(app, global, forceRefresh);
+    }
+
+    private ClientApp acquireConfidentialClientApp(ServicePrincipalInfo servicePrincipalInfo, Set<String> scopes,
+            int timeout, ClientAppOptions options) {
+        String key = ClientAppRegistry.confidentialClientKey(servicePrincipalInfo, authority, timeout, options);
+        ConfidentialClientApplication app = ClientAppRegistry.acquire(key,
+            executor -> buildConfidentialClientApp(servicePrincipalInfo, timeout, options, executor));
+        appKeys.add(key);
+
+        ClientCredentialParameters params = ClientCredentialParameters.builder(scopes)
+                .skipCache(!options.getTokenCacheOptions().isEnabled()).build();
+        ClientCredentialParameters forcedParams = ClientCredentialParameters.builder(scopes).skipCache(true).build();
+
+        Supplier<String> assertion = clientAssertion(servicePrincipalInfo, options);
+        if (assertion != null) {
+            // MSAL keeps the assertion of a credential as it is, so the current one is passed with each request
+            return forceRefresh -> requestWithConfidentialClient(app,
+                ClientCredentialParameters.builder(scopes)
+                        .skipCache(forceRefresh || !options.getTokenCacheOptions().isEnabled())
+                        .clientCredential(ClientCredentialFactory.createFromClientAssertion(assertion.get())).build());
+        }
+        return forceRefresh -> requestWithConfidentialClient(app, forceRefresh ? forcedParams : params);
+    }
+
+    /**
+     * Creates the client application requesting the tokens on behalf of users, sharing the one of the global
+     * token service, since MSAL requests them from there anyway.
+     */
+    private OnBehalfOfApp createOnBehalfOfApp(ServicePrincipalInfo servicePrincipalInfo, Set<String> scopes,
+            int timeout, ClientAppOptions options) {
+        if (servicePrincipalInfo.getAccessWith() == ServicePrincipalAccess.WithFederatedToken) {
+            // MSAL takes no per request credential with on-behalf-of parameters, the assertion would go stale
+            throw new RedisEntraIDException("On-behalf-of tokens require a secret or a certificate!");
+        }
+        ClientAppOptions globalOptions = options.toGlobal();
+        String key = ClientAppRegistry.confidentialClientKey(servicePrincipalInfo, authority, timeout, globalOptions);
+        ConfidentialClientApplication app = ClientAppRegistry.acquire(key,
+            executor -> buildConfidentialClientApp(servicePrincipalInfo, timeout, globalOptions, executor));
+        appKeys.add(key);
+        boolean skipCache = !options.getTokenCacheOptions().isEnabled();
+        return (userAssertion, forceRefresh) -> requestOnBehalfOf(app,
+            OnBehalfOfParameters.builder(scopes, userAssertion).skipCache(forceRefresh || skipCache).build());
+    }
+
+    private Supplier<String> clientAssertion(ServicePrincipalInfo servicePrincipalInfo, ClientAppOptions options) {
+        if (servicePrincipalInfo.getAccessWith() == ServicePrincipalAccess.WithFederatedToken) {
+            FederatedTokenFile tokenFile = new FederatedTokenFile(servicePrincipalInfo.getFederatedTokenFile());
+            return tokenFile::call;
+        }
+        if (servicePrincipalInfo.getAccessWith() == ServicePrincipalAccess.WithCert
+                && options.isCachedClientAssertion()) {
+            return () -> ClientAssertionCache.get(servicePrincipalInfo, authority);
+        }
+        return null;
+    }
 
+    private ConfidentialClientApplication buildConfidentialClientApp(ServicePrincipalInfo servicePrincipalInfo,
+            int timeout, ClientAppOptions options, ExecutorService executor) {
+        IClientCredential credential = getClientCredential(servicePrincipalInfo);
         try {
-            String authority = servicePrincipalInfo.getAuthority();
-            authority = authority == null ? ConfidentialClientApplication.DEFAULT_AUTHORITY : authority;
-            app = ConfidentialClientApplication.builder(servicePrincipalInfo.getClientId(), credential)
-                    .authority(authority).readTimeoutForDefaultHttpClient(timeout).build();
+            ConfidentialClientApplication.Builder builder = ConfidentialClientApplication
+                    .builder(servicePrincipalInfo.getClientId(), credential).authority(authority)
+                    .readTimeoutForDefaultHttpClient(timeout).executorService(executor);
+            if (options.getTokenCacheOptions().getCacheAccessAspect() != null) {
+                builder.setTokenCacheAccessAspect(options.getTokenCacheOptions().getCacheAccessAspect());
+            }
+            if (options.getHttpClient() != null) {
+                builder.httpClient(options.getHttpClient());
+            }
+            if (!options.isInstanceDiscovery()) {
+                builder.instanceDiscovery(false);
+            }
+            if (options.getInstanceDiscoveryMetadata() != null) {
+                builder.aadInstanceDiscoveryResponse(options.getInstanceDiscoveryMetadata());
+            }
+            if (options.getAzureRegion() != null) {
+                builder.azureRegion(options.getAzureRegion());
+            } else if (options.isAutoDetectRegion()) {
+                builder.autoDetectRegion(true);
+            }
+            return builder.build();
         } catch (MalformedURLException e) {
             throw new RedisEntraIDException("Failed to init EntraID client!", e);
         }
-        ClientCredentialParameters params = ClientCredentialParameters.builder(scopes).skipCache(true).build();
-
-        return () -> requestWithConfidentialClient(app, params);
     }
 
     public EntraIDIdentityProvider(ManagedIdentityInfo info, Set<String> scopes, int timeout) {
+        this(info, scopes, timeout, MsalTokenCacheOptions.DISABLED);
+    }
+
+    public EntraIDIdentityProvider(ManagedIdentityInfo info, Set<String> scopes, int timeout,
+            MsalTokenCacheOptions cacheOptions) {
+        this(info, scopes, timeout, ClientAppOptions.builder().tokenCacheOptions(cacheOptions).build());
+    }
+
+    public EntraIDIdentityProvider(ManagedIdentityInfo info, Set<String> scopes, int timeout,
+            ClientAppOptions options) {
 
+        if (scopes != null && scopes.size() > 1) {
+            // narrowed to the first one by EntraIDTokenAuthConfigBuilder, kept working for direct callers
+            logger.warn("ManagedIdentity tokens are issued for a single resource, requesting them for {} of {}",
+                scopes.iterator().next(), scopes);
+        }
+        httpClient = options.getHttpClient();
         clientAppFactory = () -> {
-            return createManagedIdentityApp(info, scopes, timeout);
+            return createManagedIdentityApp(info, scopes, timeout, options);
         };
     }
 
-    private ClientApp createManagedIdentityApp(ManagedIdentityInfo info, Set<String> scopes, int timeout) {
-        ManagedIdentityApplication app = ManagedIdentityApplication.builder(info.getId())
-                .readTimeoutForDefaultHttpClient(timeout).build();
+    private ClientApp createManagedIdentityApp(ManagedIdentityInfo info, Set<String> scopes, int timeout,
+            ClientAppOptions options) {
+        String key = ClientAppRegistry.managedIdentityKey(info, timeout, options);
+        ManagedIdentityApplication app = ClientAppRegistry.acquire(key, executor -> {
+            ManagedIdentityApplication.Builder builder = ManagedIdentityApplication.builder(info.getId())
+                    .readTimeoutForDefaultHttpClient(timeout).executorService(executor);
+            if (options.getHttpClient() != null) {
+                builder.httpClient(options.getHttpClient());
+            }
+            return builder.build();
+        });
+        appKeys.add(key);
 
         ManagedIdentityParameters params = ManagedIdentityParameters.builder(scopes.iterator().next())
+                .forceRefresh(!options.getTokenCacheOptions().isEnabled()).build();
+        ManagedIdentityParameters forcedParams = ManagedIdentityParameters.builder(scopes.iterator().next())
                 .forceRefresh(true).build();
-        return () -> requestWithManagedIdentity(app, params);
+        return measured(GLOBAL_ENDPOINT,
+            forceRefresh -> requestWithManagedIdentity(app, forceRefresh ? forcedParams : params));
+    }
+
+    private static String regionalEndpoint(ClientAppOptions options) {
+        return "regional:" + (options.getAzureRegion() != null ? options.getAzureRegion() : "auto");
+    }
+
+    /**
+     * Wraps the given application to record the latency of its requests in the stats of the given endpoint.
+     */
+    private ClientApp measured(String endpoint, ClientApp app) {
+        EndpointStats stats = endpointStats.computeIfAbsent(endpoint, EndpointStats::new);
+        return forceRefresh -> {
+            long start = System.nanoTime();
+            boolean failed = true;
+            try {
+                IAuthenticationResult result = app.request(forceRefresh);
+                failed = false;
+                return result;
+            } finally {
+                stats.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), failed);
+            }
+        };
+    }
+
+    /**
+     * Requests the token from the regional token service, falling back to the global one if the regional
+     * request fails with a retryable error, e.g. a network failure or a 5xx response. Errors which would fail
+     * the same way with the global token service, like invalid credentials or throttling, are propagated.
+     * After a fallback, requests go to the global token service for a while before the regional one is tried again.
+     */
+    private IAuthenticationResult requestWithRegionalFallback(ClientApp regional, ClientApp global,
+            boolean forceRefresh) {
+        if (System.currentTimeMillis() >= regionalRetryAt) {
+            try {
+                return regional.request(forceRefresh);
+            } catch (RuntimeException e) {
+                if (FALLBACK_CLASSIFIER.classify(e) != ErrorClass.RETRYABLE) {
+                    throw e;
+                }
+                regionalRetryAt = System.currentTimeMillis() + REGIONAL_RETRY_INTERVAL_IN_MS;
+                logger.warn("Token request to regional token service failed, falling back to global for {} s: {}",
+                    TimeUnit.MILLISECONDS.toSeconds(REGIONAL_RETRY_INTERVAL_IN_MS), e.toString());
+            }
+        }
+        return global.request(forceRefresh);
     }
 
     public EntraIDIdentityProvider(Supplier<IAuthenticationResult> customEntraIdAuthenticationSupplier) {
 
         clientAppFactory = () -> {
-            return () -> customEntraIdAuthenticationSupplier.get();
+            return forceRefresh -> customEntraIdAuthenticationSupplier.get();
         };
     }
 
@@ -90,6 +425,10 @@ public final class EntraIDIdentityProvider implements IdentityProvider {
         case WithCert:
             return ClientCredentialFactory.createFromCertificate(servicePrincipalInfo.getKey(),
                 servicePrincipalInfo.getCert());
+        case WithFederatedToken:
+            // replaced by the current assertion with each request
+            return ClientCredentialFactory.createFromClientAssertion(
+                new FederatedTokenFile(servicePrincipalInfo.getFederatedTokenFile()).call());
         default:
             throw new RedisEntraIDException("Invalid ServicePrincipalAccess type!");
         }
@@ -97,8 +436,157 @@ public final class EntraIDIdentityProvider implements IdentityProvider {
 
     @Override
     public Token requestToken() {
-        clientApp = clientApp == null ? clientAppFactory.create() : clientApp;
-        return new JWToken(clientApp.request().accessToken());
+        return requestToken(false);
+    }
+
+    @Override
+    public Token requestToken(boolean forceRefresh) {
+        IAuthenticationResult result;
+        try {
+            result = getClientApp().request(forceRefresh);
+        } catch (RuntimeException e) {
+            throw throttled(e);
+        }
+        return new JWToken(result.accessToken());
+    }
+
+    /**
+     * Requests a token on behalf of the user of the given assertion, e.g. the access token a web API received
+     * from its caller, with the on-behalf-of flow. Only supported by the providers of a service principal with a
+     * secret or a certificate. See {@link OnBehalfOfTokenCache} to keep the tokens of many users.
+     * @param userAssertion
+     * @param forceRefresh skips the MSAL token cache, if enabled
+     * @return
+     */
+    public Token requestTokenOnBehalfOf(UserAssertion userAssertion, boolean forceRefresh) {
+        IAuthenticationResult result;
+        try {
+            result = getOnBehalfOfApp().request(userAssertion, forceRefresh);
+        } catch (RuntimeException e) {
+            throw throttled(e);
+        }
+        return new JWToken(result.accessToken());
+    }
+
+    private static RuntimeException throttled(RuntimeException e) {
+        long retryAfter = Throttling.retryAfterInMs(e);
+        if (retryAfter >= 0) {
+            return new IdentityProviderThrottledException("Token request throttled by EntraID!", retryAfter, e);
+        }
+        return e;
+    }
+
+    /**
+     * Releases the client applications shared with the other providers, see {@link ClientAppRegistry}.
+     * A later token request acquires it again.
+     */
+    @Override
+    public synchronized void close() {
+        for (String appKey : appKeys) {
+            ClientAppRegistry.release(appKey);
+        }
+        appKeys.clear();
+        clientApp = null;
+        onBehalfOfApp = null;
+    }
+
+    /**
+     * Returns the latency and failure counts of the token requests per endpoint, "global" for the global token
+     * service or the managed identity endpoint, and "regional:" followed by the region for the regional one.
+     * @return
+     */
+    public Map<String, EndpointStats> getEndpointStats() {
+        return Collections.unmodifiableMap(endpointStats);
+    }
+
+    private ClientApp getClientApp() {
+        ClientApp app = clientApp;
+        if (app == null) {
+            synchronized (this) {
+                app = clientApp;
+                if (app == null) {
+                    clientApp = app = clientAppFactory.create();
+                }
+            }
+        }
+        return app;
+    }
+
+    private OnBehalfOfApp getOnBehalfOfApp() {
+        if (onBehalfOfAppFactory == null) {
+            throw new RedisEntraIDException("On-behalf-of tokens require a ServicePrincipal with fixed credentials!");
+        }
+        OnBehalfOfApp app = onBehalfOfApp;
+        if (app == null) {
+            synchronized (this) {
+                app = onBehalfOfApp;
+                if (app == null) {
+                    onBehalfOfApp = app = onBehalfOfAppFactory.create();
+                }
+            }
+        }
+        return app;
+    }
+
+    /**
+     * Creates the client application and warms up the connection to the authority, see {@link #warmUp()},
+     * so that the first token request pays only for the token call itself.
+     */
+    public void prewarm() {
+        getClientApp();
+        warmUp();
+    }
+
+    /**
+     * Warms up the connection to the authority by fetching its OpenID configuration with the http client of MSAL,
+     * so that the connection is kept alive for the next token request.
+     * With an explicit Azure region, the regional host issuing the tokens is warmed up as well.
+     * Managed identities are not warmed up, their endpoint is local to the host.
+     * Failures to reach the authority are ignored here, they will surface with the token requests.
+     */
+    @Override
+    public void warmUp() {
+        if (authority == null) {
+            return;
+        }
+        String base = authority.endsWith("/") ? authority : authority + "/";
+        warmUp(base + OPENID_CONFIGURATION);
+        if (azureRegion != null && base.contains("://" + GLOBAL_AUTHORITY_HOST + "/")) {
+            // tokens are issued by the regional host, which serves the same metadata
+            warmUp(base.replace("://" + GLOBAL_AUTHORITY_HOST + "/",
+                "://" + azureRegion + "." + REGIONAL_AUTHORITY_HOST + "/") + OPENID_CONFIGURATION);
+        }
+    }
+
+    private void warmUp(String target) {
+        URL url;
+        try {
+            url = new URL(target);
+        } catch (MalformedURLException e) {
+            logger.debug("Failed to warm up connection to {}: {}", target, e.toString());
+            return;
+        }
+        if (httpClient instanceof KeepAliveHttpClient) {
+            ((KeepAliveHttpClient) httpClient).warmUp(url);
+            return;
+        }
+        HttpURLConnection connection = null;
+        try {
+            connection = (HttpURLConnection) url.openConnection();
+            connection.setConnectTimeout(PREWARM_TIMEOUT_IN_MS);
+            connection.setReadTimeout(PREWARM_TIMEOUT_IN_MS);
+            try (InputStream in = connection.getInputStream()) {
+                // drain the response so that the connection is kept alive for reuse by MSAL's default http client
+                byte[] buffer = new byte[4096];
+                while (in.read(buffer) != -1) {
+                }
+            }
+        } catch (IOException e) {
+            logger.debug("Failed to warm up connection to {}: {}", url.getHost(), e.toString());
+            if (connection != null) {
+                connection.disconnect();
+            }
+        }
     }
 
     public IAuthenticationResult requestWithConfidentialClient(ConfidentialClientApplication app,
@@ -111,6 +599,15 @@ public final class EntraIDIdentityProvider implements IdentityProvider {
         }
     }
 
+    public IAuthenticationResult requestOnBehalfOf(ConfidentialClientApplication app, OnBehalfOfParameters params) {
+        try {
+            Future<IAuthenticationResult> tokenRequest = app.acquireToken(params);
+            return tokenRequest.get();
+        } catch (InterruptedException | ExecutionException e) {
+            throw new RedisEntraIDException("Failed to acquire token!", e);
+        }
+    }
+
     public IAuthenticationResult requestWithManagedIdentity(ManagedIdentityApplication app,
             ManagedIdentityParameters params) {
         try {
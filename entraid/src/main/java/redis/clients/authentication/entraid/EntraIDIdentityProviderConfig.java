@@ -7,6 +7,8 @@
 package redis.clients.authentication.entraid;
 
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Supplier;
 
 import com.microsoft.aad.msal4j.IAuthenticationResult;
@@ -16,23 +18,64 @@ import redis.clients.authentication.core.IdentityProviderConfig;
 
 public final class EntraIDIdentityProviderConfig implements IdentityProviderConfig {
 
-    private final Supplier<IdentityProvider> providerSupplier;
+    private final Supplier<EntraIDIdentityProvider> providerSupplier;
+    private final AtomicReference<EntraIDIdentityProvider> prewarmed = new AtomicReference<>();
 
     public EntraIDIdentityProviderConfig(ServicePrincipalInfo info, Set<String> scopes, int timeout) {
-        providerSupplier = () -> new EntraIDIdentityProvider(info, scopes, timeout);
+        this(info, scopes, timeout, MsalTokenCacheOptions.DISABLED);
+    }
+
+    public EntraIDIdentityProviderConfig(ServicePrincipalInfo info, Set<String> scopes, int timeout,
+            MsalTokenCacheOptions cacheOptions) {
+        this(info, scopes, timeout, ClientAppOptions.builder().tokenCacheOptions(cacheOptions).build());
+    }
+
+    public EntraIDIdentityProviderConfig(ServicePrincipalInfo info, Set<String> scopes, int timeout,
+            ClientAppOptions options) {
+        providerSupplier = () -> new EntraIDIdentityProvider(info, scopes, timeout, options);
+    }
+
+    public EntraIDIdentityProviderConfig(ServicePrincipalCredentialSource credentialSource, Set<String> scopes,
+            int timeout, ClientAppOptions options) {
+        providerSupplier = () -> new EntraIDIdentityProvider(credentialSource, scopes, timeout, options);
     }
 
     public EntraIDIdentityProviderConfig(ManagedIdentityInfo info, Set<String> scopes, int timeout) {
-        providerSupplier = () -> new EntraIDIdentityProvider(info, scopes, timeout);
+        this(info, scopes, timeout, MsalTokenCacheOptions.DISABLED);
+    }
+
+    public EntraIDIdentityProviderConfig(ManagedIdentityInfo info, Set<String> scopes, int timeout,
+            MsalTokenCacheOptions cacheOptions) {
+        this(info, scopes, timeout, ClientAppOptions.builder().tokenCacheOptions(cacheOptions).build());
+    }
+
+    public EntraIDIdentityProviderConfig(ManagedIdentityInfo info, Set<String> scopes, int timeout,
+            ClientAppOptions options) {
+        providerSupplier = () -> new EntraIDIdentityProvider(info, scopes, timeout, options);
     }
 
     public EntraIDIdentityProviderConfig(Supplier<IAuthenticationResult> customEntraIdAuthenticationSupplier) {
         providerSupplier = () -> new EntraIDIdentityProvider(customEntraIdAuthenticationSupplier);
     }
 
+    /**
+     * Creates a provider and prewarms it in the background, see {@link EntraIDIdentityProvider#prewarm()}.
+     * The prewarmed provider is handed out with the next call to {@link #getProvider()}, even if prewarming is
+     * still in progress, as the provider creates its client application only once.
+     * @return
+     */
+    public CompletableFuture<Void> prewarm() {
+        EntraIDIdentityProvider identityProvider = providerSupplier.get();
+        prewarmed.set(identityProvider);
+        return CompletableFuture.runAsync(identityProvider::prewarm);
+    }
+
     @Override
     public IdentityProvider getProvider() {
-        IdentityProvider identityProvider = providerSupplier.get();
+        IdentityProvider identityProvider = prewarmed.getAndSet(null);
+        if (identityProvider == null) {
+            identityProvider = providerSupplier.get();
+        }
         return identityProvider;
     }
 }
@@ -6,13 +6,39 @@
  */
 package redis.clients.authentication.entraid;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.security.PrivateKey;
 import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import java.util.Set;
+import java.util.TreeSet;
 import java.util.function.Supplier;
 
+import javax.crypto.SecretKey;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.microsoft.aad.msal4j.ConfidentialClientApplication;
 import com.microsoft.aad.msal4j.IAuthenticationResult;
+import com.microsoft.aad.msal4j.IHttpClient;
+import com.microsoft.aad.msal4j.ITokenCacheAccessAspect;
 
+import redis.clients.authentication.core.CompositeIdentityProvider;
+import redis.clients.authentication.core.CompositeIdentityProviderConfig;
+import redis.clients.authentication.core.FileTokenCache;
+import redis.clients.authentication.core.HostSharedIdentityProvider;
+import redis.clients.authentication.core.HostSharedIdentityProviderConfig;
+import redis.clients.authentication.core.IdentityProvider;
+import redis.clients.authentication.core.IdentityProviderConfig;
+import redis.clients.authentication.core.MultiScopeTokenManager;
 import redis.clients.authentication.core.TokenAuthConfig;
 import redis.clients.authentication.core.TokenManagerConfig;
 import redis.clients.authentication.entraid.ManagedIdentityInfo.UserManagedIdentityType;
@@ -30,6 +56,8 @@ import redis.clients.authentication.entraid.ServicePrincipalInfo.ServicePrincipa
  *   <li>DEFAULT_TOKEN_REQUEST_EXECUTION_TIMEOUT_IN_MS: 1000 (1 second)</li>
  *   <li>DEFAULT_MAX_ATTEMPTS_TO_RETRY: 5</li>
  *   <li>DEFAULT_DELAY_IN_MS_TO_RETRY: 100 (0.1 second)</li>
+ *   <li>DEFAULT_FORCED_REFRESH_MIN_INTERVAL_IN_MS: 5000 (5 seconds)</li>
+ *   <li>Error classifier: {@link EntraIDErrorClassifier}</li>
  * </ul>
  * 
  * <p>Configuration options:</p>
@@ -38,6 +66,8 @@ import redis.clients.authentication.entraid.ServicePrincipalInfo.ServicePrincipa
  *   <li>{@link #secret(String)}: Sets the client secret and configures access with secret.</li>
  *   <li>{@link #key(PrivateKey, X509Certificate)}: Sets the private key and certificate, 
  *      and configures access with certificate.</li>
+ *   <li>{@link #federatedTokenFile(Path)}: Sets the file of the federated token, and configures access with it.</li>
+ *   <li>{@link #workloadIdentity()}: Configures access with the federated token of Azure Workload Identity.</li>
  *   <li>{@link #authority(String)}: Sets the authority URL.</li>
  *   <li>{@link #systemAssignedManagedIdentity()}: Configures system-assigned managed identity.</li>
  *   <li>{@link #userAssignedManagedIdentity(UserManagedIdentityType, String)}: 
@@ -45,6 +75,27 @@ import redis.clients.authentication.entraid.ServicePrincipalInfo.ServicePrincipa
  *   <li>{@link #customEntraIdAuthenticationSupplier(Supplier)}: Sets a custom authentication supplier.</li>
  *   <li>{@link #scopes(Set)}: Sets the scopes for the token request.</li>
  *   <li>{@link #tokenRequestExecTimeoutInMs(int)}: Sets the token request execution timeout in milliseconds.</li>
+ *   <li>{@link #rateLimit(double, int)}: Sets the rate limit for token requests, shared per authority 
+ *      unless another key is given with {@link #rateLimitKey(String)}.</li>
+ *   <li>{@link #persistentTokenCache(Path, SecretKey)}: Keeps the last token in an encrypted file, 
+ *      to start with it instead of waiting for a new token after a restart.</li>
+ *   <li>{@link #prewarm()}: Prepares the client application in the background on build.</li>
+ *   <li>{@link #useMsalTokenCache()}: Lets MSAL serve the tokens from its cache, optionally persisted.</li>
+ *   <li>{@link #shareTokensOnHost(Path, SecretKey)}: Shares the tokens among the processes on the same host, 
+ *      with only one of them renewing.</li>
+ *   <li>{@link #httpClient(IHttpClient)}: Sets the http client of MSAL, e.g. a {@link KeepAliveHttpClient} along with
+ *      {@link #warmUpLeadTimeInMs(int)} to have a connection ready before each renewal.</li>
+ *   <li>{@link #azureRegion(String)}, {@link #autoDetectRegion()}: Requests the tokens from a regional token service
+ *      of EntraID, falling back to the global one on failures.</li>
+ *   <li>{@link #skipInstanceDiscovery()}, {@link #instanceDiscoveryMetadata(String)}: Saves the instance discovery 
+ *      request of MSAL on cold start, for trusted authorities or with the metadata given up front.</li>
+ *   <li>{@link #credentialSource(ServicePrincipalCredentialSource)}, {@link #certificateFile(Path, char[])}: 
+ *      Rotates the credentials of the service principal without rebuilding the token manager.</li>
+ *   <li>{@link #cachedClientAssertion()}: Signs the client assertion of a certificate once per its lifetime instead
+ *      of once per token request.</li>
+ *   <li>{@link #failover(EntraIDTokenAuthConfigBuilder)}, {@link #hedgeAfterMs(long)}: Fails over to another way
+ *      of requesting the tokens of the identity, e.g. from a managed identity to a service principal.</li>
+ *   <li>{@link #buildOnBehalfOf(int, long)}: Builds a cache of the tokens requested on behalf of users.</li>
  * </ul>
  * 
  * <p>Usage:</p>
@@ -79,23 +130,53 @@ public class EntraIDTokenAuthConfigBuilder extends TokenAuthConfig.Builder<Entra
     public static final int DEFAULT_TOKEN_REQUEST_EXECUTION_TIMEOUT_IN_MS = 1000;
     public static final int DEFAULT_MAX_ATTEMPTS_TO_RETRY = 5;
     public static final int DEFAULT_DELAY_IN_MS_TO_RETRY = 100;
+    public static final int DEFAULT_FORCED_REFRESH_MIN_INTERVAL_IN_MS = 5000;
+
+    private static final String AZURE_FEDERATED_TOKEN_FILE = "AZURE_FEDERATED_TOKEN_FILE";
+    private static final String AZURE_CLIENT_ID = "AZURE_CLIENT_ID";
+    private static final String AZURE_TENANT_ID = "AZURE_TENANT_ID";
+    private static final String AZURE_AUTHORITY_HOST = "AZURE_AUTHORITY_HOST";
+    private static final String DEFAULT_AUTHORITY_HOST = "https://login.microsoftonline.com/";
 
     private String clientId;
     private String secret;
     private PrivateKey key;
     private X509Certificate cert;
+    private Path federatedTokenFile;
     private String authority;
     private Set<String> scopes;
     private ServicePrincipalAccess accessWith;
     private ManagedIdentityInfo mii;
     private int tokenRequestExecTimeoutInMs;
+    private int warmUpLeadTimeInMs;
     private Supplier<IAuthenticationResult> customEntraIdAuthenticationSupplier;
+    private String rateLimitKey;
+    private Path tokenCacheDirectory;
+    private SecretKey tokenCacheKey;
+    private boolean shareTokensOnHost;
+    private MsalTokenCacheOptions msalTokenCacheOptions = MsalTokenCacheOptions.DISABLED;
+    private boolean prewarm;
+    private IHttpClient httpClient;
+    private String azureRegion;
+    private boolean autoDetectRegion;
+    private boolean skipInstanceDiscovery;
+    private String instanceDiscoveryMetadata;
+    private Path instanceDiscoveryMetadataFile;
+    private boolean cachedClientAssertion;
+    private ServicePrincipalCredentialSource credentialSource;
+    private Path certificateFile;
+    private char[] certificatePassword;
+    private List<EntraIDTokenAuthConfigBuilder> failovers = new ArrayList<>();
+    private long hedgeAfterMs;
+    private Logger logger = LoggerFactory.getLogger(getClass());
 
     public EntraIDTokenAuthConfigBuilder() {
         this.expirationRefreshRatio(DEFAULT_EXPIRATION_REFRESH_RATIO)
                 .lowerRefreshBoundMillis(DEFAULT_LOWER_REFRESH_BOUND_MILLIS)
                 .tokenRequestExecTimeoutInMs(DEFAULT_TOKEN_REQUEST_EXECUTION_TIMEOUT_IN_MS)
-                .maxAttemptsToRetry(DEFAULT_MAX_ATTEMPTS_TO_RETRY).delayInMsToRetry(DEFAULT_DELAY_IN_MS_TO_RETRY);
+                .maxAttemptsToRetry(DEFAULT_MAX_ATTEMPTS_TO_RETRY).delayInMsToRetry(DEFAULT_DELAY_IN_MS_TO_RETRY)
+                .forcedRefreshMinIntervalInMs(DEFAULT_FORCED_REFRESH_MIN_INTERVAL_IN_MS)
+                .errorClassifier(new EntraIDErrorClassifier());
     }
 
     public EntraIDTokenAuthConfigBuilder clientId(String clientId) {
@@ -116,6 +197,70 @@ public class EntraIDTokenAuthConfigBuilder extends TokenAuthConfig.Builder<Entra
         return this;
     }
 
+    /**
+     * Authenticates the service principal with the token of an external identity provider, kept in the given file,
+     * which the application trusts with a federated credential, e.g. the service account token Kubernetes
+     * projects into the pod. The token is read once and sent as the client assertion of the token requests until
+     * the file changes or the token expires. No secret or certificate is needed.
+     * @param federatedTokenFile
+     * @return
+     */
+    public EntraIDTokenAuthConfigBuilder federatedTokenFile(Path federatedTokenFile) {
+        this.federatedTokenFile = federatedTokenFile;
+        this.accessWith = ServicePrincipalAccess.WithFederatedToken;
+        return this;
+    }
+
+    /**
+     * Takes the credentials of the service principal from the given source before each token request, instead of
+     * the secret or certificate fixed at build time, so that they can be rotated without rebuilding the token
+     * manager, see {@link ServicePrincipalCredentialSource}.
+     * @param credentialSource
+     * @return
+     */
+    public EntraIDTokenAuthConfigBuilder credentialSource(ServicePrincipalCredentialSource credentialSource) {
+        this.credentialSource = credentialSource;
+        return this;
+    }
+
+    /**
+     * Takes the private key and certificate of the service principal from the given PEM or PKCS#12 file, read
+     * again when it is renewed, see {@link CertificateFileCredentialSource}.
+     * @param file
+     * @param password password of a PKCS#12 file, null for a PEM file
+     * @return
+     */
+    public EntraIDTokenAuthConfigBuilder certificateFile(Path file, char[] password) {
+        this.certificateFile = file;
+        this.certificatePassword = password;
+        return this;
+    }
+
+    /**
+     * Same as {@link #federatedTokenFile(Path)}, with the file, client id and authority taken from the environment
+     * variables set by Azure Workload Identity in the pod: AZURE_FEDERATED_TOKEN_FILE, AZURE_CLIENT_ID,
+     * AZURE_TENANT_ID and AZURE_AUTHORITY_HOST. The client id and authority given explicitly take precedence.
+     * @return
+     */
+    public EntraIDTokenAuthConfigBuilder workloadIdentity() {
+        String tokenFile = System.getenv(AZURE_FEDERATED_TOKEN_FILE);
+        if (tokenFile == null) {
+            throw new RedisEntraIDException(
+                    AZURE_FEDERATED_TOKEN_FILE + " is not set, Azure Workload Identity is not enabled for the pod!");
+        }
+        federatedTokenFile(Paths.get(tokenFile));
+        if (clientId == null) {
+            clientId = System.getenv(AZURE_CLIENT_ID);
+        }
+        String tenantId = System.getenv(AZURE_TENANT_ID);
+        if (authority == null && tenantId != null) {
+            String host = System.getenv(AZURE_AUTHORITY_HOST);
+            host = host == null ? DEFAULT_AUTHORITY_HOST : host;
+            authority = (host.endsWith("/") ? host : host + "/") + tenantId;
+        }
+        return this;
+    }
+
     public EntraIDTokenAuthConfigBuilder authority(String authority) {
         this.authority = authority;
         return this;
@@ -138,11 +283,194 @@ public class EntraIDTokenAuthConfigBuilder extends TokenAuthConfig.Builder<Entra
         return this;
     }
 
+    /**
+     * Sets the scopes of the token requests. A managed identity issues tokens for a single resource, only the first
+     * scope is requested with it, see {@link #buildMultiScope(Collection)} for the tokens of several resources.
+     * @param scopes
+     * @return
+     */
     public EntraIDTokenAuthConfigBuilder scopes(Set<String> scopes) {
         this.scopes = scopes;
         return this;
     }
 
+    /**
+     * Keeps the last acquired token in a file in the given directory, encrypted with the given AES key.
+     * Cache file is bound to the client id, authority or managed identity, and the scopes,
+     * see {@link FileTokenCache}.
+     * @param directory
+     * @param key
+     * @return
+     */
+    public EntraIDTokenAuthConfigBuilder persistentTokenCache(Path directory, SecretKey key) {
+        this.tokenCacheDirectory = directory;
+        this.tokenCacheKey = key;
+        return this;
+    }
+
+    /**
+     * Creates the EntraID client application and warms up the connection to the authority in the background
+     * on {@link #build()}, so that the first token request does not pay for it within
+     * tokenRequestExecTimeoutInMs. Has no effect with customEntraIdAuthenticationSupplier.
+     * @return
+     */
+    public EntraIDTokenAuthConfigBuilder prewarm() {
+        this.prewarm = true;
+        return this;
+    }
+
+    /**
+     * Lets MSAL serve the tokens from its in-memory cache instead of requesting a new one on every renewal.
+     * Tokens identical to the current one are not delivered to the listeners again.
+     * @return
+     */
+    public EntraIDTokenAuthConfigBuilder useMsalTokenCache() {
+        this.msalTokenCacheOptions = MsalTokenCacheOptions.IN_MEMORY;
+        return this;
+    }
+
+    /**
+     * Same as {@link #useMsalTokenCache()}, with the cache persisted through the given aspect.
+     * Only applies to service principals, managed identities only support the in-memory cache.
+     * @param cacheAccessAspect
+     * @return
+     */
+    public EntraIDTokenAuthConfigBuilder useMsalTokenCache(ITokenCacheAccessAspect cacheAccessAspect) {
+        this.msalTokenCacheOptions = MsalTokenCacheOptions.persisted(cacheAccessAspect);
+        return this;
+    }
+
+    /**
+     * Shares the tokens among the processes on the same host using the same identity and scopes, so that only
+     * one of them requests tokens from EntraID while the others read them from an encrypted file in the given
+     * directory. Also enables {@link #persistentTokenCache(Path, SecretKey)} with the same file.
+     * See {@link HostSharedIdentityProvider} for how the renewing process is elected.
+     * @param directory
+     * @param key
+     * @return
+     */
+    public EntraIDTokenAuthConfigBuilder shareTokensOnHost(Path directory, SecretKey key) {
+        persistentTokenCache(directory, key);
+        this.shareTokensOnHost = true;
+        return this;
+    }
+
+    /**
+     * Sets the http client used by MSAL to reach EntraID or the managed identity endpoint, instead of its default
+     * http client. With a {@link KeepAliveHttpClient}, {@link #warmUpLeadTimeInMs(int)} opens the connection to the
+     * authority shortly before each renewal, so that the renewal does not pay for DNS resolution and TLS handshake.
+     * The lead time has to be shorter than {@link KeepAliveHttpClient#keepAliveTimeInMs()}, about 5 seconds by
+     * default, or the connection is dropped before the renewal uses it.
+     * Has no effect with customEntraIdAuthenticationSupplier.
+     * @param httpClient
+     * @return
+     */
+    public EntraIDTokenAuthConfigBuilder httpClient(IHttpClient httpClient) {
+        this.httpClient = httpClient;
+        return this;
+    }
+
+    /**
+     * Requests the tokens of the service principal from the regional token service of EntraID in the given
+     * Azure region, e.g. "westus2", instead of the global one. Workloads running in the same region get their
+     * tokens with a lower latency and are not affected by outages of the global token service.
+     * Requests fall back to the global token service when the regional one fails with a transient error,
+     * see {@link EntraIDIdentityProvider#getEndpointStats()} for the latency of each.
+     * Only applies to service principals.
+     * @param azureRegion
+     * @return
+     */
+    public EntraIDTokenAuthConfigBuilder azureRegion(String azureRegion) {
+        this.azureRegion = azureRegion;
+        return this;
+    }
+
+    /**
+     * Same as {@link #azureRegion(String)}, with the region detected by MSAL from the environment of the workload.
+     * If the region cannot be detected, the tokens are requested from the global token service.
+     * @return
+     */
+    public EntraIDTokenAuthConfigBuilder autoDetectRegion() {
+        this.autoDetectRegion = true;
+        return this;
+    }
+
+    /**
+     * Lets MSAL trust the authority as given, without the instance discovery request it makes before the first
+     * token request of each client application. Only for authorities known to be valid, e.g. the tenant of
+     * the application on the public cloud; token requests to an invalid authority fail instead.
+     * Only applies to service principals.
+     * @return
+     */
+    public EntraIDTokenAuthConfigBuilder skipInstanceDiscovery() {
+        this.skipInstanceDiscovery = true;
+        return this;
+    }
+
+    /**
+     * Gives MSAL the instance discovery response of the authority, e.g. saved from an earlier run, to use instead
+     * of requesting it. The response is the JSON returned by the instance discovery endpoint,
+     * https://login.microsoftonline.com/common/discovery/instance?api-version=1.1&amp;authorization_endpoint=...
+     * Only applies to service principals.
+     * @param metadata
+     * @return
+     */
+    public EntraIDTokenAuthConfigBuilder instanceDiscoveryMetadata(String metadata) {
+        this.instanceDiscoveryMetadata = metadata;
+        this.instanceDiscoveryMetadataFile = null;
+        return this;
+    }
+
+    /**
+     * Same as {@link #instanceDiscoveryMetadata(String)}, with the response read from the given file on
+     * {@link #build()}.
+     * @param file
+     * @return
+     */
+    public EntraIDTokenAuthConfigBuilder instanceDiscoveryMetadata(Path file) {
+        this.instanceDiscoveryMetadataFile = file;
+        this.instanceDiscoveryMetadata = null;
+        return this;
+    }
+
+    /**
+     * Authenticates the service principal with a client assertion signed with its certificate once and reused
+     * until shortly before it expires, instead of MSAL signing a new one for each token request. The assertion is
+     * shared by all providers with the same client id, certificate and authority, which saves an RSA signature per
+     * renewal with many token managers. Only applies to service principals with a certificate.
+     * @return
+     */
+    public EntraIDTokenAuthConfigBuilder cachedClientAssertion() {
+        this.cachedClientAssertion = true;
+        return this;
+    }
+
+    /**
+     * Adds another way of requesting the tokens of the same identity, e.g. a service principal with a certificate
+     * behind a managed identity, tried within the same token request when the ones before fail. The provider which
+     * served the last token is tried first on the next renewal, see {@link CompositeIdentityProvider}.
+     * The tokens are requested for the scopes set on this builder; the token manager settings of the given
+     * builder are ignored. The token request timeout of this builder is split among the providers, or among the
+     * hedged pairs of them, so that a provider which does not respond is given up in time to try the next one.
+     * @param failover
+     * @return
+     */
+    public EntraIDTokenAuthConfigBuilder failover(EntraIDTokenAuthConfigBuilder failover) {
+        this.failovers.add(failover);
+        return this;
+    }
+
+    /**
+     * Races the next provider added with {@link #failover(EntraIDTokenAuthConfigBuilder)} against a provider
+     * which has not responded within the given delay, taking the first token received.
+     * @param hedgeAfterMs
+     * @return
+     */
+    public EntraIDTokenAuthConfigBuilder hedgeAfterMs(long hedgeAfterMs) {
+        this.hedgeAfterMs = hedgeAfterMs;
+        return this;
+    }
+
     @Override
     public EntraIDTokenAuthConfigBuilder tokenRequestExecTimeoutInMs(int tokenRequestExecTimeoutInMs) {
         super.tokenRequestExecTimeoutInMs(tokenRequestExecTimeoutInMs);
@@ -150,9 +478,30 @@ public class EntraIDTokenAuthConfigBuilder extends TokenAuthConfig.Builder<Entra
         return this;
     }
 
+    /**
+     * Sets the time before each renewal to open the connection to the authority, see
+     * {@link #httpClient(IHttpClient)}. With a {@link KeepAliveHttpClient}, it has to be shorter than
+     * {@link KeepAliveHttpClient#keepAliveTimeInMs()}.
+     * @param warmUpLeadTimeInMs
+     * @return
+     */
+    @Override
+    public EntraIDTokenAuthConfigBuilder warmUpLeadTimeInMs(int warmUpLeadTimeInMs) {
+        super.warmUpLeadTimeInMs(warmUpLeadTimeInMs);
+        this.warmUpLeadTimeInMs = warmUpLeadTimeInMs;
+        return this;
+    }
+
+    @Override
+    public EntraIDTokenAuthConfigBuilder rateLimitKey(String rateLimitKey) {
+        super.rateLimitKey(rateLimitKey);
+        this.rateLimitKey = rateLimitKey;
+        return this;
+    }
+
     public TokenAuthConfig build() {
         ServicePrincipalInfo spi = null;
-        if (key != null || cert != null || secret != null) {
+        if (key != null || cert != null || secret != null || federatedTokenFile != null) {
             switch (accessWith) {
             case WithCert:
                 spi = new ServicePrincipalInfo(clientId, key, cert, authority);
@@ -160,41 +509,217 @@ public class EntraIDTokenAuthConfigBuilder extends TokenAuthConfig.Builder<Entra
             case WithSecret:
                 spi = new ServicePrincipalInfo(clientId, secret, authority);
                 break;
+            case WithFederatedToken:
+                spi = new ServicePrincipalInfo(clientId, federatedTokenFile, authority);
+                break;
             }
         }
-        if (spi != null && mii != null) {
+        ServicePrincipalCredentialSource source = credentialSource;
+        if (certificateFile != null) {
+            if (source != null) {
+                throw new RedisEntraIDException("Cannot have both certificateFile and credentialSource!");
+            }
+            source = new CertificateFileCredentialSource(clientId, certificateFile, certificatePassword, authority);
+        }
+        if (source != null && spi != null) {
+            throw new RedisEntraIDException(
+                    "Cannot have both a credential source and fixed ServicePrincipal credentials!");
+        }
+        boolean servicePrincipal = spi != null || source != null;
+        if (servicePrincipal && mii != null) {
             throw new RedisEntraIDException("Cannot have both ServicePrincipal and ManagedIdentity!");
         }
-        if (this.customEntraIdAuthenticationSupplier != null && (spi != null || mii != null)) {
+        if (this.customEntraIdAuthenticationSupplier != null && (servicePrincipal || mii != null)) {
             throw new RedisEntraIDException(
                     "Cannot have both customEntraIdAuthenticationSupplier and ServicePrincipal/ManagedIdentity!");
         }
-        if (this.customEntraIdAuthenticationSupplier == null && spi == null && mii == null) {
+        if (this.customEntraIdAuthenticationSupplier == null && !servicePrincipal && mii == null) {
             throw new RedisEntraIDException(
                     "Missing configuration. One of customEntraIdAuthenticationSupplier, ServicePrincipal or ManagedIdentity must be configured!");
         }
 
+        if ((azureRegion != null || autoDetectRegion) && !servicePrincipal) {
+            throw new RedisEntraIDException("Regional token service is only supported with ServicePrincipal!");
+        }
+        if ((skipInstanceDiscovery || instanceDiscoveryMetadata != null || instanceDiscoveryMetadataFile != null)
+                && !servicePrincipal) {
+            throw new RedisEntraIDException("Instance discovery options are only supported with ServicePrincipal!");
+        }
+        if (mii != null && (scopes == null || scopes.isEmpty())) {
+            throw new RedisEntraIDException("ManagedIdentity requires the scope of the resource to access!");
+        }
+        Set<String> requestScopes = scopes;
+        if (mii != null && scopes.size() > 1) {
+            // kept working for existing configurations, the managed identity endpoint only takes one resource
+            requestScopes = Collections.singleton(scopes.iterator().next());
+            logger.warn(
+                "ManagedIdentity tokens are issued for a single resource, requesting them for {} of {}. Use "
+                        + "buildMultiScope to maintain the tokens of several resources.",
+                requestScopes.iterator().next(), scopes);
+        }
+        if (cachedClientAssertion && source == null
+                && (spi == null || spi.getAccessWith() != ServicePrincipalAccess.WithCert)) {
+            throw new RedisEntraIDException("Cached client assertion is only supported with a certificate!");
+        }
+
+        if (httpClient instanceof KeepAliveHttpClient
+                && warmUpLeadTimeInMs >= KeepAliveHttpClient.keepAliveTimeInMs()) {
+            throw new RedisEntraIDException("Warm up lead time of " + warmUpLeadTimeInMs + " ms is beyond the "
+                    + KeepAliveHttpClient.keepAliveTimeInMs() + " ms an idle connection is kept alive!");
+        }
+
+        if (rateLimitKey == null) {
+            // rate limits are shared per authority unless given otherwise
+            super.rateLimitKey(servicePrincipal
+                    ? "entraid:" + (authority == null ? ConfidentialClientApplication.DEFAULT_AUTHORITY : authority)
+                    : mii != null ? "entraid:managed-identity" : "entraid:custom");
+        }
+        FileTokenCache tokenCache = null;
+        if (tokenCacheDirectory != null) {
+            if (!servicePrincipal && mii == null) {
+                throw new RedisEntraIDException(
+                        "Persistent token cache requires ServicePrincipal or ManagedIdentity, use tokenCache for customEntraIdAuthenticationSupplier!");
+            }
+            tokenCache = new FileTokenCache(tokenCacheDirectory, identityKey(servicePrincipal, mii), tokenCacheKey);
+            super.tokenCache(tokenCache);
+        }
+        ClientAppOptions clientAppOptions = ClientAppOptions.builder().tokenCacheOptions(msalTokenCacheOptions)
+                .httpClient(httpClient).azureRegion(azureRegion).autoDetectRegion(autoDetectRegion)
+                .instanceDiscovery(!skipInstanceDiscovery).instanceDiscoveryMetadata(readInstanceDiscoveryMetadata())
+                .cachedClientAssertion(cachedClientAssertion).build();
+        // with failovers, each round of providers gets its share of the token request timeout, so that a hanging
+        // provider leaves time for the next one
+        int rounds = hedgeAfterMs > 0 ? (failovers.size() + 2) / 2 : failovers.size() + 1;
+        int requestTimeoutInMs = tokenRequestExecTimeoutInMs / rounds;
+        EntraIDIdentityProviderConfig entraIDIdentityProviderConfig = null;
         if (spi != null) {
-            super.identityProviderConfig(new EntraIDIdentityProviderConfig(spi, scopes, tokenRequestExecTimeoutInMs));
+            entraIDIdentityProviderConfig = new EntraIDIdentityProviderConfig(spi, requestScopes, requestTimeoutInMs,
+                    clientAppOptions);
+        }
+        if (source != null) {
+            entraIDIdentityProviderConfig = new EntraIDIdentityProviderConfig(source, requestScopes, requestTimeoutInMs,
+                    clientAppOptions);
         }
         if (mii != null) {
-            super.identityProviderConfig(new EntraIDIdentityProviderConfig(mii, scopes, tokenRequestExecTimeoutInMs));
+            entraIDIdentityProviderConfig = new EntraIDIdentityProviderConfig(mii, requestScopes, requestTimeoutInMs,
+                    clientAppOptions);
         }
         if (customEntraIdAuthenticationSupplier != null) {
-            super.identityProviderConfig(new EntraIDIdentityProviderConfig(customEntraIdAuthenticationSupplier));
+            entraIDIdentityProviderConfig = new EntraIDIdentityProviderConfig(customEntraIdAuthenticationSupplier);
+        }
+        if (prewarm && customEntraIdAuthenticationSupplier == null) {
+            entraIDIdentityProviderConfig.prewarm();
+        }
+        IdentityProviderConfig identityProviderConfig = entraIDIdentityProviderConfig;
+        if (hedgeAfterMs > 0 && failovers.isEmpty()) {
+            throw new RedisEntraIDException("Hedging requires a failover!");
+        }
+        if (!failovers.isEmpty()) {
+            List<IdentityProviderConfig> identityProviderConfigs = new ArrayList<>(failovers.size() + 1);
+            identityProviderConfigs.add(identityProviderConfig);
+            for (EntraIDTokenAuthConfigBuilder failover : failovers) {
+                identityProviderConfigs.add(from(failover).scopes(requestScopes)
+                        .tokenRequestExecTimeoutInMs(requestTimeoutInMs).build().getIdentityProviderConfig());
+            }
+            identityProviderConfig = new CompositeIdentityProviderConfig(identityProviderConfigs, hedgeAfterMs,
+                    requestTimeoutInMs);
+        }
+        if (shareTokensOnHost) {
+            identityProviderConfig = new HostSharedIdentityProviderConfig(identityProviderConfig, tokenCache);
         }
+        super.identityProviderConfig(identityProviderConfig);
         return super.build();
     }
 
+    /**
+     * Builds a token manager maintaining the tokens of the configured identity for each of the given scope sets,
+     * e.g. one per Redis resource, on shared threads and with batched renewals, see {@link MultiScopeTokenManager}.
+     * The identity providers of the scope sets share the client application of the identity. Each scope set is
+     * added with its scope key, see {@link MultiScopeTokenManager#scopeKey(Collection)}.
+     * The scopes set on this builder are ignored.
+     * @param scopeSets
+     * @return
+     */
+    public MultiScopeTokenManager buildMultiScope(Collection<Set<String>> scopeSets) {
+        MultiScopeTokenManager tokenManager = new MultiScopeTokenManager();
+        try {
+            for (Set<String> scopeSet : scopeSets) {
+                tokenManager.addScope(MultiScopeTokenManager.scopeKey(scopeSet), from(this).scopes(scopeSet).build());
+            }
+        } catch (RuntimeException e) {
+            tokenManager.stop();
+            throw e;
+        }
+        return tokenManager;
+    }
+
+    /**
+     * Same as {@link #buildOnBehalfOf(int, long)}, with the default size and idle timeout.
+     */
+    public OnBehalfOfTokenCache buildOnBehalfOf() {
+        return buildOnBehalfOf(OnBehalfOfTokenCache.DEFAULT_MAX_SIZE, OnBehalfOfTokenCache.DEFAULT_IDLE_TIMEOUT_IN_MS);
+    }
+
+    /**
+     * Builds a cache of the tokens requested on behalf of users by the configured service principal, see
+     * {@link OnBehalfOfTokenCache}. The tokens are renewed in the background at the expiration refresh ratio.
+     * Requires a service principal with a secret or a certificate.
+     * @param maxSize maximum number of users
+     * @param idleTimeoutInMs time after which an unseen user is evicted
+     * @return
+     */
+    public OnBehalfOfTokenCache buildOnBehalfOf(int maxSize, long idleTimeoutInMs) {
+        if (shareTokensOnHost || !failovers.isEmpty() || tokenCacheDirectory != null) {
+            throw new RedisEntraIDException(
+                    "On-behalf-of tokens are not supported with shared, failover or persistent token settings!");
+        }
+        if (accessWith != ServicePrincipalAccess.WithSecret && accessWith != ServicePrincipalAccess.WithCert) {
+            throw new RedisEntraIDException(
+                    "On-behalf-of tokens require a ServicePrincipal with secret or certificate!");
+        }
+        TokenAuthConfig tokenAuthConfig = build();
+        IdentityProvider provider = tokenAuthConfig.getIdentityProviderConfig().getProvider();
+        return new OnBehalfOfTokenCache((EntraIDIdentityProvider) provider, maxSize, idleTimeoutInMs,
+                tokenAuthConfig.getTokenManagerConfig().getExpirationRefreshRatio());
+    }
+
+    private String readInstanceDiscoveryMetadata() {
+        if (instanceDiscoveryMetadataFile == null) {
+            return instanceDiscoveryMetadata;
+        }
+        try {
+            return new String(Files.readAllBytes(instanceDiscoveryMetadataFile), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new RedisEntraIDException(
+                    "Failed to read instance discovery metadata from " + instanceDiscoveryMetadataFile + "!", e);
+        }
+    }
+
+    private String identityKey(boolean servicePrincipal, ManagedIdentityInfo mii) {
+        String scopeKey = scopes == null ? "" : String.join(" ", new TreeSet<>(scopes));
+        if (servicePrincipal) {
+            String authorityKey = authority == null ? ConfidentialClientApplication.DEFAULT_AUTHORITY : authority;
+            return "entraid|" + authorityKey + "|" + clientId + "|" + scopeKey;
+        }
+        return "entraid|managed-identity|" + mii.getId().getIdType() + "|" + mii.getId().getUserAssignedId() + "|"
+                + scopeKey;
+    }
+
     @Override
     public void close() throws Exception {
         clientId = null;
         secret = null;
         key = null;
         cert = null;
+        federatedTokenFile = null;
+        credentialSource = null;
+        certificateFile = null;
+        certificatePassword = null;
         authority = null;
         scopes = null;
         customEntraIdAuthenticationSupplier = null;
+        tokenCacheKey = null;
+        failovers.clear();
     }
 
     public static EntraIDTokenAuthConfigBuilder builder() {
@@ -211,17 +736,44 @@ public class EntraIDTokenAuthConfigBuilder extends TokenAuthConfig.Builder<Entra
                 .tokenRequestExecTimeoutInMs(tokenManagerConfig.getTokenRequestExecTimeoutInMs())
                 .maxAttemptsToRetry(tokenManagerConfig.getRetryPolicy().getMaxAttempts())
                 .delayInMsToRetry(tokenManagerConfig.getRetryPolicy().getdelayInMs())
+                .recoveryProbeIntervalInMs(tokenManagerConfig.getRecoveryPolicy().getProbeIntervalInMs())
+                .recoveryProbeMaxJitterInMs(tokenManagerConfig.getRecoveryPolicy().getMaxJitterInMs())
+                .forcedRefreshMinIntervalInMs(tokenManagerConfig.getForcedRefreshMinIntervalInMs())
+                .rateLimit(tokenManagerConfig.getRateLimitPolicy().getPermitsPerSecond(),
+                    tokenManagerConfig.getRateLimitPolicy().getBurst())
+                .rateLimitKey(tokenManagerConfig.getRateLimitPolicy().getKey())
+                .errorClassifier(tokenManagerConfig.getErrorClassifier()).tokenCache(tokenManagerConfig.getTokenCache())
+                .warmUpLeadTimeInMs(tokenManagerConfig.getWarmUpLeadTimeInMs())
                 .identityProviderConfig(tokenAuthConfig.getIdentityProviderConfig());
 
         builder.accessWith = sample.accessWith;
         builder.authority = sample.authority;
         builder.cert = sample.cert;
         builder.clientId = sample.clientId;
+        builder.federatedTokenFile = sample.federatedTokenFile;
         builder.customEntraIdAuthenticationSupplier = sample.customEntraIdAuthenticationSupplier;
         builder.key = sample.key;
         builder.mii = sample.mii;
         builder.scopes = sample.scopes;
         builder.secret = sample.secret;
+        builder.rateLimitKey = sample.rateLimitKey;
+        builder.tokenCacheDirectory = sample.tokenCacheDirectory;
+        builder.tokenCacheKey = sample.tokenCacheKey;
+        builder.shareTokensOnHost = sample.shareTokensOnHost;
+        builder.msalTokenCacheOptions = sample.msalTokenCacheOptions;
+        builder.prewarm = sample.prewarm;
+        builder.httpClient = sample.httpClient;
+        builder.azureRegion = sample.azureRegion;
+        builder.autoDetectRegion = sample.autoDetectRegion;
+        builder.skipInstanceDiscovery = sample.skipInstanceDiscovery;
+        builder.instanceDiscoveryMetadata = sample.instanceDiscoveryMetadata;
+        builder.instanceDiscoveryMetadataFile = sample.instanceDiscoveryMetadataFile;
+        builder.cachedClientAssertion = sample.cachedClientAssertion;
+        builder.credentialSource = sample.credentialSource;
+        builder.certificateFile = sample.certificateFile;
+        builder.certificatePassword = sample.certificatePassword;
+        builder.failovers = new ArrayList<>(sample.failovers);
+        builder.hedgeAfterMs = sample.hedgeAfterMs;
         return builder;
     }
 }
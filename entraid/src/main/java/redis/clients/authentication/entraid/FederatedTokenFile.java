@@ -0,0 +1,72 @@
+/*
+ * Copyright 2024, Redis Ltd. and Contributors
+ * All rights reserved.
+ *
+ * Licensed under the MIT License.
+ */
+package redis.clients.authentication.entraid;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.Callable;
+
+import redis.clients.authentication.core.AuthXException;
+import redis.clients.authentication.core.FileStamp;
+import redis.clients.authentication.core.JwtClaims;
+
+/**
+ * Supplies the client assertion of a service principal with a federated credential, e.g. the service account
+ * token Kubernetes projects into the pods with Azure Workload Identity, read from the given file.
+ *
+ * <p>MSAL asks for the assertion on every token request. The file is read once and the assertion is kept in memory
+ * until the file changes, which is checked by its modification time and size, or the assertion expires.
+ */
+final class FederatedTokenFile implements Callable<String> {
+
+    private final Path file;
+    private String assertion;
+    private long expiresAt;
+    private FileStamp stamp;
+
+    FederatedTokenFile(Path file) {
+        this.file = file;
+    }
+
+    Path getFile() {
+        return file;
+    }
+
+    @Override
+    public synchronized String call() {
+        FileStamp current = FileStamp.of(file);
+        if (assertion == null || !current.equals(stamp) || System.currentTimeMillis() >= expiresAt) {
+            String content;
+            try {
+                content = new String(Files.readAllBytes(file), StandardCharsets.UTF_8).trim();
+            } catch (IOException e) {
+                throw new RedisEntraIDException("Failed to read federated token file " + file, e);
+            }
+            if (content.isEmpty()) {
+                throw new RedisEntraIDException("Federated token file " + file + " is empty!");
+            }
+            assertion = content;
+            expiresAt = expiresAt(content);
+            stamp = current;
+        }
+        return assertion;
+    }
+
+    private static long expiresAt(String assertion) {
+        try {
+            Long exp = JwtClaims.convert(JwtClaims.decode(assertion).get("exp"), Long.class);
+            if (exp != null) {
+                return exp * 1000;
+            }
+        } catch (AuthXException e) {
+            // not a JWT, left to the authority to validate
+        }
+        return Long.MAX_VALUE;
+    }
+}
@@ -6,27 +6,40 @@
  */
 package redis.clients.authentication.entraid;
 
-import java.util.function.BiFunction;
-
-import com.auth0.jwt.interfaces.DecodedJWT;
-import com.auth0.jwt.JWT;
+import java.util.Map;
 
+import redis.clients.authentication.core.AuthXException;
+import redis.clients.authentication.core.JwtClaims;
 import redis.clients.authentication.core.Token;
 
+/**
+ * Token issued by EntraID as a JWT, its claims are decoded without verifying the signature.
+ */
 public class JWToken implements Token {
     private final String user;
     private final String token;
     private final long expiresAt;
     private final long receivedAt;
-    private final BiFunction<String, Class<?>, ?> claimQuery;
+    private final Map<String, Object> claims;
 
+    /**
+     * @param token
+     * @throws RedisEntraIDException if the token is malformed or has no expiration
+     */
     public JWToken(String token) {
         this.token = token;
-        DecodedJWT jwt = JWT.decode(token);
-        this.user = jwt.getClaim("oid").asString();
-        this.expiresAt = jwt.getExpiresAt().getTime();
+        try {
+            this.claims = JwtClaims.decode(token);
+        } catch (AuthXException e) {
+            throw new RedisEntraIDException(e.getMessage(), e);
+        }
+        this.user = JwtClaims.convert(claims.get("oid"), String.class);
+        Long exp = JwtClaims.convert(claims.get("exp"), Long.class);
+        if (exp == null) {
+            throw new RedisEntraIDException("Token has no expiration!");
+        }
+        this.expiresAt = exp * 1000;
         this.receivedAt = System.currentTimeMillis();
-        this.claimQuery = (key, clazz) -> jwt.getClaim(key).as(clazz);
     }
 
     @Override
@@ -81,7 +94,7 @@ public class JWToken implements Token {
 
     @Override
     public <T> T tryGet(String key, Class<T> clazz) {
-        return (T) claimQuery.apply(key, clazz);
+        return JwtClaims.convert(claims.get(key), clazz);
     }
 
 }
@@ -0,0 +1,193 @@
+/*
+ * Copyright 2024, Redis Ltd. and Contributors
+ * All rights reserved.
+ *
+ * Licensed under the MIT License.
+ */
+package redis.clients.authentication.entraid;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.Proxy;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLSocketFactory;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.microsoft.aad.msal4j.HttpMethod;
+import com.microsoft.aad.msal4j.HttpRequest;
+import com.microsoft.aad.msal4j.HttpResponse;
+import com.microsoft.aad.msal4j.IHttpClient;
+import com.microsoft.aad.msal4j.IHttpResponse;
+
+import redis.clients.authentication.core.HttpSupport;
+
+/**
+ * Http client for MSAL which keeps the connections to the identity provider alive and reusable between the
+ * token requests.
+ *
+ * <p>Connections are pooled by the keep-alive cache of the JDK, per host and per client, as each client has its own
+ * SSL socket factory. Responses are always read to the end, including the error responses, so that the connection
+ * goes back to the pool instead of being closed. The pool drops idle connections after a few seconds, see
+ * {@link #keepAliveTimeInMs()}, which is shorter than the time between renewals; {@link #warmUp(URL)} opens a fresh
+ * connection shortly before a renewal, see
+ * {@link redis.clients.authentication.core.TokenAuthConfig.Builder#warmUpLeadTimeInMs(int)}. TLS sessions
+ * are cached by the SSL context of the client for much longer, so even a new connection resumes the previous
+ * session with an abbreviated handshake.
+ *
+ * <p>HTTP/2 is not available with the http client of Java 8, requests are made with HTTP/1.1.
+ */
+public class KeepAliveHttpClient implements IHttpClient {
+
+    public static final int DEFAULT_CONNECT_TIMEOUT_IN_MS = 5000;
+    public static final int DEFAULT_READ_TIMEOUT_IN_MS = 5000;
+
+    private static final int BUFFER_SIZE = 4096;
+    // idle time of the keep-alive cache of the JDK for servers not sending a Keep-Alive header
+    private static final int DEFAULT_KEEP_ALIVE_TIME_IN_SECONDS = 5;
+
+    private final SSLSocketFactory sslSocketFactory;
+    private final Proxy proxy;
+    private final int connectTimeoutInMs;
+    private final int readTimeoutInMs;
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    public KeepAliveHttpClient() {
+        this(DEFAULT_CONNECT_TIMEOUT_IN_MS, DEFAULT_READ_TIMEOUT_IN_MS);
+    }
+
+    public KeepAliveHttpClient(int connectTimeoutInMs, int readTimeoutInMs) {
+        this(HttpSupport.dedicatedSslSocketFactory(), null, connectTimeoutInMs, readTimeoutInMs);
+    }
+
+    /**
+     * @param sslSocketFactory socket factory for the https connections, its SSL context caches the TLS sessions
+     * @param proxy proxy for the connections, null for a direct connection
+     * @param connectTimeoutInMs
+     * @param readTimeoutInMs
+     */
+    public KeepAliveHttpClient(SSLSocketFactory sslSocketFactory, Proxy proxy, int connectTimeoutInMs,
+            int readTimeoutInMs) {
+        this.sslSocketFactory = sslSocketFactory;
+        this.proxy = proxy;
+        this.connectTimeoutInMs = connectTimeoutInMs;
+        this.readTimeoutInMs = readTimeoutInMs;
+    }
+
+    /**
+     * Returns the time the JDK keeps an idle connection in the pool, 5 seconds unless set with the
+     * http.keepAlive.time.server system property. A connection warmed up longer than that before a request is
+     * dropped before it is used. Servers sending a Keep-Alive header with a timeout may shorten it.
+     * @return
+     */
+    public static int keepAliveTimeInMs() {
+        return Integer.getInteger("http.keepAlive.time.server", DEFAULT_KEEP_ALIVE_TIME_IN_SECONDS) * 1000;
+    }
+
+    @Override
+    public IHttpResponse send(HttpRequest request) throws Exception {
+        return execute(request.url(), request.httpMethod(), request.headers(), request.body());
+    }
+
+    /**
+     * Resolves the host of the given url and opens a connection to it with a GET request, so that the next
+     * request to the same host finds an established connection in the pool.
+     * Failures are only logged, they surface with the next request if they persist.
+     * @param url a lightweight resource to fetch, e.g. the OpenID configuration of the authority
+     * @return true if the connection is established
+     */
+    public boolean warmUp(URL url) {
+        try {
+            InetAddress.getAllByName(url.getHost());
+            execute(url, HttpMethod.GET, null, null);
+            return true;
+        } catch (IOException e) {
+            logger.debug("Failed to warm up connection to {}: {}", url.getHost(), e.toString());
+            return false;
+        }
+    }
+
+    private HttpResponse execute(URL url, HttpMethod method, Map<String, String> headers, String body)
+            throws IOException {
+        HttpURLConnection connection = openConnection(url);
+        try {
+            connection.setRequestMethod(method.methodName);
+            if (headers != null) {
+                for (Map.Entry<String, String> header : headers.entrySet()) {
+                    if (header.getValue() != null) {
+                        connection.setRequestProperty(header.getKey(), header.getValue());
+                    }
+                }
+            }
+            if (method == HttpMethod.POST && body != null) {
+                connection.setDoOutput(true);
+                try (OutputStream out = connection.getOutputStream()) {
+                    out.write(body.getBytes(StandardCharsets.UTF_8));
+                }
+            }
+            return readResponse(connection);
+        } catch (IOException e) {
+            // the connection is in an unknown state, do not let it back to the pool
+            connection.disconnect();
+            throw e;
+        }
+    }
+
+    /**
+     * Opens the connection for a request to the given url, subclasses may e.g. route the requests elsewhere.
+     * @param url
+     * @return the connection, not connected yet
+     * @throws IOException
+     */
+    protected HttpURLConnection openConnection(URL url) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) (proxy == null ? url.openConnection()
+                : url.openConnection(proxy));
+        if (connection instanceof HttpsURLConnection && sslSocketFactory != null) {
+            ((HttpsURLConnection) connection).setSSLSocketFactory(sslSocketFactory);
+        }
+        connection.setConnectTimeout(connectTimeoutInMs);
+        connection.setReadTimeout(readTimeoutInMs);
+        connection.setUseCaches(false);
+        return connection;
+    }
+
+    private HttpResponse readResponse(HttpURLConnection connection) throws IOException {
+        int statusCode = connection.getResponseCode();
+        HttpResponse response = new HttpResponse().statusCode(statusCode);
+        Map<String, List<String>> headers = new HashMap<>();
+        for (Map.Entry<String, List<String>> header : connection.getHeaderFields().entrySet()) {
+            // status line is reported with a null key
+            if (header.getKey() != null) {
+                headers.put(header.getKey(), header.getValue());
+            }
+        }
+        response.addHeaders(headers);
+        InputStream in = statusCode >= HttpURLConnection.HTTP_BAD_REQUEST ? connection.getErrorStream()
+                : connection.getInputStream();
+        response.body(in == null ? "" : readFully(in));
+        return response;
+    }
+
+    private static String readFully(InputStream in) throws IOException {
+        try (InputStream stream = in) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = stream.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+}
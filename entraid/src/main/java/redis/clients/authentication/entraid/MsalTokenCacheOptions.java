@@ -0,0 +1,47 @@
+/*
+ * Copyright 2024, Redis Ltd. and Contributors
+ * All rights reserved.
+ *
+ * Licensed under the MIT License.
+ */
+package redis.clients.authentication.entraid;
+
+import com.microsoft.aad.msal4j.ITokenCacheAccessAspect;
+
+/**
+ * Options for the token cache of MSAL.
+ * By default the cache is skipped and every token request is a round trip to EntraID. With the cache enabled,
+ * MSAL serves the token from its in-memory cache until it is close to expiration, and the cache can be
+ * persisted with an {@link ITokenCacheAccessAspect} for service principals.
+ * Managed identities only support the in-memory cache.
+ */
+public final class MsalTokenCacheOptions {
+
+    public static final MsalTokenCacheOptions DISABLED = new MsalTokenCacheOptions(false, null);
+    public static final MsalTokenCacheOptions IN_MEMORY = new MsalTokenCacheOptions(true, null);
+
+    private final boolean enabled;
+    private final ITokenCacheAccessAspect cacheAccessAspect;
+
+    private MsalTokenCacheOptions(boolean enabled, ITokenCacheAccessAspect cacheAccessAspect) {
+        this.enabled = enabled;
+        this.cacheAccessAspect = cacheAccessAspect;
+    }
+
+    /**
+     * Enables the cache, persisted with the given aspect.
+     * @param cacheAccessAspect
+     * @return
+     */
+    public static MsalTokenCacheOptions persisted(ITokenCacheAccessAspect cacheAccessAspect) {
+        return new MsalTokenCacheOptions(true, cacheAccessAspect);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public ITokenCacheAccessAspect getCacheAccessAspect() {
+        return cacheAccessAspect;
+    }
+}
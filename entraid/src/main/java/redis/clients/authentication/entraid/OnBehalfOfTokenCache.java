@@ -0,0 +1,246 @@
+/*
+ * Copyright 2024, Redis Ltd. and Contributors
+ * All rights reserved.
+ *
+ * Licensed under the MIT License.
+ */
+package redis.clients.authentication.entraid;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.microsoft.aad.msal4j.UserAssertion;
+
+import redis.clients.authentication.core.Token;
+
+/**
+ * Keeps the tokens requested on behalf of users, see
+ * {@link EntraIDIdentityProvider#requestTokenOnBehalfOf(UserAssertion, boolean)}, e.g. for a web API accessing
+ * Redis with the identity of each of its callers.
+ *
+ * <p>The tokens are keyed by the hash of the user assertion, as in the token cache of MSAL. Concurrent requests for
+ * the same user wait for a single token request. Once a token is past the refresh ratio of its lifetime, it is
+ * still served while a new one is requested in the background, so that users keep getting their tokens without
+ * waiting for EntraID. A user is evicted when not seen for the idle timeout, or when it is the least recently seen
+ * one and the cache is full.
+ */
+public class OnBehalfOfTokenCache implements AutoCloseable {
+
+    public static final int DEFAULT_MAX_SIZE = 10000;
+    public static final long DEFAULT_IDLE_TIMEOUT_IN_MS = 60 * 60 * 1000;
+    public static final float DEFAULT_REFRESH_RATIO = EntraIDTokenAuthConfigBuilder.DEFAULT_EXPIRATION_REFRESH_RATIO;
+
+    private static final int REFRESH_THREADS = 2;
+    private static final AtomicInteger threadCounter = new AtomicInteger();
+
+    private final EntraIDIdentityProvider identityProvider;
+    private final int maxSize;
+    private final long idleTimeoutInMs;
+    private final float refreshRatio;
+    private final ExecutorService refreshExecutor = Executors.newFixedThreadPool(REFRESH_THREADS, runnable -> {
+        Thread thread = new Thread(runnable, "entraid-obo-refresh-" + threadCounter.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+    // in access order, the least recently seen user first
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75F, true);
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private Logger logger = LoggerFactory.getLogger(getClass());
+
+    private static final class Entry {
+        private volatile UserAssertion userAssertion;
+        private volatile Token token;
+        private volatile long lastUsedAt;
+        // the pending token request of the user, if any
+        private CompletableFuture<Token> pending;
+    }
+
+    public OnBehalfOfTokenCache(EntraIDIdentityProvider identityProvider) {
+        this(identityProvider, DEFAULT_MAX_SIZE, DEFAULT_IDLE_TIMEOUT_IN_MS, DEFAULT_REFRESH_RATIO);
+    }
+
+    /**
+     * @param identityProvider provider of the service principal requesting the tokens, closed with the cache
+     * @param maxSize maximum number of users, the least recently seen one is evicted beyond it
+     * @param idleTimeoutInMs time after which an unseen user is evicted
+     * @param refreshRatio ratio of the token lifetime after which the token is renewed in the background
+     */
+    public OnBehalfOfTokenCache(EntraIDIdentityProvider identityProvider, int maxSize, long idleTimeoutInMs,
+            float refreshRatio) {
+        if (maxSize < 1) {
+            throw new RedisEntraIDException("On-behalf-of token cache requires a size of at least one!");
+        }
+        this.identityProvider = identityProvider;
+        this.maxSize = maxSize;
+        this.idleTimeoutInMs = idleTimeoutInMs;
+        this.refreshRatio = refreshRatio;
+    }
+
+    /**
+     * Returns the token of the user of the given assertion, requesting it only if there is no valid one.
+     * @param userAssertion e.g. the access token of the caller of a web API
+     * @return
+     */
+    public Token getToken(String userAssertion) {
+        UserAssertion assertion = new UserAssertion(userAssertion);
+        long now = System.currentTimeMillis();
+        Entry entry;
+        CompletableFuture<Token> pending;
+        boolean refresh = false;
+        synchronized (this) {
+            entry = entries.get(assertion.getAssertionHash());
+            if (entry == null || now - entry.lastUsedAt >= idleTimeoutInMs) {
+                entry = new Entry();
+                entry.lastUsedAt = now;
+                entries.put(assertion.getAssertionHash(), entry);
+                evictOverflow(now);
+            }
+            entry.userAssertion = assertion;
+            entry.lastUsedAt = now;
+            Token token = entry.token;
+            if (token != null && token.getExpiresAt() > now) {
+                hits.incrementAndGet();
+                if (entry.pending == null && now >= refreshAt(token)) {
+                    entry.pending = new CompletableFuture<>();
+                    refresh = true;
+                }
+                pending = null;
+            } else {
+                misses.incrementAndGet();
+                if (entry.pending == null) {
+                    entry.pending = new CompletableFuture<>();
+                    refresh = true;
+                }
+                pending = entry.pending;
+            }
+        }
+        if (pending == null) {
+            if (refresh) {
+                refreshInBackground(entry);
+            }
+            return entry.token;
+        }
+        if (refresh) {
+            // the first caller requests the token, the others wait for it
+            request(entry, false);
+        }
+        try {
+            return pending.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RedisEntraIDException("Interrupted while waiting for on-behalf-of token!", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RedisEntraIDException("Failed to acquire on-behalf-of token!", e);
+        }
+    }
+
+    private long refreshAt(Token token) {
+        return token.getReceivedAt() + (long) ((token.getExpiresAt() - token.getReceivedAt()) * refreshRatio);
+    }
+
+    private void refreshInBackground(Entry entry) {
+        try {
+            refreshExecutor.execute(() -> request(entry, true));
+        } catch (RejectedExecutionException e) {
+            complete(entry, null, e);
+        }
+    }
+
+    /**
+     * Requests the token of the entry and completes its pending request. A failed refresh keeps the current
+     * token, to be tried again with the next use after it.
+     */
+    private void request(Entry entry, boolean forceRefresh) {
+        try {
+            complete(entry, identityProvider.requestTokenOnBehalfOf(entry.userAssertion, forceRefresh), null);
+        } catch (RuntimeException e) {
+            if (forceRefresh) {
+                logger.warn("Failed to refresh on-behalf-of token: {}", e.toString());
+            }
+            complete(entry, null, e);
+        }
+    }
+
+    private void complete(Entry entry, Token token, RuntimeException error) {
+        CompletableFuture<Token> pending;
+        synchronized (this) {
+            if (token != null) {
+                entry.token = token;
+            }
+            pending = entry.pending;
+            entry.pending = null;
+        }
+        if (token != null) {
+            pending.complete(token);
+        } else {
+            pending.completeExceptionally(error);
+        }
+    }
+
+    /**
+     * Evicts the users not seen for the idle timeout, then the least recently seen ones beyond the maximum size.
+     */
+    private void evictOverflow(long now) {
+        for (Iterator<Entry> it = entries.values().iterator(); it.hasNext();) {
+            Entry entry = it.next();
+            if (entries.size() > maxSize || now - entry.lastUsedAt >= idleTimeoutInMs) {
+                it.remove();
+                evictions.incrementAndGet();
+            } else {
+                // the rest is seen more recently
+                break;
+            }
+        }
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the number of tokens served from the cache.
+     * @return
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * Returns the number of tokens which had to be requested from EntraID before being served.
+     * @return
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    /**
+     * Drops the tokens of all users and closes the identity provider.
+     */
+    @Override
+    public void close() {
+        refreshExecutor.shutdownNow();
+        synchronized (this) {
+            entries.clear();
+        }
+        identityProvider.close();
+    }
+}
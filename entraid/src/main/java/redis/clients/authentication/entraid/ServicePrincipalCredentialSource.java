@@ -0,0 +1,30 @@
+/*
+ * Copyright 2024, Redis Ltd. and Contributors
+ * All rights reserved.
+ *
+ * Licensed under the MIT License.
+ */
+package redis.clients.authentication.entraid;
+
+import java.util.List;
+
+/**
+ * Source of the credentials of a service principal which are rotated while the application runs, e.g. a client
+ * secret read from a secret store or a certificate file renewed by a cert manager, see
+ * {@link CertificateFileCredentialSource}.
+ *
+ * <p>The {@link EntraIDIdentityProvider} asks the source for the credentials before each token request, and
+ * swaps its client applications when they have changed, without affecting the token in use. During a rotation
+ * both the new and the old credential can be returned: the tokens are requested with the first one, and with the
+ * next ones only if it is rejected by EntraID, e.g. while the new credential is not registered yet.
+ */
+@FunctionalInterface
+public interface ServicePrincipalCredentialSource {
+
+    /**
+     * Returns the credentials to request the tokens with, the primary one first. All of them are of the same
+     * client application and authority.
+     * @return
+     */
+    List<ServicePrincipalInfo> getCredentials();
+}
@@ -6,19 +6,21 @@
  */
 package redis.clients.authentication.entraid;
 
+import java.nio.file.Path;
 import java.security.PrivateKey;
 import java.security.cert.X509Certificate;
 
 public class ServicePrincipalInfo {
 
     public enum ServicePrincipalAccess {
-        WithSecret, WithCert,
+        WithSecret, WithCert, WithFederatedToken,
     }
 
     private String clientId;
     private String secret;
     private PrivateKey key;
     private X509Certificate cert;
+    private Path federatedTokenFile;
     private String authority;
     private ServicePrincipalAccess accessWith;
 
@@ -37,6 +39,19 @@ public class ServicePrincipalInfo {
         accessWith = ServicePrincipalAccess.WithCert;
     }
 
+    /**
+     * @param clientId
+     * @param federatedTokenFile file holding the token of an external identity provider which is trusted
+     *      by the application with a federated credential, e.g. the service account token of a Kubernetes pod
+     * @param authority
+     */
+    public ServicePrincipalInfo(String clientId, Path federatedTokenFile, String authority) {
+        this.clientId = clientId;
+        this.federatedTokenFile = federatedTokenFile;
+        this.authority = authority;
+        accessWith = ServicePrincipalAccess.WithFederatedToken;
+    }
+
     public String getClientId() {
         return clientId;
     }
@@ -53,6 +68,10 @@ public class ServicePrincipalInfo {
         return cert;
     }
 
+    public Path getFederatedTokenFile() {
+        return federatedTokenFile;
+    }
+
     public String getAuthority() {
         return authority;
     }
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2024, Redis Ltd. and Contributors
+ * All rights reserved.
+ *
+ * Licensed under the MIT License.
+ */
+package redis.clients.authentication.entraid;
+
+import java.util.List;
+import java.util.Map;
+
+import com.microsoft.aad.msal4j.MsalServiceException;
+import com.microsoft.aad.msal4j.MsalThrottlingException;
+
+import redis.clients.authentication.core.HttpSupport;
+
+/**
+ * Extracts throttling signals from the failures of token requests.
+ * Shared with the identity providers of the other modules, e.g. Azure Identity.
+ */
+public final class Throttling {
+
+    public static final int TOO_MANY_REQUESTS = 429;
+    public static final String RETRY_AFTER = HttpSupport.RETRY_AFTER;
+
+    private Throttling() {
+    }
+
+    /**
+     * Looks for a throttling signal from MSAL in the cause chain of the given error.
+     * @param error
+     * @return time in milliseconds to wait before the next request, 0 if throttled without a hint,
+     *      -1 if the error is not a throttling signal
+     */
+    public static long retryAfterInMs(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof MsalThrottlingException) {
+                return Math.max(0, ((MsalThrottlingException) cause).retryInMs());
+            }
+            if (cause instanceof MsalServiceException) {
+                MsalServiceException serviceException = (MsalServiceException) cause;
+                Integer statusCode = serviceException.statusCode();
+                if (statusCode != null && statusCode == TOO_MANY_REQUESTS) {
+                    return Math.max(0, parseRetryAfter(retryAfterHeader(serviceException.headers())));
+                }
+            }
+        }
+        return -1;
+    }
+
+    private static String retryAfterHeader(Map<String, List<String>> headers) {
+        if (headers == null) {
+            return null;
+        }
+        for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+            if (RETRY_AFTER.equalsIgnoreCase(header.getKey()) && header.getValue() != null
+                    && !header.getValue().isEmpty()) {
+                return header.getValue().get(0);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Parses the value of a Retry-After header, see {@link HttpSupport#parseRetryAfter(String)}.
+     * @param value
+     * @return time in milliseconds to wait, -1 if the value is missing or malformed
+     */
+    public static long parseRetryAfter(String value) {
+        return HttpSupport.parseRetryAfter(value);
+    }
+}
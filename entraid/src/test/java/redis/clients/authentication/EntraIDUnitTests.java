@@ -14,6 +14,9 @@ import static org.junit.Assert.assertThrows;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.mockConstruction;
+import static org.mockito.Mockito.when;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.verify;
 import static org.awaitility.Durations.*;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.lessThan;
@@ -22,14 +25,26 @@ import static org.hamcrest.Matchers.lessThanOrEqualTo;
 import static org.hamcrest.Matchers.both;
 import static org.hamcrest.MatcherAssert.assertThat;
 
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.KeyStore;
 import java.security.PrivateKey;
 import java.security.cert.X509Certificate;
 import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeoutException;
@@ -41,20 +56,37 @@ import com.microsoft.aad.msal4j.IAccount;
 import com.microsoft.aad.msal4j.ITenantProfile;
 import org.awaitility.Awaitility;
 import org.awaitility.Durations;
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManagerFactory;
+
 import org.junit.Test;
 import org.mockito.MockedConstruction;
 
 import com.auth0.jwt.JWT;
+import com.sun.net.httpserver.HttpsConfigurator;
+import com.sun.net.httpserver.HttpsServer;
 import com.auth0.jwt.algorithms.Algorithm;
 import com.microsoft.aad.msal4j.ClientCredentialFactory;
 import com.microsoft.aad.msal4j.ClientCredentialParameters;
 import com.microsoft.aad.msal4j.ConfidentialClientApplication;
+import com.microsoft.aad.msal4j.HttpMethod;
+import com.microsoft.aad.msal4j.HttpRequest;
 import com.microsoft.aad.msal4j.IAuthenticationResult;
+import com.microsoft.aad.msal4j.IHttpResponse;
 import com.microsoft.aad.msal4j.IClientSecret;
 import com.microsoft.aad.msal4j.ManagedIdentityId;
+import com.microsoft.aad.msal4j.ManagedIdentitySourceType;
+import com.microsoft.aad.msal4j.MsalServiceException;
+import com.microsoft.aad.msal4j.MsalThrottlingException;
 
+import redis.clients.authentication.core.ErrorClassifier.ErrorClass;
+import redis.clients.authentication.core.FileTokenCache;
 import redis.clients.authentication.core.IdentityProvider;
 import redis.clients.authentication.core.IdentityProviderConfig;
+import redis.clients.authentication.core.IdentityProviderThrottledException;
 import redis.clients.authentication.core.SimpleToken;
 import redis.clients.authentication.core.Token;
 import redis.clients.authentication.core.TokenAuthConfig;
@@ -62,10 +94,14 @@ import redis.clients.authentication.core.TokenListener;
 import redis.clients.authentication.core.TokenManager;
 import redis.clients.authentication.core.TokenManagerConfig;
 import redis.clients.authentication.core.TokenRequestException;
+import redis.clients.authentication.entraid.ClientAppOptions;
+import redis.clients.authentication.entraid.EntraIDErrorClassifier;
 import redis.clients.authentication.entraid.EntraIDIdentityProvider;
 import redis.clients.authentication.entraid.EntraIDTokenAuthConfigBuilder;
 import redis.clients.authentication.entraid.JWToken;
+import redis.clients.authentication.entraid.KeepAliveHttpClient;
 import redis.clients.authentication.entraid.ManagedIdentityInfo;
+import redis.clients.authentication.entraid.MsalTokenCacheOptions;
 import redis.clients.authentication.entraid.RedisEntraIDException;
 import redis.clients.authentication.entraid.ServicePrincipalInfo;
 import redis.clients.authentication.entraid.ManagedIdentityInfo.UserManagedIdentityType;
@@ -155,6 +191,28 @@ public class EntraIDUnitTests {
         // spi || mpi && customEntraIdAuthenticationSupplier configured
         assertThrows(RedisEntraIDException.class, () -> EntraIDTokenAuthConfigBuilder.builder().clientId("clientid")
                 .secret("secret").customEntraIdAuthenticationSupplier(() -> mock(IAuthenticationResult.class)).build());
+
+        // managed identity without a resource
+        assertThrows(RedisEntraIDException.class,
+            () -> EntraIDTokenAuthConfigBuilder.builder().systemAssignedManagedIdentity().build());
+        // managed identity with more than one resource keeps requesting the tokens for the first one
+        Set<String> multipleScopes = new HashSet<>(Arrays.asList("https://redis.azure.com", "https://vault.azure.net"));
+        IdentityProviderConfig multiScopeConfig = EntraIDTokenAuthConfigBuilder.builder()
+                .systemAssignedManagedIdentity().scopes(multipleScopes).build().getIdentityProviderConfig();
+        try (MockedConstruction<EntraIDIdentityProvider> mockedConstructor = mockConstruction(
+            EntraIDIdentityProvider.class,
+            (mock, context) -> assertEquals(Collections.singleton(multipleScopes.iterator().next()),
+                context.arguments().get(1)))) {
+            multiScopeConfig.getProvider();
+            assertEquals(1, mockedConstructor.constructed().size());
+        }
+        new EntraIDIdentityProvider(new ManagedIdentityInfo(),
+                new HashSet<>(Arrays.asList("https://redis.azure.com", "https://vault.azure.net")), 1000).close();
+
+        // hedging without a provider to race
+        assertThrows(RedisEntraIDException.class,
+            () -> EntraIDTokenAuthConfigBuilder.builder().systemAssignedManagedIdentity()
+                    .scopes(Collections.singleton("https://redis.azure.com")).hedgeAfterMs(500).build());
     }
 
     // T.1.2
@@ -482,6 +540,23 @@ public class EntraIDUnitTests {
         assertEquals(token, actual.getValue());
         assertEquals(aSecondBefore, actual.getExpiresAt());
         assertThat((Long) (System.currentTimeMillis() - actual.getReceivedAt()), lessThanOrEqualTo((Long) 10L));
+        assertEquals("user1", actual.getUser());
+
+        token = JWT.create().withExpiresAt(new Date(aSecondBefore)).withClaim("oid", "user1")
+                .withClaim("name", "caf\u00e9 \"quoted\"").withClaim("admin", true)
+                .withArrayClaim("roles", new String[] { "reader", "writer" }).sign(Algorithm.none());
+        actual = new JWToken(token);
+        assertEquals("caf\u00e9 \"quoted\"", actual.tryGet("name", String.class));
+        assertEquals(Boolean.TRUE, actual.tryGet("admin", Boolean.class));
+        assertEquals(Arrays.asList("reader", "writer"), actual.tryGet("roles", List.class));
+        assertEquals((Long) (aSecondBefore / 1000), actual.tryGet("exp", Long.class));
+        assertEquals(new Date(aSecondBefore), actual.tryGet("exp", Date.class));
+        assertNull(actual.tryGet("missing", String.class));
+        assertNull(actual.tryGet("admin", Long.class));
+
+        assertThrows(RedisEntraIDException.class, () -> new JWToken("not-a-jwt"));
+        assertThrows(RedisEntraIDException.class, () -> new JWToken("e30.eyJvaWQiOiJ1c2VyMSJ9.")); // no exp
+        assertThrows(RedisEntraIDException.class, () -> new JWToken("e30.eyJvaWQiOiJ1c2VyMQ.")); // broken json
     }
 
     // T.2.5
@@ -619,6 +694,289 @@ public class EntraIDUnitTests {
         }
     }
 
+    @Test
+    public void throttledTokenRequestTest() {
+        long retryInMs = 5000;
+        EntraIDIdentityProvider provider = new EntraIDIdentityProvider(() -> {
+            throw new MsalThrottlingException(retryInMs);
+        });
+
+        IdentityProviderThrottledException e = assertThrows(IdentityProviderThrottledException.class,
+            provider::requestToken);
+        assertEquals(retryInMs, e.getRetryAfterInMs());
+    }
+
+    @Test
+    public void rateLimitKeyPerAuthorityTest() {
+        TokenAuthConfig config = EntraIDTokenAuthConfigBuilder.builder().clientId("testClientId").secret("testSecret")
+                .authority("https://login.microsoftonline.com/testTenant").rateLimit(5, 10).build();
+        TokenManagerConfig.RateLimitPolicy policy = config.getTokenManagerConfig().getRateLimitPolicy();
+        assertEquals("entraid:https://login.microsoftonline.com/testTenant", policy.getKey());
+        assertEquals(5, policy.getPermitsPerSecond(), 0);
+        assertEquals(10, policy.getBurst());
+    }
+
+    @Test
+    public void errorClassifierTest() {
+        EntraIDErrorClassifier classifier = new EntraIDErrorClassifier();
+        MsalServiceException invalidSecret = new MsalServiceException("AADSTS7000215: Invalid client secret provided.",
+                "invalid_client");
+        assertEquals(ErrorClass.PERMANENT,
+            classifier.classify(new RedisEntraIDException("Failed to acquire token!", invalidSecret)));
+        MsalServiceException invalidGrant = new MsalServiceException(
+                "AADSTS700016: Application with identifier 'testClientId' was not found.", "invalid_grant");
+        assertEquals(ErrorClass.PERMANENT, classifier.classify(invalidGrant));
+        assertEquals(ErrorClass.THROTTLED, classifier.classify(new MsalThrottlingException(1000)));
+        MsalServiceException identityNotAssigned = new MsalServiceException(
+                "[Managed Identity] request failed, HttpStatusCode: 404, Error message: Identity not found",
+                "managed_identity_request_failed", ManagedIdentitySourceType.IMDS);
+        assertEquals(ErrorClass.RETRYABLE, classifier.classify(identityNotAssigned));
+        assertEquals(ErrorClass.RETRYABLE, classifier.classify(
+            new RedisEntraIDException("Failed to acquire token!", new ExecutionException(new TimeoutException()))));
+
+        TokenAuthConfig config = EntraIDTokenAuthConfigBuilder.builder().clientId("testClientId").secret("testSecret")
+                .build();
+        assertThat(config.getTokenManagerConfig().getErrorClassifier(),
+            org.hamcrest.Matchers.instanceOf(EntraIDErrorClassifier.class));
+    }
+
+    @Test
+    public void persistentTokenCacheTest() throws Exception {
+        Path directory = Paths.get("target", "token-cache");
+        SecretKey key = KeyGenerator.getInstance("AES").generateKey();
+        FileTokenCache cache1 = (FileTokenCache) EntraIDTokenAuthConfigBuilder.builder().clientId("testClientId1")
+                .secret("testSecret").scopes(Collections.singleton("testScope")).persistentTokenCache(directory, key)
+                .build().getTokenManagerConfig().getTokenCache();
+        FileTokenCache cache2 = (FileTokenCache) EntraIDTokenAuthConfigBuilder.builder().clientId("testClientId2")
+                .secret("testSecret").scopes(Collections.singleton("testScope")).persistentTokenCache(directory, key)
+                .build().getTokenManagerConfig().getTokenCache();
+        assertNotNull(cache1);
+        assertFalse(cache1.getFile().equals(cache2.getFile()));
+
+        assertThrows(RedisEntraIDException.class, () -> EntraIDTokenAuthConfigBuilder.builder()
+                .customEntraIdAuthenticationSupplier(() -> null).persistentTokenCache(directory, key).build());
+    }
+
+    @Test
+    public void msalTokenCacheConfigTest() {
+        IdentityProviderConfig config = EntraIDTokenAuthConfigBuilder.builder().clientId("testClientId")
+                .secret("testSecret").scopes(Collections.singleton("testScope")).useMsalTokenCache().build()
+                .getIdentityProviderConfig();
+        try (MockedConstruction<EntraIDIdentityProvider> mockedConstructor = mockConstruction(
+            EntraIDIdentityProvider.class, (mock, context) -> {
+                assertEquals(MsalTokenCacheOptions.IN_MEMORY,
+                    ((ClientAppOptions) context.arguments().get(3)).getTokenCacheOptions());
+            })) {
+            config.getProvider();
+            assertEquals(1, mockedConstructor.constructed().size());
+        }
+    }
+
+    @Test
+    public void prewarmTest() throws Exception {
+        try (MockedConstruction<EntraIDIdentityProvider> mockedConstructor = mockConstruction(
+            EntraIDIdentityProvider.class)) {
+            TokenAuthConfig config = EntraIDTokenAuthConfigBuilder.builder().clientId("testClientId")
+                    .secret("testSecret").scopes(Collections.singleton("testScope")).prewarm().build();
+            assertEquals(1, mockedConstructor.constructed().size());
+            EntraIDIdentityProvider prewarmed = mockedConstructor.constructed().get(0);
+            Awaitility.await().atMost(Durations.ONE_SECOND).untilAsserted(() -> verify(prewarmed).prewarm());
+
+            // prewarmed provider is handed out first, then new ones as usual
+            assertEquals(prewarmed, config.getIdentityProviderConfig().getProvider());
+            assertFalse(prewarmed == config.getIdentityProviderConfig().getProvider());
+            assertEquals(2, mockedConstructor.constructed().size());
+        }
+    }
+
+    @Test
+    public void sharedClientAppTest() {
+        String token = JWT.create().withExpiresAt(new Date(System.currentTimeMillis() + 60 * 1000))
+                .withClaim("oid", "user1").sign(Algorithm.none());
+        IAuthenticationResult result = mock(IAuthenticationResult.class);
+        when(result.accessToken()).thenReturn(token);
+        ServicePrincipalInfo info = new ServicePrincipalInfo("testClientId", "testSecret", null);
+
+        try (MockedConstruction<ConfidentialClientApplication> mockedConstructor = mockConstruction(
+            ConfidentialClientApplication.class, (mock, context) -> {
+                when(mock.acquireToken(any(ClientCredentialParameters.class)))
+                        .thenReturn(CompletableFuture.completedFuture(result));
+            })) {
+            EntraIDIdentityProvider provider1 = new EntraIDIdentityProvider(info, Collections.singleton("scope1"),
+                    1000);
+            EntraIDIdentityProvider provider2 = new EntraIDIdentityProvider(info, Collections.singleton("scope2"),
+                    1000);
+            assertEquals(token, provider1.requestToken().getValue());
+            assertEquals(token, provider2.requestToken().getValue());
+            assertEquals(1, mockedConstructor.constructed().size());
+
+            // application is released with the last provider, and created again when needed
+            provider1.close();
+            provider2.requestToken();
+            provider2.close();
+            provider2.requestToken();
+            assertEquals(2, mockedConstructor.constructed().size());
+            provider2.close();
+        }
+    }
+
+    @Test
+    public void keepAliveHttpClientTest() throws Exception {
+        List<Integer> clientPorts = Collections.synchronizedList(new ArrayList<>());
+        SSLContext sslContext = createSelfSignedSslContext(Paths.get("target", "keep-alive-test"));
+        HttpsServer server = HttpsServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.setHttpsConfigurator(new HttpsConfigurator(sslContext));
+        server.createContext("/", exchange -> {
+            clientPorts.add(exchange.getRemoteAddress().getPort());
+            boolean tokenRequest = "POST".equals(exchange.getRequestMethod());
+            byte[] body = (tokenRequest ? "{\"error\":\"invalid_client\"}" : "{}").getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(tokenRequest ? 401 : 200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        server.start();
+        try {
+            String base = "https://localhost:" + server.getAddress().getPort() + "/tenant";
+            KeepAliveHttpClient client = new KeepAliveHttpClient(sslContext.getSocketFactory(), null, 1000, 1000);
+            assertTrue(client.warmUp(new URL(base + "/v2.0/.well-known/openid-configuration")));
+
+            HttpRequest request = mock(HttpRequest.class);
+            when(request.url()).thenReturn(new URL(base + "/oauth2/v2.0/token"));
+            when(request.httpMethod()).thenReturn(HttpMethod.POST);
+            when(request.headers())
+                    .thenReturn(Collections.singletonMap("Content-Type", "application/x-www-form-urlencoded"));
+            when(request.body()).thenReturn("grant_type=client_credentials");
+            IHttpResponse response = client.send(request);
+            assertEquals(401, response.statusCode());
+            assertTrue(response.body().contains("invalid_client"));
+            // error response is read to the end, so the connection is reused for the next request
+            client.send(request);
+
+            assertEquals(3, clientPorts.size());
+            assertEquals(1, new HashSet<>(clientPorts).size());
+            assertFalse(client.warmUp(new URL("https://localhost:1/tenant")));
+
+            // a connection warmed up beyond the keep-alive time would be dropped before the renewal
+            assertThrows(RedisEntraIDException.class,
+                () -> EntraIDTokenAuthConfigBuilder.builder().clientId("clientid").secret("secret")
+                        .authority("https://login.microsoftonline.com/tenant").scopes(Collections.singleton("scope"))
+                        .httpClient(client).warmUpLeadTimeInMs(KeepAliveHttpClient.keepAliveTimeInMs()).build());
+            EntraIDTokenAuthConfigBuilder.builder().clientId("clientid").secret("secret")
+                    .authority("https://login.microsoftonline.com/tenant").scopes(Collections.singleton("scope"))
+                    .httpClient(client).warmUpLeadTimeInMs(2000).build();
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void regionalFallbackTest() {
+        String token = JWT.create().withExpiresAt(new Date(System.currentTimeMillis() + 60 * 1000))
+                .withClaim("oid", "user1").sign(Algorithm.none());
+        IAuthenticationResult result = mock(IAuthenticationResult.class);
+        when(result.accessToken()).thenReturn(token);
+        ServicePrincipalInfo info = new ServicePrincipalInfo("testClientId", "testSecret", null);
+        ClientAppOptions options = ClientAppOptions.builder().azureRegion("westus2").build();
+
+        try (MockedConstruction<ConfidentialClientApplication> mockedConstructor = mockConstruction(
+            ConfidentialClientApplication.class, (mock, context) -> {
+                CompletableFuture<IAuthenticationResult> response = new CompletableFuture<>();
+                if (context.getCount() == 1) {
+                    // regional token service is unreachable
+                    response.completeExceptionally(new SocketTimeoutException("connect timed out"));
+                } else {
+                    response.complete(result);
+                }
+                when(mock.acquireToken(any(ClientCredentialParameters.class))).thenReturn(response);
+            })) {
+            EntraIDIdentityProvider provider = new EntraIDIdentityProvider(info, Collections.singleton("scope"), 1000,
+                    options);
+            assertEquals(token, provider.requestToken().getValue());
+            assertEquals(2, mockedConstructor.constructed().size());
+            assertEquals(1, provider.getEndpointStats().get("regional:westus2").getFailureCount());
+            assertEquals(1, provider.getEndpointStats().get("global").getRequestCount());
+
+            // global token service is used for a while after the fallback
+            assertEquals(token, provider.requestToken().getValue());
+            assertEquals(1, provider.getEndpointStats().get("regional:westus2").getRequestCount());
+            assertEquals(2, provider.getEndpointStats().get("global").getRequestCount());
+            provider.close();
+        }
+
+        assertThrows(RedisEntraIDException.class, () -> EntraIDTokenAuthConfigBuilder.builder()
+                .systemAssignedManagedIdentity().scopes(Collections.singleton("scope")).azureRegion("westus2").build());
+    }
+
+    @Test
+    public void instanceDiscoveryConfigTest() throws Exception {
+        String metadata = "{\"tenant_discovery_endpoint\":"
+                + "\"https://login.microsoftonline.com/tenant/v2.0/.well-known/openid-configuration\","
+                + "\"api-version\":\"1.1\",\"metadata\":[{\"preferred_network\":\"login.microsoftonline.com\","
+                + "\"preferred_cache\":\"login.windows.net\","
+                + "\"aliases\":[\"login.microsoftonline.com\",\"login.windows.net\"]}]}";
+        Path file = Paths.get("target", "instance-discovery.json");
+        Files.write(file, metadata.getBytes(StandardCharsets.UTF_8));
+
+        IdentityProviderConfig config = EntraIDTokenAuthConfigBuilder.builder().clientId("testClientId")
+                .secret("testSecret").authority("https://login.microsoftonline.com/tenant")
+                .scopes(Collections.singleton("testScope")).skipInstanceDiscovery().instanceDiscoveryMetadata(file)
+                .build().getIdentityProviderConfig();
+        try (MockedConstruction<EntraIDIdentityProvider> mockedConstructor = mockConstruction(
+            EntraIDIdentityProvider.class, (mock, context) -> {
+                ClientAppOptions options = (ClientAppOptions) context.arguments().get(3);
+                assertFalse(options.isInstanceDiscovery());
+                assertEquals(metadata, options.getInstanceDiscoveryMetadata());
+            })) {
+            config.getProvider();
+            assertEquals(1, mockedConstructor.constructed().size());
+        }
+
+        // metadata is accepted by MSAL
+        String token = JWT.create().withExpiresAt(new Date(System.currentTimeMillis() + 60 * 1000))
+                .withClaim("oid", "user1").sign(Algorithm.none());
+        IAuthenticationResult result = mock(IAuthenticationResult.class);
+        when(result.accessToken()).thenReturn(token);
+        try (MockedConstruction<ConfidentialClientApplication> mockedConstructor = mockConstruction(
+            ConfidentialClientApplication.class, (mock, context) -> {
+                when(mock.acquireToken(any(ClientCredentialParameters.class)))
+                        .thenReturn(CompletableFuture.completedFuture(result));
+            })) {
+            EntraIDIdentityProvider provider = (EntraIDIdentityProvider) config.getProvider();
+            assertEquals(token, provider.requestToken().getValue());
+            provider.close();
+        }
+
+        assertThrows(RedisEntraIDException.class,
+            () -> EntraIDTokenAuthConfigBuilder.builder().clientId("testClientId").secret("testSecret")
+                    .scopes(Collections.singleton("testScope"))
+                    .instanceDiscoveryMetadata(Paths.get("target", "missing.json")).build());
+    }
+
+    private SSLContext createSelfSignedSslContext(Path directory) throws Exception {
+        Files.createDirectories(directory);
+        Path keyStoreFile = directory.resolve("localhost.p12");
+        Files.deleteIfExists(keyStoreFile);
+        char[] password = "changeit".toCharArray();
+        String keytool = Paths.get(System.getProperty("java.home"), "bin", "keytool").toString();
+        Process process = new ProcessBuilder(keytool, "-genkeypair", "-alias", "localhost", "-keyalg", "RSA",
+                "-keysize", "2048", "-dname", "CN=localhost", "-ext", "SAN=dns:localhost", "-validity", "1",
+                "-storetype", "PKCS12", "-keystore", keyStoreFile.toString(), "-storepass", new String(password),
+                "-keypass", new String(password)).inheritIO().start();
+        assertEquals(0, process.waitFor());
+
+        KeyStore keyStore = KeyStore.getInstance("PKCS12");
+        try (InputStream in = Files.newInputStream(keyStoreFile)) {
+            keyStore.load(in, password);
+        }
+        KeyManagerFactory keyManagers = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        keyManagers.init(keyStore, password);
+        TrustManagerFactory trustManagers = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+        trustManagers.init(keyStore);
+        SSLContext sslContext = SSLContext.getInstance("TLS");
+        sslContext.init(keyManagers.getKeyManagers(), trustManagers.getTrustManagers(), null);
+        return sslContext;
+    }
+
     private void delay(long durationInMs) {
         try {
             Thread.sleep(durationInMs);
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2024, Redis Ltd. and Contributors
+ * All rights reserved.
+ *
+ * Licensed under the MIT License.
+ */
+package redis.clients.authentication.oauth2;
+
+import java.security.GeneralSecurityException;
+import java.util.UUID;
+
+import redis.clients.authentication.core.JwtSigner;
+
+/**
+ * Creates the signed JWTs a client authenticates with to the token endpoint, as in RFC 7523.
+ */
+final class ClientAssertion {
+
+    static final String ASSERTION_TYPE = "urn:ietf:params:oauth:client-assertion-type:jwt-bearer";
+    static final long LIFETIME_IN_SECONDS = 5 * 60;
+
+    private ClientAssertion() {
+    }
+
+    /**
+     * Creates an assertion for the given client, valid for a few minutes from now.
+     * @param info client with the private key to sign the assertion with
+     * @return the signed assertion
+     */
+    static String create(ClientCredentialsInfo info) {
+        try {
+            StringBuilder header = new StringBuilder("{\"alg\":\"RS256\",\"typ\":\"JWT\"");
+            if (info.getCert() != null) {
+                byte[] encoded = info.getCert().getEncoded();
+                header.append(",\"x5t\":\"").append(JwtSigner.thumbprint("SHA-1", encoded)).append('"');
+                header.append(",\"x5t#S256\":\"").append(JwtSigner.thumbprint("SHA-256", encoded)).append('"');
+            }
+            header.append('}');
+
+            long now = System.currentTimeMillis() / 1000;
+            String payload = "{\"iss\":" + JwtSigner.quote(info.getClientId()) + ",\"sub\":"
+                    + JwtSigner.quote(info.getClientId()) + ",\"aud\":" + JwtSigner.quote(info.getTokenEndpoint())
+                    + ",\"jti\":\"" + UUID.randomUUID() + "\",\"iat\":" + now + ",\"nbf\":" + now + ",\"exp\":"
+                    + (now + LIFETIME_IN_SECONDS) + "}";
+            return JwtSigner.sign(header.toString(), payload, info.getKey());
+        } catch (GeneralSecurityException e) {
+            throw new RedisOAuth2Exception("Failed to sign client assertion!", e);
+        }
+    }
+}
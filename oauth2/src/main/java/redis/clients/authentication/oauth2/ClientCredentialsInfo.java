@@ -0,0 +1,87 @@
+/*
+ * Copyright 2024, Redis Ltd. and Contributors
+ * All rights reserved.
+ *
+ * Licensed under the MIT License.
+ */
+package redis.clients.authentication.oauth2;
+
+import java.security.PrivateKey;
+import java.security.cert.X509Certificate;
+
+/**
+ * Client of the OAuth2 client credentials grant, along with the token endpoint and the way the client
+ * authenticates to it.
+ */
+public class ClientCredentialsInfo {
+
+    public enum ClientAuthMethod {
+        /**
+         * client_secret_post, the secret is sent in the request body.
+         */
+        SecretPost,
+        /**
+         * client_secret_basic, the secret is sent with HTTP basic authentication.
+         */
+        SecretBasic,
+        /**
+         * private_key_jwt, the request carries a client assertion signed with the private key of the client.
+         */
+        PrivateKeyJwt,
+    }
+
+    private final String tokenEndpoint;
+    private final String clientId;
+    private final String secret;
+    private final PrivateKey key;
+    private final X509Certificate cert;
+    private final ClientAuthMethod authMethod;
+
+    public ClientCredentialsInfo(String tokenEndpoint, String clientId, String secret, boolean basicAuth) {
+        this.tokenEndpoint = tokenEndpoint;
+        this.clientId = clientId;
+        this.secret = secret;
+        this.key = null;
+        this.cert = null;
+        this.authMethod = basicAuth ? ClientAuthMethod.SecretBasic : ClientAuthMethod.SecretPost;
+    }
+
+    /**
+     * @param tokenEndpoint
+     * @param clientId
+     * @param key RSA key to sign the client assertions with
+     * @param cert certificate of the key, to identify it with its thumbprint, optional
+     */
+    public ClientCredentialsInfo(String tokenEndpoint, String clientId, PrivateKey key, X509Certificate cert) {
+        this.tokenEndpoint = tokenEndpoint;
+        this.clientId = clientId;
+        this.secret = null;
+        this.key = key;
+        this.cert = cert;
+        this.authMethod = ClientAuthMethod.PrivateKeyJwt;
+    }
+
+    public String getTokenEndpoint() {
+        return tokenEndpoint;
+    }
+
+    public String getClientId() {
+        return clientId;
+    }
+
+    public String getSecret() {
+        return secret;
+    }
+
+    public PrivateKey getKey() {
+        return key;
+    }
+
+    public X509Certificate getCert() {
+        return cert;
+    }
+
+    public ClientAuthMethod getAuthMethod() {
+        return authMethod;
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2024, Redis Ltd. and Contributors
+ * All rights reserved.
+ *
+ * Licensed under the MIT License.
+ */
+package redis.clients.authentication.oauth2;
+
+import java.net.MalformedURLException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import redis.clients.authentication.core.ErrorClassifier;
+import redis.clients.authentication.core.IdentityProviderThrottledException;
+
+/**
+ * Classifies the failures of token requests to an OAuth2 token endpoint.
+ *
+ * <ul>
+ *   <li>Throttling signals, HTTP 429 responses, are {@code THROTTLED}.</li>
+ *   <li>OAuth2 errors caused by the configuration, e.g. an invalid client or an invalid scope, along with any
+ *      other HTTP 400/401/403/404 response, are {@code PERMANENT}.</li>
+ *   <li>Everything else, e.g. HTTP 5xx responses, timeouts and network failures, is {@code RETRYABLE}.</li>
+ * </ul>
+ *
+ * <p>This is the default classifier of {@link OAuth2TokenAuthConfigBuilder}.
+ */
+public class OAuth2ErrorClassifier implements ErrorClassifier {
+
+    /**
+     * OAuth2 error codes, RFC 6749 5.2, for requests which cannot succeed without a change in configuration.
+     */
+    static final Set<String> PERMANENT_ERROR_CODES = Collections
+            .unmodifiableSet(new HashSet<>(Arrays.asList("invalid_client", "unauthorized_client", "invalid_scope",
+                "invalid_request", "invalid_grant", "unsupported_grant_type")));
+
+    @Override
+    public ErrorClass classify(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof IdentityProviderThrottledException) {
+                return ErrorClass.THROTTLED;
+            }
+            if (cause instanceof MalformedURLException) {
+                return ErrorClass.PERMANENT;
+            }
+            if (cause instanceof RedisOAuth2Exception) {
+                RedisOAuth2Exception oauth2Exception = (RedisOAuth2Exception) cause;
+                if (oauth2Exception.getStatusCode() == OAuth2IdentityProvider.TOO_MANY_REQUESTS) {
+                    return ErrorClass.THROTTLED;
+                }
+                if (PERMANENT_ERROR_CODES.contains(oauth2Exception.getError())) {
+                    return ErrorClass.PERMANENT;
+                }
+                switch (oauth2Exception.getStatusCode()) {
+                case 400:
+                case 401:
+                case 403:
+                case 404:
+                    return ErrorClass.PERMANENT;
+                case -1:
+                    break;
+                default:
+                    return ErrorClass.RETRYABLE;
+                }
+            }
+        }
+        return ErrorClass.RETRYABLE;
+    }
+}
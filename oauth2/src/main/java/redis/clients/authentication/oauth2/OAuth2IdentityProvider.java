@@ -0,0 +1,279 @@
+/*
+ * Copyright 2024, Redis Ltd. and Contributors
+ * All rights reserved.
+ *
+ * Licensed under the MIT License.
+ */
+package redis.clients.authentication.oauth2;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.UnsupportedEncodingException;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLSocketFactory;
+
+import redis.clients.authentication.core.AuthXException;
+import redis.clients.authentication.core.HttpSupport;
+import redis.clients.authentication.core.IdentityProvider;
+import redis.clients.authentication.core.IdentityProviderThrottledException;
+import redis.clients.authentication.core.JwtClaims;
+import redis.clients.authentication.core.SimpleToken;
+import redis.clients.authentication.core.Token;
+import redis.clients.authentication.oauth2.ClientCredentialsInfo.ClientAuthMethod;
+
+/**
+ * Identity provider for the OAuth2 client credentials grant, with any authorization server which implements it,
+ * e.g. Keycloak, Okta or the v2.0 token endpoint of EntraID.
+ *
+ * <p>Tokens are requested with a single POST to the token endpoint, without discovery of the server metadata.
+ * Connections are kept alive and reused between the requests by the keep-alive cache of the JDK, and the
+ * response is parsed as it is read, keeping only access_token and expires_in. Apart from the JDK, the provider
+ * depends only on the core module.
+ *
+ * <p>The user of the token is taken from the given claim of the access token, if it is a JWT, otherwise the
+ * client id is used.
+ */
+public final class OAuth2IdentityProvider implements IdentityProvider {
+
+    public static final String DEFAULT_USER_CLAIM = "sub";
+
+    static final int TOO_MANY_REQUESTS = 429;
+    static final int SERVICE_UNAVAILABLE = 503;
+    static final String RETRY_AFTER = HttpSupport.RETRY_AFTER;
+
+    private static final Set<String> RESPONSE_MEMBERS = Collections
+            .unmodifiableSet(new HashSet<>(Arrays.asList("access_token", "expires_in", "error", "error_description")));
+
+    private final ClientCredentialsInfo info;
+    private final String scope;
+    private final String userClaim;
+    private final int timeoutInMs;
+    private final SSLSocketFactory sslSocketFactory;
+    private final URL tokenEndpoint;
+    private final String fixedForm;
+
+    /**
+     * @param info client and token endpoint
+     * @param scopes scopes to request, none if empty
+     * @param userClaim claim of the access token to take the user from, "sub" if null
+     * @param timeoutInMs timeout to connect and to read the response, each
+     * @param sslSocketFactory socket factory for the https connections, null for a dedicated default one
+     */
+    public OAuth2IdentityProvider(ClientCredentialsInfo info, Set<String> scopes, String userClaim, int timeoutInMs,
+            SSLSocketFactory sslSocketFactory) {
+        this.info = info;
+        this.scope = scopes == null || scopes.isEmpty() ? null : String.join(" ", scopes);
+        this.userClaim = userClaim == null ? DEFAULT_USER_CLAIM : userClaim;
+        this.timeoutInMs = timeoutInMs;
+        this.sslSocketFactory = sslSocketFactory == null ? HttpSupport.dedicatedSslSocketFactory() : sslSocketFactory;
+        try {
+            this.tokenEndpoint = new URL(info.getTokenEndpoint());
+        } catch (MalformedURLException e) {
+            throw new RedisOAuth2Exception("Invalid token endpoint: " + info.getTokenEndpoint(), e);
+        }
+        this.fixedForm = fixedForm();
+    }
+
+    private String fixedForm() {
+        StringBuilder form = new StringBuilder("grant_type=client_credentials");
+        if (info.getAuthMethod() != ClientAuthMethod.SecretBasic) {
+            appendParameter(form, "client_id", info.getClientId());
+        }
+        if (scope != null) {
+            appendParameter(form, "scope", scope);
+        }
+        if (info.getAuthMethod() == ClientAuthMethod.SecretPost) {
+            appendParameter(form, "client_secret", info.getSecret());
+        }
+        return form.toString();
+    }
+
+    @Override
+    public Token requestToken() {
+        String form = fixedForm;
+        if (info.getAuthMethod() == ClientAuthMethod.PrivateKeyJwt) {
+            StringBuilder withAssertion = new StringBuilder(form);
+            appendParameter(withAssertion, "client_assertion_type", ClientAssertion.ASSERTION_TYPE);
+            appendParameter(withAssertion, "client_assertion", ClientAssertion.create(info));
+            form = withAssertion.toString();
+        }
+        long requestedAt = System.currentTimeMillis();
+        Map<String, Object> response;
+        try {
+            response = post(form.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new RedisOAuth2Exception("Failed to request token from " + info.getTokenEndpoint(), e);
+        }
+        return toToken(response, requestedAt);
+    }
+
+    /**
+     * Resolves the host of the token endpoint, so that the token request does not wait for it.
+     */
+    @Override
+    public void warmUp() {
+        try {
+            InetAddress.getAllByName(tokenEndpoint.getHost());
+        } catch (IOException e) {
+            // surfaces with the token request if it persists
+        }
+    }
+
+    private Map<String, Object> post(byte[] body) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) tokenEndpoint.openConnection();
+        try {
+            if (connection instanceof HttpsURLConnection) {
+                ((HttpsURLConnection) connection).setSSLSocketFactory(sslSocketFactory);
+            }
+            connection.setConnectTimeout(timeoutInMs);
+            connection.setReadTimeout(timeoutInMs);
+            connection.setRequestMethod("POST");
+            // not in streaming mode, which would drop the body of a 401 response
+            connection.setDoOutput(true);
+            connection.setRequestProperty("Content-Type", "application/x-www-form-urlencoded");
+            connection.setRequestProperty("Accept", "application/json");
+            if (info.getAuthMethod() == ClientAuthMethod.SecretBasic) {
+                connection.setRequestProperty("Authorization", basicAuthorization());
+            }
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(body);
+            }
+
+            int statusCode = connection.getResponseCode();
+            if (statusCode == TOO_MANY_REQUESTS
+                    || (statusCode == SERVICE_UNAVAILABLE && connection.getHeaderField(RETRY_AFTER) != null)) {
+                long retryAfterInMs = Math.max(0, HttpSupport.parseRetryAfter(connection.getHeaderField(RETRY_AFTER)));
+                drain(connection.getErrorStream());
+                throw new IdentityProviderThrottledException(
+                        "Token endpoint throttled the request with status " + statusCode, retryAfterInMs);
+            }
+            if (statusCode >= 400) {
+                Map<String, Object> error = readError(connection.getErrorStream());
+                String errorCode = error.get("error") instanceof String ? (String) error.get("error") : null;
+                Object description = error.get("error_description");
+                throw new RedisOAuth2Exception("Token request failed with status " + statusCode
+                        + (errorCode != null ? ", " + errorCode : "") + (description != null ? ": " + description : ""),
+                        statusCode, errorCode);
+            }
+            // the object is followed by the end of the response, read it so the connection goes back to the pool
+            try (InputStream in = connection.getInputStream()) {
+                Map<String, Object> response = StreamingJsonParser.readMembers(reader(in), RESPONSE_MEMBERS);
+                drain(in);
+                return response;
+            }
+        } catch (IOException e) {
+            connection.disconnect();
+            throw e;
+        }
+    }
+
+    private String basicAuthorization() throws UnsupportedEncodingException {
+        // RFC 6749 2.3.1, both are form-urlencoded before being joined
+        String credentials = URLEncoder.encode(info.getClientId(), "UTF-8") + ":"
+                + URLEncoder.encode(info.getSecret(), "UTF-8");
+        return "Basic " + Base64.getEncoder().encodeToString(credentials.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Map<String, Object> readError(InputStream in) throws IOException {
+        if (in == null) {
+            return Collections.emptyMap();
+        }
+        try (InputStream error = in) {
+            byte[] body = readFully(error);
+            try {
+                return StreamingJsonParser.readMembers(reader(new ByteArrayInputStream(body)), RESPONSE_MEMBERS);
+            } catch (RedisOAuth2Exception e) {
+                // not a JSON error response, e.g. an HTML page of a proxy
+                return Collections.emptyMap();
+            }
+        }
+    }
+
+    private Token toToken(Map<String, Object> response, long requestedAt) {
+        Object accessToken = response.get("access_token");
+        if (!(accessToken instanceof String) || ((String) accessToken).isEmpty()) {
+            throw new RedisOAuth2Exception("Token response has no access_token!");
+        }
+        String value = (String) accessToken;
+        Map<String, Object> claims = claims(value);
+
+        long expiresAt;
+        Object expiresIn = response.get("expires_in");
+        if (expiresIn instanceof Number) {
+            expiresAt = requestedAt + ((Number) expiresIn).longValue() * 1000;
+        } else if (expiresIn instanceof String && !((String) expiresIn).trim().isEmpty()) {
+            try {
+                expiresAt = requestedAt + Long.parseLong(((String) expiresIn).trim()) * 1000;
+            } catch (NumberFormatException e) {
+                throw new RedisOAuth2Exception("Token response has invalid expires_in: " + expiresIn);
+            }
+        } else if (claims.get("exp") instanceof Number) {
+            expiresAt = ((Number) claims.get("exp")).longValue() * 1000;
+        } else {
+            throw new RedisOAuth2Exception("Token has no expiration!");
+        }
+
+        Object user = claims.get(userClaim);
+        return new SimpleToken(user instanceof String ? (String) user : info.getClientId(), value, expiresAt,
+                System.currentTimeMillis(), claims);
+    }
+
+    /**
+     * Reads the top level claims of the given access token, none if it is not a JWT.
+     */
+    static Map<String, Object> claims(String accessToken) {
+        try {
+            return JwtClaims.decode(accessToken);
+        } catch (AuthXException e) {
+            return Collections.emptyMap();
+        }
+    }
+
+    private static void appendParameter(StringBuilder form, String name, String value) {
+        try {
+            form.append('&').append(name).append('=').append(URLEncoder.encode(value, "UTF-8"));
+        } catch (UnsupportedEncodingException e) {
+            throw new RedisOAuth2Exception("UTF-8 is not supported!", e);
+        }
+    }
+
+    private static Reader reader(InputStream in) {
+        return new InputStreamReader(in, StandardCharsets.UTF_8);
+    }
+
+    private static void drain(InputStream in) throws IOException {
+        if (in != null) {
+            try (InputStream stream = in) {
+                readFully(stream);
+            }
+        }
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+}
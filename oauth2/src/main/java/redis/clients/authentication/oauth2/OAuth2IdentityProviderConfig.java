@@ -0,0 +1,43 @@
+/*
+ * Copyright 2024, Redis Ltd. and Contributors
+ * All rights reserved.
+ *
+ * Licensed under the MIT License.
+ */
+package redis.clients.authentication.oauth2;
+
+import java.util.Set;
+import java.util.function.Supplier;
+
+import javax.net.ssl.SSLSocketFactory;
+
+import redis.clients.authentication.core.IdentityProvider;
+import redis.clients.authentication.core.IdentityProviderConfig;
+
+/**
+ * Configuration of an {@link OAuth2IdentityProvider}. For most cases you will not need to use it directly since
+ * OAuth2TokenAuthConfigBuilder will do the work for you:
+ * <pre>
+ * {@code
+ * TokenAuthConfig config = OAuth2TokenAuthConfigBuilder.builder()
+ *          .tokenEndpoint("https://keycloak.example.com/realms/redis/protocol/openid-connect/token")
+ *          .clientId("redis-client").secret("secret").build();
+ * }
+ * </pre>
+ *
+ * @see OAuth2IdentityProvider
+ */
+public final class OAuth2IdentityProviderConfig implements IdentityProviderConfig {
+
+    private final Supplier<IdentityProvider> providerSupplier;
+
+    public OAuth2IdentityProviderConfig(ClientCredentialsInfo info, Set<String> scopes, String userClaim,
+            int timeoutInMs, SSLSocketFactory sslSocketFactory) {
+        providerSupplier = () -> new OAuth2IdentityProvider(info, scopes, userClaim, timeoutInMs, sslSocketFactory);
+    }
+
+    @Override
+    public IdentityProvider getProvider() {
+        return providerSupplier.get();
+    }
+}
@@ -0,0 +1,245 @@
+/*
+ * Copyright 2024, Redis Ltd. and Contributors
+ * All rights reserved.
+ *
+ * Licensed under the MIT License.
+ */
+package redis.clients.authentication.oauth2;
+
+import java.security.PrivateKey;
+import java.security.cert.X509Certificate;
+import java.util.Collections;
+import java.util.Set;
+
+import javax.net.ssl.SSLSocketFactory;
+
+import redis.clients.authentication.core.TokenAuthConfig;
+import redis.clients.authentication.core.TokenManagerConfig;
+
+/**
+ * Builder class for configuring token authentication with the OAuth2 client credentials grant, against any
+ * authorization server, e.g. Keycloak, Okta or the v2.0 token endpoint of EntraID.
+ * It builds a TokenAuthConfig object with an {@link OAuth2IdentityProvider}, which requests the tokens directly
+ * from the token endpoint without MSAL.
+ *
+ * <p>Default values:</p>
+ * <ul>
+ *   <li>{@code DEFAULT_EXPIRATION_REFRESH_RATIO}: 0.75F</li>
+ *   <li>{@code DEFAULT_LOWER_REFRESH_BOUND_MILLIS}: 2 * 60 * 1000</li>
+ *   <li>{@code DEFAULT_TOKEN_REQUEST_EXECUTION_TIMEOUT_IN_MS}: 1000</li>
+ *   <li>{@code DEFAULT_MAX_ATTEMPTS_TO_RETRY}: 5</li>
+ *   <li>{@code DEFAULT_DELAY_IN_MS_TO_RETRY}: 100</li>
+ *   <li>{@code DEFAULT_FORCED_REFRESH_MIN_INTERVAL_IN_MS}: 5000</li>
+ *   <li>Error classifier: {@link OAuth2ErrorClassifier}</li>
+ *   <li>Scopes: none</li>
+ *   <li>User claim: "sub"</li>
+ * </ul>
+ *
+ * <p>Example usage:</p>
+ * <pre>{@code
+ * TokenAuthConfig config = OAuth2TokenAuthConfigBuilder.builder()
+ *     .tokenEndpoint("https://keycloak.example.com/realms/redis/protocol/openid-connect/token")
+ *     .clientId("redis-client")
+ *     .key(privateKey, certificate)
+ *     .scopes(Collections.singleton("redis"))
+ *     .build();
+ * }</pre>
+ *
+ * <p>This class is also {@link AutoCloseable}, and resources can be cleaned
+ * up by calling {@link #close()}.</p>
+ *
+ * @see TokenAuthConfig.Builder
+ */
+public class OAuth2TokenAuthConfigBuilder extends TokenAuthConfig.Builder<OAuth2TokenAuthConfigBuilder>
+        implements AutoCloseable {
+    public static final float DEFAULT_EXPIRATION_REFRESH_RATIO = 0.75F;
+    public static final int DEFAULT_LOWER_REFRESH_BOUND_MILLIS = 2 * 60 * 1000;
+    public static final int DEFAULT_TOKEN_REQUEST_EXECUTION_TIMEOUT_IN_MS = 1000;
+    public static final int DEFAULT_MAX_ATTEMPTS_TO_RETRY = 5;
+    public static final int DEFAULT_DELAY_IN_MS_TO_RETRY = 100;
+    public static final int DEFAULT_FORCED_REFRESH_MIN_INTERVAL_IN_MS = 5000;
+
+    private String tokenEndpoint;
+    private String clientId;
+    private String secret;
+    private boolean secretBasic;
+    private PrivateKey key;
+    private X509Certificate cert;
+    private Set<String> scopes = Collections.emptySet();
+    private String userClaim = OAuth2IdentityProvider.DEFAULT_USER_CLAIM;
+    private SSLSocketFactory sslSocketFactory;
+    private int tokenRequestExecTimeoutInMs = DEFAULT_TOKEN_REQUEST_EXECUTION_TIMEOUT_IN_MS;
+    private String rateLimitKey;
+
+    public OAuth2TokenAuthConfigBuilder() {
+        this.expirationRefreshRatio(DEFAULT_EXPIRATION_REFRESH_RATIO)
+                .lowerRefreshBoundMillis(DEFAULT_LOWER_REFRESH_BOUND_MILLIS)
+                .tokenRequestExecTimeoutInMs(DEFAULT_TOKEN_REQUEST_EXECUTION_TIMEOUT_IN_MS)
+                .maxAttemptsToRetry(DEFAULT_MAX_ATTEMPTS_TO_RETRY).delayInMsToRetry(DEFAULT_DELAY_IN_MS_TO_RETRY)
+                .forcedRefreshMinIntervalInMs(DEFAULT_FORCED_REFRESH_MIN_INTERVAL_IN_MS)
+                .errorClassifier(new OAuth2ErrorClassifier());
+    }
+
+    public OAuth2TokenAuthConfigBuilder tokenEndpoint(String tokenEndpoint) {
+        this.tokenEndpoint = tokenEndpoint;
+        return this;
+    }
+
+    public OAuth2TokenAuthConfigBuilder clientId(String clientId) {
+        this.clientId = clientId;
+        return this;
+    }
+
+    /**
+     * Authenticates the client with the given secret in the request body, client_secret_post.
+     * @param secret
+     * @return this builder
+     */
+    public OAuth2TokenAuthConfigBuilder secret(String secret) {
+        this.secret = secret;
+        this.secretBasic = false;
+        return this;
+    }
+
+    /**
+     * Authenticates the client with the given secret via HTTP basic authentication, client_secret_basic.
+     * @param secret
+     * @return this builder
+     */
+    public OAuth2TokenAuthConfigBuilder secretBasic(String secret) {
+        this.secret = secret;
+        this.secretBasic = true;
+        return this;
+    }
+
+    /**
+     * Authenticates the client with assertions signed with the given RSA key, private_key_jwt.
+     * @param key
+     * @return this builder
+     */
+    public OAuth2TokenAuthConfigBuilder key(PrivateKey key) {
+        return key(key, null);
+    }
+
+    /**
+     * Authenticates the client with assertions signed with the given RSA key, private_key_jwt, and identifies the
+     * key with the thumbprint of its certificate, as required by EntraID.
+     * @param key
+     * @param cert
+     * @return this builder
+     */
+    public OAuth2TokenAuthConfigBuilder key(PrivateKey key, X509Certificate cert) {
+        this.key = key;
+        this.cert = cert;
+        return this;
+    }
+
+    public OAuth2TokenAuthConfigBuilder scopes(Set<String> scopes) {
+        this.scopes = scopes;
+        return this;
+    }
+
+    /**
+     * Sets the claim of the access token to take the user from, "sub" by default.
+     * @param userClaim
+     * @return this builder
+     */
+    public OAuth2TokenAuthConfigBuilder userClaim(String userClaim) {
+        this.userClaim = userClaim;
+        return this;
+    }
+
+    /**
+     * Sets the socket factory for the https connections to the token endpoint, e.g. to trust a private CA.
+     * @param sslSocketFactory
+     * @return this builder
+     */
+    public OAuth2TokenAuthConfigBuilder sslSocketFactory(SSLSocketFactory sslSocketFactory) {
+        this.sslSocketFactory = sslSocketFactory;
+        return this;
+    }
+
+    @Override
+    public OAuth2TokenAuthConfigBuilder tokenRequestExecTimeoutInMs(int tokenRequestExecTimeoutInMs) {
+        super.tokenRequestExecTimeoutInMs(tokenRequestExecTimeoutInMs);
+        this.tokenRequestExecTimeoutInMs = tokenRequestExecTimeoutInMs;
+        return this;
+    }
+
+    @Override
+    public OAuth2TokenAuthConfigBuilder rateLimitKey(String rateLimitKey) {
+        super.rateLimitKey(rateLimitKey);
+        this.rateLimitKey = rateLimitKey;
+        return this;
+    }
+
+    public TokenAuthConfig build() {
+        if (tokenEndpoint == null || clientId == null) {
+            throw new RedisOAuth2Exception("Token endpoint and client id are required!");
+        }
+        ClientCredentialsInfo info;
+        if (key != null) {
+            if (secret != null) {
+                throw new RedisOAuth2Exception("Client can authenticate with either a secret or a key, not both!");
+            }
+            info = new ClientCredentialsInfo(tokenEndpoint, clientId, key, cert);
+        } else if (secret != null) {
+            info = new ClientCredentialsInfo(tokenEndpoint, clientId, secret, secretBasic);
+        } else {
+            throw new RedisOAuth2Exception("Client secret or key is required!");
+        }
+        if (rateLimitKey == null) {
+            super.rateLimitKey("oauth2:" + tokenEndpoint);
+        }
+        super.identityProviderConfig(
+            new OAuth2IdentityProviderConfig(info, scopes, userClaim, tokenRequestExecTimeoutInMs, sslSocketFactory));
+        return super.build();
+    }
+
+    @Override
+    public void close() {
+        secret = null;
+        key = null;
+        cert = null;
+        scopes = null;
+        sslSocketFactory = null;
+    }
+
+    public static OAuth2TokenAuthConfigBuilder builder() {
+        return new OAuth2TokenAuthConfigBuilder();
+    }
+
+    public static OAuth2TokenAuthConfigBuilder from(OAuth2TokenAuthConfigBuilder sample) {
+        TokenAuthConfig tokenAuthConfig = TokenAuthConfig.Builder.from(sample).build();
+        TokenManagerConfig tokenManagerConfig = tokenAuthConfig.getTokenManagerConfig();
+
+        OAuth2TokenAuthConfigBuilder builder = (OAuth2TokenAuthConfigBuilder) new OAuth2TokenAuthConfigBuilder()
+                .expirationRefreshRatio(tokenManagerConfig.getExpirationRefreshRatio())
+                .lowerRefreshBoundMillis(tokenManagerConfig.getLowerRefreshBoundMillis())
+                .tokenRequestExecTimeoutInMs(tokenManagerConfig.getTokenRequestExecTimeoutInMs())
+                .maxAttemptsToRetry(tokenManagerConfig.getRetryPolicy().getMaxAttempts())
+                .delayInMsToRetry(tokenManagerConfig.getRetryPolicy().getdelayInMs())
+                .recoveryProbeIntervalInMs(tokenManagerConfig.getRecoveryPolicy().getProbeIntervalInMs())
+                .recoveryProbeMaxJitterInMs(tokenManagerConfig.getRecoveryPolicy().getMaxJitterInMs())
+                .forcedRefreshMinIntervalInMs(tokenManagerConfig.getForcedRefreshMinIntervalInMs())
+                .rateLimit(tokenManagerConfig.getRateLimitPolicy().getPermitsPerSecond(),
+                    tokenManagerConfig.getRateLimitPolicy().getBurst())
+                .rateLimitKey(tokenManagerConfig.getRateLimitPolicy().getKey())
+                .errorClassifier(tokenManagerConfig.getErrorClassifier()).tokenCache(tokenManagerConfig.getTokenCache())
+                .warmUpLeadTimeInMs(tokenManagerConfig.getWarmUpLeadTimeInMs())
+                .identityProviderConfig(tokenAuthConfig.getIdentityProviderConfig());
+
+        builder.tokenEndpoint = sample.tokenEndpoint;
+        builder.clientId = sample.clientId;
+        builder.secret = sample.secret;
+        builder.secretBasic = sample.secretBasic;
+        builder.key = sample.key;
+        builder.cert = sample.cert;
+        builder.scopes = sample.scopes;
+        builder.userClaim = sample.userClaim;
+        builder.sslSocketFactory = sample.sslSocketFactory;
+        builder.tokenRequestExecTimeoutInMs = sample.tokenRequestExecTimeoutInMs;
+        builder.rateLimitKey = sample.rateLimitKey;
+        return builder;
+    }
+}
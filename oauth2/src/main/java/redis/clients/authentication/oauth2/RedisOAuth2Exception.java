@@ -0,0 +1,50 @@
+/*
+ * Copyright 2024, Redis Ltd. and Contributors
+ * All rights reserved.
+ *
+ * Licensed under the MIT License.
+ */
+package redis.clients.authentication.oauth2;
+
+import redis.clients.authentication.core.AuthXException;
+
+public class RedisOAuth2Exception extends AuthXException {
+
+    private final int statusCode;
+    private final String error;
+
+    public RedisOAuth2Exception(String message) {
+        this(message, -1, null);
+    }
+
+    public RedisOAuth2Exception(String message, Exception cause) {
+        super(message, cause);
+        this.statusCode = -1;
+        this.error = null;
+    }
+
+    /**
+     * @param message
+     * @param statusCode http status code of the error response of the token endpoint
+     * @param error OAuth2 error code of the response, e.g. invalid_client
+     */
+    public RedisOAuth2Exception(String message, int statusCode, String error) {
+        super(message);
+        this.statusCode = statusCode;
+        this.error = error;
+    }
+
+    /**
+     * Returns the http status code of the error response, -1 if the request failed without a response.
+     */
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    /**
+     * Returns the OAuth2 error code of the error response, null if not given.
+     */
+    public String getError() {
+        return error;
+    }
+}
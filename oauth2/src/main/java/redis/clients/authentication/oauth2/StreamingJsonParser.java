@@ -0,0 +1,228 @@
+/*
+ * Copyright 2024, Redis Ltd. and Contributors
+ * All rights reserved.
+ *
+ * Licensed under the MIT License.
+ */
+package redis.clients.authentication.oauth2;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Reads the scalar members of a JSON object straight from a stream, e.g. access_token and expires_in of a token
+ * response, without building a tree of the document. Nested objects and arrays, and the members which are not
+ * asked for, are skipped as they stream by.
+ */
+final class StreamingJsonParser {
+
+    private static final int NONE = -2;
+    private static final Object SKIPPED = new Object();
+
+    private final Reader reader;
+    private int next = NONE;
+
+    private StreamingJsonParser(Reader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * Reads the string, number, boolean and null members of the JSON object in the given stream. The stream is
+     * read up to the end of the object.
+     * @param reader
+     * @param names names of the members to read, null for all of them
+     * @return the values by member names, String, Long, Double or Boolean
+     * @throws IOException if reading the stream fails
+     * @throws RedisOAuth2Exception if the stream is not a JSON object
+     */
+    static Map<String, Object> readMembers(Reader reader, Set<String> names) throws IOException {
+        return new StreamingJsonParser(reader).readObject(names);
+    }
+
+    private Map<String, Object> readObject(Set<String> names) throws IOException {
+        Map<String, Object> members = new HashMap<>();
+        skipWhitespace();
+        expect('{');
+        skipWhitespace();
+        if (peek() == '}') {
+            read();
+            return members;
+        }
+        while (true) {
+            skipWhitespace();
+            String name = readString();
+            skipWhitespace();
+            expect(':');
+            skipWhitespace();
+            Object value = readValue(names == null || names.contains(name));
+            if (value != SKIPPED) {
+                members.put(name, value);
+            }
+            skipWhitespace();
+            int c = read();
+            if (c == '}') {
+                return members;
+            }
+            if (c != ',') {
+                throw malformed("expected ',' or '}'");
+            }
+        }
+    }
+
+    private Object readValue(boolean keep) throws IOException {
+        int c = peek();
+        if (c == '"') {
+            String value = readString();
+            return keep ? value : SKIPPED;
+        }
+        if (c == '{' || c == '[') {
+            skipComposite();
+            return SKIPPED;
+        }
+        String literal = readLiteral();
+        if (!keep) {
+            return SKIPPED;
+        }
+        switch (literal) {
+        case "true":
+            return Boolean.TRUE;
+        case "false":
+            return Boolean.FALSE;
+        case "null":
+            return null;
+        default:
+            try {
+                return literal.contains(".") || literal.contains("e") || literal.contains("E")
+                        ? (Object) Double.valueOf(literal) : (Object) Long.valueOf(literal);
+            } catch (NumberFormatException e) {
+                throw malformed("invalid value '" + literal + "'");
+            }
+        }
+    }
+
+    private void skipComposite() throws IOException {
+        int depth = 0;
+        do {
+            int c = read();
+            switch (c) {
+            case -1:
+                throw malformed("unexpected end of JSON");
+            case '"':
+                readStringBody();
+                break;
+            case '{':
+            case '[':
+                depth++;
+                break;
+            case '}':
+            case ']':
+                depth--;
+                break;
+            default:
+            }
+        } while (depth > 0);
+    }
+
+    private String readLiteral() throws IOException {
+        StringBuilder literal = new StringBuilder();
+        int c;
+        while ((c = peek()) != -1 && c != ',' && c != '}' && c != ']' && !Character.isWhitespace(c)) {
+            literal.append((char) read());
+        }
+        if (literal.length() == 0) {
+            throw malformed("expected a value");
+        }
+        return literal.toString();
+    }
+
+    private String readString() throws IOException {
+        expect('"');
+        return readStringBody();
+    }
+
+    private String readStringBody() throws IOException {
+        StringBuilder value = new StringBuilder();
+        while (true) {
+            int c = read();
+            switch (c) {
+            case -1:
+                throw malformed("unterminated string");
+            case '"':
+                return value.toString();
+            case '\\':
+                int escaped = read();
+                switch (escaped) {
+                case 'b':
+                    value.append('\b');
+                    break;
+                case 'f':
+                    value.append('\f');
+                    break;
+                case 'n':
+                    value.append('\n');
+                    break;
+                case 'r':
+                    value.append('\r');
+                    break;
+                case 't':
+                    value.append('\t');
+                    break;
+                case 'u':
+                    char[] hex = new char[4];
+                    for (int i = 0; i < hex.length; i++) {
+                        int h = read();
+                        if (h == -1) {
+                            throw malformed("unterminated string");
+                        }
+                        hex[i] = (char) h;
+                    }
+                    try {
+                        value.append((char) Integer.parseInt(new String(hex), 16));
+                    } catch (NumberFormatException e) {
+                        throw malformed("invalid unicode escape");
+                    }
+                    break;
+                case -1:
+                    throw malformed("unterminated string");
+                default:
+                    value.append((char) escaped);
+                }
+                break;
+            default:
+                value.append((char) c);
+            }
+        }
+    }
+
+    private void skipWhitespace() throws IOException {
+        while (peek() != -1 && Character.isWhitespace(peek())) {
+            read();
+        }
+    }
+
+    private void expect(char expected) throws IOException {
+        if (read() != expected) {
+            throw malformed("expected '" + expected + "'");
+        }
+    }
+
+    private int peek() throws IOException {
+        if (next == NONE) {
+            next = reader.read();
+        }
+        return next;
+    }
+
+    private int read() throws IOException {
+        int c = peek();
+        next = NONE;
+        return c;
+    }
+
+    private static RedisOAuth2Exception malformed(String reason) {
+        return new RedisOAuth2Exception("Malformed JSON response, " + reason + "!");
+    }
+}
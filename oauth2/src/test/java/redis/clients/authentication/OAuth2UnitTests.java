@@ -0,0 +1,161 @@
+/*
+ * Copyright 2024, Redis Ltd. and Contributors
+ * All rights reserved.
+ *
+ * Licensed under the MIT License.
+ */
+package redis.clients.authentication;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Signature;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import redis.clients.authentication.core.ErrorClassifier.ErrorClass;
+import redis.clients.authentication.core.IdentityProvider;
+import redis.clients.authentication.core.IdentityProviderThrottledException;
+import redis.clients.authentication.core.Token;
+import redis.clients.authentication.core.TokenAuthConfig;
+import redis.clients.authentication.entraid.testkit.EntraIDStandInServer;
+import redis.clients.authentication.entraid.testkit.Endpoint;
+import redis.clients.authentication.entraid.testkit.Fault;
+import redis.clients.authentication.oauth2.OAuth2ErrorClassifier;
+import redis.clients.authentication.oauth2.OAuth2TokenAuthConfigBuilder;
+import redis.clients.authentication.oauth2.RedisOAuth2Exception;
+
+public class OAuth2UnitTests {
+
+    private static final Set<String> SCOPES = Collections.singleton("https://redis.azure.com/.default");
+
+    private EntraIDStandInServer server;
+
+    @Before
+    public void startServer() {
+        server = EntraIDStandInServer.start();
+    }
+
+    @After
+    public void stopServer() {
+        server.close();
+    }
+
+    private OAuth2TokenAuthConfigBuilder builder(String clientId) {
+        return OAuth2TokenAuthConfigBuilder.builder().tokenEndpoint(server.getAuthority() + "/oauth2/v2.0/token")
+                .clientId(clientId).scopes(SCOPES).userClaim("oid")
+                .sslSocketFactory(server.getSslContext().getSocketFactory());
+    }
+
+    private static IdentityProvider provider(TokenAuthConfig config) {
+        return config.getIdentityProviderConfig().getProvider();
+    }
+
+    @Test
+    public void secretPostTest() {
+        server.setTokenLifetimeInMs(10 * 60 * 1000);
+        Token token = provider(builder("oauth2-post").secret("s3cret&").build()).requestToken();
+
+        assertEquals(EntraIDStandInServer.objectIdOf("oauth2-post"), token.getUser());
+        assertEquals("https://redis.azure.com", token.tryGet("aud", String.class));
+        assertThat(token.ttl(), lessThan(10 * 60 * 1000L + 1000));
+        assertThat(token.ttl(), greaterThanOrEqualTo(9 * 60 * 1000L));
+
+        Map<String, String> parameters = server.getLastRequestParameters(Endpoint.TOKEN);
+        assertEquals("client_credentials", parameters.get("grant_type"));
+        assertEquals("oauth2-post", parameters.get("client_id"));
+        assertEquals("s3cret&", parameters.get("client_secret"));
+        assertEquals("https://redis.azure.com/.default", parameters.get("scope"));
+    }
+
+    @Test
+    public void secretBasicTest() {
+        Token token = provider(builder("oauth2-basic").secretBasic("secret").build()).requestToken();
+
+        assertEquals(EntraIDStandInServer.objectIdOf("oauth2-basic"), token.getUser());
+        Map<String, String> parameters = server.getLastRequestParameters(Endpoint.TOKEN);
+        assertNull(parameters.get("client_id"));
+        assertNull(parameters.get("client_secret"));
+    }
+
+    @Test
+    public void privateKeyJwtTest() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        KeyPair keyPair = generator.generateKeyPair();
+        String tokenEndpoint = server.getAuthority() + "/oauth2/v2.0/token";
+
+        Token token = provider(builder("oauth2-jwt").key(keyPair.getPrivate()).build()).requestToken();
+        assertEquals(EntraIDStandInServer.objectIdOf("oauth2-jwt"), token.getUser());
+
+        Map<String, String> parameters = server.getLastRequestParameters(Endpoint.TOKEN);
+        assertEquals("urn:ietf:params:oauth:client-assertion-type:jwt-bearer", parameters.get("client_assertion_type"));
+        assertNull(parameters.get("client_secret"));
+        String[] parts = parameters.get("client_assertion").split("\\.");
+        Signature signature = Signature.getInstance("SHA256withRSA");
+        signature.initVerify(keyPair.getPublic());
+        signature.update((parts[0] + "." + parts[1]).getBytes(StandardCharsets.US_ASCII));
+        assertTrue(signature.verify(Base64.getUrlDecoder().decode(parts[2])));
+
+        String payload = new String(Base64.getUrlDecoder().decode(parts[1]), StandardCharsets.UTF_8);
+        assertTrue(payload.contains("\"iss\":\"oauth2-jwt\""));
+        assertTrue(payload.contains("\"sub\":\"oauth2-jwt\""));
+        assertTrue(payload.contains("\"aud\":\"" + tokenEndpoint + "\""));
+        assertFalse(new String(Base64.getUrlDecoder().decode(parts[0]), StandardCharsets.UTF_8).contains("x5t"));
+    }
+
+    @Test
+    public void errorResponsesTest() {
+        IdentityProvider provider = provider(builder("oauth2-errors").secret("secret").build());
+        OAuth2ErrorClassifier classifier = new OAuth2ErrorClassifier();
+
+        // the error_codes array of the response is skipped by the parser
+        server.enqueue(Endpoint.TOKEN,
+            Fault.error(401, "invalid_client", "AADSTS7000215: Invalid client secret provided."));
+        RedisOAuth2Exception error = assertThrows(RedisOAuth2Exception.class, provider::requestToken);
+        assertEquals(401, error.getStatusCode());
+        assertEquals("invalid_client", error.getError());
+        assertTrue(error.getMessage().endsWith("AADSTS7000215: Invalid client secret provided."));
+        assertEquals(ErrorClass.PERMANENT, classifier.classify(error));
+
+        server.enqueue(Endpoint.TOKEN, Fault.status(503));
+        error = assertThrows(RedisOAuth2Exception.class, provider::requestToken);
+        assertEquals(ErrorClass.RETRYABLE, classifier.classify(error));
+
+        server.enqueue(Endpoint.TOKEN, Fault.tooManyRequests(3));
+        IdentityProviderThrottledException throttled = assertThrows(IdentityProviderThrottledException.class,
+            provider::requestToken);
+        assertEquals(3000, throttled.getRetryAfterInMs());
+        assertEquals(ErrorClass.THROTTLED, classifier.classify(throttled));
+
+        // the connection is still usable after the error responses
+        assertEquals(EntraIDStandInServer.objectIdOf("oauth2-errors"), provider.requestToken().getUser());
+    }
+
+    @Test
+    public void builderValidationTest() {
+        assertThrows(RedisOAuth2Exception.class, () -> OAuth2TokenAuthConfigBuilder.builder().clientId("c").build());
+        assertThrows(RedisOAuth2Exception.class, () -> builder("no-secret").build());
+
+        OAuth2TokenAuthConfigBuilder sample = builder("sample").secret("secret");
+        TokenAuthConfig config = OAuth2TokenAuthConfigBuilder.from(sample).build();
+        assertEquals("oauth2:" + server.getAuthority() + "/oauth2/v2.0/token",
+            config.getTokenManagerConfig().getRateLimitPolicy().getKey());
+        assertEquals(EntraIDStandInServer.objectIdOf("sample"), provider(config).requestToken().getUser());
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright 2024, Redis Ltd. and Contributors
+ * All rights reserved.
+ *
+ * Licensed under the MIT License.
+ */
+package redis.clients.authentication.entraid.testkit;
+
+/**
+ * Endpoints imitated by {@link EntraIDStandInServer}, to script faults and count requests per endpoint.
+ */
+public enum Endpoint {
+
+    /**
+     * Instance discovery of the authority, {@code /common/discovery/instance}.
+     */
+    INSTANCE_DISCOVERY,
+
+    /**
+     * OpenID configuration of a tenant, {@code /<tenant>/v2.0/.well-known/openid-configuration}.
+     */
+    OPENID_CONFIGURATION,
+
+    /**
+     * Public keys verifying the tokens, {@code /<tenant>/discovery/v2.0/keys}.
+     */
+    KEYS,
+
+    /**
+     * Token endpoint of a tenant, {@code /<tenant>/oauth2/v2.0/token}.
+     */
+    TOKEN,
+
+    /**
+     * Managed identity token endpoint of IMDS, {@code /metadata/identity/oauth2/token}.
+     */
+    MANAGED_IDENTITY,
+
+    /**
+     * Region of the host from IMDS, {@code /metadata/instance/compute/location}, used by MSAL to detect the region.
+     */
+    REGION
+}
@@ -0,0 +1,540 @@
+/*
+ * Copyright 2024, Redis Ltd. and Contributors
+ * All rights reserved.
+ *
+ * Licensed under the MIT License.
+ */
+package redis.clients.authentication.entraid.testkit;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.security.interfaces.RSAPublicKey;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManagerFactory;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpsConfigurator;
+import com.sun.net.httpserver.HttpsServer;
+
+import redis.clients.authentication.entraid.KeepAliveHttpClient;
+
+/**
+ * Embedded stand-in for EntraID and the Azure Instance Metadata Service (IMDS), to run real MSAL client
+ * applications offline, e.g. in CI or to measure latency and failure behaviour.
+ *
+ * <p>The server imitates the instance discovery, OpenID configuration, keys and token endpoints of the authority,
+ * and the managed identity and region endpoints of IMDS, see {@link Endpoint}. Tokens are JWTs signed with RS256,
+ * verifiable with {@link #getSigningKey()}; their lifetime is set with {@link #setTokenLifetimeInMs(long)}.
+ * Any client id and credential is accepted. Latency, error responses, throttling and hangs are scripted per
+ * endpoint, see {@link #setLatencyInMs(Endpoint, long)} and {@link #enqueue(Endpoint, Fault...)}.
+ *
+ * <p>The server speaks https with a self-signed certificate for localhost, only trusted by its own
+ * {@link #httpClient()}. That client also routes the requests for the well-known hosts of EntraID and IMDS to the
+ * server, so existing configurations run against it by just setting the http client:
+ * <pre>{@code
+ * try (EntraIDStandInServer server = EntraIDStandInServer.start()) {
+ *     TokenAuthConfig config = EntraIDTokenAuthConfigBuilder.builder()
+ *             .clientId("client-id").secret("secret").authority(server.getAuthority())
+ *             .scopes(Collections.singleton("https://redis.azure.com/.default"))
+ *             .httpClient(server.httpClient()).build();
+ *     server.enqueue(Endpoint.TOKEN, Fault.tooManyRequests(1));
+ *     ...
+ * }
+ * }</pre>
+ *
+ * <p>The TLS key of the server ships with this module and is not secret, the server is meant for tests only.
+ */
+public class EntraIDStandInServer implements AutoCloseable {
+
+    public static final String DEFAULT_TENANT = "stand-in-tenant";
+    public static final long DEFAULT_TOKEN_LIFETIME_IN_MS = 60 * 60 * 1000;
+    public static final String REGION = "westus";
+
+    /**
+     * Client id of the system assigned managed identity of the stand-in host.
+     */
+    public static final String MANAGED_IDENTITY_CLIENT_ID = "stand-in-managed-identity";
+
+    private static final String KEYSTORE_RESOURCE = "/stand-in-tls.p12";
+    private static final char[] KEYSTORE_PASSWORD = "stand-in".toCharArray();
+    private static final long MAX_HANG_IN_MS = TimeUnit.MINUTES.toMillis(10);
+
+    private final HttpsServer server;
+    private final ExecutorService executor;
+    private final SSLContext clientSslContext;
+    private final TokenIssuer issuer = new TokenIssuer();
+    private final Map<Endpoint, Queue<Fault>> faults = new ConcurrentHashMap<>();
+    private final Map<Endpoint, Long> latencies = new ConcurrentHashMap<>();
+    private final Map<Endpoint, AtomicInteger> requestCounts = new ConcurrentHashMap<>();
+    private final Map<Endpoint, Map<String, String>> lastParameters = new ConcurrentHashMap<>();
+    private final CountDownLatch closed = new CountDownLatch(1);
+    private volatile long tokenLifetimeInMs = DEFAULT_TOKEN_LIFETIME_IN_MS;
+
+    private EntraIDStandInServer(int port) throws IOException, GeneralSecurityException {
+        KeyStore keyStore = KeyStore.getInstance("PKCS12");
+        try (InputStream in = EntraIDStandInServer.class.getResourceAsStream(KEYSTORE_RESOURCE)) {
+            keyStore.load(in, KEYSTORE_PASSWORD);
+        }
+        KeyManagerFactory keyManagers = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        keyManagers.init(keyStore, KEYSTORE_PASSWORD);
+        SSLContext serverSslContext = SSLContext.getInstance("TLS");
+        serverSslContext.init(keyManagers.getKeyManagers(), null, null);
+
+        TrustManagerFactory trustManagers = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+        trustManagers.init(keyStore);
+        clientSslContext = SSLContext.getInstance("TLS");
+        clientSslContext.init(null, trustManagers.getTrustManagers(), null);
+
+        for (Endpoint endpoint : Endpoint.values()) {
+            faults.put(endpoint, new ConcurrentLinkedQueue<>());
+            requestCounts.put(endpoint, new AtomicInteger());
+        }
+
+        executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "entraid-stand-in");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server = HttpsServer.create(new InetSocketAddress("localhost", port), 0);
+        server.setHttpsConfigurator(new HttpsConfigurator(serverSslContext));
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    /**
+     * Starts a server on a free port of localhost.
+     * @return the running server
+     */
+    public static EntraIDStandInServer start() {
+        return start(0);
+    }
+
+    /**
+     * Starts a server on the given port of localhost.
+     * @param port
+     * @return the running server
+     */
+    public static EntraIDStandInServer start(int port) {
+        try {
+            return new EntraIDStandInServer(port);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to start stand-in server!", e);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Failed to init TLS of stand-in server!", e);
+        }
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Returns the authority of the default tenant, served directly by this server.
+     */
+    public String getAuthority() {
+        return getAuthority(DEFAULT_TENANT);
+    }
+
+    public String getAuthority(String tenant) {
+        return "https://localhost:" + getPort() + "/" + tenant;
+    }
+
+    /**
+     * Returns a new http client for MSAL which trusts this server and routes the requests for the well-known hosts
+     * of EntraID and IMDS to it, e.g. login.microsoftonline.com, regional hosts like westus.login.microsoft.com
+     * and 169.254.169.254.
+     */
+    public KeepAliveHttpClient httpClient() {
+        return httpClient(KeepAliveHttpClient.DEFAULT_CONNECT_TIMEOUT_IN_MS,
+            KeepAliveHttpClient.DEFAULT_READ_TIMEOUT_IN_MS);
+    }
+
+    /**
+     * Returns a new http client like {@link #httpClient()} with the given timeouts, e.g. to give up on hanging
+     * requests sooner.
+     * @param connectTimeoutInMs
+     * @param readTimeoutInMs
+     * @return
+     */
+    public KeepAliveHttpClient httpClient(int connectTimeoutInMs, int readTimeoutInMs) {
+        return new StandInHttpClient(clientSslContext.getSocketFactory(), getPort(), connectTimeoutInMs,
+                readTimeoutInMs);
+    }
+
+    /**
+     * Returns an SSL context which trusts this server, for http clients other than {@link #httpClient()}.
+     */
+    public SSLContext getSslContext() {
+        return clientSslContext;
+    }
+
+    /**
+     * Returns the public key verifying the signatures of the tokens issued by this server.
+     */
+    public RSAPublicKey getSigningKey() {
+        return issuer.getPublicKey();
+    }
+
+    /**
+     * Returns the object id claim ("oid") of the tokens issued to the given client id.
+     * @param clientId
+     * @return
+     */
+    public static String objectIdOf(String clientId) {
+        return TokenIssuer.objectId(clientId);
+    }
+
+    public void setTokenLifetimeInMs(long tokenLifetimeInMs) {
+        this.tokenLifetimeInMs = tokenLifetimeInMs;
+    }
+
+    /**
+     * Delays every response of the given endpoint, 0 to respond immediately.
+     * @param endpoint
+     * @param latencyInMs
+     */
+    public void setLatencyInMs(Endpoint endpoint, long latencyInMs) {
+        latencies.put(endpoint, latencyInMs);
+    }
+
+    /**
+     * Scripts the next requests to the given endpoint, one fault per request in the given order. Requests beyond
+     * the scripted ones are served normally.
+     * @param endpoint
+     * @param faults
+     */
+    public void enqueue(Endpoint endpoint, Fault... faults) {
+        this.faults.get(endpoint).addAll(Arrays.asList(faults));
+    }
+
+    /**
+     * Returns the number of requests received by the given endpoint, including the failed ones.
+     * @param endpoint
+     * @return
+     */
+    public int getRequestCount(Endpoint endpoint) {
+        return requestCounts.get(endpoint).get();
+    }
+
+    /**
+     * Returns the query and form parameters of the last request to the given endpoint, empty if none.
+     * @param endpoint
+     * @return
+     */
+    public Map<String, String> getLastRequestParameters(Endpoint endpoint) {
+        return lastParameters.getOrDefault(endpoint, Collections.emptyMap());
+    }
+
+    /**
+     * Drops the scripted faults and latencies and resets the request counts.
+     */
+    public void reset() {
+        for (Endpoint endpoint : Endpoint.values()) {
+            faults.get(endpoint).clear();
+            requestCounts.get(endpoint).set(0);
+        }
+        latencies.clear();
+        lastParameters.clear();
+        tokenLifetimeInMs = DEFAULT_TOKEN_LIFETIME_IN_MS;
+    }
+
+    /**
+     * Stops the server, hanging requests are released and their connections closed.
+     */
+    @Override
+    public void close() {
+        closed.countDown();
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            URI uri = exchange.getRequestURI();
+            Endpoint endpoint = route(uri.getPath());
+            if (endpoint == null) {
+                respond(exchange, 404, errorBody("invalid_request", "AADSTS90027: Unknown endpoint " + uri.getPath()));
+                return;
+            }
+            Map<String, String> parameters = parameters(exchange);
+            lastParameters.put(endpoint, parameters);
+            requestCounts.get(endpoint).incrementAndGet();
+            sleep(latencies.getOrDefault(endpoint, 0L));
+
+            Fault fault = faults.get(endpoint).poll();
+            if (fault != null) {
+                switch (fault.getKind()) {
+                case DELAY:
+                    sleep(fault.getDelayInMs());
+                    break;
+                case HANG:
+                    closed.await(MAX_HANG_IN_MS, TimeUnit.MILLISECONDS);
+                    return;
+                default:
+                    if (fault.getRetryAfterInSeconds() >= 0) {
+                        exchange.getResponseHeaders().add("Retry-After",
+                            String.valueOf(fault.getRetryAfterInSeconds()));
+                    }
+                    respond(exchange, fault.getStatusCode(),
+                        errorBody(fault.getErrorCode(), fault.getErrorDescription()));
+                    return;
+                }
+            }
+            serve(exchange, endpoint, uri, parameters);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static Endpoint route(String path) {
+        if (path.endsWith("/discovery/instance")) {
+            return Endpoint.INSTANCE_DISCOVERY;
+        }
+        if (path.endsWith("/.well-known/openid-configuration")) {
+            return Endpoint.OPENID_CONFIGURATION;
+        }
+        if (path.endsWith("/discovery/v2.0/keys") || path.endsWith("/discovery/keys")) {
+            return Endpoint.KEYS;
+        }
+        if (path.equals("/metadata/identity/oauth2/token")) {
+            return Endpoint.MANAGED_IDENTITY;
+        }
+        if (path.equals("/metadata/instance/compute/location")) {
+            return Endpoint.REGION;
+        }
+        if (path.endsWith("/oauth2/v2.0/token") || path.endsWith("/oauth2/token")) {
+            return Endpoint.TOKEN;
+        }
+        return null;
+    }
+
+    private void serve(HttpExchange exchange, Endpoint endpoint, URI uri, Map<String, String> parameters)
+            throws IOException {
+        String host = exchange.getRequestHeaders().getFirst("Host");
+        String tenant = firstSegment(uri.getPath());
+        switch (endpoint) {
+        case INSTANCE_DISCOVERY:
+            respond(exchange, 200, instanceDiscovery(parameters.get("authorization_endpoint")));
+            break;
+        case OPENID_CONFIGURATION:
+            respond(exchange, 200, openIdConfiguration("https://" + host + "/" + tenant));
+            break;
+        case KEYS:
+            respond(exchange, 200, issuer.jwks());
+            break;
+        case TOKEN:
+            String clientId = parameters.get("client_id");
+            if (clientId == null) {
+                clientId = basicAuthClientId(exchange.getRequestHeaders().getFirst("Authorization"));
+            }
+            if (clientId == null) {
+                respond(exchange, 400,
+                    errorBody("invalid_request", "AADSTS900144: The request body must contain: 'client_id'."));
+                break;
+            }
+            respond(exchange, 200, tokenResponse("https://" + host + "/" + tenant + "/v2.0", tenant,
+                audience(parameters.get("scope")), clientId));
+            break;
+        case MANAGED_IDENTITY:
+            if (!"true".equalsIgnoreCase(exchange.getRequestHeaders().getFirst("Metadata"))) {
+                respond(exchange, 400, errorBody("invalid_request", "Required metadata header not specified"));
+                break;
+            }
+            respond(exchange, 200, managedIdentityResponse(parameters));
+            break;
+        default:
+            byte[] region = REGION.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain");
+            exchange.sendResponseHeaders(200, region.length);
+            exchange.getResponseBody().write(region);
+        }
+    }
+
+    private String instanceDiscovery(String authorizationEndpoint) {
+        String host = "login.microsoftonline.com";
+        String tenant = "common";
+        if (authorizationEndpoint != null) {
+            URI uri = URI.create(authorizationEndpoint);
+            host = uri.getPort() < 0 ? uri.getHost() : uri.getHost() + ":" + uri.getPort();
+            tenant = firstSegment(uri.getPath());
+        }
+        Map<String, Object> metadata = new LinkedHashMap<>();
+        metadata.put("preferred_network", host);
+        metadata.put("preferred_cache", host);
+        metadata.put("aliases", Arrays.asList(host));
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("tenant_discovery_endpoint",
+            "https://" + host + "/" + tenant + "/v2.0/.well-known/openid-configuration");
+        response.put("api-version", "1.1");
+        response.put("metadata", Arrays.asList(metadata));
+        return Json.write(response);
+    }
+
+    private static String openIdConfiguration(String base) {
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("issuer", base + "/v2.0");
+        response.put("authorization_endpoint", base + "/oauth2/v2.0/authorize");
+        response.put("token_endpoint", base + "/oauth2/v2.0/token");
+        response.put("jwks_uri", base + "/discovery/v2.0/keys");
+        response.put("response_types_supported", Arrays.asList("code", "id_token", "token"));
+        response.put("id_token_signing_alg_values_supported", Arrays.asList("RS256"));
+        response.put("token_endpoint_auth_methods_supported",
+            Arrays.asList("client_secret_post", "private_key_jwt", "client_secret_basic"));
+        return Json.write(response);
+    }
+
+    private String tokenResponse(String tokenIssuer, String tenant, String audience, String clientId) {
+        long lifetimeInSeconds = tokenLifetimeInMs / 1000;
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("token_type", "Bearer");
+        response.put("expires_in", lifetimeInSeconds);
+        response.put("ext_expires_in", lifetimeInSeconds);
+        response.put("access_token", issuer.issue(tokenIssuer, tenant, audience, clientId, tokenLifetimeInMs));
+        return Json.write(response);
+    }
+
+    private String managedIdentityResponse(Map<String, String> parameters) {
+        String clientId = parameters.get("client_id");
+        if (clientId == null) {
+            // user assigned identities may be given by object or resource id as well
+            clientId = parameters.getOrDefault("object_id",
+                parameters.getOrDefault("mi_res_id", MANAGED_IDENTITY_CLIENT_ID));
+        }
+        String resource = parameters.getOrDefault("resource", "https://management.azure.com");
+        long lifetimeInSeconds = tokenLifetimeInMs / 1000;
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("access_token", issuer.issue("https://sts.windows.net/" + DEFAULT_TENANT + "/", DEFAULT_TENANT,
+            audience(resource), clientId, tokenLifetimeInMs));
+        response.put("client_id", clientId);
+        response.put("expires_in", String.valueOf(lifetimeInSeconds));
+        response.put("expires_on", String.valueOf(System.currentTimeMillis() / 1000 + lifetimeInSeconds));
+        response.put("ext_expires_in", String.valueOf(lifetimeInSeconds));
+        response.put("not_before", String.valueOf(System.currentTimeMillis() / 1000));
+        response.put("resource", resource);
+        response.put("token_type", "Bearer");
+        return Json.write(response);
+    }
+
+    private static String errorBody(String errorCode, String errorDescription) {
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("error", errorCode);
+        response.put("error_description", errorDescription);
+        if (errorDescription != null && errorDescription.startsWith("AADSTS")) {
+            int end = errorDescription.indexOf(':');
+            if (end > 6) {
+                response.put("error_codes", Arrays.asList(Long.valueOf(errorDescription.substring(6, end))));
+            }
+        }
+        response.put("timestamp", Instant.now().toString());
+        response.put("trace_id", UUID.randomUUID().toString());
+        response.put("correlation_id", UUID.randomUUID().toString());
+        return Json.write(response);
+    }
+
+    /**
+     * Returns the audience of a token requested for the given scope or resource, e.g. https://redis.azure.com for
+     * https://redis.azure.com/.default
+     */
+    private static String audience(String scope) {
+        if (scope == null) {
+            return "00000003-0000-0000-c000-000000000000";
+        }
+        for (String candidate : scope.split(" ")) {
+            if (candidate.endsWith("/.default")) {
+                return candidate.substring(0, candidate.length() - "/.default".length());
+            }
+        }
+        String first = scope.split(" ")[0];
+        return first.endsWith("/") ? first.substring(0, first.length() - 1) : first;
+    }
+
+    private static String basicAuthClientId(String authorization) throws UnsupportedEncodingException {
+        if (authorization == null || !authorization.regionMatches(true, 0, "Basic ", 0, 6)) {
+            return null;
+        }
+        String credentials = new String(Base64.getDecoder().decode(authorization.substring(6).trim()),
+                StandardCharsets.UTF_8);
+        int separator = credentials.indexOf(':');
+        return separator < 0 ? null : URLDecoder.decode(credentials.substring(0, separator), "UTF-8");
+    }
+
+    private static String firstSegment(String path) {
+        String[] segments = path.split("/");
+        return segments.length > 1 && !segments[1].isEmpty() ? segments[1] : "common";
+    }
+
+    private static Map<String, String> parameters(HttpExchange exchange) throws IOException {
+        Map<String, String> parameters = new HashMap<>();
+        decode(exchange.getRequestURI().getRawQuery(), parameters);
+        decode(new String(readFully(exchange.getRequestBody()), StandardCharsets.UTF_8), parameters);
+        return Collections.unmodifiableMap(parameters);
+    }
+
+    private static void decode(String form, Map<String, String> parameters) throws UnsupportedEncodingException {
+        if (form == null || form.isEmpty()) {
+            return;
+        }
+        for (String pair : form.split("&")) {
+            int separator = pair.indexOf('=');
+            String name = separator < 0 ? pair : pair.substring(0, separator);
+            String value = separator < 0 ? "" : pair.substring(separator + 1);
+            parameters.put(URLDecoder.decode(name, "UTF-8"), URLDecoder.decode(value, "UTF-8"));
+        }
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    private static void respond(HttpExchange exchange, int statusCode, String json) throws IOException {
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(statusCode, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static void sleep(long delayInMs) throws InterruptedException {
+        if (delayInMs > 0) {
+            Thread.sleep(delayInMs);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2024, Redis Ltd. and Contributors
+ * All rights reserved.
+ *
+ * Licensed under the MIT License.
+ */
+package redis.clients.authentication.entraid.testkit;
+
+/**
+ * Scripted misbehaviour of one request to an {@link EntraIDStandInServer}, see
+ * {@link EntraIDStandInServer#enqueue(Endpoint, Fault...)}.
+ */
+public final class Fault {
+
+    enum Kind {
+        DELAY, ERROR, HANG
+    }
+
+    private final Kind kind;
+    private final long delayInMs;
+    private final int statusCode;
+    private final String errorCode;
+    private final String errorDescription;
+    private final int retryAfterInSeconds;
+
+    private Fault(Kind kind, long delayInMs, int statusCode, String errorCode, String errorDescription,
+            int retryAfterInSeconds) {
+        this.kind = kind;
+        this.delayInMs = delayInMs;
+        this.statusCode = statusCode;
+        this.errorCode = errorCode;
+        this.errorDescription = errorDescription;
+        this.retryAfterInSeconds = retryAfterInSeconds;
+    }
+
+    /**
+     * Responds normally after the given delay.
+     * @param delayInMs
+     * @return the fault
+     */
+    public static Fault delay(long delayInMs) {
+        return new Fault(Kind.DELAY, delayInMs, 0, null, null, -1);
+    }
+
+    /**
+     * Responds with the given status code and an OAuth2 error, "temporarily_unavailable" for 5xx and
+     * "invalid_request" otherwise.
+     * @param statusCode
+     * @return the fault
+     */
+    public static Fault status(int statusCode) {
+        return error(statusCode, statusCode >= 500 ? "temporarily_unavailable" : "invalid_request",
+            "AADSTS90000: Scripted failure of the stand-in server.");
+    }
+
+    /**
+     * Responds with the given status code and OAuth2 error, e.g. 401 "invalid_client" with
+     * "AADSTS7000215: Invalid client secret provided."
+     * @param statusCode
+     * @param errorCode
+     * @param errorDescription
+     * @return the fault
+     */
+    public static Fault error(int statusCode, String errorCode, String errorDescription) {
+        return new Fault(Kind.ERROR, 0, statusCode, errorCode, errorDescription, -1);
+    }
+
+    /**
+     * Responds with HTTP 429 and a Retry-After header.
+     * @param retryAfterInSeconds value of the Retry-After header, negative for no header
+     * @return the fault
+     */
+    public static Fault tooManyRequests(int retryAfterInSeconds) {
+        return new Fault(Kind.ERROR, 0, 429, "temporarily_unavailable",
+                "AADSTS50196: The server terminated an operation because it encountered a client request loop.",
+                retryAfterInSeconds);
+    }
+
+    /**
+     * Never responds, the connection is held open until the client gives up or the server is closed.
+     * @return the fault
+     */
+    public static Fault hang() {
+        return new Fault(Kind.HANG, 0, 0, null, null, -1);
+    }
+
+    Kind getKind() {
+        return kind;
+    }
+
+    long getDelayInMs() {
+        return delayInMs;
+    }
+
+    int getStatusCode() {
+        return statusCode;
+    }
+
+    String getErrorCode() {
+        return errorCode;
+    }
+
+    String getErrorDescription() {
+        return errorDescription;
+    }
+
+    int getRetryAfterInSeconds() {
+        return retryAfterInSeconds;
+    }
+
+    @Override
+    public String toString() {
+        switch (kind) {
+        case DELAY:
+            return "delay(" + delayInMs + ")";
+        case HANG:
+            return "hang()";
+        default:
+            return "error(" + statusCode + ", " + errorCode + ")";
+        }
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2024, Redis Ltd. and Contributors
+ * All rights reserved.
+ *
+ * Licensed under the MIT License.
+ */
+package redis.clients.authentication.entraid.testkit;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import javax.net.ssl.SSLSocketFactory;
+
+import redis.clients.authentication.entraid.KeepAliveHttpClient;
+
+/**
+ * Http client for MSAL which routes the requests to the well-known hosts of EntraID and IMDS to the stand-in server,
+ * so that clients configured for the real endpoints run against it unchanged.
+ */
+class StandInHttpClient extends KeepAliveHttpClient {
+
+    static final Set<String> REDIRECTED_HOSTS = Collections
+            .unmodifiableSet(new HashSet<>(Arrays.asList("login.microsoftonline.com", "login.microsoft.com",
+                "login.windows.net", "sts.windows.net", "169.254.169.254")));
+
+    // regional token services, e.g. westus.login.microsoft.com
+    private static final String REGIONAL_HOST_SUFFIX = ".login.microsoft.com";
+
+    private final int port;
+
+    StandInHttpClient(SSLSocketFactory sslSocketFactory, int port, int connectTimeoutInMs, int readTimeoutInMs) {
+        super(sslSocketFactory, null, connectTimeoutInMs, readTimeoutInMs);
+        this.port = port;
+    }
+
+    @Override
+    protected HttpURLConnection openConnection(URL url) throws IOException {
+        return super.openConnection(redirect(url));
+    }
+
+    URL redirect(URL url) throws IOException {
+        String host = url.getHost().toLowerCase();
+        if (REDIRECTED_HOSTS.contains(host) || host.endsWith(REGIONAL_HOST_SUFFIX)) {
+            return new URL("https", "localhost", port, url.getFile());
+        }
+        return url;
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2024, Redis Ltd. and Contributors
+ * All rights reserved.
+ *
+ * Licensed under the MIT License.
+ */
+package redis.clients.authentication.entraid.testkit;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Signature;
+import java.security.interfaces.RSAPublicKey;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Issues JWTs signed with RS256 by a key pair generated for each server, and publishes its public key as a JWKS.
+ */
+class TokenIssuer {
+
+    static final String KEY_ID = "stand-in-signing-key";
+
+    private static final Base64.Encoder BASE64URL = Base64.getUrlEncoder().withoutPadding();
+
+    private final KeyPair keyPair;
+
+    TokenIssuer() {
+        try {
+            KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+            generator.initialize(2048);
+            this.keyPair = generator.generateKeyPair();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Failed to generate signing key!", e);
+        }
+    }
+
+    RSAPublicKey getPublicKey() {
+        return (RSAPublicKey) keyPair.getPublic();
+    }
+
+    /**
+     * Issues a token for the given identity.
+     * @param issuer
+     * @param tenant
+     * @param audience
+     * @param clientId application id of the identity, also the subject of the token
+     * @param lifetimeInMs
+     * @return the signed token
+     */
+    String issue(String issuer, String tenant, String audience, String clientId, long lifetimeInMs) {
+        long now = System.currentTimeMillis() / 1000;
+        Map<String, Object> claims = new LinkedHashMap<>();
+        claims.put("aud", audience);
+        claims.put("iss", issuer);
+        claims.put("iat", now);
+        claims.put("nbf", now);
+        claims.put("exp", now + lifetimeInMs / 1000);
+        claims.put("appid", clientId);
+        claims.put("azp", clientId);
+        claims.put("oid", objectId(clientId));
+        claims.put("sub", objectId(clientId));
+        claims.put("tid", tenant);
+        claims.put("uti", UUID.randomUUID().toString());
+        claims.put("ver", "2.0");
+
+        Map<String, Object> header = new LinkedHashMap<>();
+        header.put("alg", "RS256");
+        header.put("typ", "JWT");
+        header.put("kid", KEY_ID);
+
+        String signingInput = encode(Json.write(header)) + "." + encode(Json.write(claims));
+        try {
+            Signature signature = Signature.getInstance("SHA256withRSA");
+            signature.initSign(keyPair.getPrivate());
+            signature.update(signingInput.getBytes(StandardCharsets.US_ASCII));
+            return signingInput + "." + BASE64URL.encodeToString(signature.sign());
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Failed to sign token!", e);
+        }
+    }
+
+    /**
+     * Returns the object id of the service principal of the given application, stable across servers.
+     * @param clientId
+     * @return
+     */
+    static String objectId(String clientId) {
+        return UUID.nameUUIDFromBytes(clientId.getBytes(StandardCharsets.UTF_8)).toString();
+    }
+
+    String jwks() {
+        Map<String, Object> key = new LinkedHashMap<>();
+        key.put("kty", "RSA");
+        key.put("use", "sig");
+        key.put("kid", KEY_ID);
+        key.put("alg", "RS256");
+        key.put("n", BASE64URL.encodeToString(unsigned(getPublicKey().getModulus())));
+        key.put("e", BASE64URL.encodeToString(unsigned(getPublicKey().getPublicExponent())));
+        Map<String, Object> jwks = new LinkedHashMap<>();
+        jwks.put("keys", Arrays.asList(key));
+        return Json.write(jwks);
+    }
+
+    private static String encode(String json) {
+        return BASE64URL.encodeToString(json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static byte[] unsigned(BigInteger value) {
+        byte[] bytes = value.toByteArray();
+        return bytes[0] == 0 ? Arrays.copyOfRange(bytes, 1, bytes.length) : bytes;
+    }
+}